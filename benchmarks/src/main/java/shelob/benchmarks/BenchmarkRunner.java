@@ -0,0 +1,58 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Entry point for the benchmark jar. Accepts the standard JMH command line, but always attaches
+ * the GC profiler (allocation rate and GC counts per operation) and writes JSON results to 
+ * target/jmh-result.json so that runs can be compared against a baseline.
+ */
+public final class BenchmarkRunner {
+
+	private static final String RESULT_FILE = "target/jmh-result.json";
+	
+	private BenchmarkRunner() {}
+	
+	public static void main(String[] args) throws Exception {
+		
+		final Options options = new OptionsBuilder()
+										.parent(new CommandLineOptions(args))
+										.addProfiler(GCProfiler.class)
+										.resultFormat(ResultFormatType.JSON)
+										.result(RESULT_FILE)
+										.build();
+		
+		new Runner(options).run();
+	}
+}
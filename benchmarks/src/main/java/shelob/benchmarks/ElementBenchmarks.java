@@ -0,0 +1,97 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import shelob.benchmarks.support.BenchPage;
+import shelob.core.interfaces.elements.IElement;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Locator resolution and string representation of individual Elements. These run for every 
+ * lookup (and every wait poll), so their cost is paid many times per test.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ElementBenchmarks {
+
+	private IElement plain;
+	private IElement template;
+	private IElement child;
+	
+	@Setup
+	public void setup() {
+		
+		final BenchPage page = new BenchPage(BenchPage.createParameters(), 10);
+		
+		plain = page.find("Element 0");
+		template = page.find(BenchPage.TEMPLATE, "grid", "3", "4");
+		
+		page.find(BenchPage.PARENT, "Row 1");
+		child = page.find(BenchPage.CHILD);
+	}
+	
+	@Benchmark
+	public String getLocatorPlain() {
+		return plain.getLocator();
+	}
+	
+	@Benchmark
+	public String getLocatorTemplate() {
+		return template.getLocator();
+	}
+	
+	@Benchmark
+	public String getLocatorRelativeToTemplatedParent() {
+		return child.getLocator();
+	}
+	
+	@Benchmark
+	public String toStringPlain() {
+		return plain.toString();
+	}
+	
+	@Benchmark
+	public String toStringTemplate() {
+		return template.toString();
+	}
+}
@@ -0,0 +1,90 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import shelob.benchmarks.support.BenchElement;
+import shelob.benchmarks.support.BenchPage;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.elements.IElementCollection;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * ElementCollection lookups by label, by localization and by template identifiers, plus 
+ * the type scan used to enumerate elements of a page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ElementCollectionBenchmarks {
+
+	@Param({ "10", "1000" })
+	public int size;
+	
+	private IElementCollection elements;
+	
+	@Setup
+	public void setup() {
+		elements = new BenchPage(BenchPage.createParameters(), size).getElements();
+	}
+	
+	@Benchmark
+	public IElement findByLabel() {
+		return elements.find("Element 0");
+	}
+	
+	@Benchmark
+	public IElement findLocalized() {
+		return elements.find(BenchPage.LOCALIZATIONS[1]);
+	}
+	
+	@Benchmark
+	public IElement findWithIdentifiers() {
+		return elements.find(BenchPage.TEMPLATE, "grid", "3", "4");
+	}
+	
+	@Benchmark
+	public List<BenchElement> getElementsByType() {
+		return elements.getElementsByType(BenchElement.class);
+	}
+}
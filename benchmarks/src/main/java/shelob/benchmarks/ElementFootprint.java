@@ -0,0 +1,117 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import shelob.benchmarks.support.BenchElement;
+import shelob.benchmarks.support.BenchPage;
+import shelob.core.ApplicationParameters;
+import shelob.core.LookUp;
+import shelob.core.elements.ElementCollection;
+import shelob.core.interfaces.elements.IElementCollection;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Heap footprint of large generated page models. Builds PAGES pages of ELEMENTS elements each, 
+ * the way generated models do : locators and labels are built per page (so equal strings are 
+ * distinct instances), every tenth element is a localized template and every page repeats the 
+ * same common elements. Reports the retained heap per element after a full collection.
+ * 
+ * 		java -cp target/benchmarks.jar shelob.benchmarks.ElementFootprint [pages] [elements]
+ * 
+ * JMH measures time and allocation rate, not retained size, so this runs as a plain program.
+ */
+public final class ElementFootprint {
+
+	private static final int PAGES = 50;
+	private static final int ELEMENTS = 1000;
+	
+	private ElementFootprint() {}
+	
+	public static void main(String[] args) throws Exception {
+		
+		final int pages = args.length > 0 ? Integer.parseInt(args[0]) : PAGES;
+		final int elements = args.length > 1 ? Integer.parseInt(args[1]) : ELEMENTS;
+		final ApplicationParameters parameters = BenchPage.createParameters();
+		
+		// warm up class loading and the interners before the baseline is taken
+		build(parameters, 1, elements);
+		
+		final long before = usedHeap();
+		final IElementCollection[] models = build(parameters, pages, elements);
+		final long after = usedHeap();
+		
+		final long total = pages * (long) elements;
+		
+		System.out.println(String.format("%d pages x %d elements : %,d bytes retained, %d bytes per element", 
+				models.length, elements, after - before, (after - before) / total));
+	}
+	
+	private static IElementCollection[] build(ApplicationParameters parameters, int pages, int elements) {
+		
+		final IElementCollection[] models = new IElementCollection[pages];
+		
+		for (int p = 0; p < pages; p++) {
+			
+			final BenchPage page = new BenchPage(parameters, 0);
+			final IElementCollection collection = ElementCollection.create();
+			
+			for (int i = 0; i < elements; i++) {
+				
+				if (i % 10 == 0) {
+					collection.put(new BenchElement.Builder(page, LookUp.ByXpath, new StringBuilder("//button[text()='%s']").toString())
+													.label(new StringBuilder("Action ").append(i).toString())
+													.addLocalization(new StringBuilder("Action FR ").append(i).toString())
+													.addLocalization(new StringBuilder("Action ES ").append(i).toString())
+													.required()
+													.build());
+				} else {
+					collection.put(new BenchElement.Builder(page, LookUp.ById, new StringBuilder("element-").append(i).toString())
+													.label(new StringBuilder("Element ").append(i).toString())
+													.build());
+				}
+			}
+			
+			models[p] = collection;
+		}
+		
+		return models;
+	}
+	
+	private static long usedHeap() throws InterruptedException {
+		
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,127 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.benchmarks;
+
+import java.net.URL;
+import java.util.Arrays;
+
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import shelob.core.browsers.CapabilityProfile;
+import shelob.core.browsers.Chrome;
+import shelob.core.browsers.Firefox;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Startup time and first paint latency per CapabilityProfile. Starts SESSIONS sessions of each 
+ * profile against a Grid Hub, loads the page once per session and reports, per profile, the 
+ * median and 90th percentile of :
+ * 
+ * 		start	the time to create the session
+ * 		load	the time for get() to return
+ * 		paint	the first (contentful) paint reported by the browser, from the start of navigation
+ * 		quit	the time to end the session
+ * 
+ * 		java -cp target/benchmarks.jar shelob.benchmarks.StartupBenchmark <grid> <page> [chrome|firefox] [sessions]
+ * 
+ * A browser is required, so this runs as a plain program rather than under JMH.
+ */
+public final class StartupBenchmark {
+
+	private static final int SESSIONS = 10;
+	
+	private static final CapabilityProfile[] PROFILES = { CapabilityProfile.DEFAULT, CapabilityProfile.HEADLESS, CapabilityProfile.FAST_STARTUP };
+	
+	// the paint timing API where the browser supports it, the DOM content loaded event otherwise
+	private static final String FIRST_PAINT = 
+			"var p = window.performance; if (! p) return -1;" + 
+			"if (p.getEntriesByType) { var e = p.getEntriesByType('paint'); var best = -1;" + 
+			"  for (var i = 0; i < e.length; i++) { if (best < 0 || e[i].name == 'first-contentful-paint') best = e[i].startTime; }" + 
+			"  if (best >= 0) return Math.round(best); }" + 
+			"return p.timing ? p.timing.domContentLoadedEventEnd - p.timing.navigationStart : -1;";
+	
+	private StartupBenchmark() {}
+	
+	public static void main(String[] args) throws Exception {
+		
+		if (args.length < 2) {
+			System.err.println("usage : StartupBenchmark <grid> <page> [chrome|firefox] [sessions]");
+			System.exit(1);
+		}
+		
+		final URL grid = new URL(args[0]);
+		final String page = args[1];
+		final boolean firefox = args.length > 2 && "firefox".equalsIgnoreCase(args[2]);
+		final int sessions = args.length > 3 ? Integer.parseInt(args[3]) : SESSIONS;
+		
+		System.out.println(String.format("%-14s %14s %14s %14s %14s", "profile", "start ms", "load ms", "paint ms", "quit ms"));
+		
+		for (CapabilityProfile profile : PROFILES) {
+			
+			// one unmeasured session, so that the node has the browser binaries in the page cache
+			run(grid, page, firefox, profile, new long[4][1], 0);
+			
+			final long[][] samples = new long[4][sessions];
+			
+			for (int i = 0; i < sessions; i++)
+				run(grid, page, firefox, profile, samples, i);
+			
+			System.out.println(String.format("%-14s %14s %14s %14s %14s", profile.getName(), 
+					summary(samples[0]), summary(samples[1]), summary(samples[2]), summary(samples[3])));
+		}
+	}
+	
+	private static void run(URL grid, String page, boolean firefox, CapabilityProfile profile, long[][] samples, int i) {
+		
+		long started = System.nanoTime();
+		final RemoteWebDriver driver = firefox ? Firefox.getDriver(grid, profile) : Chrome.getDriver(grid, profile);
+		samples[0][i] = millisSince(started);
+		
+		try {
+			started = System.nanoTime();
+			driver.get(page);
+			samples[1][i] = millisSince(started);
+			
+			samples[2][i] = ((Number) driver.executeScript(FIRST_PAINT)).longValue();
+		} finally {
+			started = System.nanoTime();
+			driver.quit();
+			samples[3][i] = millisSince(started);
+		}
+	}
+	
+	private static long millisSince(long started) {
+		return (System.nanoTime() - started) / 1000000L;
+	}
+	
+	private static String summary(long[] samples) {
+		
+		final long[] sorted = samples.clone();
+		Arrays.sort(sorted);
+		
+		return String.format("%d / %d", sorted[sorted.length / 2], sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.9) - 1)]);
+	}
+}
@@ -0,0 +1,105 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import shelob.benchmarks.support.BenchPage;
+import shelob.core.ApplicationParameters;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.trace.TraceRecorder;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The cost tracing adds to an Element action (a LOOKUP and an ACTION span). The trace is 
+ * formatted as usual but written to a discarding Writer, so only the recording path is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraceBenchmarks {
+
+	@Param({"false", "true"})
+	public boolean traced;
+	
+	private TraceRecorder recorder;
+	private IElement element;
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		final ApplicationParameters parameters = BenchPage.createParameters();
+		
+		if (traced) {
+			
+			recorder = new TraceRecorder(new Writer() {
+				
+				@Override
+				public void write(char[] cbuf, int off, int len) {}
+				
+				@Override
+				public void flush() {}
+				
+				@Override
+				public void close() {}
+			}, 1024);
+			
+			parameters.setOperationListener(recorder);
+		}
+		
+		element = new BenchPage(parameters, 10).find("Element 0");
+	}
+	
+	@TearDown
+	public void teardown() throws IOException {
+		
+		if (recorder != null)
+			recorder.close();
+	}
+	
+	@Benchmark
+	public String getText() {
+		return element.getText();
+	}
+}
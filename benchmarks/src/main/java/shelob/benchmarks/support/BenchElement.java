@@ -0,0 +1,73 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.benchmarks.support;
+
+import shelob.core.LookUp;
+import shelob.core.elements.Element;
+import shelob.core.elements.ElementBuilder;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Minimal concrete Element used to exercise the abstract Element implementation
+ */
+public final class BenchElement extends Element {
+
+	/**
+	 * The BenchElement Builder
+	 */
+	public final static class Builder extends ElementBuilder<Builder> {
+		
+		/**
+		 * @param parent the IPage parent this element is found on
+		 * @param lookup the LookUp strategy used to find the element
+		 * @param locator the locator string used to specify the element
+		 */
+		public Builder(IPage parent, LookUp lookup, String locator) {
+			super(parent, lookup, locator);
+		}
+		
+		/**
+		 * The factory method
+		 * 
+		 * @return a new instance of the BenchElement
+		 */
+		public IElement build() {
+			
+			final BenchElement control = new BenchElement(this);
+			
+			configure(control);
+			
+			return control;
+		}
+	}
+	
+	private BenchElement(Builder builder) {
+		super(builder.parent, builder.lookup, builder.locator, builder.label, null);
+	}
+}
@@ -0,0 +1,102 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.benchmarks.support;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.StandardNavigationPage;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * A Page model shaped like a typical generated page : many plain elements, a localized 
+ * element, a multi-identifier template and a template relative to a templated parent.
+ */
+public final class BenchPage extends StandardNavigationPage {
+
+	public static final String LOCALIZED = "Save";
+	public static final String[] LOCALIZATIONS = { "Enregistrer", "Guardar", "Speichern" };
+	public static final String TEMPLATE = "Grid Cell";
+	public static final String PARENT = "Grid Row";
+	public static final String CHILD = "Row Checkbox";
+	
+	private final int size;
+	
+	/**
+	 * @param parameters the ApplicationParameters used to access this page
+	 * @param size the number of plain elements on the page
+	 */
+	public BenchPage(ApplicationParameters parameters, int size) {
+		super(parameters, "Bench Page");
+		this.size = size;
+	}
+	
+	/**
+	 * @return ApplicationParameters backed by an in-memory driver
+	 */
+	public static ApplicationParameters createParameters() {
+		return new ApplicationParameters(InMemoryCommandExecutor.createDriver(), 
+										 new ApplicationURL("localhost", "cgi-bin", "bench"), 
+										 new User.Builder("bench@test.com", "password").build())
+										.setDefaultWait(5);
+	}
+	
+	synchronized public IElementCollection getElements() {
+		
+		if (elements == null) {
+			
+			elements = ElementCollection.create();
+			
+			for (int i = 0; i < size; i++)
+				elements.put(new BenchElement.Builder(this, LookUp.ById, "element-" + i).label("Element " + i).build());
+			
+			final BenchElement.Builder localized = new BenchElement.Builder(this, LookUp.ByXpath, "//button[text()='%s']").label(LOCALIZED);
+			
+			for (String s : LOCALIZATIONS)
+				localized.addLocalization(s);
+			
+			elements.put(localized.build());
+			
+			elements.put(new BenchElement.Builder(this, LookUp.ByXpath, "//table[@id='%s']//tr[%s]/td[%s]")
+											 .label(TEMPLATE).isTemplate().build());
+			
+			final BenchElement.Builder parent = new BenchElement.Builder(this, LookUp.ByXpath, "//table//tr[td[text()='%s']]")
+											 .label(PARENT).isTemplate();
+			
+			final BenchElement.Builder child = new BenchElement.Builder(this, LookUp.ByXpath, "/td/input[@type='checkbox']")
+											 .label(CHILD).isTemplate();
+			
+			elements.put(parent.build());
+			elements.put(child.build().setRelativeToParent(elements.find(PARENT)));
+		}
+		
+		return elements;
+	}
+}
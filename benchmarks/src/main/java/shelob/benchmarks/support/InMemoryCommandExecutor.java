@@ -0,0 +1,74 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.benchmarks.support;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Answers every wire command in memory so that a real RemoteWebDriver can be constructed 
+ * without a browser. Element lookups always resolve to the same element.
+ */
+public final class InMemoryCommandExecutor implements CommandExecutor {
+
+	private static final String SESSION_ID = "in-memory";
+	private static final Map<String, Object> ELEMENT = Collections.<String, Object>singletonMap("ELEMENT", "0");
+	
+	/**
+	 * @return a RemoteWebDriver backed by an InMemoryCommandExecutor
+	 */
+	public static RemoteWebDriver createDriver() {
+		return new RemoteWebDriver(new InMemoryCommandExecutor(), new DesiredCapabilities());
+	}
+	
+	public Response execute(Command command) throws IOException {
+		
+		final Response response = new Response();
+		response.setSessionId(SESSION_ID);
+		response.setStatus(0);
+		
+		final String name = command.getName();
+		
+		if (DriverCommand.NEW_SESSION.equals(name))
+			response.setValue(new HashMap<String, Object>());
+		else if (DriverCommand.FIND_ELEMENT.equals(name) || DriverCommand.FIND_CHILD_ELEMENT.equals(name))
+			response.setValue(ELEMENT);
+		else if (DriverCommand.FIND_ELEMENTS.equals(name) || DriverCommand.FIND_CHILD_ELEMENTS.equals(name))
+			response.setValue(Collections.singletonList(ELEMENT));
+		
+		return response;
+	}
+}
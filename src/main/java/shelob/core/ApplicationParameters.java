@@ -27,10 +27,14 @@ package shelob.core;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.concurrent.Executor;
+
 import javax.annotation.concurrent.Immutable;
 
 import org.openqa.selenium.remote.RemoteWebDriver;
 
+import shelob.core.capture.FailureCapture;
+import shelob.core.interfaces.IOperationListener;
 import shelob.core.interfaces.IWaitDelegate;
 
 /**
@@ -49,6 +53,10 @@ public class ApplicationParameters {
 	// Optional Global settings
 	private volatile int defaultWaitInSeconds = 0;
 	private volatile IWaitDelegate delegate;
+	private volatile IOperationListener listener;
+	private volatile boolean verifyRequired = false;
+	private volatile Executor asyncExecutor;
+	private volatile FailureCapture failureCapture;
 	
 	/**
 	 * ApplicationParameter Constructor
@@ -63,6 +71,7 @@ public class ApplicationParameters {
 		this.user = checkNotNull(user);
 		
 		delegate = null;
+		listener = null;
 	}
 	
 	/**
@@ -111,6 +120,71 @@ public class ApplicationParameters {
 		return this;
 	}
 	
+	/**
+	 * @return the IOperationListener notified of Element and Page operations, or null
+	 */
+	public IOperationListener getOperationListener() {
+		return listener;
+	}
+	
+	/**
+	 * @param listener the IOperationListener notified of Element and Page operations; null to disable
+	 * @return fluent interface; this
+	 */
+	public ApplicationParameters setOperationListener(IOperationListener listener) {
+		this.listener = listener;
+		return this;
+	}
+	
+	/**
+	 * @return true when Page.verifyRequired() is run after every goTo() and goToLink()
+	 */
+	public boolean isVerifyRequired() {
+		return verifyRequired;
+	}
+	
+	/**
+	 * @param verifyRequired true to run Page.verifyRequired() after every goTo() and goToLink()
+	 * @return fluent interface; this
+	 */
+	public ApplicationParameters setVerifyRequired(boolean verifyRequired) {
+		this.verifyRequired = verifyRequired;
+		return this;
+	}
+	
+	/**
+	 * @return the Executor which runs asynchronous Element operations, or null for the shared default
+	 */
+	public Executor getAsyncExecutor() {
+		return asyncExecutor;
+	}
+	
+	/**
+	 * @param executor the Executor which runs asynchronous Element operations (e.g. one thread per task, 
+	 * 		  or virtual threads where available); null for the shared default
+	 * @return fluent interface; this
+	 */
+	public ApplicationParameters setAsyncExecutor(Executor executor) {
+		this.asyncExecutor = executor;
+		return this;
+	}
+	
+	/**
+	 * @return the FailureCapture which records artifacts for failed Element operations, or null
+	 */
+	public FailureCapture getFailureCapture() {
+		return failureCapture;
+	}
+	
+	/**
+	 * @param capture the FailureCapture which records artifacts for failed Element operations; null to disable
+	 * @return fluent interface; this
+	 */
+	public ApplicationParameters setFailureCapture(FailureCapture capture) {
+		this.failureCapture = capture;
+		return this;
+	}
+	
 	/**
 	 * Method toString.
 	 * @return String
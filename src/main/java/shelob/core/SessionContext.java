@@ -0,0 +1,267 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Binds a session (the ApplicationParameters holding it's driver, user and wait settings) to the 
+ * calling thread. Pages, and through them Elements, look the session up here before falling back 
+ * to the ApplicationParameters they were constructed with, so one page graph can drive many 
+ * concurrent sessions :
+ * 
+ * 		SessionContext.run(session, new Runnable() {
+ * 			public void run() {
+ * 				loginPage.goTo().find("Email").sendKeys(...);
+ * 			}
+ * 		});
+ * 
+ * or, when the session is managed explicitly,
+ * 
+ * 		final SessionContext.Binding binding = SessionContext.bind(session);
+ * 		try { ... } finally { binding.close(); }
+ * 
+ * Template identifiers (and localizations) selected by find() while a session is bound are kept 
+ * with that session rather than on the shared Element, so concurrent sessions resolving the same 
+ * template element do not see each other's identifiers.
+ * 
+ * NOTE : Bindings are per thread (including virtual threads), and are NOT inherited by threads 
+ * 		  started from a bound thread. Use wrap() to carry a session onto an executor.
+ */
+public final class SessionContext {
+
+	private static final ThreadLocal<ApplicationParameters> CURRENT = new ThreadLocal<ApplicationParameters>();
+	
+	// session -> element -> template identifiers; both compared by identity and released once unreachable
+	private static final ConcurrentMap<ApplicationParameters, ConcurrentMap<Object, String[]>> IDENTIFIERS = new MapMaker().weakKeys().makeMap();
+	
+	/**
+	 * A session bound to the calling thread; closing it restores the previous binding
+	 */
+	public static final class Binding implements Closeable {
+		
+		private final Thread owner;
+		private final ApplicationParameters previous;
+		private boolean closed;
+		
+		private Binding(@Nullable ApplicationParameters previous) {
+			this.owner = Thread.currentThread();
+			this.previous = previous;
+		}
+		
+		/**
+		 * Restores the session which was bound before this one
+		 * 
+		 * @throws IllegalStateException when closed from a different thread
+		 */
+		public void close() {
+			
+			if (Thread.currentThread() != owner)
+				throw new IllegalStateException("A session binding must be closed by the thread which created it.");
+			
+			if (closed)
+				return;
+			
+			closed = true;
+			
+			if (previous == null)
+				CURRENT.remove();
+			else
+				CURRENT.set(previous);
+		}
+	}
+	
+	private SessionContext() {}
+	
+	/**
+	 * Binds a session to the calling thread until the returned Binding is closed
+	 * 
+	 * @param session the ApplicationParameters of the session
+	 * @return Binding
+	 */
+	public static Binding bind(ApplicationParameters session) {
+		
+		checkNotNull(session);
+		
+		final Binding binding = new Binding(CURRENT.get());
+		CURRENT.set(session);
+		
+		return binding;
+	}
+	
+	/**
+	 * @return the session bound to the calling thread, or null
+	 */
+	@Nullable
+	public static ApplicationParameters current() {
+		return CURRENT.get();
+	}
+	
+	/**
+	 * @return true when a session is bound to the calling thread
+	 */
+	public static boolean isBound() {
+		return CURRENT.get() != null;
+	}
+	
+	/**
+	 * @param fallback the ApplicationParameters to use when no session is bound
+	 * @return the session bound to the calling thread, otherwise the fallback
+	 */
+	public static ApplicationParameters resolve(ApplicationParameters fallback) {
+		
+		final ApplicationParameters session = CURRENT.get();
+		return session == null ? fallback : session;
+	}
+	
+	/**
+	 * @param element the element
+	 * @return the template identifiers the bound session set on the element; null when no session 
+	 * 		   is bound, or the session has not set any
+	 */
+	@Nullable
+	public static String[] getTemplateIdentifiers(Object element) {
+		
+		final ApplicationParameters session = CURRENT.get();
+		
+		if (session == null)
+			return null;
+		
+		final Map<Object, String[]> identifiers = IDENTIFIERS.get(session);
+		return identifiers == null ? null : identifiers.get(element);
+	}
+	
+	/**
+	 * @param element the element
+	 * @param identifiers the template identifiers the bound session resolves the element with
+	 * @return false when no session is bound, in which case the identifiers have not been stored
+	 */
+	public static boolean setTemplateIdentifiers(Object element, String[] identifiers) {
+		
+		checkNotNull(element);
+		checkNotNull(identifiers);
+		
+		final ApplicationParameters session = CURRENT.get();
+		
+		if (session == null)
+			return false;
+		
+		ConcurrentMap<Object, String[]> map = IDENTIFIERS.get(session);
+		
+		if (map == null) {
+			
+			final ConcurrentMap<Object, String[]> created = new MapMaker().weakKeys().makeMap();
+			final ConcurrentMap<Object, String[]> raced = IDENTIFIERS.putIfAbsent(session, created);
+			map = raced == null ? created : raced;
+		}
+		
+		map.put(element, identifiers);
+		return true;
+	}
+	
+	/**
+	 * Runs a task with the session bound to the calling thread
+	 * 
+	 * @param session the ApplicationParameters of the session
+	 * @param task Runnable
+	 */
+	public static void run(ApplicationParameters session, Runnable task) {
+		
+		final Binding binding = bind(session);
+		
+		try {
+			task.run();
+		} finally {
+			binding.close();
+		}
+	}
+	
+	/**
+	 * Calls a task with the session bound to the calling thread
+	 * 
+	 * @param session the ApplicationParameters of the session
+	 * @param task Callable<V>
+	 * @return the result of the task
+	 * @throws Exception thrown by the task
+	 */
+	public static <V> V call(ApplicationParameters session, Callable<V> task) throws Exception {
+		
+		final Binding binding = bind(session);
+		
+		try {
+			return task.call();
+		} finally {
+			binding.close();
+		}
+	}
+	
+	/**
+	 * @param session the ApplicationParameters of the session
+	 * @param task Runnable
+	 * @return a Runnable which binds the session to whichever thread runs it
+	 */
+	public static Runnable wrap(final ApplicationParameters session, final Runnable task) {
+		
+		checkNotNull(session);
+		checkNotNull(task);
+		
+		return new Runnable() {
+			
+			public void run() {
+				SessionContext.run(session, task);
+			}
+		};
+	}
+	
+	/**
+	 * @param session the ApplicationParameters of the session
+	 * @param task Callable<V>
+	 * @return a Callable which binds the session to whichever thread calls it
+	 */
+	public static <V> Callable<V> wrap(final ApplicationParameters session, final Callable<V> task) {
+		
+		checkNotNull(session);
+		checkNotNull(task);
+		
+		return new Callable<V>() {
+			
+			public V call() throws Exception {
+				return SessionContext.call(session, task);
+			}
+		};
+	}
+}
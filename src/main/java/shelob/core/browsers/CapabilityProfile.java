@@ -0,0 +1,443 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.browsers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.Proxy;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxProfile;
+import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import shelob.core.http.ResourceProxy;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * A named set of browser settings which shorten startup and page loads, applied on top of the 
+ * default capabilities of the browser factories :
+ * 
+ * 		Chrome.getDriver(grid, CapabilityProfile.FAST_STARTUP);
+ * 
+ * 		headless			no visible window
+ * 		imagesDisabled		images are not downloaded or decoded
+ * 		eagerPageLoad		navigation returns once the DOM is ready, without waiting for subresources
+ * 		minimalExtensions	no extensions, first run pages, update checks, sync or telemetry
+ * 		templateProfile		a prepared Firefox profile directory
+ * 		proxy				an HTTP proxy, e.g. a ResourceProxy blocking analytics and fonts
+ * 
+ * The Firefox profile (the template, if any, and the preferences of the profile) is zipped and 
+ * encoded once, when it is first needed, and the encoded profile is reused by every session 
+ * rather than being copied again each time.
+ * 
+ * NOTE : Chrome cannot share a user data directory between concurrent sessions, so the template 
+ * 		  profile only applies to Firefox. HtmlUnit has no window, images or extensions, so only the 
+ * 		  proxy applies to it.
+ */
+@ThreadSafe
+public final class CapabilityProfile {
+
+	/** the browser defaults */
+	public static final CapabilityProfile DEFAULT = new Builder("default").build();
+	
+	/** no visible window */
+	public static final CapabilityProfile HEADLESS = new Builder("headless").headless().build();
+	
+	/** every setting which shortens startup and page loads */
+	public static final CapabilityProfile FAST_STARTUP = new Builder("fast-startup").headless().imagesDisabled().eagerPageLoad().minimalExtensions().build();
+	
+	/** the W3C page load strategy capability */
+	public static final String PAGE_LOAD_STRATEGY = "pageLoadStrategy";
+	
+	/** the W3C Firefox options capability */
+	public static final String FIREFOX_OPTIONS = "moz:firefoxOptions";
+	
+	private static final String[] CHROME_MINIMAL = { "--disable-extensions", "--disable-component-extensions-with-background-pages", 
+													 "--disable-default-apps", "--disable-background-networking", "--disable-sync", 
+													 "--no-first-run", "--no-default-browser-check", "--metrics-recording-only" };
+	
+	private final String name;
+	private final boolean headless;
+	private final boolean imagesDisabled;
+	private final boolean eagerPageLoad;
+	private final boolean minimalExtensions;
+	private final File templateProfile;
+	private final String proxy;
+	
+	@GuardedBy("this") private String encodedFirefoxProfile;
+	
+	/**
+	 * The CapabilityProfile Builder
+	 * @author melllaguno
+	 */
+	public static class Builder {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		// Required parameters
+		private final String name;
+		
+		// Optional parameters
+		private boolean headless = false;
+		private boolean imagesDisabled = false;
+		private boolean eagerPageLoad = false;
+		private boolean minimalExtensions = false;
+		private File templateProfile = null;
+		private String proxy = null;
+		
+		/**
+		 * @param name the name of the profile, used in reports
+		 */
+		public Builder(String name) {
+			this.name = checkNotNull(name);
+		}
+		
+		/**
+		 * @param profile the profile whose settings are copied
+		 * @param name the name of the new profile
+		 */
+		public Builder(CapabilityProfile profile, String name) {
+			this(name);
+			headless = profile.headless;
+			imagesDisabled = profile.imagesDisabled;
+			eagerPageLoad = profile.eagerPageLoad;
+			minimalExtensions = profile.minimalExtensions;
+			templateProfile = profile.templateProfile;
+			proxy = profile.proxy;
+		}
+		
+		/**
+		 * @return this; fluent interface
+		 */
+		public Builder headless() {
+			headless = true;
+			return this;
+		}
+		
+		/**
+		 * @return this; fluent interface
+		 */
+		public Builder imagesDisabled() {
+			imagesDisabled = true;
+			return this;
+		}
+		
+		/**
+		 * @return this; fluent interface
+		 */
+		public Builder eagerPageLoad() {
+			eagerPageLoad = true;
+			return this;
+		}
+		
+		/**
+		 * @return this; fluent interface
+		 */
+		public Builder minimalExtensions() {
+			minimalExtensions = true;
+			return this;
+		}
+		
+		/**
+		 * @param directory a Firefox profile directory the sessions start from
+		 * @return this; fluent interface
+		 */
+		public Builder templateProfile(File directory) {
+			checkArgument(checkNotNull(directory).isDirectory(), "%s is not a profile directory", directory);
+			templateProfile = directory;
+			return this;
+		}
+		
+		/**
+		 * @param hostAndPort the HTTP and HTTPS proxy the browser connects through
+		 * @return this; fluent interface
+		 */
+		public Builder proxy(String hostAndPort) {
+			proxy = checkNotNull(hostAndPort);
+			return this;
+		}
+		
+		/**
+		 * @param resourceProxy the started ResourceProxy the browser connects through
+		 * @return this; fluent interface
+		 */
+		public Builder proxy(ResourceProxy resourceProxy) {
+			return proxy(resourceProxy.getHostAndPort());
+		}
+		
+		/**
+		 * @return a new CapabilityProfile
+		 */
+		public CapabilityProfile build() {
+			return new CapabilityProfile(this);
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param builder the CapabilityProfile.Builder responsible for creating this object
+	 */
+	private CapabilityProfile(Builder builder) {
+		name = builder.name;
+		headless = builder.headless;
+		imagesDisabled = builder.imagesDisabled;
+		eagerPageLoad = builder.eagerPageLoad;
+		minimalExtensions = builder.minimalExtensions;
+		templateProfile = builder.templateProfile;
+		proxy = builder.proxy;
+	}
+	
+	/**
+	 * @return the name of the profile
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return boolean
+	 */
+	public boolean isHeadless() {
+		return headless;
+	}
+	
+	/**
+	 * @return boolean
+	 */
+	public boolean isImagesDisabled() {
+		return imagesDisabled;
+	}
+	
+	/**
+	 * @return boolean
+	 */
+	public boolean isEagerPageLoad() {
+		return eagerPageLoad;
+	}
+	
+	/**
+	 * @return boolean
+	 */
+	public boolean isMinimalExtensions() {
+		return minimalExtensions;
+	}
+	
+	/**
+	 * @return the Firefox profile directory the sessions start from, or null
+	 */
+	@Nullable
+	public File getTemplateProfile() {
+		return templateProfile;
+	}
+	
+	/**
+	 * @return the host:port of the proxy the browser connects through, or null
+	 */
+	@Nullable
+	public String getProxy() {
+		return proxy;
+	}
+	
+	/**
+	 * @return the Chrome command line switches of the profile
+	 */
+	public List<String> getChromeArguments() {
+		
+		final List<String> arguments = new ArrayList<String>();
+		
+		if (headless) {
+			arguments.add("--headless");
+			arguments.add("--disable-gpu");
+		}
+		
+		if (imagesDisabled)
+			arguments.add("--blink-settings=imagesEnabled=false");
+		
+		if (minimalExtensions)
+			Collections.addAll(arguments, CHROME_MINIMAL);
+		
+		// Chrome does not send requests for localhost through a proxy unless told to
+		if (proxy != null)
+			arguments.add("--proxy-bypass-list=<-loopback>");
+		
+		return arguments;
+	}
+	
+	/**
+	 * @return the Firefox preferences of the profile
+	 */
+	public Map<String, Object> getFirefoxPreferences() {
+		
+		final Map<String, Object> preferences = new LinkedHashMap<String, Object>();
+		
+		if (imagesDisabled)
+			preferences.put("permissions.default.image", 2);
+		
+		// the FirefoxDriver extension's own page load strategy
+		if (eagerPageLoad)
+			preferences.put("webdriver.load.strategy", "unstable");
+		
+		if (minimalExtensions) {
+			preferences.put("extensions.update.enabled", false);
+			preferences.put("app.update.enabled", false);
+			preferences.put("browser.shell.checkDefaultBrowser", false);
+			preferences.put("browser.startup.page", 0);
+			preferences.put("browser.sessionstore.resume_from_crash", false);
+			preferences.put("datareporting.policy.dataSubmissionEnabled", false);
+			preferences.put("toolkit.telemetry.enabled", false);
+		}
+		
+		if (proxy != null)
+			preferences.put("network.proxy.allow_hijacking_localhost", true);
+		
+		return preferences;
+	}
+	
+	/**
+	 * @param capabilities the default Chrome capabilities
+	 * @return the capabilities, with the settings of this profile
+	 */
+	public DesiredCapabilities applyToChrome(DesiredCapabilities capabilities) {
+		
+		final List<String> arguments = getChromeArguments();
+		
+		if (! arguments.isEmpty()) {
+			
+			final Map<String, Object> options = new HashMap<String, Object>();
+			options.put("args", arguments);
+			capabilities.setCapability(ChromeOptions.CAPABILITY, options);
+		}
+		
+		if (eagerPageLoad)
+			capabilities.setCapability(PAGE_LOAD_STRATEGY, "eager");
+		
+		if (proxy != null)
+			capabilities.setCapability(CapabilityType.PROXY, new Proxy().setHttpProxy(proxy).setSslProxy(proxy));
+		
+		return capabilities;
+	}
+	
+	/**
+	 * @param capabilities the default Firefox capabilities
+	 * @return the capabilities, with the settings of this profile
+	 */
+	public DesiredCapabilities applyToFirefox(DesiredCapabilities capabilities) {
+		
+		final Map<String, Object> preferences = getFirefoxPreferences();
+		
+		if (headless || ! preferences.isEmpty()) {
+			
+			final Map<String, Object> options = new HashMap<String, Object>();
+			
+			if (headless)
+				options.put("args", Collections.singletonList("-headless"));
+			if (! preferences.isEmpty())
+				options.put("prefs", preferences);
+			
+			capabilities.setCapability(FIREFOX_OPTIONS, options);
+		}
+		
+		if (eagerPageLoad)
+			capabilities.setCapability(PAGE_LOAD_STRATEGY, "eager");
+		
+		if (templateProfile != null || ! preferences.isEmpty())
+			capabilities.setCapability(FirefoxDriver.PROFILE, getEncodedFirefoxProfile());
+		
+		if (proxy != null)
+			capabilities.setCapability(CapabilityType.PROXY, new Proxy().setHttpProxy(proxy).setSslProxy(proxy));
+		
+		return capabilities;
+	}
+	
+	/**
+	 * @param capabilities the default HtmlUnit capabilities
+	 * @return the capabilities, with the proxy of this profile
+	 */
+	public DesiredCapabilities applyToHtmlUnit(DesiredCapabilities capabilities) {
+		
+		if (proxy != null)
+			capabilities.setCapability(CapabilityType.PROXY, new Proxy().setHttpProxy(proxy).setSslProxy(proxy));
+		
+		return capabilities;
+	}
+	
+	/**
+	 * @return the Firefox profile, zipped and encoded for the wire; built once
+	 */
+	public synchronized String getEncodedFirefoxProfile() {
+		
+		if (encodedFirefoxProfile == null) {
+			
+			final FirefoxProfile profile = templateProfile == null ? new FirefoxProfile() : new FirefoxProfile(templateProfile);
+			
+			for (Map.Entry<String, Object> preference : getFirefoxPreferences().entrySet()) {
+				
+				final Object value = preference.getValue();
+				
+				if (value instanceof Boolean)
+					profile.setPreference(preference.getKey(), (Boolean) value);
+				else if (value instanceof Integer)
+					profile.setPreference(preference.getKey(), (Integer) value);
+				else
+					profile.setPreference(preference.getKey(), String.valueOf(value));
+			}
+			
+			try {
+				encodedFirefoxProfile = profile.toJson();
+			} catch (IOException e) {
+				throw new WebDriverException("Unable to encode the Firefox profile of " + name, e);
+			}
+		}
+		
+		return encodedFirefoxProfile;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("CapabilityProfile [%s : headless=%s, imagesDisabled=%s, eagerPageLoad=%s, minimalExtensions=%s, templateProfile=%s, proxy=%s]", 
+							 name, headless, imagesDisabled, eagerPageLoad, minimalExtensions, templateProfile, proxy);
+	}
+}
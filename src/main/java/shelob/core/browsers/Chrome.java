@@ -28,8 +28,12 @@ import java.net.URL;
 import org.openqa.selenium.Platform;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
+import shelob.core.metrics.CommandMetrics;
+import shelob.core.metrics.MeteredCommandExecutor;
+
 /** 
  * @author melllaguno
  * @version $Revision: 1.0 $
@@ -48,6 +52,44 @@ public enum Chrome {
 		return new RemoteWebDriver(gridAddress, getDefaultCapabilities());
 	}
 	
+	/**
+	 * NOTE : Every wire command sent through this driver is counted and timed against the 
+	 * 		  Page/Element which issued it.
+	 * 
+	 * @param gridAddress the URI to the Grid Hub
+	 * @param metrics the CommandMetrics that round trips are recorded against
+	 * @return the metered RemoteWebDriver used against the Grid Hub
+	 */
+	static public RemoteWebDriver getDriver(URL gridAddress, CommandMetrics metrics) {
+		return new RemoteWebDriver(new MeteredCommandExecutor(new HttpCommandExecutor(gridAddress), metrics), 
+								   getDefaultCapabilities());
+	}
+	
+	/**
+	 * NOTE : The browser session is replaced by a fresh one, with the same cookies and URL, 
+	 * 		  whenever the policy says it is due.
+	 * 
+	 * @param gridAddress the URI to the Grid Hub
+	 * @param policy the RecyclingPolicy deciding when the browser session is replaced
+	 * @return the recycling RemoteWebDriver used against the Grid Hub
+	 */
+	static public RemoteWebDriver getDriver(URL gridAddress, RecyclingPolicy policy) {
+		return new RemoteWebDriver(new RecyclingCommandExecutor(new HttpCommandExecutor(gridAddress), policy), 
+								   getDefaultCapabilities());
+	}
+	
+	/**
+	 * NOTE : The settings of the profile (headless, images disabled, eager page loads, minimal 
+	 * 		  extensions) are applied on top of the default capabilities.
+	 * 
+	 * @param gridAddress the URI to the Grid Hub
+	 * @param profile the CapabilityProfile the session is started with
+	 * @return the RemoteWebDriver used against the Grid Hub
+	 */
+	static public RemoteWebDriver getDriver(URL gridAddress, CapabilityProfile profile) {
+		return new RemoteWebDriver(gridAddress, getCapabilities(profile));
+	}
+	
 	/**
 	 * @return the ChromeDriver instance
 	 */
@@ -65,4 +107,12 @@ public enum Chrome {
 		//capabilities.setCapability(CapabilityType.TAKES_SCREENSHOT, true);
 		return capabilities;	  
 	}
+	
+	/**
+	 * @param profile the CapabilityProfile the session is started with
+	 * @return the default capabilities, with the settings of the profile
+	 */
+	static public DesiredCapabilities getCapabilities(CapabilityProfile profile) {
+		return profile.applyToChrome(getDefaultCapabilities());
+	}
 }
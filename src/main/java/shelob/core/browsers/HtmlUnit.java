@@ -0,0 +1,129 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.browsers;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import shelob.core.exceptions.IncompatibleDriverException;
+import shelob.core.interfaces.page.ILightweightCompatible;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.metrics.CommandMetrics;
+import shelob.core.metrics.MeteredCommandExecutor;
+
+/** 
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * In-process HtmlUnit driver for flows which do not need a real browser (login, navigation, 
+ * form posts, text verification). No browser process or Grid Hub is started; pages are 
+ * fetched and rendered by HtmlUnit inside the test JVM.
+ * 
+ * NOTE : Only Pages which implement ILightweightCompatible may be navigated to with this driver.
+ */
+public enum HtmlUnit {
+	
+	;
+	
+	/**
+	 * @return the RemoteWebDriver backed by HtmlUnit, with JavaScript enabled
+	 */
+	static public RemoteWebDriver getDriver() {
+		return getDriver(true);
+	}
+	
+	/**
+	 * @param javascriptEnabled false to skip the scripts of the pages, which is faster still
+	 * @return the RemoteWebDriver backed by HtmlUnit
+	 */
+	static public RemoteWebDriver getDriver(boolean javascriptEnabled) {
+		return new RemoteWebDriver(new HtmlUnitCommandExecutor(), getCapabilities(javascriptEnabled));
+	}
+	
+	/**
+	 * NOTE : Every wire command sent through this driver is counted and timed against the 
+	 * 		  Page/Element which issued it.
+	 * 
+	 * @param javascriptEnabled false to skip the scripts of the pages, which is faster still
+	 * @param metrics the CommandMetrics that round trips are recorded against
+	 * @return the metered RemoteWebDriver backed by HtmlUnit
+	 */
+	static public RemoteWebDriver getDriver(boolean javascriptEnabled, CommandMetrics metrics) {
+		return new RemoteWebDriver(new MeteredCommandExecutor(new HtmlUnitCommandExecutor(), metrics), 
+								   getCapabilities(javascriptEnabled));
+	}
+	
+	/**
+	 * NOTE : Only the proxy of the profile applies; pages are fetched through it, e.g. by a 
+	 * 		  ResourceProxy capturing the requests of the flow.
+	 * 
+	 * @param javascriptEnabled false to skip the scripts of the pages, which is faster still
+	 * @param profile the CapabilityProfile the session is started with
+	 * @return the RemoteWebDriver backed by HtmlUnit
+	 */
+	static public RemoteWebDriver getDriver(boolean javascriptEnabled, CapabilityProfile profile) {
+		return new RemoteWebDriver(new HtmlUnitCommandExecutor(), profile.applyToHtmlUnit(getCapabilities(javascriptEnabled)));
+	}
+	
+	/**
+	 * @param driver the RemoteWebDriver
+	 * @return true when the session of the driver is answered by HtmlUnit
+	 */
+	static public boolean isHtmlUnit(RemoteWebDriver driver) {
+		
+		final Capabilities capabilities = driver.getCapabilities();
+		return capabilities != null && DesiredCapabilities.htmlUnit().getBrowserName().equals(capabilities.getBrowserName());
+	}
+	
+	/**
+	 * @param driver the RemoteWebDriver about to navigate
+	 * @param page the page about to be navigated to
+	 * @throws IncompatibleDriverException when the driver is answered by HtmlUnit and the page 
+	 * 		   does not implement ILightweightCompatible
+	 */
+	static public void verifyCompatible(RemoteWebDriver driver, IPage page) throws IncompatibleDriverException {
+		
+		if (! (page instanceof ILightweightCompatible) && isHtmlUnit(driver))
+			throw new IncompatibleDriverException("The page does not declare that it is compatible with the HtmlUnit driver; " + page, page);
+	}
+	
+	static public DesiredCapabilities getDefaultCapabilities() {
+		return getCapabilities(true);
+	}
+	
+	/**
+	 * @param javascriptEnabled false to skip the scripts of the pages
+	 * @return the HtmlUnit capabilities
+	 */
+	static public DesiredCapabilities getCapabilities(boolean javascriptEnabled) {
+		
+		DesiredCapabilities capabilities = DesiredCapabilities.htmlUnit();
+		capabilities.setPlatform(Platform.ANY);
+		capabilities.setCapability(CapabilityType.SUPPORTS_JAVASCRIPT, javascriptEnabled);
+		return capabilities;
+	}
+}
@@ -0,0 +1,600 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.browsers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.Response;
+
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.html.FrameWindow;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Answers wire commands in-process with an HtmlUnitDriver, so that the framework (which is 
+ * written against RemoteWebDriver) runs without a browser process or a Grid Hub. Elements are 
+ * handed out as wire references and resolved back to the HtmlUnit elements they refer to, until 
+ * the page they were found on is replaced; exceptions are answered with the status code of the 
+ * wire protocol, so the RemoteWebDriver rethrows them as it would for a remote browser.
+ * 
+ * NOTE : Screenshots, alerts and the advanced user interactions are not supported.
+ */
+@ThreadSafe
+public class HtmlUnitCommandExecutor implements CommandExecutor {
+
+	private static final ErrorCodes ERROR_CODES = new ErrorCodes();
+	
+	@GuardedBy("this") private final Map<String, WebElement> elements = new HashMap<String, WebElement>();
+	@GuardedBy("this") private final Map<WebElement, String> elementIds = new HashMap<WebElement, String>();
+	// the page each reference was found on
+	@GuardedBy("this") private final Map<String, Page> pages = new HashMap<String, Page>();
+	
+	@GuardedBy("this") private PageAwareDriver driver;
+	@GuardedBy("this") private Page page;
+	@GuardedBy("this") private String sessionId;
+	@GuardedBy("this") private long elementSequence = 0;
+	
+	/**
+	 * HtmlUnitDriver which tells the page it is on
+	 */
+	private static final class PageAwareDriver extends HtmlUnitDriver {
+		
+		PageAwareDriver(Capabilities capabilities) {
+			super(capabilities);
+		}
+		
+		Page getPage() { // $codepro.audit.disable methodJavadoc
+			return getCurrentWindow() == null ? null : lastPage();
+		}
+	}
+	
+	/**
+	 * @return the HtmlUnitDriver of the current session, or null
+	 */
+	public synchronized HtmlUnitDriver getHtmlUnitDriver() {
+		return driver;
+	}
+	
+	/**
+	 * @return the number of element references held for the session
+	 */
+	public synchronized int getElementCount() {
+		return elements.size();
+	}
+	
+	/**
+	 * @param command the wire command
+	 * @return Response
+	 * @throws IOException
+	 * @see org.openqa.selenium.remote.CommandExecutor#execute(Command)
+	 */
+	public synchronized Response execute(Command command) throws IOException {
+		
+		try {
+			return success(answer(command.getName(), command.getParameters()));
+		} catch (UnsupportedOperationException e) {
+			return error(ErrorCodes.UNKNOWN_COMMAND, e.getMessage());
+		} catch (RuntimeException e) {
+			return error(ERROR_CODES.toStatusCode(e), e.getMessage());
+		}
+	}
+	
+	@GuardedBy("this")
+	private Object answer(String name, Map<String, ?> parameters) {
+		
+		if (DriverCommand.NEW_SESSION.equals(name))
+			return newSession(parameters.get("desiredCapabilities"));
+		
+		if (DriverCommand.QUIT.equals(name)) {
+			
+			if (driver != null)
+				driver.quit();
+			
+			driver = null;
+			release();
+			return null;
+		}
+		
+		if (driver == null)
+			throw new IllegalStateException("The session has been quit");
+		
+		// the page may have changed since the last command, e.g. after a click or a script
+		if (driver.getPage() != page)
+			prune();
+		
+		if (DriverCommand.GET.equals(name)) {
+			driver.get((String) parameters.get("url"));
+			prune();
+			return null;
+		}
+		
+		if (DriverCommand.GET_CURRENT_URL.equals(name))
+			return driver.getCurrentUrl();
+		if (DriverCommand.GET_TITLE.equals(name))
+			return driver.getTitle();
+		if (DriverCommand.GET_PAGE_SOURCE.equals(name))
+			return driver.getPageSource();
+		
+		if (DriverCommand.REFRESH.equals(name)) {
+			driver.navigate().refresh();
+			return null;
+		}
+		
+		if (DriverCommand.GO_BACK.equals(name)) {
+			driver.navigate().back();
+			return null;
+		}
+		
+		if (DriverCommand.GO_FORWARD.equals(name)) {
+			driver.navigate().forward();
+			return null;
+		}
+		
+		if (DriverCommand.GET_WINDOW_HANDLES.equals(name))
+			return new ArrayList<String>(driver.getWindowHandles());
+		if (DriverCommand.GET_CURRENT_WINDOW_HANDLE.equals(name))
+			return driver.getWindowHandle();
+		
+		if (DriverCommand.SWITCH_TO_WINDOW.equals(name)) {
+			driver.switchTo().window((String) parameters.get("name"));
+			return null;
+		}
+		
+		if (DriverCommand.SWITCH_TO_FRAME.equals(name)) {
+			switchToFrame(parameters.get("id"));
+			return null;
+		}
+		
+		if (DriverCommand.CLOSE.equals(name)) {
+			driver.close();
+			return null;
+		}
+		
+		if (DriverCommand.IMPLICITLY_WAIT.equals(name)) {
+			driver.manage().timeouts().implicitlyWait(((Number) parameters.get("ms")).longValue(), TimeUnit.MILLISECONDS);
+			return null;
+		}
+		
+		if (DriverCommand.SET_SCRIPT_TIMEOUT.equals(name)) {
+			driver.manage().timeouts().setScriptTimeout(((Number) parameters.get("ms")).longValue(), TimeUnit.MILLISECONDS);
+			return null;
+		}
+		
+		if (DriverCommand.FIND_ELEMENT.equals(name))
+			return reference(driver.findElement(by(parameters)));
+		if (DriverCommand.FIND_ELEMENTS.equals(name))
+			return references(driver.findElements(by(parameters)));
+		if (DriverCommand.FIND_CHILD_ELEMENT.equals(name))
+			return reference(resolve(parameters.get("id")).findElement(by(parameters)));
+		if (DriverCommand.FIND_CHILD_ELEMENTS.equals(name))
+			return references(resolve(parameters.get("id")).findElements(by(parameters)));
+		if (DriverCommand.GET_ACTIVE_ELEMENT.equals(name))
+			return reference(driver.switchTo().activeElement());
+		
+		if (DriverCommand.EXECUTE_SCRIPT.equals(name))
+			return toWire(driver.executeScript((String) parameters.get("script"), fromWire((List<?>) parameters.get("args"))));
+		if (DriverCommand.EXECUTE_ASYNC_SCRIPT.equals(name))
+			return toWire(driver.executeAsyncScript((String) parameters.get("script"), fromWire((List<?>) parameters.get("args"))));
+		
+		if (DriverCommand.ADD_COOKIE.equals(name)) {
+			driver.manage().addCookie(toCookie(parameters.get("cookie")));
+			return null;
+		}
+		
+		if (DriverCommand.GET_ALL_COOKIES.equals(name))
+			return fromCookies(driver.manage().getCookies());
+		
+		if (DriverCommand.DELETE_COOKIE.equals(name)) {
+			driver.manage().deleteCookieNamed((String) parameters.get("name"));
+			return null;
+		}
+		
+		if (DriverCommand.DELETE_ALL_COOKIES.equals(name)) {
+			driver.manage().deleteAllCookies();
+			return null;
+		}
+		
+		if (parameters.containsKey("id"))
+			return answerElementCommand(name, resolve(parameters.get("id")), parameters);
+		
+		throw new UnsupportedOperationException("Unsupported command : " + name);
+	}
+	
+	@GuardedBy("this")
+	private Object answerElementCommand(String name, WebElement element, Map<String, ?> parameters) {
+		
+		if (DriverCommand.CLICK_ELEMENT.equals(name)) {
+			element.click();
+			return null;
+		}
+		
+		if (DriverCommand.CLEAR_ELEMENT.equals(name)) {
+			element.clear();
+			return null;
+		}
+		
+		if (DriverCommand.SEND_KEYS_TO_ELEMENT.equals(name)) {
+			element.sendKeys(keys(parameters.get("value")));
+			return null;
+		}
+		
+		if (DriverCommand.SUBMIT_ELEMENT.equals(name)) {
+			element.submit();
+			return null;
+		}
+		
+		if (DriverCommand.GET_ELEMENT_TEXT.equals(name))
+			return element.getText();
+		if (DriverCommand.GET_ELEMENT_TAG_NAME.equals(name))
+			return element.getTagName();
+		if (DriverCommand.GET_ELEMENT_ATTRIBUTE.equals(name))
+			return element.getAttribute((String) parameters.get("name"));
+		if (DriverCommand.GET_ELEMENT_VALUE_OF_CSS_PROPERTY.equals(name))
+			return element.getCssValue((String) parameters.get("propertyName"));
+		if (DriverCommand.IS_ELEMENT_DISPLAYED.equals(name))
+			return element.isDisplayed();
+		if (DriverCommand.IS_ELEMENT_ENABLED.equals(name))
+			return element.isEnabled();
+		if (DriverCommand.IS_ELEMENT_SELECTED.equals(name))
+			return element.isSelected();
+		if (DriverCommand.ELEMENT_EQUALS.equals(name))
+			return element.equals(resolve(parameters.get("other")));
+		
+		if (DriverCommand.GET_ELEMENT_LOCATION.equals(name) || DriverCommand.GET_ELEMENT_LOCATION_ONCE_SCROLLED_INTO_VIEW.equals(name)) {
+			
+			final Point location = element.getLocation();
+			final Map<String, Object> value = new HashMap<String, Object>();
+			value.put("x", (long) location.getX());
+			value.put("y", (long) location.getY());
+			return value;
+		}
+		
+		if (DriverCommand.GET_ELEMENT_SIZE.equals(name)) {
+			
+			final Dimension size = element.getSize();
+			final Map<String, Object> value = new HashMap<String, Object>();
+			value.put("width", (long) size.getWidth());
+			value.put("height", (long) size.getHeight());
+			return value;
+		}
+		
+		throw new UnsupportedOperationException("Unsupported command : " + name);
+	}
+	
+	@GuardedBy("this")
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> newSession(Object desired) {
+		
+		if (driver != null)
+			driver.quit();
+		
+		// in-process the capabilities are passed as they are, rather than as their JSON
+		final Capabilities capabilities;
+		
+		if (desired instanceof Capabilities)
+			capabilities = (Capabilities) desired;
+		else if (desired instanceof Map)
+			capabilities = new DesiredCapabilities((Map<String, ?>) desired);
+		else
+			capabilities = HtmlUnit.getDefaultCapabilities();
+		
+		driver = new PageAwareDriver(capabilities);
+		sessionId = UUID.randomUUID().toString();
+		release();
+		
+		// the RemoteWebDriver expects the capabilities as they would arrive over the wire
+		final Map<String, Object> value = new HashMap<String, Object>();
+		
+		for (Map.Entry<String, ?> capability : driver.getCapabilities().asMap().entrySet())
+			value.put(capability.getKey(), capability.getValue() instanceof Enum<?> ? ((Enum<?>) capability.getValue()).name() : capability.getValue());
+		
+		return value;
+	}
+	
+	@GuardedBy("this")
+	private void switchToFrame(Object id) {
+		
+		if (id == null)
+			driver.switchTo().defaultContent();
+		else if (id instanceof Number)
+			driver.switchTo().frame(((Number) id).intValue());
+		else if (id instanceof Map)
+			driver.switchTo().frame(resolve(id));
+		else
+			driver.switchTo().frame(String.valueOf(id));
+	}
+	
+	/**
+	 * Drops the references found on pages which are no longer shown
+	 */
+	@GuardedBy("this")
+	private void prune() {
+		
+		page = driver.getPage();
+		
+		final Iterator<Map.Entry<String, Page>> entries = pages.entrySet().iterator();
+		
+		while (entries.hasNext()) {
+			
+			final Map.Entry<String, Page> entry = entries.next();
+			
+			if (! isShown(entry.getValue())) {
+				elementIds.remove(elements.remove(entry.getKey()));
+				entries.remove();
+			}
+		}
+	}
+	
+	@GuardedBy("this")
+	private void release() { // $codepro.audit.disable methodJavadoc
+		
+		elements.clear();
+		elementIds.clear();
+		pages.clear();
+		page = null;
+	}
+	
+	private static boolean isShown(Page page) { // $codepro.audit.disable methodJavadoc
+		
+		if (page == null)
+			return false;
+		
+		final WebWindow window = page.getEnclosingWindow();
+		
+		if (window.getEnclosedPage() != page)
+			return false;
+		
+		// a frame's page is shown as long as the page holding the frame is
+		if (window instanceof FrameWindow)
+			return isShown(((FrameWindow) window).getEnclosingPage());
+		
+		return window.getWebClient().getWebWindows().contains(window);
+	}
+	
+	@GuardedBy("this")
+	private WebElement resolve(Object reference) {
+		
+		final WebElement element = elements.get(reference instanceof Map ? ((Map<?, ?>) reference).get("ELEMENT") : reference);
+		
+		if (element == null)
+			throw new StaleElementReferenceException("Element not found in the cache : " + reference);
+		
+		return element;
+	}
+	
+	@GuardedBy("this")
+	private Map<String, Object> reference(WebElement element) {
+		
+		String id = elementIds.get(element);
+		
+		if (id == null) {
+			id = String.valueOf(elementSequence++);
+			elementIds.put(element, id);
+			elements.put(id, element);
+			pages.put(id, driver.getPage());
+		}
+		
+		return Collections.<String, Object>singletonMap("ELEMENT", id);
+	}
+	
+	@GuardedBy("this")
+	private List<Object> references(List<WebElement> found) {
+		
+		final List<Object> references = new ArrayList<Object>(found.size());
+		
+		for (WebElement element : found)
+			references.add(reference(element));
+		
+		return references;
+	}
+	
+	@GuardedBy("this")
+	private Object[] fromWire(List<?> args) {
+		
+		if (args == null)
+			return new Object[0];
+		
+		final Object[] arguments = new Object[args.size()];
+		
+		for (int i = 0; i < arguments.length; i++)
+			arguments[i] = fromWire(args.get(i));
+		
+		return arguments;
+	}
+	
+	@GuardedBy("this")
+	private Object fromWire(Object arg) {
+		
+		if (arg instanceof Map && ((Map<?, ?>) arg).containsKey("ELEMENT"))
+			return resolve(arg);
+		
+		if (arg instanceof Collection) {
+			
+			final List<Object> values = new ArrayList<Object>();
+			
+			for (Object value : (Collection<?>) arg)
+				values.add(fromWire(value));
+			return values;
+		}
+		
+		return arg;
+	}
+	
+	@GuardedBy("this")
+	private Object toWire(Object value) {
+		
+		if (value instanceof WebElement)
+			return reference((WebElement) value);
+		
+		if (value instanceof Collection) {
+			
+			final List<Object> values = new ArrayList<Object>();
+			
+			for (Object v : (Collection<?>) value)
+				values.add(toWire(v));
+			return values;
+		}
+		
+		if (value instanceof Map) {
+			
+			final Map<String, Object> values = new HashMap<String, Object>();
+			
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+				values.put(String.valueOf(entry.getKey()), toWire(entry.getValue()));
+			return values;
+		}
+		
+		if (value instanceof Integer)
+			return Long.valueOf((Integer) value);
+		
+		return value;
+	}
+	
+	private static Cookie toCookie(Object cookie) {
+		
+		if (cookie instanceof Cookie)
+			return (Cookie) cookie;
+		
+		final Map<?, ?> raw = (Map<?, ?>) cookie;
+		final Object path = raw.get("path");
+		final Object expiry = raw.get("expiry");
+		
+		return new Cookie((String) raw.get("name"), (String) raw.get("value"), (String) raw.get("domain"), 
+						  path == null ? "/" : (String) path, 
+						  expiry instanceof Number ? new Date(TimeUnit.SECONDS.toMillis(((Number) expiry).longValue())) : null, 
+						  Boolean.TRUE.equals(raw.get("secure")));
+	}
+	
+	private static List<Map<String, Object>> fromCookies(Collection<Cookie> cookies) {
+		
+		final List<Map<String, Object>> raw = new ArrayList<Map<String, Object>>();
+		
+		for (Cookie cookie : cookies) {
+			
+			final Map<String, Object> c = new HashMap<String, Object>();
+			c.put("name", cookie.getName());
+			c.put("value", cookie.getValue());
+			c.put("path", cookie.getPath());
+			c.put("domain", cookie.getDomain());
+			c.put("secure", cookie.isSecure());
+			
+			if (cookie.getExpiry() != null)
+				c.put("expiry", TimeUnit.MILLISECONDS.toSeconds(cookie.getExpiry().getTime()));
+			raw.add(c);
+		}
+		
+		return raw;
+	}
+	
+	private static CharSequence[] keys(Object value) {
+		
+		if (value instanceof CharSequence[])
+			return (CharSequence[]) value;
+		
+		final List<CharSequence> keys = new ArrayList<CharSequence>();
+		
+		if (value instanceof List) {
+			
+			for (Object sequence : (List<?>) value)
+				keys.add(String.valueOf(sequence));
+		}
+		
+		return keys.toArray(new CharSequence[keys.size()]);
+	}
+	
+	private static By by(Map<String, ?> parameters) {
+		
+		final String using = (String) parameters.get("using");
+		final String value = (String) parameters.get("value");
+		
+		if ("id".equals(using))
+			return By.id(value);
+		if ("name".equals(using))
+			return By.name(value);
+		if ("class name".equals(using))
+			return By.className(value);
+		if ("css selector".equals(using))
+			return By.cssSelector(value);
+		if ("link text".equals(using))
+			return By.linkText(value);
+		if ("partial link text".equals(using))
+			return By.partialLinkText(value);
+		if ("tag name".equals(using))
+			return By.tagName(value);
+		if ("xpath".equals(using))
+			return By.xpath(value);
+		
+		throw new UnsupportedOperationException("Unsupported locator strategy : " + using);
+	}
+	
+	@GuardedBy("this")
+	private Response success(Object value) {
+		
+		final Response response = new Response();
+		response.setSessionId(sessionId);
+		response.setStatus(ErrorCodes.SUCCESS);
+		response.setValue(value);
+		return response;
+	}
+	
+	@GuardedBy("this")
+	private Response error(int status, String message) {
+		
+		final Response response = new Response();
+		response.setSessionId(sessionId);
+		response.setStatus(status);
+		response.setValue(Collections.<String, Object>singletonMap("message", message == null ? "" : message));
+		return response;
+	}
+}
@@ -29,8 +29,12 @@ import org.openqa.selenium.Platform;
 import org.openqa.selenium.ie.InternetExplorerDriver;
 import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
+import shelob.core.metrics.CommandMetrics;
+import shelob.core.metrics.MeteredCommandExecutor;
+
 /**
  * @author melllaguno
  * @version $Revision: 1.0 $
@@ -49,6 +53,32 @@ public enum InternetExplorer {
 		return new RemoteWebDriver(gridAddress, getDefaultCapabilities());
 	}
 	
+	/**
+	 * NOTE : Every wire command sent through this driver is counted and timed against the 
+	 * 		  Page/Element which issued it.
+	 * 
+	 * @param gridAddress the URI to the Grid Hub
+	 * @param metrics the CommandMetrics that round trips are recorded against
+	 * @return the metered RemoteWebDriver used against the Grid Hub
+	 */
+	static public RemoteWebDriver getDriver(URL gridAddress, CommandMetrics metrics) {
+		return new RemoteWebDriver(new MeteredCommandExecutor(new HttpCommandExecutor(gridAddress), metrics), 
+								   getDefaultCapabilities());
+	}
+	
+	/**
+	 * NOTE : The browser session is replaced by a fresh one, with the same cookies and URL, 
+	 * 		  whenever the policy says it is due.
+	 * 
+	 * @param gridAddress the URI to the Grid Hub
+	 * @param policy the RecyclingPolicy deciding when the browser session is replaced
+	 * @return the recycling RemoteWebDriver used against the Grid Hub
+	 */
+	static public RemoteWebDriver getDriver(URL gridAddress, RecyclingPolicy policy) {
+		return new RemoteWebDriver(new RecyclingCommandExecutor(new HttpCommandExecutor(gridAddress), policy), 
+								   getDefaultCapabilities());
+	}
+	
 	/**
 	 * @return the InternetExplorerDriver instance
 	 */
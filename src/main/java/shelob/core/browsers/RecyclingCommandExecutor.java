@@ -0,0 +1,340 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.browsers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * CommandExecutor decorator which replaces the browser session with a fresh one once the 
+ * RecyclingPolicy says it is due, without the RemoteWebDriver noticing :
+ * 
+ * 		new RemoteWebDriver(new RecyclingCommandExecutor(new HttpCommandExecutor(grid), policy), capabilities);
+ * 
+ * The replacement happens at the next navigation, where the page about to be left holds no state 
+ * worth keeping, or between tests through recycleIfDue(). The cookies and URL of the old session 
+ * are read, the old session is quit, a new session is started with the original capabilities, and 
+ * the cookies and URL are restored. The cookies are set from the origin of the old URL, so they 
+ * are in place before the application (or a single sign-on redirect) sees the first request, and 
+ * the destination of the navigation is only loaded once. The new main window keeps the handle of 
+ * the old one, so WindowManagers and Pages are unaffected.
+ * 
+ * NOTE : A session with more than one window open is not replaced until the others are closed. 
+ * 		  WebElements taken directly from the driver before a replacement become stale; Elements 
+ * 		  look themselves up again on every operation.
+ */
+@ThreadSafe
+public final class RecyclingCommandExecutor implements CommandExecutor {
+	
+	private static final String HEAP_SCRIPT = 
+		"return (window.performance && window.performance.memory) ? window.performance.memory.usedJSHeapSize : -1;";
+	
+	private final CommandExecutor delegate;
+	private final RecyclingPolicy policy;
+	
+	@GuardedBy("this") private Map<String, ?> capabilities;
+	@GuardedBy("this") private SessionId session;
+	@GuardedBy("this") private long commands;
+	@GuardedBy("this") private long started;
+	@GuardedBy("this") private boolean due;
+	@GuardedBy("this") private long recycles;
+	
+	// window handles of the current session as seen by the client, and the reverse
+	@GuardedBy("this") private final Map<String, String> toClient = new HashMap<String, String>();
+	@GuardedBy("this") private final Map<String, String> toBrowser = new HashMap<String, String>();
+	
+	/**
+	 * RecyclingCommandExecutor Default Constructor
+	 * 
+	 * @param delegate the CommandExecutor which starts and drives the browser sessions
+	 * @param policy the RecyclingPolicy deciding when a session is replaced
+	 */
+	public RecyclingCommandExecutor(CommandExecutor delegate, RecyclingPolicy policy) {
+		this.delegate = checkNotNull(delegate);
+		this.policy = checkNotNull(policy);
+	}
+	
+	/**
+	 * Method execute.
+	 * @param command the wire command
+	 * @return Response
+	 * @throws IOException
+	 * @see org.openqa.selenium.remote.CommandExecutor#execute(Command)
+	 */
+	public synchronized Response execute(Command command) throws IOException {
+		
+		final String name = command.getName();
+		
+		if (DriverCommand.NEW_SESSION.equals(name)) {
+			
+			capabilities = command.getParameters();
+			
+			final Response response = delegate.execute(command);
+			
+			if (response.getStatus() == ErrorCodes.SUCCESS)
+				started(response);
+			
+			return response;
+		}
+		
+		if (session == null || DriverCommand.QUIT.equals(name))
+			return delegate.execute(rewrite(command));
+		
+		commands++;
+		
+		if (! due)
+			due = policy.isDue(commands, System.currentTimeMillis() - started) || isHeapExceeded();
+		
+		if (due && isSafePoint(command) && windowCount() == 1)
+			recycle((String) command.getParameters().get("url"));
+		
+		return translate(name, delegate.execute(rewrite(command)));
+	}
+	
+	/**
+	 * Replaces the session at the next navigation, whatever the policy says
+	 */
+	public synchronized void recycleSoon() {
+		due = true;
+	}
+	
+	/**
+	 * Replaces the session now if it is due, reloading the current URL in the new one. Meant for 
+	 * the end of a test, where no form or script state of the page is needed any more :
+	 * 
+	 * 		((RecyclingCommandExecutor) driver.getCommandExecutor()).recycleIfDue();
+	 * 
+	 * @return whether the session was replaced
+	 * @throws WebDriverException when the new session cannot be started
+	 */
+	public synchronized boolean recycleIfDue() {
+		
+		if (session == null)
+			return false;
+		
+		try {
+			if (! due)
+				due = policy.isDue(commands, System.currentTimeMillis() - started) || isHeapExceeded();
+			
+			if (! due || windowCount() != 1)
+				return false;
+			
+			recycle(null);
+			return true;
+		} catch (IOException e) {
+			throw new WebDriverException("Unable to recycle the browser session", e);
+		}
+	}
+	
+	/**
+	 * @return the number of times the session was replaced
+	 */
+	public synchronized long getRecycles() {
+		return recycles;
+	}
+	
+	/**
+	 * @return the number of commands run by the current session
+	 */
+	public synchronized long getCommands() {
+		return commands;
+	}
+	
+	/**
+	 * @return the RecyclingPolicy deciding when a session is replaced
+	 */
+	public RecyclingPolicy getPolicy() {
+		return policy;
+	}
+	
+	/**
+	 * Method recycle.
+	 * @param destination the URL about to be loaded, or null to restore the current URL
+	 * @throws IOException
+	 */
+	@GuardedBy("this")
+	private void recycle(String destination) throws IOException {
+		
+		final String url = (String) checked(send(DriverCommand.GET_CURRENT_URL, null)).getValue();
+		final Object cookies = checked(send(DriverCommand.GET_ALL_COOKIES, null)).getValue();
+		final String handle = (String) checked(send(DriverCommand.GET_CURRENT_WINDOW_HANDLE, null)).getValue();
+		final String clientHandle = toClient.containsKey(handle) ? toClient.get(handle) : handle;
+		
+		send(DriverCommand.QUIT, null);
+		
+		final Response response = checked(delegate.execute(new Command(null, DriverCommand.NEW_SESSION, capabilities)));
+		started(response);
+		recycles++;
+		
+		final String fresh = (String) checked(send(DriverCommand.GET_CURRENT_WINDOW_HANDLE, null)).getValue();
+		
+		toClient.put(fresh, clientHandle);
+		toBrowser.put(clientHandle, fresh);
+		
+		if (url == null || ! url.startsWith("http"))
+			return;
+		
+		// cookies can only be set on a page of their domain; the origin is cheaper than the page itself
+		checked(send(DriverCommand.GET, Collections.singletonMap("url", getOrigin(url))));
+		
+		if (cookies instanceof Collection) {
+			
+			for (Object cookie : (Collection<?>) cookies)
+				checked(send(DriverCommand.ADD_COOKIE, Collections.singletonMap("cookie", cookie)));
+		}
+		
+		// otherwise the navigation which is due loads it's destination with the cookies
+		if (destination == null)
+			checked(send(DriverCommand.GET, Collections.singletonMap("url", url)));
+	}
+	
+	/**
+	 * @param url an http(s) URL
+	 * @return the root of the site the URL belongs to
+	 */
+	private static String getOrigin(String url) {
+		
+		final URI uri = URI.create(url);
+		return uri.getScheme() + "://" + uri.getRawAuthority() + "/";
+	}
+	
+	@GuardedBy("this")
+	private void started(Response response) { // $codepro.audit.disable methodJavadoc
+		
+		session = new SessionId(response.getSessionId());
+		started = System.currentTimeMillis();
+		commands = 0;
+		due = false;
+		
+		toClient.clear();
+		toBrowser.clear();
+	}
+	
+	@GuardedBy("this")
+	private boolean isHeapExceeded() throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		if (! policy.isHeapCheckDue(commands))
+			return false;
+		
+		final Map<String, Object> script = new HashMap<String, Object>();
+		script.put("script", HEAP_SCRIPT);
+		script.put("args", Collections.emptyList());
+		
+		final Response response = send(DriverCommand.EXECUTE_SCRIPT, script);
+		
+		return response.getStatus() == ErrorCodes.SUCCESS && response.getValue() instanceof Number 
+				&& policy.isHeapExceeded(((Number) response.getValue()).longValue());
+	}
+	
+	@GuardedBy("this")
+	private int windowCount() throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final Response response = send(DriverCommand.GET_WINDOW_HANDLES, null);
+		
+		return response.getStatus() == ErrorCodes.SUCCESS && response.getValue() instanceof Collection ? ((Collection<?>) response.getValue()).size() : -1;
+	}
+	
+	/**
+	 * Method isSafePoint.
+	 * @param command Command
+	 * @return whether the command leaves the page, so no element, form or script state of it is needed; 
+	 * 		   a lookup is not, as the page may hold typed values or have been reached by a POST
+	 */
+	private static boolean isSafePoint(Command command) {
+		return DriverCommand.GET.equals(command.getName());
+	}
+	
+	@GuardedBy("this")
+	private Command rewrite(Command command) { // $codepro.audit.disable methodJavadoc
+		
+		Map<String, ?> parameters = command.getParameters();
+		
+		if (DriverCommand.SWITCH_TO_WINDOW.equals(command.getName()) && toBrowser.containsKey(parameters.get("name"))) {
+			
+			final Map<String, Object> switched = new HashMap<String, Object>(parameters);
+			switched.put("name", toBrowser.get(parameters.get("name")));
+			parameters = switched;
+		}
+		
+		return new Command(session, command.getName(), parameters);
+	}
+	
+	@GuardedBy("this")
+	private Response translate(String name, Response response) { // $codepro.audit.disable methodJavadoc
+		
+		if (toClient.isEmpty() || response.getStatus() != ErrorCodes.SUCCESS)
+			return response;
+		
+		if (DriverCommand.GET_CURRENT_WINDOW_HANDLE.equals(name) && toClient.containsKey(response.getValue()))
+			response.setValue(toClient.get(response.getValue()));
+		
+		if (DriverCommand.GET_WINDOW_HANDLES.equals(name) && response.getValue() instanceof Collection) {
+			
+			final List<Object> handles = new ArrayList<Object>();
+			
+			for (Object handle : (Collection<?>) response.getValue())
+				handles.add(toClient.containsKey(handle) ? toClient.get(handle) : handle);
+			
+			response.setValue(handles);
+		}
+		
+		return response;
+	}
+	
+	@GuardedBy("this")
+	private Response send(String name, Map<String, ?> parameters) throws IOException { // $codepro.audit.disable methodJavadoc
+		return delegate.execute(new Command(session, name, parameters == null ? Collections.<String, Object>emptyMap() : parameters));
+	}
+	
+	private static Response checked(Response response) { // $codepro.audit.disable methodJavadoc
+		
+		if (response.getStatus() != ErrorCodes.SUCCESS)
+			throw new WebDriverException("Unable to recycle the browser session : " + response.getValue());
+		
+		return response;
+	}
+}
@@ -0,0 +1,183 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.browsers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * When a browser session is due to be replaced by a fresh one; see RecyclingCommandExecutor. 
+ * A session is due once any of the configured limits is reached :
+ * 
+ * 		new RecyclingPolicy.Builder().maxCommands(5000).maxAge(20, TimeUnit.MINUTES).maxHeapBytes(512L << 20).build();
+ * 
+ * The JavaScript heap is read through a script, which only some browsers support (e.g. Chrome's 
+ * performance.memory); it is checked every heapCheckInterval() commands to bound it's cost.
+ */
+@Immutable
+public final class RecyclingPolicy {
+
+	private final long maxCommands;
+	private final long maxAgeMillis;
+	private final long maxHeapBytes;
+	private final int heapCheckInterval;
+	
+	/**
+	 * The RecyclingPolicy Builder
+	 * @author melllaguno
+	 */
+	public static class Builder {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		// Optional parameters
+		private long maxCommands = 0;
+		private long maxAgeMillis = 0;
+		private long maxHeapBytes = 0;
+		private int heapCheckInterval = 200;
+		
+		/**
+		 * @param commands the number of commands a session may run; 0 for no limit
+		 * @return this; fluent interface
+		 */
+		public Builder maxCommands(long commands) {
+			checkArgument(commands >= 0, "The command limit cannot be negative");
+			maxCommands = commands;
+			return this;
+		}
+		
+		/**
+		 * @param age how long a session may live; 0 for no limit
+		 * @param unit TimeUnit
+		 * @return this; fluent interface
+		 */
+		public Builder maxAge(long age, TimeUnit unit) {
+			checkArgument(age >= 0, "The age limit cannot be negative");
+			maxAgeMillis = checkNotNull(unit).toMillis(age);
+			return this;
+		}
+		
+		/**
+		 * @param bytes the JavaScript heap a page may use; 0 for no limit
+		 * @return this; fluent interface
+		 */
+		public Builder maxHeapBytes(long bytes) {
+			checkArgument(bytes >= 0, "The heap limit cannot be negative");
+			maxHeapBytes = bytes;
+			return this;
+		}
+		
+		/**
+		 * @param commands the number of commands between heap checks
+		 * @return this; fluent interface
+		 */
+		public Builder heapCheckInterval(int commands) {
+			checkArgument(commands > 0, "The heap check interval must be positive");
+			heapCheckInterval = commands;
+			return this;
+		}
+		
+		/**
+		 * @return a new RecyclingPolicy
+		 */
+		public RecyclingPolicy build() {
+			return new RecyclingPolicy(this);
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param builder the RecyclingPolicy.Builder responsible for creating this object
+	 */
+	private RecyclingPolicy(Builder builder) {
+		maxCommands = builder.maxCommands;
+		maxAgeMillis = builder.maxAgeMillis;
+		maxHeapBytes = builder.maxHeapBytes;
+		heapCheckInterval = builder.heapCheckInterval;
+	}
+	
+	/**
+	 * @param commands the commands run by the session
+	 * @param ageMillis the age of the session
+	 * @return whether the session has reached the command or age limit
+	 */
+	public boolean isDue(long commands, long ageMillis) {
+		return (maxCommands > 0 && commands >= maxCommands) || (maxAgeMillis > 0 && ageMillis >= maxAgeMillis);
+	}
+	
+	/**
+	 * @param commands the commands run by the session
+	 * @return whether the heap should be read before the next command
+	 */
+	public boolean isHeapCheckDue(long commands) {
+		return maxHeapBytes > 0 && commands % heapCheckInterval == 0;
+	}
+	
+	/**
+	 * @param heapBytes the JavaScript heap in use; negative when the browser does not report it
+	 * @return whether the heap has reached the limit
+	 */
+	public boolean isHeapExceeded(long heapBytes) {
+		return maxHeapBytes > 0 && heapBytes >= maxHeapBytes;
+	}
+	
+	/**
+	 * @return the number of commands a session may run; 0 for no limit
+	 */
+	public long getMaxCommands() {
+		return maxCommands;
+	}
+	
+	/**
+	 * @param unit TimeUnit
+	 * @return how long a session may live; 0 for no limit
+	 */
+	public long getMaxAge(TimeUnit unit) {
+		return unit.convert(maxAgeMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @return the JavaScript heap a page may use; 0 for no limit
+	 */
+	public long getMaxHeapBytes() {
+		return maxHeapBytes;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("RecyclingPolicy [maxCommands=%d, maxAgeMillis=%d, maxHeapBytes=%d, heapCheckInterval=%d]", 
+							 maxCommands, maxAgeMillis, maxHeapBytes, heapCheckInterval);
+	}
+}
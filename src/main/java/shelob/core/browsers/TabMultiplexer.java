@@ -0,0 +1,632 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.browsers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Runs several logical sessions as windows of one browser process. Each tab is an ordinary 
+ * RemoteWebDriver, so it is used like any other driver :
+ * 
+ * 		final TabMultiplexer browser = new TabMultiplexer(Chrome.getDriver(grid));
+ * 		final ApplicationParameters session = new ApplicationParameters(browser.openTab(), url, user);
+ * 
+ * Commands from every tab are serialized through one fair lock, granted in the order they were 
+ * requested, so no tab can starve the others. Before a command is forwarded, the browser is 
+ * switched to the window of the tab which sent it; consecutive commands from the same tab need 
+ * no switch; after a switch, the frame the tab was in is selected again. A tab only sees the 
+ * windows it owns : it's first window, and any window which appeared after one of it's clicks, 
+ * submits or keys ending in Enter (e.g. a report window). New windows are only looked for when 
+ * the handles are next read, or before another tab's click, so a click costs no extra command. 
+ * quit() on a tab closes it's windows; close() on the multiplexer quits the browser.
+ * 
+ * NOTE : Tabs share the cookies, storage and focus of the browser. Use tabs for flows which do 
+ * 		  not depend on those, e.g. light, read-mostly flows of the same user.
+ */
+@ThreadSafe
+public final class TabMultiplexer implements Closeable {
+	
+	/**
+	 * Identifies the script which opens the window of a new tab
+	 */
+	public static final String OPEN_WINDOW_MARKER = "shelob:openTab";
+	
+	private static final String OPEN_WINDOW = "/* " + OPEN_WINDOW_MARKER + " */ window.open('about:blank', '_blank');";
+	
+	// the commands which may open a window; the windows they open belong to the tab which sent them
+	private static final Set<String> OPENERS = new HashSet<String>(Arrays.asList(
+			DriverCommand.CLICK_ELEMENT, DriverCommand.CLICK, DriverCommand.DOUBLE_CLICK, DriverCommand.SUBMIT_ELEMENT));
+	
+	// the commands which may open a window when the keys they send submit a form
+	private static final Set<String> KEYS = new HashSet<String>(Arrays.asList(
+			DriverCommand.SEND_KEYS_TO_ELEMENT, DriverCommand.SEND_KEYS_TO_ACTIVE_ELEMENT, DriverCommand.SEND_KEYS_TO_SESSION));
+	
+	// the commands which leave the browser on the top of the window
+	private static final Set<String> NAVIGATIONS = new HashSet<String>(Arrays.asList(
+			DriverCommand.GET, DriverCommand.REFRESH, DriverCommand.GO_BACK, DriverCommand.GO_FORWARD));
+	
+	private final RemoteWebDriver browser;
+	private final CommandExecutor executor;
+	private final SessionId session;
+	private final Map<String, Object> capabilities;
+	
+	// fair, so commands are granted in the order they were requested
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final List<Tab> tabs = new CopyOnWriteArrayList<Tab>();
+	
+	@GuardedBy("lock") private final Map<String, Tab> owners = new HashMap<String, Tab>();
+	@GuardedBy("lock") private String current;
+	// the frames the browser is in, within the current window
+	@GuardedBy("lock") private final List<Object> position = new ArrayList<Object>();
+	// the tab whose command last opened a window; windows which appear later, e.g. from a timer, go to it
+	@GuardedBy("lock") private Tab opener;
+	// the tab whose last command may have opened windows which have not been looked for yet
+	@GuardedBy("lock") private Tab pending;
+	@GuardedBy("lock") private String spare;
+	@GuardedBy("lock") private boolean started;
+	@GuardedBy("lock") private int sequence;
+	@GuardedBy("lock") private long commands;
+	@GuardedBy("lock") private long switches;
+	@GuardedBy("lock") private long waitNanos;
+	@GuardedBy("lock") private boolean closed;
+	
+	/**
+	 * A logical session; the CommandExecutor of the tab's RemoteWebDriver
+	 */
+	private final class Tab implements CommandExecutor {
+		
+		private final int id;
+		
+		@GuardedBy("lock") private final Set<String> windows = new LinkedHashSet<String>();
+		@GuardedBy("lock") private final List<Object> frames = new ArrayList<Object>();
+		@GuardedBy("lock") private String window;
+		@GuardedBy("lock") private boolean quit;
+		
+		Tab(int id, String window) {
+			this.id = id;
+			this.window = window;
+			windows.add(window);
+		}
+		
+		public Response execute(Command command) throws IOException {
+			
+			final long requested = System.nanoTime();
+			lock.lock();
+			
+			try {
+				waitNanos += System.nanoTime() - requested;
+				commands++;
+				
+				return dispatch(command.getName(), command.getParameters());
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		@GuardedBy("lock")
+		private Response dispatch(String name, Map<String, ?> parameters) throws IOException {
+			
+			if (DriverCommand.NEW_SESSION.equals(name))
+				return respond(ErrorCodes.SUCCESS, capabilities);
+			
+			if (DriverCommand.QUIT.equals(name)) {
+				
+				if (! quit && ! closed)
+					quit();
+				
+				return respond(ErrorCodes.SUCCESS, null);
+			}
+			
+			if (quit || closed)
+				return respond(ErrorCodes.UNHANDLED_ERROR, Collections.singletonMap("message", "This tab has been closed"));
+			
+			if (DriverCommand.GET_CURRENT_WINDOW_HANDLE.equals(name) && window != null)
+				return respond(ErrorCodes.SUCCESS, window);
+			
+			if (DriverCommand.GET_WINDOW_HANDLES.equals(name)) {
+				
+				final Response response = forward(name, parameters);
+				
+				if (response.getStatus() == ErrorCodes.SUCCESS && response.getValue() instanceof Collection) {
+					response.setValue(claim((Collection<?>) response.getValue()));
+					pending = null;
+				}
+				
+				return response;
+			}
+			
+			if (DriverCommand.SWITCH_TO_WINDOW.equals(name)) {
+				
+				final String handle = (String) parameters.get("name");
+				
+				// the window may have been opened by another tab's click
+				if (! owners.containsKey(handle) && pending != null && pending != this)
+					settle();
+				
+				final Tab owner = owners.get(handle);
+				
+				if (owner != null && owner != this)
+					return respond(ErrorCodes.NO_SUCH_WINDOW, Collections.singletonMap("message", "No window found with handle " + handle));
+				
+				final Response response = forward(name, parameters);
+				
+				if (response.getStatus() == ErrorCodes.SUCCESS) {
+					current = handle;
+					window = handle;
+					position.clear();
+					frames.clear();
+					own(handle);
+				}
+				
+				return response;
+			}
+			
+			if (window == null)
+				return respond(ErrorCodes.NO_SUCH_WINDOW, Collections.singletonMap("message", "The current window has been closed"));
+			
+			focus(window);
+			restore();
+			
+			final boolean opens = opens(name, parameters);
+			
+			// the windows another tab's command may have opened are told apart before this one runs
+			if (opens && pending != null && pending != this)
+				settle();
+			
+			final Response response = forward(name, parameters);
+			
+			if (response.getStatus() != ErrorCodes.SUCCESS)
+				return response;
+			
+			if (opens)
+				pending = this;
+			
+			if (DriverCommand.SWITCH_TO_FRAME.equals(name)) {
+				
+				final Object frame = parameters.get("id");
+				
+				if (frame == null)
+					frames.clear();
+				else
+					frames.add(frame);
+				
+				position.clear();
+				position.addAll(frames);
+			}
+			
+			if (NAVIGATIONS.contains(name)) {
+				frames.clear();
+				position.clear();
+			}
+			
+			if (DriverCommand.CLOSE.equals(name)) {
+				
+				disown(window);
+				current = null;
+				window = null;
+				frames.clear();
+				position.clear();
+			}
+			
+			return response;
+		}
+		
+		/**
+		 * Selects the frames of the tab again, when the browser is elsewhere in it's window
+		 * 
+		 * @throws IOException
+		 */
+		@GuardedBy("lock")
+		private void restore() throws IOException {
+			
+			if (position.equals(frames))
+				return;
+			
+			if (! position.isEmpty())
+				checked(forward(DriverCommand.SWITCH_TO_FRAME, Collections.singletonMap("id", null)));
+			
+			position.clear();
+			
+			for (Object frame : frames) {
+				checked(forward(DriverCommand.SWITCH_TO_FRAME, Collections.singletonMap("id", frame)));
+				position.add(frame);
+			}
+		}
+		
+		@GuardedBy("lock")
+		private List<String> claim(Collection<?> handles) {
+			
+			final List<String> visible = new ArrayList<String>();
+			
+			for (Object handle : handles) {
+				
+				Tab owner = owners.get(handle);
+				
+				// a window opened by the last click, or one no command was seen to open, e.g. one opened by a 
+				// timer; it goes to the last tab which opened one
+				final Tab claimant = pending != null && ! pending.quit ? pending : opener;
+				
+				if (owner == null && ! handle.equals(spare) && claimant != null && ! claimant.quit) {
+					owner = claimant;
+					opener = claimant;
+					claimant.own((String) handle);
+				}
+				
+				if (owner == null || owner == this)
+					visible.add((String) handle);
+			}
+			
+			return visible;
+		}
+		
+		@GuardedBy("lock")
+		private void own(String handle) {
+			owners.put(handle, this);
+			windows.add(handle);
+		}
+		
+		@GuardedBy("lock")
+		private void disown(String handle) {
+			owners.remove(handle);
+			windows.remove(handle);
+		}
+		
+		@GuardedBy("lock")
+		private void quit() throws IOException {
+			
+			// the windows opened by it's last click are closed with it
+			if (pending == this)
+				settle();
+			
+			for (String handle : new ArrayList<String>(windows)) {
+				
+				focus(handle);
+				
+				if (owners.size() > 1) {
+					forward(DriverCommand.CLOSE, Collections.<String, Object>emptyMap());
+					current = null;
+				} else {
+					// closing the last window would end the browser; keep it for the next tab
+					forward(DriverCommand.GET, Collections.singletonMap("url", "about:blank"));
+					spare = handle;
+				}
+				
+				disown(handle);
+			}
+			
+			window = null;
+			frames.clear();
+			quit = true;
+			tabs.remove(this);
+		}
+		
+		@Override
+		public String toString() {
+			return "Tab " + id;
+		}
+	}
+	
+	/**
+	 * TabMultiplexer Default Constructor
+	 * 
+	 * @param browser the browser the tabs share; it's current window becomes the window of the first tab
+	 */
+	public TabMultiplexer(RemoteWebDriver browser) {
+		
+		this.browser = checkNotNull(browser);
+		this.executor = checkNotNull(browser.getCommandExecutor());
+		this.session = checkNotNull(browser.getSessionId());
+		
+		final Capabilities shared = browser.getCapabilities();
+		final Map<String, Object> wire = new HashMap<String, Object>();
+		
+		// the tabs receive the capabilities as the browser sent them, with enums such as the Platform by name
+		if (shared != null) {
+			
+			for (Map.Entry<String, ?> entry : shared.asMap().entrySet())
+				wire.put(entry.getKey(), entry.getValue() instanceof Enum ? ((Enum<?>) entry.getValue()).name() : entry.getValue());
+		}
+		
+		this.capabilities = Collections.unmodifiableMap(wire);
+	}
+	
+	/**
+	 * Opens a new logical session in a window of the browser
+	 * 
+	 * @return the RemoteWebDriver of the tab
+	 * @throws WebDriverException when the browser does not open another window, e.g. a pop-up blocker
+	 */
+	public RemoteWebDriver openTab() {
+		
+		final Tab tab;
+		lock.lock();
+		
+		try {
+			checkState(! closed, "The browser has been closed");
+			
+			final String window;
+			
+			if (spare != null) {
+				window = spare;
+				spare = null;
+			} else
+				window = started ? newWindow() : firstWindow();
+			
+			started = true;
+			tab = new Tab(++sequence, window);
+			owners.put(window, tab);
+			tabs.add(tab);
+		} catch (IOException e) {
+			throw new WebDriverException("Unable to open a tab", e);
+		} finally {
+			lock.unlock();
+		}
+		
+		return new RemoteWebDriver(tab, browser.getCapabilities());
+	}
+	
+	/**
+	 * @return the number of open tabs
+	 */
+	public int getTabCount() {
+		return tabs.size();
+	}
+	
+	/**
+	 * @return the number of commands sent by the tabs
+	 */
+	public long getCommands() {
+		
+		lock.lock();
+		
+		try {
+			return commands;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the number of window switches the multiplexer sent on behalf of the tabs
+	 */
+	public long getSwitches() {
+		
+		lock.lock();
+		
+		try {
+			return switches;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @param unit TimeUnit
+	 * @return the total time commands waited for the browser
+	 */
+	public long getWaitTime(TimeUnit unit) {
+		
+		lock.lock();
+		
+		try {
+			return unit.convert(waitNanos, TimeUnit.NANOSECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Quits the browser, and with it every tab
+	 */
+	public void close() {
+		
+		lock.lock();
+		
+		try {
+			if (closed)
+				return;
+			
+			closed = true;
+			tabs.clear();
+			owners.clear();
+		} finally {
+			lock.unlock();
+		}
+		
+		browser.quit();
+	}
+	
+	@GuardedBy("lock")
+	private String firstWindow() throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final Response response = checked(forward(DriverCommand.GET_CURRENT_WINDOW_HANDLE, Collections.<String, Object>emptyMap()));
+		
+		current = (String) response.getValue();
+		return current;
+	}
+	
+	@GuardedBy("lock")
+	private String newWindow() throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final Set<String> before = handles();
+		
+		if (current == null || ! before.contains(current))
+			focus(owners.keySet().iterator().next());
+		
+		final Map<String, Object> script = new HashMap<String, Object>();
+		
+		script.put("script", OPEN_WINDOW);
+		script.put("args", Collections.emptyList());
+		
+		// the script runs in whichever window the browser is on; window.open() does not move the focus
+		checked(forward(DriverCommand.EXECUTE_SCRIPT, script));
+		
+		for (String handle : handles()) {
+			
+			if (! before.contains(handle))
+				return handle;
+		}
+		
+		throw new WebDriverException("The browser did not open a window for the tab; pop-ups may be blocked");
+	}
+	
+	/**
+	 * Gives the windows which appeared since the last click of the pending tab to that tab
+	 * 
+	 * @throws IOException
+	 */
+	@GuardedBy("lock")
+	private void settle() throws IOException {
+		
+		final Tab tab = pending;
+		pending = null;
+		
+		if (tab == null || tab.quit)
+			return;
+		
+		for (String handle : handles()) {
+			
+			if (! owners.containsKey(handle) && ! handle.equals(spare)) {
+				tab.own(handle);
+				opener = tab;
+			}
+		}
+	}
+	
+	/**
+	 * @param name the name of the command
+	 * @param parameters the parameters of the command
+	 * @return true when the command may open a window : a click, a submit, or keys which press Enter
+	 */
+	private static boolean opens(String name, Map<String, ?> parameters) {
+		
+		if (OPENERS.contains(name))
+			return true;
+		
+		if (! KEYS.contains(name))
+			return false;
+		
+		final Object value = parameters.get("value");
+		final Iterable<?> keys = value instanceof Object[] ? Arrays.asList((Object[]) value) : value instanceof Iterable ? (Iterable<?>) value : null;
+		
+		if (keys == null)
+			return false;
+		
+		for (Object key : keys) {
+			
+			final String typed = String.valueOf(key);
+			
+			if (typed.indexOf(Keys.ENTER.charAt(0)) >= 0 || typed.indexOf(Keys.RETURN.charAt(0)) >= 0 || typed.indexOf('\n') >= 0)
+				return true;
+		}
+		
+		return false;
+	}
+	
+	@GuardedBy("lock")
+	private Set<String> handles() throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final Response response = checked(forward(DriverCommand.GET_WINDOW_HANDLES, Collections.<String, Object>emptyMap()));
+		final Set<String> handles = new LinkedHashSet<String>();
+		
+		for (Object handle : (Collection<?>) response.getValue())
+			handles.add((String) handle);
+		
+		return handles;
+	}
+	
+	/**
+	 * Switches the browser to a window, unless it is already on it
+	 * 
+	 * @param handle String
+	 * @throws IOException
+	 */
+	@GuardedBy("lock")
+	private void focus(String handle) throws IOException {
+		
+		if (handle.equals(current))
+			return;
+		
+		checked(forward(DriverCommand.SWITCH_TO_WINDOW, Collections.singletonMap("name", handle)));
+		current = handle;
+		position.clear();
+		switches++;
+	}
+	
+	@GuardedBy("lock")
+	private Response forward(String name, Map<String, ?> parameters) throws IOException { // $codepro.audit.disable methodJavadoc
+		return executor.execute(new Command(session, name, parameters));
+	}
+	
+	private static Response checked(Response response) { // $codepro.audit.disable methodJavadoc
+		
+		if (response.getStatus() != ErrorCodes.SUCCESS)
+			throw new WebDriverException("The browser refused a tab command : " + response.getValue());
+		
+		return response;
+	}
+	
+	private Response respond(int status, Object value) { // $codepro.audit.disable methodJavadoc
+		
+		final Response response = new Response(session);
+		response.setStatus(status);
+		response.setValue(value);
+		return response;
+	}
+}
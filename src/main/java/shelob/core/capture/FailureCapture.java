@@ -0,0 +1,466 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.capture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Augmenter;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import shelob.core.interfaces.IHasArtifacts;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.metrics.CommandAttribution;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Captures a screenshot and the page source when an Element operation fails, and links the 
+ * artifact files into the exception :
+ * 
+ * 		parameters.setFailureCapture(new FailureCapture.Builder(new File("target/failures")).build());
+ * 
+ * The failing thread only fetches the raw capture from the browser; decoding, compression and 
+ * disk I/O happen on a background writer. At most capacity() captures are held in memory at once.
+ * When the writer falls behind, further failures wait up to blockFor() for room and are then 
+ * thrown without artifacts (counted by getDropped()), so a failure storm cannot exhaust memory.
+ * 
+ * NOTE : An artifact path is only attached once the artifact has been written, so every attached 
+ * 		  file exists; awaitIdle() waits until every queued capture has been written and attached. 
+ * 		  An artifact which could not be written is not attached, and is counted by getFailedWrites().
+ */
+public final class FailureCapture implements Closeable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int MAX_NAME = 48;
+	
+	private final File directory;
+	private final int capacity;
+	private final long blockForMillis;
+	private final boolean screenshots;
+	private final boolean pageSource;
+	private final Executor writer;
+	private final ExecutorService ownedWriter;
+	
+	private final Semaphore permits;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong captured = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failedWrites = new AtomicLong();
+	
+	private volatile boolean closed;
+	
+	/**
+	 * The FailureCapture Builder
+	 * @author melllaguno
+	 */
+	public static class Builder {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		// Required parameters
+		private final File directory;
+		
+		// Optional parameters
+		private int capacity = 16;
+		private long blockForMillis = 0;
+		private boolean screenshots = true;
+		private boolean pageSource = true;
+		private Executor writer = null;
+		
+		/**
+		 * @param directory the directory the artifacts are written to
+		 */
+		public Builder(File directory) {
+			this.directory = checkNotNull(directory);
+		}
+		
+		/**
+		 * @param capacity the number of captures which may be held in memory, waiting to be written
+		 * @return Builder
+		 */
+		public Builder capacity(int capacity) {
+			checkArgument(capacity > 0, "capacity must be positive");
+			this.capacity = capacity;
+			return this;
+		}
+		
+		/**
+		 * @param millis how long a failing thread waits for room before dropping it's capture; 0 never waits
+		 * @return Builder
+		 */
+		public Builder blockFor(long millis) {
+			checkArgument(millis >= 0, "blockFor must not be negative");
+			this.blockForMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * @param screenshots true to capture screenshots
+		 * @return Builder
+		 */
+		public Builder screenshots(boolean screenshots) {
+			this.screenshots = screenshots;
+			return this;
+		}
+		
+		/**
+		 * @param pageSource true to capture the page source
+		 * @return Builder
+		 */
+		public Builder pageSource(boolean pageSource) {
+			this.pageSource = pageSource;
+			return this;
+		}
+		
+		/**
+		 * @param writer the Executor which writes the artifacts; a single daemon thread by default
+		 * @return Builder
+		 */
+		public Builder writer(Executor writer) {
+			this.writer = checkNotNull(writer);
+			return this;
+		}
+		
+		/**
+		 * @return a new FailureCapture
+		 */
+		public FailureCapture build() {
+			return new FailureCapture(this);
+		}
+	}
+	
+	/**
+	 * A capture waiting to be written, and the exception it's artifacts are attached to
+	 */
+	private final class Write implements Runnable {
+		
+		private final IHasArtifacts exception;
+		private final String screenshot;
+		private final File screenshotFile;
+		private final String source;
+		private final File sourceFile;
+		
+		Write(IHasArtifacts exception, @Nullable String screenshot, @Nullable File screenshotFile, @Nullable String source, @Nullable File sourceFile) {
+			this.exception = exception;
+			this.screenshot = screenshot;
+			this.screenshotFile = screenshotFile;
+			this.source = source;
+			this.sourceFile = sourceFile;
+		}
+		
+		public void run() {
+			
+			try {
+				if (screenshot != null && write(screenshot, screenshotFile, true))
+					exception.attachArtifact(screenshotFile);
+				
+				if (source != null && write(source, sourceFile, false))
+					exception.attachArtifact(sourceFile);
+			} finally {
+				permits.release();
+			}
+		}
+		
+		private boolean write(String content, File file, boolean png) { // $codepro.audit.disable methodJavadoc
+			
+			try {
+				if (png)
+					writeScreenshot(OutputType.BYTES.convertFromBase64Png(content), file);
+				else
+					writeSource(content, file);
+				return true;
+			} catch (IOException e) {
+				failedWrites.incrementAndGet();
+			} catch (RuntimeException e) {
+				failedWrites.incrementAndGet();
+			}
+			
+			return false;
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param builder the FailureCapture.Builder responsible for creating this object
+	 */
+	private FailureCapture(Builder builder) {
+		
+		directory = builder.directory;
+		capacity = builder.capacity;
+		blockForMillis = builder.blockForMillis;
+		screenshots = builder.screenshots;
+		pageSource = builder.pageSource;
+		
+		if (builder.writer == null) {
+			ownedWriter = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("shelob-capture-%d").setDaemon(true).build());
+			writer = ownedWriter;
+		} else {
+			ownedWriter = null;
+			writer = builder.writer;
+		}
+		
+		permits = new Semaphore(capacity);
+	}
+	
+	/**
+	 * Captures the artifacts of a failed Element operation using the FailureCapture of the 
+	 * current session, if any.
+	 * 
+	 * @param exception the exception about to be thrown
+	 * @param element the IElement whose operation failed
+	 * @return the exception, with any artifacts attached
+	 */
+	public static <T extends RuntimeException & IHasArtifacts> T attach(T exception, IElement element) {
+		
+		final IPage page = element.getParentPage();
+		final FailureCapture capture = page == null || page.getParameters() == null ? null : page.getParameters().getFailureCapture();
+		
+		if (capture == null)
+			return exception;
+		
+		return capture.capture(exception, page, element);
+	}
+	
+	/**
+	 * Captures the current state of the browser; the artifact files are attached to the exception 
+	 * once they have been written
+	 * 
+	 * @param exception the exception about to be thrown
+	 * @param page the IPage on which the failure occurred
+	 * @param element the IElement whose operation failed, or null
+	 * @return the exception
+	 */
+	public <T extends RuntimeException & IHasArtifacts> T capture(T exception, IPage page, @Nullable IElement element) {
+		
+		if (closed || ! acquire()) {
+			dropped.incrementAndGet();
+			return exception;
+		}
+		
+		boolean queued = false;
+		
+		// the capture commands are charged to the page, then whatever was running is restored
+		final CommandAttribution.Binding attribution = CommandAttribution.bind(page, null);
+		
+		try {
+			final RemoteWebDriver driver = page.getDriver();
+			
+			final String screenshot = screenshots ? getScreenshot(driver) : null;
+			final String source = pageSource ? getPageSource(driver) : null;
+			
+			if (screenshot == null && source == null)
+				return exception;
+			
+			final String name = String.format("%05d-%s", sequence.incrementAndGet(), getName(page, element));
+			final File screenshotFile = screenshot == null ? null : new File(directory, name + ".png");
+			final File sourceFile = source == null ? null : new File(directory, name + ".html.gz");
+			
+			writer.execute(new Write(exception, screenshot, screenshotFile, source, sourceFile));
+			queued = true;
+			captured.incrementAndGet();
+			
+			return exception;
+		} catch (RejectedExecutionException e) {
+			dropped.incrementAndGet();
+			return exception;
+		} finally {
+			attribution.close();
+			
+			if (! queued)
+				permits.release();
+		}
+	}
+	
+	/**
+	 * Waits until every queued capture has been written
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return true when the writer is idle, false when the timeout elapsed first
+	 * @throws InterruptedException
+	 */
+	public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+		
+		if (! permits.tryAcquire(capacity, timeout, unit))
+			return false;
+		
+		permits.release(capacity);
+		return true;
+	}
+	
+	/**
+	 * @return the number of captures queued for writing
+	 */
+	public long getCaptured() {
+		return captured.get();
+	}
+	
+	/**
+	 * @return the number of failures thrown without artifacts because the writer was saturated or closed
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * @return the number of artifacts which could not be written, and so were not attached
+	 */
+	public long getFailedWrites() {
+		return failedWrites.get();
+	}
+	
+	/**
+	 * @return the directory the artifacts are written to
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Stops accepting captures; the captures already queued are still written
+	 */
+	public void close() {
+		
+		closed = true;
+		
+		if (ownedWriter != null)
+			ownedWriter.shutdown();
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("FailureCapture [%s] captured : %d dropped : %d failed : %d", directory, captured.get(), dropped.get(), failedWrites.get());
+	}
+	
+	private boolean acquire() { // $codepro.audit.disable methodJavadoc
+		
+		try {
+			return blockForMillis == 0 ? permits.tryAcquire() : permits.tryAcquire(blockForMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	private static String getScreenshot(RemoteWebDriver driver) { // $codepro.audit.disable methodJavadoc
+		
+		try {
+			// a RemoteWebDriver only takes screenshots once augmented with the capabilities of the session
+			final WebDriver augmented = driver instanceof TakesScreenshot ? driver : new Augmenter().augment(driver);
+			
+			if (! (augmented instanceof TakesScreenshot))
+				return null;
+			
+			return ((TakesScreenshot) augmented).getScreenshotAs(OutputType.BASE64);
+		} catch (WebDriverException e) {
+			return null;
+		}
+	}
+	
+	private static String getPageSource(RemoteWebDriver driver) { // $codepro.audit.disable methodJavadoc
+		
+		try {
+			return driver.getPageSource();
+		} catch (WebDriverException e) {
+			return null;
+		}
+	}
+	
+	private static String getName(IPage page, @Nullable IElement element) { // $codepro.audit.disable methodJavadoc
+		
+		// a page need not declare a title
+		final String title = Strings.isNullOrEmpty(page.getPageTitle()) ? "page" : page.getPageTitle();
+		final String name = element == null ? title : title + "-" + CommandAttribution.getLabel(element);
+		final String sanitized = name.replaceAll("[^A-Za-z0-9_.-]+", "_");
+		
+		return sanitized.length() > MAX_NAME ? sanitized.substring(0, MAX_NAME) : sanitized;
+	}
+	
+	private void writeScreenshot(byte[] png, File file) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		// PNG is already compressed
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(mkdirs(file)));
+		
+		try {
+			out.write(png);
+		} finally {
+			out.close();
+		}
+	}
+	
+	private void writeSource(String source, File file) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final Writer out = new OutputStreamWriter(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(mkdirs(file)))), UTF8);
+		
+		try {
+			out.write(source);
+		} finally {
+			out.close();
+		}
+	}
+	
+	private static File mkdirs(File file) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final File parent = file.getParentFile();
+		
+		if (parent != null && ! parent.isDirectory() && ! parent.mkdirs() && ! parent.isDirectory())
+			throw new IOException("Unable to create " + parent);
+		
+		return file;
+	}
+}
@@ -0,0 +1,325 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.elements;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.SessionContext;
+import shelob.core.interfaces.elements.IAsyncElement;
+import shelob.core.interfaces.elements.IElement;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Runs Element operations on the executor of the session (ApplicationParameters.getAsyncExecutor()), 
+ * or on a shared pool of daemon threads when none is set.
+ * 
+ * Operations are queued per driver : a queue holds no thread while it is empty, and drains on one 
+ * executor thread at a time, so WebDriver only ever sees one command at a time from this facet. 
+ * The session bound to the submitting thread is bound to the thread running the operation.
+ */
+final class AsyncElement implements IAsyncElement {
+
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setNameFormat("shelob-async-%d").setDaemon(true).build());
+	
+	private static final Map<RemoteWebDriver, DriverQueue> QUEUES = Collections.synchronizedMap(new WeakHashMap<RemoteWebDriver, DriverQueue>());
+	
+	private final IElement element;
+	
+	/**
+	 * An operation waiting to run against a driver
+	 */
+	private static final class Task<V> implements Runnable {
+		
+		private final IElement element;
+		private final Function<? super IElement, ? extends V> operation;
+		private final ApplicationParameters session;
+		private final CompletableFuture<V> future = new CompletableFuture<V>();
+		
+		Task(IElement element, Function<? super IElement, ? extends V> operation, ApplicationParameters session) {
+			this.element = element;
+			this.operation = operation;
+			this.session = session;
+		}
+		
+		public void run() {
+			
+			if (future.isDone())
+				return;
+			
+			final SessionContext.Binding binding = session == null ? null : SessionContext.bind(session);
+			
+			try {
+				future.complete(operation.apply(element));
+			} catch (Throwable t) { // $codepro.audit.disable caughtExceptions
+				future.completeExceptionally(t);
+			} finally {
+				if (binding != null)
+					binding.close();
+			}
+		}
+	}
+	
+	/**
+	 * The operations waiting to run against one driver
+	 */
+	private static final class DriverQueue {
+		
+		private final Queue<Task<?>> tasks = new ConcurrentLinkedQueue<Task<?>>();
+		private final AtomicBoolean draining = new AtomicBoolean();
+		
+		void execute(Task<?> task, Executor executor) {
+			tasks.add(task);
+			schedule(executor);
+		}
+		
+		private void schedule(final Executor executor) {
+			
+			if (! draining.compareAndSet(false, true))
+				return;
+			
+			try {
+				executor.execute(new Runnable() {
+					
+					public void run() {
+						drain(executor);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				
+				draining.set(false);
+				
+				Task<?> task;
+				while ((task = tasks.poll()) != null)
+					task.future.completeExceptionally(e);
+			}
+		}
+		
+		private void drain(Executor executor) {
+			
+			try {
+				Task<?> task;
+				while ((task = tasks.poll()) != null)
+					task.run();
+			} finally {
+				draining.set(false);
+				
+				// a task may have been queued after the last poll, but before draining was released
+				if (! tasks.isEmpty())
+					schedule(executor);
+			}
+		}
+	}
+	
+	/**
+	 * @param element the IElement to operate on
+	 */
+	AsyncElement(IElement element) {
+		this.element = checkNotNull(element);
+	}
+	
+	/**
+	 * Method getElement.
+	 * @return IElement
+	 * @see shelob.core.interfaces.elements.IAsyncElement#getElement()
+	 */
+	public IElement getElement() {
+		return element;
+	}
+	
+	/**
+	 * Method submit.
+	 * @param operation Function<? super IElement,? extends V>
+	 * @return CompletableFuture<V>
+	 * @see shelob.core.interfaces.elements.IAsyncElement#submit(Function)
+	 */
+	public <V> CompletableFuture<V> submit(Function<? super IElement, ? extends V> operation) {
+		
+		final ApplicationParameters parameters = element.getParentPage().getParameters();
+		final Task<V> task = new Task<V>(element, checkNotNull(operation), SessionContext.current());
+		
+		getQueue(parameters.getDriver()).execute(task, getExecutor(parameters));
+		
+		return task.future;
+	}
+	
+	private static DriverQueue getQueue(RemoteWebDriver driver) { // $codepro.audit.disable methodJavadoc
+		
+		synchronized (QUEUES) {
+			
+			DriverQueue queue = QUEUES.get(driver);
+			
+			if (queue == null) {
+				queue = new DriverQueue();
+				QUEUES.put(driver, queue);
+			}
+			
+			return queue;
+		}
+	}
+	
+	private static Executor getExecutor(ApplicationParameters parameters) { // $codepro.audit.disable methodJavadoc
+		
+		final Executor executor = parameters.getAsyncExecutor();
+		return executor == null ? DEFAULT_EXECUTOR : executor;
+	}
+	
+	public CompletableFuture<IElement> click() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, IElement>() {
+			
+			public IElement apply(IElement e) {
+				return e.click();
+			}
+		});
+	}
+	
+	public CompletableFuture<IElement> clickWhenVisible() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, IElement>() {
+			
+			public IElement apply(IElement e) {
+				return e.clickWhenVisible();
+			}
+		});
+	}
+	
+	public CompletableFuture<IElement> clickWhenVisible(final int waitTimeInSeconds) { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, IElement>() {
+			
+			public IElement apply(IElement e) {
+				return e.clickWhenVisible(waitTimeInSeconds);
+			}
+		});
+	}
+	
+	public CompletableFuture<IElement> clearWhenVisible() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, IElement>() {
+			
+			public IElement apply(IElement e) {
+				return e.clearWhenVisible();
+			}
+		});
+	}
+	
+	public CompletableFuture<IElement> sendKeysWhenVisible(final CharSequence... arg0) { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, IElement>() {
+			
+			public IElement apply(IElement e) {
+				return e.sendKeysWhenVisible(arg0);
+			}
+		});
+	}
+	
+	public CompletableFuture<IElement> submitWhenVisible() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, IElement>() {
+			
+			public IElement apply(IElement e) {
+				return e.submitWhenVisible();
+			}
+		});
+	}
+	
+	public CompletableFuture<IElement> waitUntilVisible(final long waitTimeInSeconds) { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, IElement>() {
+			
+			public IElement apply(IElement e) {
+				return e.waitUntilVisible(waitTimeInSeconds);
+			}
+		});
+	}
+	
+	public CompletableFuture<String> getText() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, String>() {
+			
+			public String apply(IElement e) {
+				return e.getText();
+			}
+		});
+	}
+	
+	public CompletableFuture<String> getTextWhenVisible() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, String>() {
+			
+			public String apply(IElement e) {
+				return e.getTextWhenVisible();
+			}
+		});
+	}
+	
+	public CompletableFuture<String> getAttributeWhenVisible(final String arg0) { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, String>() {
+			
+			public String apply(IElement e) {
+				return e.getAttributeWhenVisible(arg0);
+			}
+		});
+	}
+	
+	public CompletableFuture<Boolean> isDisplayed() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, Boolean>() {
+			
+			public Boolean apply(IElement e) {
+				return e.isDisplayed();
+			}
+		});
+	}
+	
+	public CompletableFuture<Boolean> isDisplayedWhenVisible() { // $codepro.audit.disable methodJavadoc
+		return submit(new Function<IElement, Boolean>() {
+			
+			public Boolean apply(IElement e) {
+				return e.isDisplayedWhenVisible();
+			}
+		});
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return "async " + element.toString();
+	}
+}
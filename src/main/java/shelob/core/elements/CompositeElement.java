@@ -0,0 +1,427 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+// $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.preferInterfacesToAbstractClasses, fieldJavadoc
+package shelob.core.elements;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Strings;
+
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.Select;
+
+import shelob.core.LookUp;
+import shelob.core.capture.FailureCapture;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.exceptions.NonExistentWebElementException;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.elements.IFusible;
+import shelob.core.interfaces.elements.IIsComposite;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.metrics.CommandAttribution;
+import shelob.core.page.RequiredElementsScript;
+import shelob.core.trace.OperationType;
+import shelob.core.trace.TracedOperation;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Abstract Template : Composite Element
+ * 
+ * A composite is an Element whose named children are located relative to it. Children are still 
+ * ordinary Elements, but operations on several children can be run as a Batch :
+ * 
+ * 		picker.batch().selectByValue("month", "3").selectByValue("day", "14").set("year", "2012").run();
+ * 
+ * Consecutive operations which the children declare fusible (see IFusible) are run by a single 
+ * script against one lookup of the composite root; the remaining operations fall back to the 
+ * child's own WebDriver calls, in order.
+ */
+public abstract class CompositeElement extends Element implements IIsComposite {
+
+	private final Map<String, IElement> children = new LinkedHashMap<String, IElement>();
+	
+	/**
+	 * An operation on a named child
+	 */
+	private static final class Step {
+		
+		private final String name;
+		private final IElement child;
+		private final FusedOperation operation;
+		private final String argument;
+		
+		Step(String name, IElement child, FusedOperation operation, @Nullable String argument) {
+			this.name = name;
+			this.child = child;
+			this.operation = operation;
+			this.argument = argument;
+		}
+		
+		boolean isFusible() {
+			return child instanceof IFusible && child instanceof Element 
+					&& ((IFusible) child).getFusibleOperations().contains(operation);
+		}
+		
+		boolean isRead() {
+			return operation == FusedOperation.READ_VALUE || operation == FusedOperation.READ_TEXT;
+		}
+	}
+	
+	/**
+	 * A sequence of operations on the children of the composite. Reads return their values from run(), 
+	 * keyed by the name of the child.
+	 * 
+	 * @author melllaguno
+	 */
+	public final class Batch { // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		private final List<Step> steps = new ArrayList<Step>();
+		
+		private Batch() {}
+		
+		/**
+		 * @param child the name of the child
+		 * @return Batch; reads the value of the child
+		 */
+		public Batch read(String child) {
+			return add(child, FusedOperation.READ_VALUE, null);
+		}
+		
+		/**
+		 * @param child the name of the child
+		 * @return Batch; reads the text of the child, or of it's selected option
+		 */
+		public Batch readText(String child) {
+			return add(child, FusedOperation.READ_TEXT, null);
+		}
+		
+		/**
+		 * @param child the name of the child
+		 * @param value the new value
+		 * @return Batch; replaces the value of the child
+		 */
+		public Batch set(String child, String value) {
+			return add(child, FusedOperation.SET_VALUE, checkNotNull(value));
+		}
+		
+		/**
+		 * @param child the name of the child
+		 * @param text the visible text of the option
+		 * @return Batch; selects an option of the child
+		 */
+		public Batch selectByVisibleText(String child, String text) {
+			return add(child, FusedOperation.SELECT_BY_VISIBLE_TEXT, checkNotNull(text));
+		}
+		
+		/**
+		 * @param child the name of the child
+		 * @param value the value of the option
+		 * @return Batch; selects an option of the child
+		 */
+		public Batch selectByValue(String child, String value) {
+			return add(child, FusedOperation.SELECT_BY_VALUE, checkNotNull(value));
+		}
+		
+		/**
+		 * Runs the batch once
+		 * 
+		 * @return the values read, keyed by the name of the child
+		 */
+		public Map<String, String> run() {
+			return execute(steps, -1);
+		}
+		
+		/**
+		 * Runs the batch once the composite root can be found, waiting up to the timeout of the composite
+		 * 
+		 * @return the values read, keyed by the name of the child
+		 */
+		public Map<String, String> runWhenVisible() {
+			return execute(steps, getTimeout());
+		}
+		
+		/**
+		 * @param waitTimeInSeconds
+		 * @return the values read, keyed by the name of the child
+		 */
+		public Map<String, String> runWhenVisible(int waitTimeInSeconds) {
+			return execute(steps, waitTimeInSeconds);
+		}
+		
+		private Batch add(String name, FusedOperation operation, String argument) { // $codepro.audit.disable methodJavadoc
+			steps.add(new Step(name, getChild(name), operation, argument));
+			return this;
+		}
+	}
+	
+	/**
+	 * CompositeElement Default Constructor
+	 * 
+	 * @param parent the IPage parent where the element is located
+	 * @param lookup the LookUp strategy of the composite root
+	 * @param locator the locator of the composite root
+	 * @param label the label of the composite
+	 * @param link the IPage the composite links to, if any
+	 */
+	protected CompositeElement(IPage parent, LookUp lookup, String locator, String label, @Nullable IPage link) {
+		super(parent, lookup, locator, label, link);
+	}
+	
+	/**
+	 * Registers a child, and locates it relative to this composite
+	 * 
+	 * @param name the name of the child within the composite
+	 * @param child the child Element
+	 * @return the child
+	 */
+	protected final <T extends IElement> T addChild(String name, T child) {
+		
+		checkNotNull(name);
+		checkNotNull(child);
+		checkArgument(! children.containsKey(name), "A child named %s has already been added", name);
+		
+		child.setRelativeToParent(this);
+		children.put(name, child);
+		
+		return child;
+	}
+	
+	/**
+	 * @param name the name of the child
+	 * @return IElement
+	 * @throws IllegalArgumentException when the composite has no such child
+	 */
+	public IElement getChild(String name) {
+		
+		final IElement child = children.get(name);
+		checkArgument(child != null, "%s has no child named %s", getClass().getSimpleName(), name);
+		
+		return child;
+	}
+	
+	/**
+	 * @return the children of the composite, keyed by name in the order they were added
+	 */
+	public Map<String, IElement> getChildren() {
+		return Collections.unmodifiableMap(children);
+	}
+	
+	/**
+	 * @return a new Batch of operations on the children of this composite
+	 */
+	public Batch batch() {
+		return new Batch();
+	}
+	
+	/**
+	 * @return the value of every child, keyed by name
+	 */
+	public Map<String, String> readValues() {
+		
+		final Batch batch = batch();
+		
+		for (String name : children.keySet())
+			batch.read(name);
+		
+		return batch.run();
+	}
+	
+	/**
+	 * Method execute.
+	 * @param steps List<Step>
+	 * @param waitTimeInSeconds the time to wait for the root of the first fused group; negative not to wait
+	 * @return Map<String,String>
+	 */
+	private Map<String, String> execute(final List<Step> steps, final int waitTimeInSeconds) {
+		
+		try {
+			return trace(OperationType.ACTION, "batch", new TracedOperation<Map<String, String>>() {
+				public Map<String, String> call() {
+					return executeSteps(steps, waitTimeInSeconds);
+				}
+			});
+		} catch (TimeoutException e) {
+			throw FailureCapture.attach(new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage())), this);
+		}
+	}
+	
+	private Map<String, String> executeSteps(List<Step> steps, int waitTimeInSeconds) { // $codepro.audit.disable methodJavadoc
+		
+		final Map<String, String> results = new LinkedHashMap<String, String>();
+		int wait = waitTimeInSeconds;
+		int i = 0;
+		
+		while (i < steps.size()) {
+			
+			if (! steps.get(i).isFusible()) {
+				
+				if (wait >= 0)
+					waitUntilVisible(wait);
+				
+				runUnfused(steps.get(i++), results);
+			} else {
+				
+				int j = i;
+				
+				while (j < steps.size() && steps.get(j).isFusible())
+					j++;
+				
+				runFused(steps.subList(i, j), results, wait);
+				i = j;
+			}
+			
+			// the root has been found once; later groups do not wait again
+			wait = -1;
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Method runFused.
+	 * @param group the consecutive fusible steps
+	 * @param results Map<String,String>
+	 * @param waitTimeInSeconds negative not to wait
+	 */
+	private void runFused(final List<Step> group, Map<String, String> results, int waitTimeInSeconds) {
+		
+		final String strategy = RequiredElementsScript.getStrategy(getLookUpType());
+		final String locator = getLocator();
+		final List<List<String>> operations = new ArrayList<List<String>>();
+		
+		for (Step step : group) {
+			operations.add(Arrays.asList(RequiredElementsScript.getStrategy(step.child.getLookUpType()), 
+										 ((Element) step.child).getOwnLocator(), step.operation.getScriptName(), Strings.nullToEmpty(step.argument)));
+		}
+		
+		Map<?, ?> outcome;
+		
+		if (waitTimeInSeconds < 0)
+			outcome = runScript(strategy, locator, operations);
+		else {
+			outcome = getWaitHelper(waitTimeInSeconds).until(new ExpectedCondition<Map<?, ?>>() {
+				
+				public Map<?, ?> apply(WebDriver driver) {
+					
+					final Map<?, ?> result = runScript(strategy, locator, operations);
+					
+					if (! "root".equals(result.get("status")))
+						return result;
+					
+					// abort the wait at once when the browser has landed on another page
+					getParentPage().verifyIdentity();
+					return null;
+				}
+			});
+		}
+		
+		final Object status = outcome.get("status");
+		
+		if ("ok".equals(status)) {
+			
+			final List<?> values = new ArrayList<Object>((Collection<?>) outcome.get("results"));
+			
+			for (int i = 0; i < group.size(); i++) {
+				
+				if (group.get(i).isRead())
+					results.put(group.get(i).name, values.get(i) == null ? null : values.get(i).toString());
+			}
+			
+			return;
+		}
+		
+		if ("root".equals(status))
+			throw FailureCapture.attach(new NonExistentWebElementException("Attempt to run a batch on a composite that cannot be found." + this.toString()), this);
+		
+		final Step failed = group.get(((Number) outcome.get("index")).intValue());
+		
+		if ("missing".equals(status))
+			throw FailureCapture.attach(new NonExistentWebElementException(
+					String.format("Attempt to call %s on a WebElement that cannot be found.%s", failed.operation, failed.child.toString())), failed.child);
+		
+		if ("option".equals(status))
+			throw FailureCapture.attach(new AutomationException(
+					String.format("Automation Exception thrown for -> %s : Cannot locate option [%s]", failed.child.toString(), failed.argument)), failed.child);
+		
+		throw FailureCapture.attach(new AutomationException(
+				String.format("Automation Exception thrown for -> %s : Element is not currently interactable", failed.child.toString())), failed.child);
+	}
+	
+	private Map<?, ?> runScript(String strategy, String locator, List<List<String>> operations) { // $codepro.audit.disable methodJavadoc
+		
+		CommandAttribution.attribute(this);
+		
+		final Object result = getParentPage().getDriver().executeScript(CompositeScript.SCRIPT, strategy, locator, operations);
+		
+		if (! (result instanceof Map))
+			throw new WebDriverException("Unexpected result from the composite script : " + result);
+		
+		return (Map<?, ?>) result;
+	}
+	
+	/**
+	 * Method runUnfused.
+	 * @param step Step
+	 * @param results Map<String,String>
+	 */
+	private static void runUnfused(Step step, Map<String, String> results) {
+		
+		final IElement child = step.child;
+		
+		switch (step.operation) {
+		
+		case READ_VALUE:
+			results.put(step.name, child.getAttribute("value"));
+			break;
+		case READ_TEXT:
+			results.put(step.name, "select".equals(child.getTagName()) ? new Select(child.getWebElement()).getFirstSelectedOption().getText() : child.getText());
+			break;
+		case SET_VALUE:
+			child.clear();
+			child.sendKeys(step.argument);
+			break;
+		case SELECT_BY_VISIBLE_TEXT:
+			new Select(child.getWebElement()).selectByVisibleText(step.argument);
+			break;
+		case SELECT_BY_VALUE:
+			new Select(child.getWebElement()).selectByValue(step.argument);
+			break;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.elements;
+
+import shelob.core.page.RequiredElementsScript;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The in-page script used by CompositeElement to run a batch of child operations against a single 
+ * lookup of the composite root.
+ * 
+ * The script takes the lookup strategy and locator of the root, followed by a list of operations. 
+ * Each operation is a list holding the lookup strategy and locator of the child relative to the root, 
+ * the name of the operation and it's argument. Every child is looked up before any operation is run, 
+ * so a batch is either applied in full or not at all. The script returns a map with a status :
+ * 
+ * 		ok 			results holds the result of each operation, in order
+ * 		root		the root could not be found
+ * 		missing 	the child at index could not be found
+ * 		hidden		the child at index cannot be interacted with
+ * 		option		the child at index has no option matching the argument
+ */
+public final class CompositeScript {
+	
+	/**
+	 * Identifies the script; the FakeCommandExecutor answers scripts containing this marker. 
+	 */
+	public static final String MARKER = "shelob:composite";
+	
+	static final String SCRIPT = 
+		"/* " + MARKER + " */\n" +
+		RequiredElementsScript.LOOKUP +
+		"function within(root, using, value) {\n" +
+		"  try {\n" +
+		"    switch (using) {\n" +
+		"      case 'xpath': return document.evaluate(value.charAt(0) == '/' ? '.' + value : value, root, null, 9, null).singleNodeValue;\n" +
+		"      case 'css selector': return root.querySelector(value);\n" +
+		"      case 'id': case 'name': case 'class name':\n" +
+		"        var all = root.getElementsByTagName('*');\n" +
+		"        for (var i = 0; i < all.length; i++) {\n" +
+		"          var a = using == 'class name' ? all[i].className : all[i].getAttribute(using);\n" +
+		"          if (a != null && (using == 'class name' ? (' ' + a + ' ').indexOf(' ' + value + ' ') >= 0 : a == value)) return all[i];\n" +
+		"        }\n" +
+		"        return null;\n" +
+		"      case 'tag name': return root.getElementsByTagName(value)[0] || null;\n" +
+		"    }\n" +
+		"    var anchors = root.getElementsByTagName('a');\n" +
+		"    for (var i = 0; i < anchors.length; i++) {\n" +
+		"      var t = text(anchors[i]);\n" +
+		"      if (using == 'link text' ? t === value : t.indexOf(value) >= 0) return anchors[i];\n" +
+		"    }\n" +
+		"  } catch (e) {}\n" +
+		"  return null;\n" +
+		"}\n" +
+		"function shown(e) {\n" +
+		"  for (var n = e; n && n.nodeType == 1; n = n.parentNode) {\n" +
+		"    var s = window.getComputedStyle ? window.getComputedStyle(n, null) : n.currentStyle;\n" +
+		"    if (s.display == 'none' || s.visibility == 'hidden') return false;\n" +
+		"  }\n" +
+		"  return true;\n" +
+		"}\n" +
+		"function fire(e, type) {\n" +
+		"  if (document.createEvent) { var ev = document.createEvent('HTMLEvents'); ev.initEvent(type, true, true); e.dispatchEvent(ev); }\n" +
+		"  else if (e.fireEvent) e.fireEvent('on' + type);\n" +
+		"}\n" +
+		"function selected(e) { return e.selectedIndex >= 0 ? e.options[e.selectedIndex] : null; }\n" +
+		"function option(e, op, arg) {\n" +
+		"  for (var j = 0; e.options && j < e.options.length; j++)\n" +
+		"    if (op == 'selectByValue' ? e.options[j].value == arg : text(e.options[j]) == arg) return j;\n" +
+		"  return -1;\n" +
+		"}\n" +
+		"var root = find(arguments[0], arguments[1]), ops = arguments[2], targets = [], matches = [], results = [];\n" +
+		"if (root == null) return { status: 'root' };\n" +
+		"for (var i = 0; i < ops.length; i++) {\n" +
+		"  var op = ops[i][2];\n" +
+		"  targets[i] = within(root, ops[i][0], ops[i][1]);\n" +
+		"  if (targets[i] == null) return { status: 'missing', index: i };\n" +
+		"  if (op.indexOf('read') != 0 && (targets[i].disabled || !shown(targets[i]))) return { status: 'hidden', index: i };\n" +
+		"  if (op.indexOf('select') == 0 && (matches[i] = option(targets[i], op, ops[i][3])) < 0) return { status: 'option', index: i };\n" +
+		"}\n" +
+		"for (var i = 0; i < ops.length; i++) {\n" +
+		"  var e = targets[i], op = ops[i][2], tag = e.tagName.toLowerCase();\n" +
+		"  if (op == 'readValue') results.push(e.value != null ? String(e.value) : e.getAttribute('value'));\n" +
+		"  else if (op == 'readText') { var o = tag == 'select' ? selected(e) : e; results.push(o == null ? null : text(o)); }\n" +
+		"  else if (op == 'setValue') { e.value = ops[i][3]; fire(e, 'input'); fire(e, 'change'); results.push(null); }\n" +
+		"  else { e.selectedIndex = matches[i]; fire(e, 'change'); results.push(null); }\n" +
+		"}\n" +
+		"return { status: 'ok', results: results };";
+	
+	/**
+	 * Limited Scope Default Constructor
+	 */
+	private CompositeScript() {
+	}
+}
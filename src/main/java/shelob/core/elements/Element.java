@@ -25,16 +25,19 @@
 // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.preferInterfacesToAbstractClasses, fieldJavadoc
 package shelob.core.elements;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.MissingFormatArgumentException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.Dimension;
@@ -50,14 +53,27 @@ import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.Wait;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
+import shelob.core.ApplicationParameters;
 import shelob.core.LookUp;
+import shelob.core.SessionContext;
+import shelob.core.browsers.HtmlUnit;
+import shelob.core.capture.FailureCapture;
 import shelob.core.exceptions.AutomationException;
 import shelob.core.exceptions.InsufficientArgumentsException;
 import shelob.core.exceptions.NonExistentWebElementException;
+import shelob.core.exceptions.PageMismatchException;
 import shelob.core.interfaces.IOpensNewWindow;
+import shelob.core.interfaces.IOperationListener;
 import shelob.core.interfaces.IWaitDelegate;
+import shelob.core.interfaces.elements.IAsyncElement;
 import shelob.core.interfaces.elements.IElement;
 import shelob.core.interfaces.page.IPage;
+import shelob.core.metrics.CommandAttribution;
+import shelob.core.page.RequiredElementsScript;
+import shelob.core.page.WindowManager;
+import shelob.core.trace.OperationOutcome;
+import shelob.core.trace.OperationType;
+import shelob.core.trace.TracedOperation;
 
 /**
  * @author melllaguno
@@ -70,32 +86,139 @@ import shelob.core.interfaces.page.IPage;
  * 
  * WARNING : Since WebDriver is NOT ThreadSafe, no Elements can be considered ThreadSafe
  * 			 Oh well ....
+ * 
+ * NOTE : Elements hold no locks. Configuration is published as immutable values through 
+ * 		  volatile fields, and every lookup works from a Resolution : a snapshot of the definition, 
+ * 		  identifiers and parent element taken at the start of the call. No driver call is 
+ * 		  made while holding a monitor.
  */
 public abstract class Element implements IElement {
 
+	/**
+	 * The timeout of an element which uses the default wait of the current session
+	 */
+	public static final int UNSET_TIMEOUT = -1;
+	
 	private static final int RETRY_MAX = 10;
 	
+	// a wait checks the identity of the page at most this often, and gives up after consecutive mismatches
+	private static final long IDENTITY_CHECK_MILLIS = 1000;
+	private static final int IDENTITY_MISMATCHES = 2;
+	
+	private static final String[] NO_IDENTIFIERS = new String[0];
+	
 	private final IPage parent;
-	private final String locator;
-	private final LookUp lookup;
-	private final String label;
 	private final IPage link;
 
-	@GuardedBy("this")
-	private final Collection<String> localizations; // $codepro.audit.disable fieldAccessProtection
-	@GuardedBy("this")
-	private final Collection<String> templateIdentifiers;
-
-	@GuardedBy("this")
-	private boolean required;
-	@GuardedBy("this")
-	private boolean isTemplate;
-	@GuardedBy("this")
-	private int waitTimeInSeconds;
-	@GuardedBy("this")
-	private IElement parent_element;
-	@GuardedBy("this")
-	private int retryCount;
+	// the canonical, shared definition; replaced as a whole when the element is configured
+	private volatile ElementDefinition definition;
+	// copy-on-write; never mutated once published. Only used when no session is bound (see SessionContext)
+	private volatile String[] templateIdentifiers;
+
+	private volatile IElement parent_element;
+	private volatile int waitTimeInSeconds = UNSET_TIMEOUT;
+	
+	/**
+	 * The identity checks of a single wait. A page in transition (e.g. the title not updated yet) 
+	 * is tolerated : the wait is only aborted once the mismatch has persisted across checks.
+	 */
+	private static final class IdentityCheck {
+		
+		private final IPage page;
+		private long next = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(IDENTITY_CHECK_MILLIS);
+		private int mismatches;
+		
+		IdentityCheck(IPage page) {
+			this.page = page;
+		}
+		
+		// called after each poll which did not find the element displayed
+		void afterFailedPoll() {
+			
+			final long now = System.nanoTime();
+			
+			if (now - next < 0)
+				return;
+			
+			next = now + TimeUnit.MILLISECONDS.toNanos(IDENTITY_CHECK_MILLIS);
+			
+			try {
+				page.verifyIdentity();
+				mismatches = 0;
+			} catch (PageMismatchException e) {
+				
+				if (++mismatches >= IDENTITY_MISMATCHES)
+					throw e;
+			}
+		}
+	}
+	
+	/**
+	 * The per-call state of a lookup : the configuration of the element at the start of the call
+	 */
+	private static final class Resolution {
+		
+		private final ElementDefinition definition;
+		private final String[] identifiers;
+		private final IElement relativeTo;
+		
+		Resolution(ElementDefinition definition, String[] identifiers, @Nullable IElement relativeTo) {
+			this.definition = definition;
+			this.identifiers = identifiers;
+			this.relativeTo = relativeTo;
+		}
+		
+		boolean isMissingIdentifiers() {
+			return definition.isTemplate() && identifiers.length == 0;
+		}
+		
+		String getLocator() {
+			
+			final StringBuilder compoundLocator = new StringBuilder();
+
+			if (relativeTo != null)
+				compoundLocator.append(relativeTo.getLocator());
+
+			if (definition.isTemplate()) {
+				try {
+					compoundLocator.append(String.format(definition.getLocator(), (Object[]) identifiers));
+				} catch (MissingFormatArgumentException e) {
+					throw new InsufficientArgumentsException(
+							String.format(
+									"Either the type or quantity of arguments supplied for the template [%s] is incorrect -> %s  : %s",
+									definition.getLocator(), Arrays.asList(identifiers), e.getMessage()));
+				}
+			} else
+				compoundLocator.append(definition.getLocator());
+
+			return compoundLocator.toString();
+		}
+		
+		By getBy() {
+			
+			final String locator = getLocator();
+			
+			switch (definition.getLookUp()) {
+
+			case ByClassName:
+				return By.className(locator);
+			case ByCSSSelector:
+				return By.cssSelector(locator);
+			case ById:
+				return By.id(locator);
+			case ByLinkText:
+				return By.linkText(locator);
+			case ByName:
+				return By.name(locator);
+			case ByPartialLinkText:
+				return By.partialLinkText(locator);
+			case ByTagName:
+				return By.tagName(locator);
+			default:
+				return By.xpath(locator);
+			}
+		}
+	}
 	
 	
 	/**
@@ -117,22 +240,27 @@ public abstract class Element implements IElement {
 	protected Element(IPage parent, LookUp lookup, String locator,
 			String label, @Nullable IPage link) {
 
+		this(parent, ElementDefinition.of(lookup, locator, label), link);
+	}
+	
+	/**
+	 * @param parent
+	 *            The Page associated with this element
+	 * @param definition
+	 *            the ElementDefinition of this element; may be shared with other elements
+	 * @param link
+	 *            the Page this element links to
+	 */
+	protected Element(IPage parent, ElementDefinition definition, @Nullable IPage link) {
+
 		this.parent = checkNotNull(parent);
-		this.locator = checkNotNull(locator);
-		this.lookup = checkNotNull(lookup);
+		this.definition = checkNotNull(definition);
 
 		// optional parameters
-		this.label = label;
 		this.link = link;
 
-		required = false;
-		isTemplate = false;
 		parent_element = null;
-
-		localizations = new ArrayList<String>();
-		templateIdentifiers = new ArrayList<String>();
-		
-		retryCount = 0;
+		templateIdentifiers = NO_IDENTIFIERS;
 	}
 
 	/**
@@ -153,38 +281,36 @@ public abstract class Element implements IElement {
 	 */
 	private WebElement getWebElementImpl() {
 		
-		if (isTemplate && getTemplateIdentifiers().size() == 0)
+		return trace(OperationType.LOOKUP, "findElement", new TracedOperation<WebElement>() {
+			
+			public WebElement call() {
+				return resolveWebElement();
+			}
+			
+			@Override
+			protected OperationOutcome outcome(WebElement element) {
+				return element instanceof NonExistentElement ? OperationOutcome.FAILURE : OperationOutcome.SUCCESS;
+			}
+		});
+	}
+	
+	private WebElement resolveWebElement() {
+		
+		final Resolution resolution = resolve();
+		
+		if (resolution.isMissingIdentifiers())
 			throw new NonExistentWebElementException(
 					"An identifier must be set using setTemplateIdentifier() for any element behaving as a template.");
 
+		CommandAttribution.attribute(this);
+		
 		try {
-
-			switch (lookup) {
-
-			case ByClassName:
-				return parent.getDriver().findElement(By.className(getLocator()));
-			case ByCSSSelector:
-				return parent.getDriver().findElement(By.cssSelector(getLocator()));
-			case ById:
-				return parent.getDriver().findElement(By.id(getLocator()));
-			case ByLinkText:
-				return parent.getDriver().findElement(By.linkText(getLocator()));
-			case ByName:
-				return parent.getDriver().findElement(By.name(getLocator()));
-			case ByPartialLinkText:
-				return parent.getDriver().findElement(By.partialLinkText(getLocator()));
-			case ByTagName:
-				return parent.getDriver().findElement(By.tagName(getLocator()));
-			case ByXpath:
-				return parent.getDriver().findElement(By.xpath(getLocator()));
-			}
+			return parent.getDriver().findElement(resolution.getBy());
 		} catch (NoSuchElementException e) {
 			return new NonExistentElement(this);
 		} catch (WebDriverException e) {
-			throw new NonExistentWebElementException(e.getMessage() + this.toString());
+			throw FailureCapture.attach(new NonExistentWebElementException(e.getMessage() + this.toString()), this);
 		}
-
-		return new NonExistentElement(this);
 	}
 	
 	/**
@@ -194,36 +320,58 @@ public abstract class Element implements IElement {
 	 */
 	private List<WebElement> getWebElementsImpl() {
 		
-		if (isTemplate && getTemplateIdentifiers().size() == 0)
+		return trace(OperationType.LOOKUP, "findElements", new TracedOperation<List<WebElement>>() {
+			public List<WebElement> call() {
+				return resolveWebElements();
+			}
+		});
+	}
+	
+	private List<WebElement> resolveWebElements() {
+		
+		final Resolution resolution = resolve();
+		
+		if (resolution.isMissingIdentifiers())
 			throw new NonExistentWebElementException(
 					"An identifier must be set using setTemplateIdentifier() for any element behaving as a template.");
 
+		CommandAttribution.attribute(this);
+		
 		try {
-
-			switch (lookup) {
-
-			case ByClassName:
-				return parent.getDriver().findElements(By.className(getLocator()));
-			case ByCSSSelector:
-				return parent.getDriver().findElements(By.cssSelector(getLocator()));
-			case ById:
-				return parent.getDriver().findElements(By.id(getLocator()));
-			case ByLinkText:
-				return parent.getDriver().findElements(By.linkText(getLocator()));
-			case ByName:
-				return parent.getDriver().findElements(By.name(getLocator()));
-			case ByPartialLinkText:
-				return parent.getDriver().findElements(By.partialLinkText(getLocator()));
-			case ByTagName:
-				return parent.getDriver().findElements(By.tagName(getLocator()));
-			case ByXpath:
-				return parent.getDriver().findElements(By.xpath(getLocator()));
-			}
+			return parent.getDriver().findElements(resolution.getBy());
 		} catch (WebDriverException e) {
-			throw new NonExistentWebElementException(e.getMessage() + this.toString());
+			throw FailureCapture.attach(new NonExistentWebElementException(e.getMessage() + this.toString()), this);
 		}
-
-		return new ArrayList<WebElement>();
+	}
+	
+	/**
+	 * @return the locator of this element alone, without the locator of the element it is relative to
+	 */
+	String getOwnLocator() {
+		
+		final Resolution resolution = resolve();
+		return new Resolution(resolution.definition, resolution.identifiers, null).getLocator();
+	}
+	
+	/**
+	 * Takes a snapshot of the configuration used to resolve this element
+	 * 
+	 * @return Resolution
+	 */
+	private Resolution resolve() {
+		
+		final ElementDefinition d = definition;
+		final IElement relativeTo = parent_element;
+		final String[] session = SessionContext.getTemplateIdentifiers(this);
+		String[] identifiers = session == null ? templateIdentifiers : session;
+		
+		// HACK : should traverse parents to see if template identifiers are set on the closest parent.
+		if (d.isTemplate() && identifiers.length == 0 && relativeTo != null && relativeTo.isTemplate()) {
+			final Collection<String> inherited = relativeTo.getTemplateIdentifiers();
+			identifiers = formatIdentifiers(inherited.toArray(new String[inherited.size()]));
+		}
+		
+		return new Resolution(d, identifiers, relativeTo);
 	}
 	
 	/**
@@ -233,13 +381,13 @@ public abstract class Element implements IElement {
 	 * @see org.openqa.selenium.WebElement#clear()
 	 */
 	public IElement clear() {
-				
-		try {
-			getWebElementImpl().clear();
-			return this;
-		} catch (WebDriverException e){			
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		
+		return action("clear", new TracedOperation<IElement>() {
+			public IElement call() {
+				getWebElementImpl().clear();
+				return Element.this;
+			}
+		});
 	}
 
 	/**
@@ -249,22 +397,31 @@ public abstract class Element implements IElement {
 	 * @see org.openqa.selenium.WebElement#click()
 	 */
 	public IElement click() {
+		return click(0);
+	}
+	
+	private IElement click(final int retries) { // $codepro.audit.disable methodJavadoc
 		
-		try {
-			getWebElementImpl().click();
-			return this;	
-		} catch (WebDriverException e){
-			
-			if (e.getMessage().contains("Element is not clickable at point") && retryCount < RETRY_MAX)
-			{
-				retryCount++;
-				click();
+		return action("click", new TracedOperation<IElement>() {
+			public IElement call() {
+				
+				try {
+					getWebElementImpl().click();
+				} catch (WebDriverException e) {
+					
+					if (! e.getMessage().contains("Element is not clickable at point") || retries >= RETRY_MAX)
+						throw e;
+					
+					trace(OperationType.RETRY, "click", new TracedOperation<IElement>() {
+						public IElement call() {
+							return click(retries + 1);
+						}
+					});
+				}
+				
+				return Element.this;
 			}
-			else
-				throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-			
-			return null;
-		}
+		});
 	}
 
 
@@ -275,13 +432,13 @@ public abstract class Element implements IElement {
 	 * @return List<WebElement> 
 	 * @see org.openqa.selenium.WebElement#findElements(By)
 	 */
-	public List<WebElement> findElements(By arg0) {
+	public List<WebElement> findElements(final By arg0) {
 		
-		try {
-			return getWebElementImpl().findElements(arg0);	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("findElements", new TracedOperation<List<WebElement>>() {
+			public List<WebElement> call() {
+				return getWebElementImpl().findElements(arg0);
+			}
+		});
 	}
 
 	/**
@@ -291,13 +448,13 @@ public abstract class Element implements IElement {
 	 * @return String 
 	 * @see org.openqa.selenium.WebElement#getAttribute(String)
 	 */
-	public String getAttribute(String arg0) {
+	public String getAttribute(final String arg0) {
 		
-		try {
-			return getWebElementImpl().getAttribute(arg0);	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("getAttribute", new TracedOperation<String>() {
+			public String call() {
+				return getWebElementImpl().getAttribute(arg0);
+			}
+		});
 	}
 
 	/**
@@ -308,11 +465,11 @@ public abstract class Element implements IElement {
 	 */
 	public String getTagName() {
 		
-		try {
-			return getWebElementImpl().getTagName();	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("getTagName", new TracedOperation<String>() {
+			public String call() {
+				return getWebElementImpl().getTagName();
+			}
+		});
 	}
 
 	/**
@@ -323,11 +480,11 @@ public abstract class Element implements IElement {
 	 */
 	public String getText() {
 		
-		try {
-			return getWebElementImpl().getText();	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("getText", new TracedOperation<String>() {
+			public String call() {
+				return getWebElementImpl().getText();
+			}
+		});
 	}
 
 	/**
@@ -339,13 +496,17 @@ public abstract class Element implements IElement {
 	public boolean isEnabled() {
 		
 		try {
-			return getWebElementImpl().isEnabled();	
+			return trace(OperationType.ACTION, "isEnabled", new TracedOperation<Boolean>() {
+				public Boolean call() {
+					return getWebElementImpl().isEnabled();
+				}
+			});
 		} catch (NonExistentWebElementException e) {
 			return isValid();
 		} catch (ElementNotVisibleException e) {
 			return false;
 		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -357,11 +518,11 @@ public abstract class Element implements IElement {
 	 */
 	public boolean isSelected() {
 		
-		try {
-			return getWebElementImpl().isSelected();	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("isSelected", new TracedOperation<Boolean>() {
+			public Boolean call() {
+				return getWebElementImpl().isSelected();
+			}
+		});
 	}
 
 	/**
@@ -371,14 +532,14 @@ public abstract class Element implements IElement {
 	 * @return IElement fluent interface; this
 	 * @see org.openqa.selenium.WebElement#sendKeys(CharSequence[])
 	 */
-	public IElement sendKeys(CharSequence... arg0) {
+	public IElement sendKeys(final CharSequence... arg0) {
 		
-		try {
-			getWebElementImpl().sendKeys(arg0);
-			return this;	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("sendKeys", new TracedOperation<IElement>() {
+			public IElement call() {
+				getWebElementImpl().sendKeys(arg0);
+				return Element.this;
+			}
+		});
 	}
 
 	/**
@@ -399,12 +560,12 @@ public abstract class Element implements IElement {
 	 */
 	public IElement submit() {
 		
-		try {
-			getWebElementImpl().submit();
-			return this;	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("submit", new TracedOperation<IElement>() {
+			public IElement call() {
+				getWebElementImpl().submit();
+				return Element.this;
+			}
+		});
 	}
 
 	/**
@@ -434,34 +595,35 @@ public abstract class Element implements IElement {
 	 * @return String 
 	 */
 	public String getLocator() {
-
-		final StringBuilder compoundLocator = new StringBuilder();
-
-		if (isRelativeToParent())
-			compoundLocator.append(parent_element.getLocator());
-
-		if (isTemplate()) {
-			try {
-				compoundLocator.append(String.format(locator, templateIdentifiers.toArray()));
-			} catch (MissingFormatArgumentException e) {
-				throw new InsufficientArgumentsException(
-						String.format(
-								"Either the type or quantity of arguments supplied for the template [%s] is incorrect -> %s  : %s",
-								locator, templateIdentifiers, e.getMessage()));
-			}
-		} else
-			compoundLocator.append(locator);
-
-		return compoundLocator.toString();
+		return resolve().getLocator();
 	}
 
+	/**
+	 * Method getLocatorFor.
+	 * 
+	 * @param identifiers
+	 * @return String 
+	 */
+	public String getLocatorFor(String... identifiers) {
+		return new Resolution(definition, formatIdentifiers(identifiers), parent_element).getLocator();
+	}
+	
 	/**
 	 * Method getLookUpType.
 	 * 
 	 * @return LookUp 
 	 */
 	public LookUp getLookUpType() {
-		return lookup;
+		return definition.getLookUp();
+	}
+	
+	/**
+	 * Method getDefinition.
+	 * 
+	 * @return ElementDefinition the canonical definition of this element
+	 */
+	public ElementDefinition getDefinition() {
+		return definition;
 	}
 
 	/**
@@ -470,7 +632,7 @@ public abstract class Element implements IElement {
 	 * @return boolean 
 	 */
 	public boolean hasLabel() {
-		return label != null;
+		return definition.getLabel() != null;
 	}
 
 	/**
@@ -480,6 +642,8 @@ public abstract class Element implements IElement {
 	 */
 	public String getLabel() {
 
+		final String label = definition.getLabel();
+		
 		if (label == null)
 			throw new NullPointerException(
 					"The label for this object was not set through it's Builder.");
@@ -491,8 +655,8 @@ public abstract class Element implements IElement {
 	 * 
 	 * @return IElement fluent interface; this
 	 */
-	synchronized public IElement setRequired() {
-		required = true;
+	public IElement setRequired() {
+		definition = definition.withRequired();
 		return this;
 	}
 
@@ -501,8 +665,8 @@ public abstract class Element implements IElement {
 	 * 
 	 * @return boolean 
 	 */
-	synchronized public boolean isRequired() {
-		return required;
+	public boolean isRequired() {
+		return definition.isRequired();
 	}
 
 	/**
@@ -511,7 +675,7 @@ public abstract class Element implements IElement {
 	 * @param parent
 	 * @return IElement fluent interface; this
 	 */
-	synchronized public IElement setRelativeToParent(IElement parent) {
+	public IElement setRelativeToParent(IElement parent) {
 		parent_element = parent;
 		return this;
 	}
@@ -521,7 +685,7 @@ public abstract class Element implements IElement {
 	 * 
 	 * @return boolean 
 	 */
-	synchronized public boolean isRelativeToParent() {
+	public boolean isRelativeToParent() {
 		return parent_element != null;
 	}
 
@@ -532,8 +696,8 @@ public abstract class Element implements IElement {
 	 * @return IElement fluent interface; this
 	 * @see com.stratahealth.test.framework.core.interfaces.elements.IElement#addLocalization(String)
 	 */
-	synchronized public IElement addLocalization(String localization) {
-		localizations.add(localization);
+	public IElement addLocalization(String localization) {
+		definition = definition.withLocalization(localization);
 		return this;
 	}
 
@@ -544,12 +708,14 @@ public abstract class Element implements IElement {
 	 * 
 	 * @return Collection<String> 
 	 */
-	synchronized public Collection<String> getLocalizations() {
+	public Collection<String> getLocalizations() {
 
+		final ElementDefinition d = definition;
+		
 		// defensive copy
 		final List<String> completeLocalizations = new ArrayList<String>(
-				localizations);
-		completeLocalizations.add(label);
+				d.getLocalizations());
+		completeLocalizations.add(d.getLabel());
 
 		return completeLocalizations;
 	}
@@ -561,8 +727,8 @@ public abstract class Element implements IElement {
 	 *         com.stratahealth.test.core.interfaces.elements.IElement
 	 *         #hasLocalizations()
 	 */
-	synchronized public boolean hasLocalizations() {
-		return localizations.size() > 0;
+	public boolean hasLocalizations() {
+		return definition.hasLocalizations();
 	}
 
 	/**
@@ -574,12 +740,12 @@ public abstract class Element implements IElement {
 		final StringBuilder s = new StringBuilder()
 								.append("Parent Page : ").append(parent.getClass().getCanonicalName())
 								.append(" Element : ").append(this.getClass().getName())
-								.append(" LookUp : ").append(lookup.name())
+								.append(" LookUp : ").append(getLookUpType().name())
 								.append(" Locator : ").append(this.getLocator())
 								.append(" HasLocalizations : ").append(this.hasLocalizations())
 								.append(" HasLabel : ").append(this.hasLabel())
 								.append(" IsRelativeToParent : ").append(this.isRelativeToParent())
-								.append(" IsTemplate : ").append(isTemplate);
+								.append(" IsTemplate : ").append(isTemplate());
 
 		return s.toString();
 	}
@@ -629,36 +795,70 @@ public abstract class Element implements IElement {
 			throw new NullPointerException(
 					"The linkTo for this object was not set through it's Builder.");
 
-		// WARNING : Naive Implementation : assumes that there are only 2 open
-		// windows at any given time.
-		//
-		// Unfortunately, the use of GUIDs for the window handles precludes the
-		// ability to differentiate between windows. The only way to tell is to query 
-		// the handles set before the new window is opened.
-		//
-		// Ideally, it would be cleaner if the getWindowHandle exposed events
-		// that you could listen to associate the newly created handle to a specific window.
-
-		String parentWindow = getParentPage().getParameters().getDriver()
-				.getWindowHandle();
-
-		this.click().pause(2000);
-
-		if (link instanceof IOpensNewWindow<?>) {
-
-			Set<String> handles = getParentPage().getParameters().getDriver()
-					.getWindowHandles();
-
-			for (String s : handles) {
+		HtmlUnit.verifyCompatible(getParentPage().getDriver(), link);
+		
+		trace(OperationType.NAVIGATION, "goToLink", new TracedOperation<Void>() {
+			public Void call() {
+				openLink();
+				return null;
+			}
+		});
+		
+		// a new window is only verified once the driver has been switched to it
+		if (! (link instanceof IOpensNewWindow<?>)) {
+			
+			final ApplicationParameters parameters = link.getParameters();
+			
+			if (parameters != null && parameters.isVerifyRequired())
+				link.verifyRequired();
+		}
+	}
+	
+	private void openLink() { // $codepro.audit.disable methodJavadoc
 
-				if (s.equals(parentWindow))
-					continue;
-				else {
-					((IOpensNewWindow<?>) link).setWindowHandle(s);
+		CommandAttribution.attribute(this);
+		
+		if (! (link instanceof IOpensNewWindow<?>)) {
+			
+			// HtmlUnit loads the linked page before the click returns
+			if (HtmlUnit.isHtmlUnit(getParentPage().getDriver()))
+				this.click();
+			else
+				this.click().pause(2000);
+			return;
+		}
+		
+		// The new window is told apart by the handles open before the click; window handles 
+		// are opaque GUIDs, so there is no other way to associate a window with the click.
+		final WindowManager windows = WindowManager.of(getParentPage().getParameters().getDriver());
+		final String parentWindow = windows.getCurrentHandle();
+		final Set<String> before = windows.getWindowHandles();
+		
+		this.click();
+		
+		String opened = windows.awaitNewWindow(before, Math.max(getTimeout(), 2) * 1000L);
+		
+		if (opened == null) {
+			
+			final Set<String> open = windows.getWindowHandles();
+			final String previous = windows.getHandle(link);
+			
+			// a named target reloads the window it opened before
+			if (previous != null && open.contains(previous))
+				return;
+			
+			// otherwise take a window which no Page owns
+			for (String s : open) {
+				
+				if (! s.equals(parentWindow) && ! windows.isRegistered(s)) {
+					opened = s;
 					break;
 				}
 			}
 		}
+		
+		if (opened != null)
+			((IOpensNewWindow<?>) link).setWindowHandle(opened);
 	}
 
 	/**
@@ -667,8 +867,8 @@ public abstract class Element implements IElement {
 	 * @return IElement fluent interface; this
 	 * @see com.stratahealth.test.framework.core.interfaces.elements.IElement#setIsTemplate()
 	 */
-	synchronized public IElement setIsTemplate() {
-		isTemplate = true;
+	public IElement setIsTemplate() {
+		definition = definition.withTemplate();
 		return this;
 	}
 
@@ -677,8 +877,8 @@ public abstract class Element implements IElement {
 	 * 
 	 * @return boolean a flag which indicates whether this element is a template
 	 */
-	synchronized public boolean isTemplate() {
-		return isTemplate;
+	public boolean isTemplate() {
+		return definition.isTemplate();
 	}
 
 	/**
@@ -688,11 +888,8 @@ public abstract class Element implements IElement {
 	 * @return IElement fluent interface; this
 	 * @see com.stratahealth.test.framework.core.interfaces.elements.IElement#setTemplateIdentifier(String)
 	 */
-	synchronized public IElement setTemplateIdentifier(String identifier) {
-
-		templateIdentifiers.clear();
-		templateIdentifiers.add(formatIdentifier(identifier)); // 
-		return this;
+	public IElement setTemplateIdentifier(String identifier) {
+		return setIdentifiers(new String[] { formatIdentifier(identifier) });
 	}
 
 	/**
@@ -702,25 +899,43 @@ public abstract class Element implements IElement {
 	 * @return IElement fluent interface, this;
 	 * @see com.stratahealth.test.framework.core.interfaces.elements.IElement#setTemplateIdentifiers(String...)
 	 */
-	synchronized public IElement setTemplateIdentifiers(String... identifiers) {
-
-		templateIdentifiers.clear();
-		for (String id : identifiers)
-			templateIdentifiers.add(formatIdentifier(id));
-
-		return this;
+	public IElement setTemplateIdentifiers(String... identifiers) {
+		return setIdentifiers(formatIdentifiers(identifiers));
 	}
 	
-	synchronized public Collection<String> getTemplateIdentifiers() {
+	/**
+	 * Method setIdentifiers.
+	 * 
+	 * Identifiers set while a session is bound belong to that session, since the Element may be 
+	 * shared by concurrent sessions; otherwise they are kept by the Element.
+	 * 
+	 * @param identifiers the formatted identifiers
+	 * @return IElement fluent interface, this;
+	 */
+	private IElement setIdentifiers(String[] identifiers) {
 		
-		// HACK : should traverse parents to see if template identifiers are set on the closest parent.
-		if (isTemplate && templateIdentifiers.size() == 0 && parent_element != null && parent_element.isTemplate() ) {
-			for(String s : parent_element.getTemplateIdentifiers())
-				templateIdentifiers.add(formatIdentifier(s));
-		}	 
+		if (! SessionContext.setTemplateIdentifiers(this, identifiers))
+			templateIdentifiers = identifiers;
 		
+		return this;
+	}
+	
+	public Collection<String> getTemplateIdentifiers() {
 		// return defensive copy
-		return new ArrayList<String>(templateIdentifiers);
+		return new ArrayList<String>(Arrays.asList(resolve().identifiers));
+	}
+	
+	private String[] formatIdentifiers(String... identifiers) { // $codepro.audit.disable methodJavadoc
+		
+		if (identifiers.length == 0)
+			return NO_IDENTIFIERS;
+		
+		final String[] formatted = new String[identifiers.length];
+		
+		for (int i = 0; i < identifiers.length; i++)
+			formatted[i] = formatIdentifier(identifiers[i]);
+		
+		return formatted;
 	}
 
 	private String formatIdentifier(String id) {
@@ -731,25 +946,34 @@ public abstract class Element implements IElement {
 	 * @param milliseconds
 	 * @return IElement fluent interface; this
 	 */
-	public IElement pause(long milliseconds) {
+	public IElement pause(final long milliseconds) {
 
-		try {
-			Thread.sleep(milliseconds); // $codepro.audit.disable disallowSleepUsage
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-
-		return this;
+		return trace(OperationType.PAUSE, "pause", new TracedOperation<IElement>() {
+			public IElement call() {
+				
+				try {
+					Thread.sleep(milliseconds); // $codepro.audit.disable disallowSleepUsage
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				
+				return Element.this;
+			}
+		});
 	}
 
 	/**
 	 * @param waitTimeInSeconds
 	 * @return IElement fluent interface; this
 	 */
-	public IElement waitUntilVisible(long waitTimeInSeconds) {
-				
-		getWaitHelper(waitTimeInSeconds).until(elementIsVisible(this.getParentPage().getParameters().getWaitDelegate()));	
-		return this;
+	public IElement waitUntilVisible(final long waitTimeInSeconds) {
+		
+		return trace(OperationType.WAIT, "waitUntilVisible", new TracedOperation<IElement>() {
+			public IElement call() {
+				getWaitHelper(waitTimeInSeconds).until(elementIsVisible(getParentPage().getParameters().getWaitDelegate()));
+				return Element.this;
+			}
+		});
 	}
 
 	/**
@@ -762,10 +986,110 @@ public abstract class Element implements IElement {
 	}
 
 	/**
+	 * Method snapshot.
+	 * @return ElementState
+	 * @see shelob.core.interfaces.elements.IElementCore#snapshot()
+	 */
+	public ElementState snapshot() {
+		return snapshot(new ElementState.Query());
+	}
+	
+	/**
+	 * Method snapshot.
+	 * @param query ElementState.Query
+	 * @return ElementState
+	 * @see shelob.core.interfaces.elements.IElementCore#snapshot(ElementState.Query)
+	 */
+	public ElementState snapshot(final ElementState.Query query) {
+		
+		return action("snapshot", new TracedOperation<ElementState>() {
+			public ElementState call() {
+				
+				final ElementState state = getState(query);
+				
+				if (state == null)
+					throw FailureCapture.attach(new NonExistentWebElementException("Attempt to call snapshot() on a WebElement that cannot be found." + Element.this.toString()), Element.this);
+				
+				return state;
+			}
+		});
+	}
+	
+	/**
+	 * Method snapshotWhenVisible.
+	 * @return ElementState
+	 * @see shelob.core.interfaces.elements.IWhenVisible#snapshotWhenVisible()
+	 */
+	public ElementState snapshotWhenVisible() {
+		return snapshotWhenVisible(new ElementState.Query(), getTimeout());
+	}
+	
+	/**
+	 * Method snapshotWhenVisible.
+	 * @param query ElementState.Query
+	 * @return ElementState
+	 * @see shelob.core.interfaces.elements.IWhenVisible#snapshotWhenVisible(ElementState.Query)
+	 */
+	public ElementState snapshotWhenVisible(ElementState.Query query) {
+		return snapshotWhenVisible(query, getTimeout());
+	}
+	
+	/**
+	 * Method snapshotWhenVisible.
+	 * 
+	 * Each poll is a single snapshot; the first one in which the element is displayed is returned.
+	 * 
+	 * @param query ElementState.Query
 	 * @param waitTimeInSeconds
+	 * @return ElementState
+	 * @see shelob.core.interfaces.elements.IWhenVisible#snapshotWhenVisible(ElementState.Query, int)
+	 */
+	public ElementState snapshotWhenVisible(final ElementState.Query query, final int waitTimeInSeconds) {
+		
+		try {
+			return trace(OperationType.WAIT, "snapshotWhenVisible", new TracedOperation<ElementState>() {
+				public ElementState call() {
+					return getWaitHelper(waitTimeInSeconds).until(stateIsVisible(query, getParentPage().getParameters().getWaitDelegate()));
+				}
+			});
+		} catch (TimeoutException e) {
+			throw failure(e);
+		}
+	}
+	
+	private ElementState getState(ElementState.Query query) { // $codepro.audit.disable methodJavadoc
+		
+		final Resolution resolution = resolve();
+		
+		if (resolution.isMissingIdentifiers())
+			throw new NonExistentWebElementException(
+					"An identifier must be set using setTemplateIdentifier() for any element behaving as a template.");
+		
+		CommandAttribution.attribute(this);
+		
+		final Object result = parent.getDriver().executeScript(ElementStateScript.SCRIPT, 
+				RequiredElementsScript.getStrategy(resolution.definition.getLookUp()), resolution.getLocator(), 
+				query.getAttributes(), query.getCssValues());
+		
+		return result instanceof Map ? new ElementState((Map<?, ?>) result) : null;
+	}
+	
+	/**
+	 * Method async.
+	 * @return IAsyncElement
+	 * @see shelob.core.interfaces.elements.IElementCore#async()
+	 */
+	public IAsyncElement async() {
+		return new AsyncElement(this);
+	}
+	
+	/**
+	 * @param waitTimeInSeconds; 0 not to wait, UNSET_TIMEOUT to use the default wait of the current session
 	 * @return IElement
 	 */
-	synchronized public IElement setTimeout(int waitTimeInSeconds) {
+	public IElement setTimeout(int waitTimeInSeconds) {
+		
+		checkArgument(waitTimeInSeconds >= UNSET_TIMEOUT, "waitTimeInSeconds must be positive, 0 or UNSET_TIMEOUT");
 		this.waitTimeInSeconds = waitTimeInSeconds;
 		return this;
 	}
@@ -773,8 +1097,16 @@ public abstract class Element implements IElement {
 	/**
 	 * @return int
 	 */
-	synchronized public int getTimeout() {
-		return waitTimeInSeconds;
+	public int getTimeout() {
+		
+		final int timeout = waitTimeInSeconds;
+		
+		if (timeout != UNSET_TIMEOUT)
+			return timeout;
+		
+		// otherwise the default wait of the current session
+		final ApplicationParameters parameters = parent.getParameters();
+		return parameters == null ? 0 : parameters.getDefaultWait();
 	}
 
 	/**
@@ -795,7 +1127,7 @@ public abstract class Element implements IElement {
 			clear();
 			return this;
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -817,7 +1149,7 @@ public abstract class Element implements IElement {
 			click();
 			return this;
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -842,7 +1174,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return findElements(arg0);	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -865,7 +1197,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return getAttribute(arg0);	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -886,7 +1218,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return getTagName();	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -907,7 +1239,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return getText();	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -928,7 +1260,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return isEnabled();	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -949,7 +1281,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return isSelected();	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -974,7 +1306,7 @@ public abstract class Element implements IElement {
 			sendKeys(arg0);
 			return this;	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 
@@ -1013,47 +1345,47 @@ public abstract class Element implements IElement {
 			submit();
 			return this;	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 	
 	/**
 	 * @return boolean
 	 */
-	synchronized public boolean isDisplayed(){
+	public boolean isDisplayed() {
 		
-		try {
-			return getWebElementImpl().isDisplayed();	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("isDisplayed", new TracedOperation<Boolean>() {
+			public Boolean call() {
+				return getWebElementImpl().isDisplayed();
+			}
+		});
 	}
 	
-	synchronized public String getCssValue(String value) {
+	public String getCssValue(final String value) {
 		
-		try {
-			return getWebElementImpl().getCssValue(value);	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("getCssValue", new TracedOperation<String>() {
+			public String call() {
+				return getWebElementImpl().getCssValue(value);
+			}
+		});
 	}
 
-	synchronized public Point getLocation() {
+	public Point getLocation() {
 		
-		try {
-			return getWebElementImpl().getLocation();	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("getLocation", new TracedOperation<Point>() {
+			public Point call() {
+				return getWebElementImpl().getLocation();
+			}
+		});
 	}
 
-	synchronized public Dimension getSize() {
+	public Dimension getSize() {
 		
-		try {
-			return getWebElementImpl().getSize();	
-		} catch (WebDriverException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
-		}
+		return action("getSize", new TracedOperation<Dimension>() {
+			public Dimension call() {
+				return getWebElementImpl().getSize();
+			}
+		});
 	}
 
 	public boolean isDisplayedWhenVisible(){
@@ -1066,7 +1398,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return isDisplayed();	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 	
@@ -1080,7 +1412,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return getCssValue(value);	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}	
 	}
 	
@@ -1094,7 +1426,7 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return getLocation();	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
 		}
 	}
 	
@@ -1108,15 +1440,84 @@ public abstract class Element implements IElement {
 			waitUntilVisible(waitTimeInSeconds);
 			return getSize();	
 		} catch (TimeoutException e){
-			throw new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage()));
+			throw failure(e);
+		}
+	}
+	
+	/*
+	 * FAILURES
+	 */
+	private AutomationException failure(Exception e) { // $codepro.audit.disable methodJavadoc
+		return FailureCapture.attach(new AutomationException(String.format("Automation Exception thrown for -> %s : %s", this.toString(), e.getMessage())), this);
+	}
+	
+	/*
+	 * TRACING
+	 */
+	IOperationListener getOperationListener() { // $codepro.audit.disable methodJavadoc
+		
+		final ApplicationParameters parameters = parent.getParameters();
+		return parameters == null ? null : parameters.getOperationListener();
+	}
+	
+	/**
+	 * @param type the kind of operation
+	 * @param operation the name of the operation
+	 * @param body the operation
+	 * @return the result of the operation, reported to the IOperationListener of the session
+	 */
+	<V> V trace(OperationType type, String operation, TracedOperation<V> body) {
+		return body.run(getOperationListener(), type, operation, parent, this);
+	}
+	
+	/**
+	 * @param operation the name of the action
+	 * @param body the action
+	 * @return the result of the action; a WebDriverException is rethrown as an AutomationException
+	 */
+	<V> V action(String operation, TracedOperation<V> body) {
+		
+		try {
+			return trace(OperationType.ACTION, operation, body);
+		} catch (NonExistentWebElementException e) {
+			// thrown uncaptured by the NonExistentElement; a nested action (e.g. a retried click) may have captured it already
+			throw e.getArtifacts().isEmpty() ? FailureCapture.attach(e, this) : e;
+		} catch (WebDriverException e) {
+			throw failure(e);
 		}
 	}
 	
 	/*
 	 * CONDITIONS
 	 */
+	private ExpectedCondition<ElementState> stateIsVisible(final ElementState.Query query, final IWaitDelegate delegate) { // $codepro.audit.disable methodJavadoc
+		
+		final IdentityCheck identity = new IdentityCheck(parent);
+		
+		return new ExpectedCondition<ElementState>() {
+			
+			public ElementState apply(WebDriver driver) {
+				
+				final ElementState state = getState(query);
+				
+				if (delegate != null)
+					delegate.run();
+				
+				if (state != null && state.isDisplayed())
+					return state;
+				
+				// abort the wait when the browser has landed on another page
+				identity.afterFailedPoll();
+				
+				return null;
+			}
+		};
+	}
+	
 	private ExpectedCondition<WebElement> elementIsVisible(final IWaitDelegate delegate) { // $codepro.audit.disable
 																// methodJavadoc
+			final IdentityCheck identity = new IdentityCheck(parent);
+			
 			return new ExpectedCondition<WebElement>() {
 
 				public WebElement apply(WebDriver driver) {
@@ -1128,16 +1529,16 @@ public abstract class Element implements IElement {
 						if (delegate != null)
 							delegate.run();
 						
-						if (e instanceof NonExistentElement)
-							return null;
-						
-						if (e.isDisplayed())
+						if (! (e instanceof NonExistentElement) && e.isDisplayed())
 							return e;
 						
 					} catch (StaleElementReferenceException exception) {
 						// Probably want to log when this happens
 						elementIsVisible(delegate);
 					}
+					
+					// abort the wait when the browser has landed on another page
+					identity.afterFailedPoll();
 
 					return null;
 				}
@@ -51,7 +51,7 @@ public abstract class ElementBuilder<T> {
 	// Optional parameters
 	// HACK : making this public due to visibility problems is probably a bad idea ...
 	public String label;
-	protected int defaultWaitIntervalInSeconds = 0;
+	protected int defaultWaitIntervalInSeconds = Element.UNSET_TIMEOUT;
 	
 	protected List<String> localizations;
 	
@@ -117,7 +117,7 @@ public abstract class ElementBuilder<T> {
 	}
 	
 	/**
-	 * @param interval
+	 * @param interval the wait in seconds; 0 not to wait
 	 * @return this; fluent interface
 	 */
 	@SuppressWarnings("unchecked")
@@ -162,15 +162,10 @@ public abstract class ElementBuilder<T> {
 	 */
 	private void setWaitTimeOut(IElement control) {
 		
-		// The builder defaultWaitIntervalInSeconds ALWAYS takes precedence
-		if (defaultWaitIntervalInSeconds > 0)
+		// The builder defaultWaitIntervalInSeconds ALWAYS takes precedence; otherwise the element
+		// uses the ApplicationParameter setting of whichever session it is running in
+		if (defaultWaitIntervalInSeconds != Element.UNSET_TIMEOUT)
     		control.setTimeout(defaultWaitIntervalInSeconds);
-    	else {
-    		
-    		// Set the timeout globally using the ApplicationParameter setting
-    		if (parent.getParameters().getDefaultWait() > 0)
-    			control.setTimeout(parent.getParameters().getDefaultWait());
-    	}
 	}
 	
 	/**
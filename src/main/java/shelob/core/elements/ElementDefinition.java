@@ -0,0 +1,224 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.elements;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import shelob.core.LookUp;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The static definition of an Element : it's LookUp strategy, locator, label, localizations 
+ * and flags.
+ * 
+ * Definitions are immutable and canonical. Locators, labels and localizations are interned 
+ * and equal definitions are shared, so a generated page model with tens of thousands of 
+ * elements holds one copy of each distinct definition. Localizations are held in an array 
+ * and elements without any share a single empty array. Every with*() method returns the 
+ * canonical definition with the change applied.
+ */
+@Immutable
+public final class ElementDefinition {
+
+	private static final Interner<String> STRINGS = Interners.newWeakInterner();
+	private static final Interner<ElementDefinition> DEFINITIONS = Interners.newWeakInterner();
+	
+	private static final String[] NONE = new String[0];
+	
+	private static final byte REQUIRED = 1;
+	private static final byte TEMPLATE = 2;
+	
+	private final LookUp lookup;
+	private final String locator;
+	private final String label;
+	private final String[] localizations;
+	private final byte flags;
+	private final int hash;
+	
+	/**
+	 * Limited Scope Constructor; all strings are already interned
+	 */
+	private ElementDefinition(LookUp lookup, String locator, @Nullable String label, String[] localizations, byte flags) {
+		
+		this.lookup = lookup;
+		this.locator = locator;
+		this.label = label;
+		this.localizations = localizations;
+		this.flags = flags;
+		
+		hash = Objects.hashCode(lookup, locator, label, flags) * 31 + Arrays.hashCode(localizations);
+	}
+	
+	/**
+	 * @param lookup the LookUp strategy used to locate the element
+	 * @param locator the locator string used with the LookUp strategy
+	 * @param label the label of the element; may be null
+	 * @return the canonical ElementDefinition
+	 */
+	public static ElementDefinition of(LookUp lookup, String locator, @Nullable String label) {
+		return canonical(checkNotNull(lookup), intern(checkNotNull(locator)), intern(label), NONE, (byte) 0);
+	}
+	
+	private static ElementDefinition canonical(LookUp lookup, String locator, String label, String[] localizations, byte flags) { // $codepro.audit.disable methodJavadoc
+		return DEFINITIONS.intern(new ElementDefinition(lookup, locator, label, localizations, flags));
+	}
+	
+	private static String intern(@Nullable String s) { // $codepro.audit.disable methodJavadoc
+		return s == null ? null : STRINGS.intern(s);
+	}
+	
+	/**
+	 * @param localization an alternative label for the element
+	 * @return the canonical ElementDefinition with the localization added
+	 */
+	public ElementDefinition withLocalization(String localization) {
+		
+		final String[] added = Arrays.copyOf(localizations, localizations.length + 1);
+		added[localizations.length] = intern(localization);
+		
+		return canonical(lookup, locator, label, added, flags);
+	}
+	
+	/**
+	 * @return the canonical ElementDefinition marked as required
+	 */
+	public ElementDefinition withRequired() {
+		return isRequired() ? this : canonical(lookup, locator, label, localizations, (byte) (flags | REQUIRED));
+	}
+	
+	/**
+	 * @return the canonical ElementDefinition marked as a template
+	 */
+	public ElementDefinition withTemplate() {
+		return isTemplate() ? this : canonical(lookup, locator, label, localizations, (byte) (flags | TEMPLATE));
+	}
+	
+	/**
+	 * @return the LookUp strategy used to locate the element
+	 */
+	public LookUp getLookUp() {
+		return lookup;
+	}
+	
+	/**
+	 * @return the locator; a format string when the element is a template
+	 */
+	public String getLocator() {
+		return locator;
+	}
+	
+	/**
+	 * @return the label, or null when none was set
+	 */
+	@Nullable
+	public String getLabel() {
+		return label;
+	}
+	
+	/**
+	 * @return the localizations, not including the label
+	 */
+	public List<String> getLocalizations() {
+		return localizations.length == 0 ? Collections.<String>emptyList() : Collections.unmodifiableList(Arrays.asList(localizations));
+	}
+	
+	/**
+	 * @return true when the element has localizations
+	 */
+	public boolean hasLocalizations() {
+		return localizations.length > 0;
+	}
+	
+	/**
+	 * @return true when the element is required
+	 */
+	public boolean isRequired() {
+		return (flags & REQUIRED) != 0;
+	}
+	
+	/**
+	 * @return true when the locator is a template
+	 */
+	public boolean isTemplate() {
+		return (flags & TEMPLATE) != 0;
+	}
+	
+	/**
+	 * Method hashCode.
+	 * @return int
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	/**
+	 * Method equals.
+	 * @param o Object
+	 * @return boolean
+	 */
+	@Override
+	public boolean equals(Object o) {
+		
+		if (this == o)
+			return true;
+		
+		if (! (o instanceof ElementDefinition))
+			return false;
+		
+		final ElementDefinition other = (ElementDefinition) o;
+		
+		return hash == other.hash 
+				&& lookup == other.lookup 
+				&& flags == other.flags 
+				&& locator.equals(other.locator) 
+				&& Objects.equal(label, other.label) 
+				&& Arrays.equals(localizations, other.localizations);
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return "LookUp : " + lookup + " Locator : " + locator + " Label : " + label 
+				+ " Localizations : " + Arrays.toString(localizations) 
+				+ " IsRequired : " + isRequired() + " IsTemplate : " + isTemplate();
+	}
+}
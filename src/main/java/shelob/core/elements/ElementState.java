@@ -0,0 +1,289 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.elements;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+
+import com.google.common.base.Objects;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The state of an element at one point in time, as returned by IElement.snapshot() : 
+ * visibility, enabled and selected flags, text, tag name, value, location and size, together 
+ * with any attributes and CSS values named by a Query. Every property is fetched by a single 
+ * in-page script, so assertions over several properties cost one round trip.
+ */
+@Immutable
+public final class ElementState {
+
+	private final boolean displayed;
+	private final boolean enabled;
+	private final boolean selected;
+	private final String text;
+	private final String tagName;
+	private final String value;
+	private final Point location;
+	private final Dimension size;
+	private final Map<String, String> attributes;
+	private final Map<String, String> cssValues;
+	
+	/**
+	 * Names the attributes and CSS values to include in a snapshot, e.g.
+	 * 
+	 * 		element.snapshot(new ElementState.Query().attributes("href", "class").cssValues("color"));
+	 * 
+	 * @author melllaguno
+	 */
+	public static class Query {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		private final List<String> attributes = new ArrayList<String>();
+		private final List<String> cssValues = new ArrayList<String>();
+		
+		/**
+		 * @param names the attributes to include
+		 * @return Query
+		 */
+		public Query attributes(String... names) {
+			for (String name : names)
+				attributes.add(checkNotNull(name));
+			return this;
+		}
+		
+		/**
+		 * @param properties the CSS properties to include
+		 * @return Query
+		 */
+		public Query cssValues(String... properties) {
+			for (String property : properties)
+				cssValues.add(checkNotNull(property));
+			return this;
+		}
+		
+		/**
+		 * @return the attributes to include
+		 */
+		List<String> getAttributes() {
+			return new ArrayList<String>(attributes);
+		}
+		
+		/**
+		 * @return the CSS properties to include
+		 */
+		List<String> getCssValues() {
+			return new ArrayList<String>(cssValues);
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param result the map returned by the snapshot script
+	 */
+	ElementState(Map<?, ?> result) {
+		
+		displayed = getBoolean(result, "displayed");
+		enabled = getBoolean(result, "enabled");
+		selected = getBoolean(result, "selected");
+		text = getString(result, "text", "");
+		tagName = getString(result, "tagName", "");
+		value = getString(result, "value", null);
+		location = new Point(getInt(result, "x"), getInt(result, "y"));
+		size = new Dimension(getInt(result, "width"), getInt(result, "height"));
+		attributes = getStrings(result.get("attributes"));
+		cssValues = getStrings(result.get("css"));
+	}
+	
+	/**
+	 * @return true when the element was displayed
+	 */
+	public boolean isDisplayed() {
+		return displayed;
+	}
+	
+	/**
+	 * @return true when the element was enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @return true when the element (an option, checkbox or radio button) was selected
+	 */
+	public boolean isSelected() {
+		return selected;
+	}
+	
+	/**
+	 * @return the visible text of the element
+	 */
+	public String getText() {
+		return text;
+	}
+	
+	/**
+	 * @return the tag name of the element, in lower case
+	 */
+	public String getTagName() {
+		return tagName;
+	}
+	
+	/**
+	 * @return the value of the element, or null
+	 */
+	@Nullable
+	public String getValue() {
+		return value;
+	}
+	
+	/**
+	 * @return the location of the element on the page
+	 */
+	public Point getLocation() {
+		return location;
+	}
+	
+	/**
+	 * @return the size of the element
+	 */
+	public Dimension getSize() {
+		return size;
+	}
+	
+	/**
+	 * @param name the name of an attribute included by the Query
+	 * @return the value of the attribute, or null when the element did not have it
+	 */
+	@Nullable
+	public String getAttribute(String name) {
+		return attributes.get(name);
+	}
+	
+	/**
+	 * @return the attributes included by the Query
+	 */
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+	
+	/**
+	 * @param property the name of a CSS property included by the Query
+	 * @return the computed value of the property, or null
+	 */
+	@Nullable
+	public String getCssValue(String property) {
+		return cssValues.get(property);
+	}
+	
+	/**
+	 * @return the CSS values included by the Query
+	 */
+	public Map<String, String> getCssValues() {
+		return cssValues;
+	}
+	
+	/**
+	 * Method equals.
+	 * @param obj Object
+	 * @return boolean
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		
+		if (this == obj)
+			return true;
+		
+		if (! (obj instanceof ElementState))
+			return false;
+		
+		final ElementState other = (ElementState) obj;
+		
+		return displayed == other.displayed && enabled == other.enabled && selected == other.selected
+				&& text.equals(other.text) && tagName.equals(other.tagName) && Objects.equal(value, other.value)
+				&& location.equals(other.location) && size.equals(other.size)
+				&& attributes.equals(other.attributes) && cssValues.equals(other.cssValues);
+	}
+	
+	/**
+	 * Method hashCode.
+	 * @return int
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(displayed, enabled, selected, text, tagName, value, location, size, attributes, cssValues);
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("<%s> Text : %s Value : %s Displayed : %b Enabled : %b Selected : %b Location : %s Size : %s Attributes : %s CSS : %s", 
+							 tagName, text, value, displayed, enabled, selected, location, size, attributes, cssValues);
+	}
+	
+	private static boolean getBoolean(Map<?, ?> result, String key) { // $codepro.audit.disable methodJavadoc
+		return Boolean.TRUE.equals(result.get(key));
+	}
+	
+	private static String getString(Map<?, ?> result, String key, String absent) { // $codepro.audit.disable methodJavadoc
+		
+		final Object raw = result.get(key);
+		return raw == null ? absent : raw.toString();
+	}
+	
+	private static int getInt(Map<?, ?> result, String key) { // $codepro.audit.disable methodJavadoc
+		
+		final Object raw = result.get(key);
+		return raw instanceof Number ? (int) Math.round(((Number) raw).doubleValue()) : 0;
+	}
+	
+	private static Map<String, String> getStrings(Object raw) { // $codepro.audit.disable methodJavadoc
+		
+		if (! (raw instanceof Map))
+			return Collections.emptyMap();
+		
+		final Map<String, String> values = new LinkedHashMap<String, String>();
+		
+		for (Map.Entry<?, ?> entry : ((Map<?, ?>) raw).entrySet())
+			values.put(String.valueOf(entry.getKey()), entry.getValue() == null ? null : entry.getValue().toString());
+		
+		return Collections.unmodifiableMap(values);
+	}
+}
@@ -0,0 +1,100 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.elements;
+
+import shelob.core.page.RequiredElementsScript;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The in-page script used by Element.snapshot() to look an element up and read it's state in a 
+ * single executeScript() call.
+ * 
+ * The script takes the wire protocol lookup strategy, the locator, a list of attribute names and a 
+ * list of CSS properties. It returns null when the element cannot be found, otherwise a map of the 
+ * element's state (see ElementState). Visibility and text are approximated in-page; WebDriver's own 
+ * isDisplayed() and getText() remain the reference. Where getBoundingClientRect() is not supported 
+ * (e.g. HtmlUnit), the location and size are computed from the offset properties.
+ */
+public final class ElementStateScript {
+	
+	/**
+	 * Identifies the script; the FakeCommandExecutor answers scripts containing this marker. 
+	 */
+	public static final String MARKER = "shelob:snapshot";
+	
+	static final String SCRIPT = 
+		"/* " + MARKER + " */\n" +
+		RequiredElementsScript.LOOKUP +
+		"var e = find(arguments[0], arguments[1]);\n" +
+		"if (e == null) return null;\n" +
+		"var style = window.getComputedStyle ? window.getComputedStyle(e, null) : e.currentStyle;\n" +
+		"function shown(n) {\n" +
+		"  for (; n && n.nodeType == 1; n = n.parentNode) {\n" +
+		"    var s = window.getComputedStyle ? window.getComputedStyle(n, null) : n.currentStyle;\n" +
+		"    if (s.display == 'none') return false;\n" +
+		"  }\n" +
+		"  return style.visibility != 'hidden' && style.visibility != 'collapse' && e.type != 'hidden';\n" +
+		"}\n" +
+		"function bounds(n) {\n" +
+		"  if (n.getBoundingClientRect) return n.getBoundingClientRect();\n" +
+		"  var left = -(window.pageXOffset || 0), top = -(window.pageYOffset || 0);\n" +
+		"  for (var p = n; p; p = p.offsetParent) { left += p.offsetLeft || 0; top += p.offsetTop || 0; }\n" +
+		"  return { left: left, top: top, width: n.offsetWidth || 0, height: n.offsetHeight || 0 };\n" +
+		"}\n" +
+		"var tag = e.tagName.toLowerCase(), rect = bounds(e), displayed = shown(e);\n" +
+		"var state = {\n" +
+		"  displayed: displayed,\n" +
+		"  enabled: !e.disabled,\n" +
+		"  selected: tag == 'option' ? !!e.selected : !!e.checked,\n" +
+		"  text: displayed ? (e.innerText != null ? e.innerText : e.textContent || '').replace(/^\\s+|\\s+$/g, '') : '',\n" +
+		"  tagName: tag,\n" +
+		"  value: e.value != null ? String(e.value) : e.getAttribute('value'),\n" +
+		"  x: Math.round(rect.left + (window.pageXOffset || 0)),\n" +
+		"  y: Math.round(rect.top + (window.pageYOffset || 0)),\n" +
+		"  width: Math.round(rect.width),\n" +
+		"  height: Math.round(rect.height),\n" +
+		"  attributes: {},\n" +
+		"  css: {}\n" +
+		"};\n" +
+		"for (var i = 0; i < arguments[2].length; i++) {\n" +
+		"  var name = arguments[2][i], p = e[name];\n" +
+		"  if (typeof p == 'boolean') state.attributes[name] = p ? 'true' : null;\n" +
+		"  else if (p != null && typeof p != 'object' && typeof p != 'function') state.attributes[name] = String(p);\n" +
+		"  else state.attributes[name] = e.getAttribute(name);\n" +
+		"}\n" +
+		"function css(n) {\n" +
+		"  if (style.getPropertyValue) return style.getPropertyValue(n);\n" +
+		"  return style[n.replace(/-([a-z])/g, function(m, c) { return c.toUpperCase(); })];\n" +
+		"}\n" +
+		"for (var j = 0; j < arguments[3].length; j++) state.css[arguments[3][j]] = css(arguments[3][j]);\n" +
+		"return state;";
+	
+	/**
+	 * Limited Scope Default Constructor
+	 */
+	private ElementStateScript() {
+	}
+}
@@ -0,0 +1,63 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.elements;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The child operations a CompositeElement can fuse into a single scripted batch. A child 
+ * declares the operations it allows through IFusible; any other operation is run through 
+ * the child's own WebDriver calls.
+ */
+public enum FusedOperation {
+	
+	/** reads the value of an input, or the value of the selected option */
+	READ_VALUE("readValue"),
+	
+	/** reads the visible text of an element, or the text of the selected option */
+	READ_TEXT("readText"),
+	
+	/** replaces the value of an input, firing input and change events */
+	SET_VALUE("setValue"),
+	
+	/** selects the option with the given visible text, firing a change event */
+	SELECT_BY_VISIBLE_TEXT("selectByVisibleText"),
+	
+	/** selects the option with the given value, firing a change event */
+	SELECT_BY_VALUE("selectByValue");
+	
+	private final String script;
+	
+	private FusedOperation(String script) {
+		this.script = script;
+	}
+	
+	/**
+	 * @return the name of the operation in the composite script
+	 */
+	String getScriptName() {
+		return script;
+	}
+}
@@ -40,6 +40,7 @@ import org.openqa.selenium.support.ui.Wait;
 
 import shelob.core.LookUp;
 import shelob.core.exceptions.NonExistentWebElementException;
+import shelob.core.interfaces.elements.IAsyncElement;
 import shelob.core.interfaces.elements.IElement;
 import shelob.core.interfaces.elements.IElementCore;
 import shelob.core.interfaces.elements.IWhenVisible;
@@ -50,6 +51,9 @@ import shelob.core.interfaces.page.IPage;
  * @author melllaguno
  *
  * Null Object : NonExistentElement that is used when a corresponding WebElement is not found
+ * 
+ * Failures are not captured here, since callers such as Element.isEnabled() treat the exception as 
+ * an answer; Element captures them where they leave it's API.
  * @version $Revision: 1.0 $
  */
 @Immutable
@@ -201,6 +205,16 @@ public final class NonExistentElement implements WebElement, IElementCore, IWhen
 		throw new NonExistentWebElementException("Attempt to call getLocator() on a WebElement that cannot be found." + caller.toString());
 	}
 
+	/**
+	 * delegate method
+	 * @param identifiers String...
+	 * @return String
+	 * @see shelob.core.interfaces.elements.IElementCore#getLocatorFor(String...)
+	 */
+	public String getLocatorFor(String... identifiers) {
+		throw new NonExistentWebElementException("Attempt to call getLocatorFor() on a WebElement that cannot be found." + caller.toString());
+	}
+
 	/**
 	 * delegate method
 	 * @return LookUp
@@ -401,6 +415,58 @@ public final class NonExistentElement implements WebElement, IElementCore, IWhen
 		throw new NonExistentWebElementException("Attempt to call setTimeout() on a WebElement that cannot be found." + caller.toString());
 	}
 
+	/**
+	 * Method snapshot
+	 * @return ElementState
+	 */
+	public ElementState snapshot() {
+		throw new NonExistentWebElementException("Attempt to call snapshot() on a WebElement that cannot be found." + caller.toString());
+	}
+
+	/**
+	 * Method snapshot
+	 * @param query ElementState.Query
+	 * @return ElementState
+	 */
+	public ElementState snapshot(ElementState.Query query) {
+		throw new NonExistentWebElementException("Attempt to call snapshot() on a WebElement that cannot be found." + caller.toString());
+	}
+
+	/**
+	 * Method snapshotWhenVisible
+	 * @return ElementState
+	 */
+	public ElementState snapshotWhenVisible() {
+		throw new NonExistentWebElementException("Attempt to call snapshotWhenVisible() on a WebElement that cannot be found." + caller.toString());
+	}
+
+	/**
+	 * Method snapshotWhenVisible
+	 * @param query ElementState.Query
+	 * @return ElementState
+	 */
+	public ElementState snapshotWhenVisible(ElementState.Query query) {
+		throw new NonExistentWebElementException("Attempt to call snapshotWhenVisible() on a WebElement that cannot be found." + caller.toString());
+	}
+
+	/**
+	 * Method snapshotWhenVisible
+	 * @param query ElementState.Query
+	 * @param waitTimeInSeconds
+	 * @return ElementState
+	 */
+	public ElementState snapshotWhenVisible(ElementState.Query query, int waitTimeInSeconds) {
+		throw new NonExistentWebElementException("Attempt to call snapshotWhenVisible() on a WebElement that cannot be found." + caller.toString());
+	}
+
+	/**
+	 * Method async
+	 * @return IAsyncElement
+	 */
+	public IAsyncElement async() {
+		throw new NonExistentWebElementException("Attempt to call async() on a WebElement that cannot be found." + caller.toString());
+	}
+
 	/**
 	 * Method getTimeout
 	 * @return IElement
@@ -0,0 +1,87 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.exceptions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import shelob.core.interfaces.IHasArtifacts;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * ArtifactException : the failures which link to the artifacts captured when they occurred. 
+ * 		The paths of the artifacts are appended to the message.
+ */
+public abstract class ArtifactException extends RuntimeException implements IHasArtifacts {
+
+	private final List<File> artifacts = Collections.synchronizedList(new ArrayList<File>());
+
+	/**
+	 * ArtifactException Default Constructor
+	 * 
+	 * @param message the message which accompanies this exception
+	 */
+	protected ArtifactException(String message) {
+		super(message);
+	}
+	
+	/**
+	 * Method attachArtifact.
+	 * @param artifact File
+	 * @see shelob.core.interfaces.IHasArtifacts#attachArtifact(File)
+	 */
+	public void attachArtifact(File artifact) {
+		artifacts.add(artifact);
+	}
+	
+	/**
+	 * Method getArtifacts.
+	 * @return List<File>
+	 * @see shelob.core.interfaces.IHasArtifacts#getArtifacts()
+	 */
+	public List<File> getArtifacts() {
+		synchronized (artifacts) {
+			return new ArrayList<File>(artifacts);
+		}
+	}
+	
+	/**
+	 * Method getMessage.
+	 * @return the message, followed by the paths of any captured artifacts
+	 */
+	@Override
+	public String getMessage() {
+		
+		final List<File> attached = getArtifacts();
+		
+		if (attached.isEmpty())
+			return super.getMessage();
+		
+		return super.getMessage() + System.getProperty("line.separator") + "Artifacts : " + attached;
+	}
+}
@@ -1,8 +1,8 @@
 package shelob.core.exceptions;
 
-public class AutomationException extends RuntimeException {
+public class AutomationException extends ArtifactException {
 
 	public AutomationException(String message){
 		super(message);
-	} 
+	}
 }
@@ -0,0 +1,62 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.exceptions;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ * 
+ * Thrown when content cannot be retrieved over HTTP with the session of the browser, 
+ * e.g. the server refused the request or the connection failed.
+ */
+public class HttpRetrievalException extends AutomationException {
+
+	private final String url;
+	private final int status;
+	
+	/**
+	 * @param message the message accompanying this exception
+	 * @param url the URL which was requested
+	 * @param status the HTTP status of the response, or -1 when no response was received
+	 */
+	public HttpRetrievalException(String message, String url, int status) {
+		super(message);
+		this.url = url;
+		this.status = status;
+	}
+	
+	/**
+	 * @return the URL which was requested
+	 */
+	public String getUrl() {
+		return url;
+	}
+	
+	/**
+	 * @return the HTTP status of the response, or -1 when no response was received
+	 */
+	public int getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,54 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.exceptions;
+
+import shelob.core.interfaces.page.IPage;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ * 
+ * Thrown when a page is navigated to with a driver it is not compatible with, e.g. the 
+ * in-process HtmlUnit driver for a page which does not implement ILightweightCompatible.
+ */
+public class IncompatibleDriverException extends AutomationException {
+
+	private final transient IPage page;
+	
+	/**
+	 * @param message the message accompanying this exception
+	 * @param page the page which is not compatible with the driver
+	 */
+	public IncompatibleDriverException(String message, IPage page) {
+		super(message);
+		this.page = page;
+	}
+	
+	/**
+	 * @return the page which is not compatible with the driver
+	 */
+	public IPage getPage() {
+		return page;
+	}
+}
@@ -30,7 +30,7 @@ package shelob.core.exceptions;
  * NonExistentWebElementException : thrown when a WebElement with the given 
  * 		specifications cannot be found through WebDriver.
  */
-public class NonExistentWebElementException extends RuntimeException {
+public class NonExistentWebElementException extends ArtifactException {
 
 	/**
 	 * NonExistentWebElementException Default Constructor
@@ -0,0 +1,57 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.exceptions;
+
+import java.util.Collections;
+import java.util.List;
+
+import shelob.core.interfaces.elements.IElement;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * RequiredElementMissingException : thrown when one or more of the required elements 
+ * 		of a page are not present once the page has loaded.
+ */
+public class RequiredElementMissingException extends NonExistentWebElementException {
+
+	private final List<IElement> missing;
+	
+	/**
+	 * @param message the message which accompanies this exception
+	 * @param missing the required elements which could not be found
+	 */
+	public RequiredElementMissingException(String message, List<IElement> missing) {
+		super(message);
+		this.missing = Collections.unmodifiableList(missing);
+	}
+	
+	/**
+	 * @return the required elements which could not be found
+	 */
+	public List<IElement> getMissingElements() {
+		return missing;
+	}
+}
@@ -0,0 +1,177 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.fake;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriverException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import shelob.core.interfaces.IScriptHandler;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Answers the CompositeElement batch script against the FakeDocument, in place of a JavaScript engine. 
+ * As in the browser, every child is looked up and checked before any operation is applied.
+ */
+final class CompositeScriptHandler implements IScriptHandler {
+
+	public Object execute(FakeDocument document, String script, List<Object> arguments) {
+		
+		final Element root = first(document, document.getDocument(), (String) arguments.get(0), (String) arguments.get(1));
+		
+		if (root == null)
+			return status("root", -1);
+		
+		// nested arguments arrive as collections rather than lists
+		final List<List<?>> operations = new ArrayList<List<?>>();
+		
+		for (Object operation : (Collection<?>) arguments.get(2))
+			operations.add(new ArrayList<Object>((Collection<?>) operation));
+		
+		final List<Element> targets = new ArrayList<Element>();
+		final List<Element> options = new ArrayList<Element>();
+		
+		for (int i = 0; i < operations.size(); i++) {
+			
+			final List<?> operation = operations.get(i);
+			final String locator = (String) operation.get(1);
+			final String name = (String) operation.get(2);
+			final Element target = first(document, root, (String) operation.get(0), 
+					"xpath".equals(operation.get(0)) && locator.startsWith("/") ? "." + locator : locator);
+			
+			if (target == null)
+				return status("missing", i);
+			
+			if (! name.startsWith("read") && (target.hasAttribute("disabled") || ! FakeDocument.isDisplayed(target)))
+				return status("hidden", i);
+			
+			Element option = null;
+			
+			if (name.startsWith("select") && (option = option(target, name, (String) operation.get(3))) == null)
+				return status("option", i);
+			
+			targets.add(target);
+			options.add(option);
+		}
+		
+		final List<Object> results = new ArrayList<Object>();
+		
+		for (int i = 0; i < operations.size(); i++) {
+			
+			final Element target = targets.get(i);
+			final String name = (String) operations.get(i).get(2);
+			final boolean select = "select".equals(target.getTagName().toLowerCase(Locale.ENGLISH));
+			
+			if ("readValue".equals(name)) {
+				
+				final Element selected = select ? selected(target) : null;
+				results.add(select ? (selected == null ? null : FakeCommandExecutor.getAttribute(selected, "value")) : FakeCommandExecutor.getAttribute(target, "value"));
+			} else if ("readText".equals(name)) {
+				
+				final Element selected = select ? selected(target) : target;
+				results.add(selected == null ? null : FakeDocument.getText(selected));
+			} else if ("setValue".equals(name)) {
+				
+				target.setAttribute("value", (String) operations.get(i).get(3));
+				results.add(null);
+			} else {
+				
+				final NodeList all = target.getElementsByTagName("option");
+				
+				for (int j = 0; j < all.getLength(); j++)
+					((Element) all.item(j)).removeAttribute("selected");
+				
+				options.get(i).setAttribute("selected", "selected");
+				results.add(null);
+			}
+		}
+		
+		final Map<String, Object> outcome = status("ok", -1);
+		outcome.put("results", results);
+		
+		return outcome;
+	}
+	
+	private static Element first(FakeDocument document, Node context, String using, String value) {
+		
+		try {
+			final List<Element> found = document.find(context, using, value);
+			return found.isEmpty() ? null : found.get(0);
+		} catch (WebDriverException e) {
+			// an invalid locator matches nothing, as in the browser
+			return null;
+		}
+	}
+	
+	private static Element option(Element select, String operation, String argument) {
+		
+		final NodeList all = select.getElementsByTagName("option");
+		
+		for (int j = 0; j < all.getLength(); j++) {
+			
+			final Element option = (Element) all.item(j);
+			final Object match = "selectByValue".equals(operation) ? FakeCommandExecutor.getAttribute(option, "value") : FakeDocument.getText(option);
+			
+			if (argument.equals(match))
+				return option;
+		}
+		
+		return null;
+	}
+	
+	private static Element selected(Element select) {
+		
+		final NodeList all = select.getElementsByTagName("option");
+		
+		for (int j = 0; j < all.getLength(); j++) {
+			
+			if (((Element) all.item(j)).hasAttribute("selected"))
+				return (Element) all.item(j);
+		}
+		
+		// the first option is selected by default
+		return all.getLength() > 0 ? (Element) all.item(0) : null;
+	}
+	
+	private static Map<String, Object> status(String status, int index) {
+		
+		final Map<String, Object> outcome = new HashMap<String, Object>();
+		outcome.put("status", status);
+		
+		if (index >= 0)
+			outcome.put("index", Long.valueOf(index));
+		
+		return outcome;
+	}
+}
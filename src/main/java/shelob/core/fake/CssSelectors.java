@@ -0,0 +1,418 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.fake;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.openqa.selenium.InvalidSelectorException;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Translates CSS selectors into equivalent XPath 1.0 expressions, so that the FakeDocument can
+ * evaluate LookUp.ByCSSSelector with the same engine as every other strategy.
+ * 
+ * Supported : type and universal selectors, #id, .class, attribute selectors ([a], =, ~=, |=,
+ * ^=, $=, *=), the descendant, child (&gt;), adjacent (+) and general sibling (~) combinators, 
+ * selector groups, and the :first-child, :last-child, :only-child, :nth-child(), :first-of-type, 
+ * :last-of-type, :checked, :disabled, :enabled, :empty and :not() pseudo-classes.
+ * 
+ * Pseudo-elements and dynamic pseudo-classes (:hover, :focus, ...) can't match a static 
+ * document and are reported as invalid selectors.
+ */
+final class CssSelectors {
+
+	private final String selector;
+	private int position;
+	
+	/*
+	 * A type selector and the conditions attached to it
+	 */
+	private static final class Compound {
+		
+		private String tag = "*";
+		private final List<String> conditions = new ArrayList<String>();
+		
+		String toStep() {
+			
+			final StringBuilder s = new StringBuilder(tag);
+			
+			for (String condition : conditions)
+				s.append('[').append(condition).append(']');
+			
+			return s.toString();
+		}
+		
+		String toTest() {
+			
+			final StringBuilder s = new StringBuilder();
+			
+			if (! "*".equals(tag))
+				s.append("self::").append(tag);
+			
+			for (String condition : conditions) {
+				
+				if (s.length() > 0)
+					s.append(" and ");
+				s.append(condition);
+			}
+			
+			return s.length() == 0 ? "true()" : s.toString();
+		}
+	}
+	
+	private CssSelectors(String selector) {
+		this.selector = selector;
+	}
+	
+	/**
+	 * @param selector the CSS selector
+	 * @param relative a flag indicating whether the expression is evaluated relative to an element
+	 * @return String the equivalent XPath expression
+	 * @throws InvalidSelectorException when the selector can't be parsed or is unsupported
+	 */
+	static String toXpath(String selector, boolean relative) {
+		return new CssSelectors(selector.trim()).parseGroup(relative ? ".//" : "//");
+	}
+	
+	private String parseGroup(String prefix) {
+		
+		final StringBuilder xpath = new StringBuilder();
+		
+		while (true) {
+			
+			if (xpath.length() > 0)
+				xpath.append(" | ");
+			
+			xpath.append(parseSelector(prefix));
+			skipWhitespace();
+			
+			if (atEnd())
+				return xpath.toString();
+			
+			expect(',');
+		}
+	}
+	
+	private String parseSelector(String prefix) {
+		
+		skipWhitespace();
+		
+		final StringBuilder xpath = new StringBuilder(prefix).append(parseCompound().toStep());
+		
+		while (true) {
+			
+			final boolean whitespace = skipWhitespace();
+			
+			if (atEnd() || peek() == ',')
+				return xpath.toString();
+			
+			final char c = peek();
+			
+			if (c == '>') {
+				position++;
+				skipWhitespace();
+				xpath.append('/').append(parseCompound().toStep());
+			} else if (c == '+') {
+				position++;
+				skipWhitespace();
+				xpath.append("/following-sibling::*[1][").append(parseCompound().toTest()).append(']');
+			} else if (c == '~') {
+				position++;
+				skipWhitespace();
+				xpath.append("/following-sibling::").append(parseCompound().toStep());
+			} else if (whitespace)
+				xpath.append("//").append(parseCompound().toStep());
+			else
+				throw invalid("Unexpected character '" + c + "'");
+		}
+	}
+	
+	private Compound parseCompound() {
+		
+		final Compound compound = new Compound();
+		final int start = position;
+		
+		if (! atEnd() && peek() == '*')
+			position++;
+		else if (! atEnd() && isIdentifierStart(peek()))
+			compound.tag = parseIdentifier().toLowerCase(Locale.ENGLISH);
+		
+		while (! atEnd()) {
+			
+			final char c = peek();
+			
+			if (c == '#') {
+				position++;
+				compound.conditions.add("@id=" + FakeDocument.literal(parseIdentifier()));
+			} else if (c == '.') {
+				position++;
+				compound.conditions.add(containsWord("@class", parseIdentifier()));
+			} else if (c == '[') {
+				position++;
+				compound.conditions.add(parseAttribute());
+			} else if (c == ':') {
+				position++;
+				compound.conditions.add(parsePseudoClass(compound));
+			} else
+				break;
+		}
+		
+		if (position == start)
+			throw invalid("Expected a selector");
+		
+		return compound;
+	}
+	
+	private String parseAttribute() {
+		
+		skipWhitespace();
+		
+		final String name = "@" + parseIdentifier().toLowerCase(Locale.ENGLISH);
+		skipWhitespace();
+		
+		if (peek() == ']') {
+			position++;
+			return name;
+		}
+		
+		String operator = String.valueOf(next());
+		
+		if (! "=".equals(operator)) {
+			expect('=');
+			operator += "=";
+		}
+		
+		skipWhitespace();
+		
+		final String value = peek() == '"' || peek() == '\'' ? parseString() : parseIdentifier();
+		final String literal = FakeDocument.literal(value);
+		
+		skipWhitespace();
+		expect(']');
+		
+		if ("=".equals(operator))
+			return name + "=" + literal;
+		
+		// an empty (or, for ~=, whitespace-separated) value can never match these operators
+		if (value.length() == 0 && ! "|=".equals(operator))
+			return "false()";
+		if ("~=".equals(operator) && value.matches(".*\\s.*"))
+			return "false()";
+		
+		if ("~=".equals(operator))
+			return containsWord(name, value);
+		if ("|=".equals(operator))
+			return String.format("%s=%s or starts-with(%s, %s)", name, literal, name, FakeDocument.literal(value + "-"));
+		if ("^=".equals(operator))
+			return String.format("starts-with(%s, %s)", name, literal);
+		if ("$=".equals(operator))
+			return String.format("substring(%s, string-length(%s) - %d) = %s", name, name, value.length() - 1, literal);
+		if ("*=".equals(operator))
+			return String.format("contains(%s, %s)", name, literal);
+		
+		throw invalid("Unsupported attribute operator " + operator);
+	}
+	
+	private String parsePseudoClass(Compound compound) {
+		
+		final String name = parseIdentifier().toLowerCase(Locale.ENGLISH);
+		
+		if ("first-child".equals(name))
+			return "not(preceding-sibling::*)";
+		if ("last-child".equals(name))
+			return "not(following-sibling::*)";
+		if ("only-child".equals(name))
+			return "not(preceding-sibling::*) and not(following-sibling::*)";
+		if ("checked".equals(name))
+			return "@checked or @selected";
+		if ("disabled".equals(name))
+			return "@disabled";
+		if ("enabled".equals(name))
+			return "not(@disabled)";
+		if ("empty".equals(name))
+			return "not(node())";
+		
+		if ("first-of-type".equals(name) || "last-of-type".equals(name)) {
+			
+			if ("*".equals(compound.tag))
+				throw invalid(":" + name + " requires a type selector");
+			
+			return String.format("not(%s-sibling::%s)", "first-of-type".equals(name) ? "preceding" : "following", compound.tag);
+		}
+		
+		if ("nth-child".equals(name)) {
+			
+			expect('(');
+			skipWhitespace();
+			
+			final int end = selector.indexOf(')', position);
+			
+			if (end < 0)
+				throw invalid("Unterminated :nth-child()");
+			
+			final String argument = selector.substring(position, end).replace(" ", "").toLowerCase(Locale.ENGLISH);
+			position = end + 1;
+			return nthChild(argument);
+		}
+		
+		if ("not".equals(name)) {
+			
+			expect('(');
+			skipWhitespace();
+			
+			final Compound negated = parseCompound();
+			
+			skipWhitespace();
+			expect(')');
+			return "not(" + negated.toTest() + ")";
+		}
+		
+		throw invalid("Unsupported pseudo-class :" + name);
+	}
+	
+	private String nthChild(String argument) {
+		
+		final String index = "count(preceding-sibling::*) + 1";
+		
+		if ("odd".equals(argument))
+			return nthChild("2n+1");
+		if ("even".equals(argument))
+			return nthChild("2n");
+		
+		try {
+			
+			final int n = argument.indexOf('n');
+			
+			if (n < 0)
+				return index + " = " + Integer.parseInt(argument);
+			
+			final String a = argument.substring(0, n);
+			final String b = argument.substring(n + 1);
+			
+			final int step = a.length() == 0 || "+".equals(a) ? 1 : "-".equals(a) ? -1 : Integer.parseInt(a);
+			final int offset = b.length() == 0 ? 0 : Integer.parseInt(b.startsWith("+") ? b.substring(1) : b);
+			
+			if (step == 0)
+				return index + " = " + offset;
+			
+			return String.format("(%s - %d) mod %d = 0 and (%s - %d) div %d >= 0", index, offset, step, index, offset, step);
+			
+		} catch (NumberFormatException e) {
+			throw invalid("Invalid :nth-child() argument " + argument);
+		}
+	}
+	
+	private static String containsWord(String attribute, String word) {
+		return String.format("contains(concat(' ', normalize-space(%s), ' '), %s)", attribute, FakeDocument.literal(" " + word + " "));
+	}
+	
+	private String parseIdentifier() {
+		
+		final StringBuilder s = new StringBuilder();
+		
+		while (! atEnd()) {
+			
+			final char c = peek();
+			
+			if (c == '\\' && position + 1 < selector.length()) {
+				s.append(selector.charAt(position + 1));
+				position += 2;
+			} else if (isIdentifierStart(c) || Character.isDigit(c) || c == '-') {
+				s.append(c);
+				position++;
+			} else
+				break;
+		}
+		
+		if (s.length() == 0)
+			throw invalid("Expected an identifier");
+		
+		return s.toString();
+	}
+	
+	private String parseString() {
+		
+		final char quote = next();
+		final StringBuilder s = new StringBuilder();
+		
+		while (! atEnd() && peek() != quote) {
+			
+			if (peek() == '\\' && position + 1 < selector.length())
+				position++;
+			s.append(next());
+		}
+		
+		expect(quote);
+		return s.toString();
+	}
+	
+	private static boolean isIdentifierStart(char c) {
+		return Character.isLetter(c) || c == '_' || c == '-' || c > 0x7f;
+	}
+	
+	private boolean skipWhitespace() {
+		
+		final int start = position;
+		
+		while (! atEnd() && Character.isWhitespace(peek()))
+			position++;
+		
+		return position > start;
+	}
+	
+	private boolean atEnd() {
+		return position >= selector.length();
+	}
+	
+	private char peek() {
+		
+		if (atEnd())
+			throw invalid("Unexpected end of selector");
+		return selector.charAt(position);
+	}
+	
+	private char next() {
+		
+		final char c = peek();
+		position++;
+		return c;
+	}
+	
+	private void expect(char c) {
+		
+		if (atEnd() || peek() != c)
+			throw invalid("Expected '" + c + "'");
+		position++;
+	}
+	
+	private InvalidSelectorException invalid(String reason) {
+		return new InvalidSelectorException(String.format("%s at position %d of CSS selector [%s]", reason, position, selector));
+	}
+}
@@ -0,0 +1,199 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.fake;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.w3c.dom.Element;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.User;
+import shelob.core.interfaces.elements.IElement;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Loads a saved HTML snapshot and serves it through a FakeCommandExecutor, so Element locators 
+ * can be unit tested through the regular Page, Element and ElementCollection API without a 
+ * driver or a browser :
+ * 
+ * 		DomFixture fixture = DomFixture.fromResource("/fixtures/login.html");
+ * 		Login login = new Login(fixture.createParameters());
+ * 		assertThat(fixture.resolve(login.find("Email")).size(), is(1));
+ * 
+ * All eight LookUp strategies are evaluated locally, CSS selectors included. The snapshot is 
+ * parsed once; each fixture (and every navigation within it) works on it's own copy, so 
+ * fixtures created from the same snapshot can be used in parallel.
+ */
+@ThreadSafe
+public final class DomFixture {
+
+	public static final ApplicationURL DEFAULT_URL = new ApplicationURL("fixture.local", "snapshot", "page");
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final User FIXTURE_USER = new User.Builder("fixture@fixture.local", "fixture").build();
+	
+	private final FakeDocument snapshot;
+	private final ApplicationURL url;
+	private final FakeCommandExecutor executor;
+	private final RemoteWebDriver driver;
+	
+	/**
+	 * @param snapshot the parsed snapshot
+	 * @param url the ApplicationURL the snapshot is served at
+	 */
+	public DomFixture(FakeDocument snapshot, ApplicationURL url) {
+		
+		this.snapshot = checkNotNull(snapshot);
+		this.url = checkNotNull(url);
+		
+		executor = new FakeCommandExecutor().route(url.getURL(), snapshot);
+		driver = executor.createDriver();
+		driver.get(url.getURL());
+	}
+	
+	/**
+	 * @param markup the HTML of the snapshot
+	 * @return a DomFixture serving the snapshot at DEFAULT_URL
+	 */
+	public static DomFixture fromHtml(String markup) {
+		return new DomFixture(FakeDocument.parse(markup), DEFAULT_URL);
+	}
+	
+	/**
+	 * @param file a saved HTML snapshot, encoded in UTF-8
+	 * @return a DomFixture serving the snapshot at DEFAULT_URL
+	 * @throws IOException
+	 */
+	public static DomFixture fromFile(File file) throws IOException {
+		return fromHtml(FileUtils.readFileToString(file, UTF8.name()));
+	}
+	
+	/**
+	 * @param name the classpath resource name of a saved HTML snapshot, encoded in UTF-8
+	 * @return a DomFixture serving the snapshot at DEFAULT_URL
+	 * @throws IOException
+	 */
+	public static DomFixture fromResource(String name) throws IOException {
+		
+		final InputStream in = DomFixture.class.getResourceAsStream(name);
+		
+		if (in == null)
+			throw new IOException("No such resource : " + name);
+		
+		try {
+			return fromHtml(IOUtils.toString(in, UTF8.name()));
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * @return a new DomFixture with it's own driver and copy of the snapshot; for use on another thread
+	 */
+	public DomFixture fork() {
+		return new DomFixture(snapshot, url);
+	}
+	
+	/**
+	 * @return ApplicationParameters for Pages resolving against the snapshot
+	 */
+	public ApplicationParameters createParameters() {
+		return createParameters(FIXTURE_USER);
+	}
+	
+	/**
+	 * @param user the User of the Pages
+	 * @return ApplicationParameters for Pages resolving against the snapshot
+	 */
+	public ApplicationParameters createParameters(User user) {
+		return new ApplicationParameters(driver, url, user);
+	}
+	
+	/**
+	 * @return the RemoteWebDriver serving the snapshot
+	 */
+	public RemoteWebDriver getDriver() {
+		return driver;
+	}
+	
+	/**
+	 * @return the FakeCommandExecutor behind the driver; used to add routes, latency or failures
+	 */
+	public FakeCommandExecutor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * @return the document currently displayed by the fixture
+	 */
+	public FakeDocument getDocument() {
+		return executor.getDocument();
+	}
+	
+	/**
+	 * @param element the Element whose locator is evaluated
+	 * @return the DOM elements the locator resolves to, in document order
+	 */
+	public List<Element> resolve(IElement element) {
+		
+		final List<WebElement> found = element.getWebElements();
+		final List<Element> resolved = new ArrayList<Element>(found.size());
+		
+		for (WebElement e : found) {
+			
+			if (e instanceof RemoteWebElement)
+				resolved.add(executor.getElement(((RemoteWebElement) e).getId()));
+		}
+		
+		return resolved;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return "DomFixture : " + url.getURL();
+	}
+}
@@ -0,0 +1,91 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.fake;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriverException;
+import org.w3c.dom.Element;
+
+import shelob.core.interfaces.IScriptHandler;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Answers the Element.snapshot() script against the FakeDocument, in place of a JavaScript engine. 
+ * Element state is read the same way as the individual element commands of the FakeCommandExecutor.
+ */
+final class ElementStateHandler implements IScriptHandler {
+
+	public Object execute(FakeDocument document, String script, List<Object> arguments) {
+		
+		final List<Element> found;
+		
+		try {
+			found = document.find(document.getDocument(), (String) arguments.get(0), (String) arguments.get(1));
+		} catch (WebDriverException e) {
+			// an invalid locator matches nothing, as in the browser
+			return null;
+		}
+		
+		if (found.isEmpty())
+			return null;
+		
+		final Element element = found.get(0);
+		final String tag = element.getTagName().toLowerCase(Locale.ENGLISH);
+		final Map<String, Object> state = new HashMap<String, Object>();
+		
+		state.put("displayed", FakeDocument.isDisplayed(element));
+		state.put("enabled", ! element.hasAttribute("disabled"));
+		state.put("selected", element.hasAttribute("option".equals(tag) ? "selected" : "checked"));
+		state.put("text", FakeDocument.getText(element));
+		state.put("tagName", tag);
+		state.put("value", FakeCommandExecutor.getAttribute(element, "value"));
+		state.put("x", FakeCommandExecutor.getLong(element, "data-x"));
+		state.put("y", FakeCommandExecutor.getLong(element, "data-y"));
+		state.put("width", FakeCommandExecutor.getLong(element, "data-width"));
+		state.put("height", FakeCommandExecutor.getLong(element, "data-height"));
+		
+		final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+		final Map<String, Object> css = new LinkedHashMap<String, Object>();
+		
+		// nested arguments arrive as collections rather than lists
+		for (Object name : (Collection<?>) arguments.get(2))
+			attributes.put((String) name, FakeCommandExecutor.getAttribute(element, (String) name));
+		
+		for (Object property : (Collection<?>) arguments.get(3))
+			css.put((String) property, FakeDocument.getStyle(element, (String) property));
+		
+		state.put("attributes", attributes);
+		state.put("css", css);
+		
+		return state;
+	}
+}
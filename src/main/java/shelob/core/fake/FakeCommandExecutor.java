@@ -0,0 +1,918 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.fake;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import shelob.core.browsers.TabMultiplexer;
+import shelob.core.elements.CompositeScript;
+import shelob.core.elements.ElementStateScript;
+import shelob.core.interfaces.IScriptHandler;
+import shelob.core.page.RequiredElementsScript;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * A deterministic, in-process stand-in for a browser. The FakeCommandExecutor answers the
+ * WebDriver wire protocol from canned (X)HTML documents or saved snapshots, so a real RemoteWebDriver - and 
+ * therefore every Page, Element and ElementCollection - can be exercised without a grid.
+ * 
+ * Latency can be added per command from a LatencyDistribution and failures (stale elements,
+ * unclickable elements, timeouts) injected for a fixed number of occurrences or with a given
+ * probability. All randomness is drawn from a single seeded Random, so a run is repeatable.
+ * 
+ * There is no JavaScript engine : executeScript() calls are answered by the IScriptHandler
+ * registered for a fragment of the script, and return null otherwise. The Page.verifyRequired() 
+ * script is answered against the current document, and the TabMultiplexer script opens a window.
+ * 
+ * Element ids become stale once the window they were found in navigates away, as in a real browser.
+ */
+@ThreadSafe
+public final class FakeCommandExecutor implements CommandExecutor {
+
+	private static final String SESSION_ID = "fake";
+	private static final String BLANK = "about:blank";
+	private static final String NOT_FOUND = "<html><head><title>Not Found</title></head><body></body></html>";
+	private static final String SCREENSHOT = "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==";
+	
+	private final Random random;
+	
+	@GuardedBy("this") private final Map<String, FakeDocument> routes = new HashMap<String, FakeDocument>();
+	@GuardedBy("this") private final Map<String, LatencyDistribution> latencies = new HashMap<String, LatencyDistribution>();
+	@GuardedBy("this") private final Map<String, List<FailureRule>> failures = new HashMap<String, List<FailureRule>>();
+	@GuardedBy("this") private final Map<String, IScriptHandler> scripts = new LinkedHashMap<String, IScriptHandler>();
+	@GuardedBy("this") private final Map<String, Window> windows = new LinkedHashMap<String, Window>();
+	@GuardedBy("this") private final Map<String, Cookie> cookies = new LinkedHashMap<String, Cookie>();
+	@GuardedBy("this") private final Map<String, Element> elements = new HashMap<String, Element>();
+	@GuardedBy("this") private final Map<Element, String> elementIds = new IdentityHashMap<Element, String>();
+	@GuardedBy("this") private final Map<String, Long> commandCounts = new LinkedHashMap<String, Long>();
+	
+	@GuardedBy("this") private LatencyDistribution defaultLatency = LatencyDistribution.none();
+	@GuardedBy("this") private String currentHandle;
+	@GuardedBy("this") private int windowSequence;
+	@GuardedBy("this") private int elementSequence;
+	
+	// a browser window and it's navigation history
+	private static final class Window {
+		
+		private final List<String> history = new ArrayList<String>();
+		private int position = -1;
+		private FakeDocument document;
+		
+		String getUrl() {
+			return history.get(position);
+		}
+	}
+	
+	// a failure to inject, either for the next N occurrences of a command or with a probability
+	private static final class FailureRule {
+		
+		private final InjectedFailure failure;
+		private final double probability;
+		private int remaining;
+		
+		FailureRule(InjectedFailure failure, int remaining, double probability) {
+			this.failure = failure;
+			this.remaining = remaining;
+			this.probability = probability;
+		}
+	}
+	
+	/**
+	 * Creates a FakeCommandExecutor seeded with 0
+	 */
+	public FakeCommandExecutor() {
+		this(0L);
+	}
+	
+	/**
+	 * @param seed the seed for latency sampling and probabilistic failures
+	 */
+	public FakeCommandExecutor(long seed) {
+		this.random = new Random(seed);
+		
+		scripts.put(RequiredElementsScript.MARKER, new RequiredElementsHandler());
+		scripts.put(ElementStateScript.MARKER, new ElementStateHandler());
+		scripts.put(CompositeScript.MARKER, new CompositeScriptHandler());
+	}
+	
+	/**
+	 * @return a RemoteWebDriver talking to this FakeCommandExecutor
+	 */
+	public RemoteWebDriver createDriver() {
+		return new RemoteWebDriver(this, new DesiredCapabilities());
+	}
+	
+	/**
+	 * Serves the markup whenever the url is requested
+	 * 
+	 * @param url the absolute url of the document
+	 * @param markup (X)HTML markup
+	 * @return FakeCommandExecutor this
+	 */
+	public FakeCommandExecutor route(String url, String markup) {
+		return route(url, FakeDocument.parse(markup));
+	}
+	
+	/**
+	 * Serves a copy of the document whenever the url is requested
+	 * 
+	 * @param url the absolute url of the document
+	 * @param document the document to serve
+	 * @return FakeCommandExecutor this
+	 */
+	public synchronized FakeCommandExecutor route(String url, FakeDocument document) {
+		routes.put(checkNotNull(url), checkNotNull(document));
+		return this;
+	}
+	
+	/**
+	 * @param latency the latency added to every command without a command specific latency
+	 * @return FakeCommandExecutor this
+	 */
+	public synchronized FakeCommandExecutor setLatency(LatencyDistribution latency) {
+		defaultLatency = checkNotNull(latency);
+		return this;
+	}
+	
+	/**
+	 * @param command the DriverCommand name
+	 * @param latency the latency added to the command
+	 * @return FakeCommandExecutor this
+	 */
+	public synchronized FakeCommandExecutor setLatency(String command, LatencyDistribution latency) {
+		latencies.put(checkNotNull(command), checkNotNull(latency));
+		return this;
+	}
+	
+	/**
+	 * Fails the next occurrences of a command
+	 * 
+	 * @param command the DriverCommand name
+	 * @param failure the failure to report
+	 * @param times the number of consecutive occurrences to fail
+	 * @return FakeCommandExecutor this
+	 */
+	public synchronized FakeCommandExecutor injectFailure(String command, InjectedFailure failure, int times) {
+		
+		checkArgument(times > 0, "times must be positive");
+		getRules(checkNotNull(command)).add(new FailureRule(checkNotNull(failure), times, 0));
+		return this;
+	}
+	
+	/**
+	 * Fails occurrences of a command at random
+	 * 
+	 * @param command the DriverCommand name
+	 * @param failure the failure to report
+	 * @param probability the probability, between 0 and 1, that an occurrence fails
+	 * @return FakeCommandExecutor this
+	 */
+	public synchronized FakeCommandExecutor injectFailure(String command, InjectedFailure failure, double probability) {
+		
+		checkArgument(probability >= 0 && probability <= 1, "probability must be between 0 and 1");
+		getRules(checkNotNull(command)).add(new FailureRule(checkNotNull(failure), 0, probability));
+		return this;
+	}
+	
+	/**
+	 * @return FakeCommandExecutor this, without any injected failures
+	 */
+	public synchronized FakeCommandExecutor clearFailures() {
+		failures.clear();
+		return this;
+	}
+	
+	/**
+	 * @param fragment a fragment of the scripts answered by the handler
+	 * @param handler the IScriptHandler supplying the script results
+	 * @return FakeCommandExecutor this
+	 */
+	public synchronized FakeCommandExecutor onScript(String fragment, IScriptHandler handler) {
+		scripts.put(checkNotNull(fragment), checkNotNull(handler));
+		return this;
+	}
+	
+	/**
+	 * @return the document of the current window, or null when no window is open
+	 */
+	public synchronized FakeDocument getDocument() {
+		
+		final Window window = windows.get(currentHandle);
+		return window == null ? null : window.document;
+	}
+	
+	/**
+	 * @param id the id of a WebElement returned by this executor
+	 * @return the DOM element the id refers to, or null when it is unknown or stale
+	 */
+	public synchronized Element getElement(String id) {
+		
+		final Window window = windows.get(currentHandle);
+		return window == null ? null : resolve(window, id);
+	}
+	
+	/**
+	 * @param command the DriverCommand name
+	 * @return the number of times the command has been executed
+	 */
+	public synchronized long getCommandCount(String command) {
+		
+		final Long count = commandCounts.get(command);
+		return count == null ? 0 : count;
+	}
+	
+	/**
+	 * @return the number of element references held for the documents the windows show
+	 */
+	public synchronized int getElementCount() {
+		return elements.size();
+	}
+	
+	/**
+	 * @return the number of times each command has been executed, in order of first use
+	 */
+	public synchronized Map<String, Long> getCommandCounts() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(commandCounts));
+	}
+	
+	/**
+	 * @return FakeCommandExecutor this, with all command counts cleared
+	 */
+	public synchronized FakeCommandExecutor resetCommandCounts() {
+		commandCounts.clear();
+		return this;
+	}
+	
+	/**
+	 * Answers the command; any latency is served after the state of the fake has been updated
+	 * so concurrent drivers sharing an executor do not serialize on each other's latency.
+	 * 
+	 * @param command the wire command
+	 * @return Response
+	 * @throws IOException
+	 * @see org.openqa.selenium.remote.CommandExecutor#execute(Command)
+	 */
+	public Response execute(Command command) throws IOException {
+		
+		final Response response;
+		final long latencyNanos;
+		
+		synchronized (this) {
+			
+			final String name = command.getName();
+			final Long count = commandCounts.get(name);
+			commandCounts.put(name, count == null ? 1L : count + 1);
+			
+			final LatencyDistribution latency = latencies.get(name);
+			latencyNanos = (latency == null ? defaultLatency : latency).sampleNanos(random);
+			
+			final InjectedFailure failure = nextFailure(name);
+			response = failure == null ? answer(command) : error(failure.getStatus(), failure.getMessage());
+		}
+		
+		if (latencyNanos > 0) {
+			
+			try {
+				TimeUnit.NANOSECONDS.sleep(latencyNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		return response;
+	}
+	
+	@GuardedBy("this")
+	private List<FailureRule> getRules(String command) {
+		
+		List<FailureRule> rules = failures.get(command);
+		
+		if (rules == null) {
+			rules = new LinkedList<FailureRule>();
+			failures.put(command, rules);
+		}
+		
+		return rules;
+	}
+	
+	@GuardedBy("this")
+	private InjectedFailure nextFailure(String command) {
+		
+		final List<FailureRule> rules = failures.get(command);
+		
+		if (rules == null)
+			return null;
+		
+		for (FailureRule rule : rules) {
+			
+			if (rule.remaining > 0) {
+				
+				if (--rule.remaining == 0)
+					rules.remove(rule);
+				return rule.failure;
+			}
+			
+			if (rule.probability > 0 && random.nextDouble() < rule.probability)
+				return rule.failure;
+		}
+		
+		return null;
+	}
+	
+	@GuardedBy("this")
+	private Response answer(Command command) {
+		
+		final String name = command.getName();
+		final Map<String, ?> parameters = command.getParameters();
+		
+		if (DriverCommand.NEW_SESSION.equals(name))
+			return newSession();
+		
+		if (DriverCommand.QUIT.equals(name)) {
+			
+			windows.clear();
+			cookies.clear();
+			currentHandle = null;
+			prune();
+			return success(null);
+		}
+		
+		if (DriverCommand.GET_WINDOW_HANDLES.equals(name))
+			return success(new ArrayList<String>(windows.keySet()));
+		
+		if (DriverCommand.SWITCH_TO_WINDOW.equals(name)) {
+			
+			final String handle = (String) parameters.get("name");
+			
+			if (! windows.containsKey(handle))
+				return error(ErrorCodes.NO_SUCH_WINDOW, "No window found with handle " + handle);
+			
+			currentHandle = handle;
+			return success(null);
+		}
+		
+		if (DriverCommand.IMPLICITLY_WAIT.equals(name) || DriverCommand.SET_SCRIPT_TIMEOUT.equals(name))
+			return success(null);
+		
+		final Window window = windows.get(currentHandle);
+		
+		if (window == null)
+			return error(ErrorCodes.NO_SUCH_WINDOW, "The current window has been closed");
+		
+		try {
+			
+			if (DriverCommand.CLOSE.equals(name)) {
+				
+				windows.remove(currentHandle);
+				currentHandle = null;
+				prune();
+				return success(null);
+			}
+			
+			if (DriverCommand.GET_CURRENT_WINDOW_HANDLE.equals(name))
+				return success(currentHandle);
+			if (DriverCommand.SWITCH_TO_FRAME.equals(name))
+				return success(null);
+			
+			if (DriverCommand.GET.equals(name)) {
+				navigate(window, (String) parameters.get("url"));
+				return success(null);
+			}
+			
+			if (DriverCommand.REFRESH.equals(name)) {
+				show(window, render(window.getUrl()));
+				return success(null);
+			}
+			
+			if (DriverCommand.GO_BACK.equals(name) || DriverCommand.GO_FORWARD.equals(name)) {
+				
+				final int position = window.position + (DriverCommand.GO_BACK.equals(name) ? -1 : 1);
+				
+				if (position >= 0 && position < window.history.size()) {
+					window.position = position;
+					show(window, render(window.getUrl()));
+				}
+				
+				return success(null);
+			}
+			
+			if (DriverCommand.GET_CURRENT_URL.equals(name))
+				return success(window.getUrl());
+			if (DriverCommand.GET_TITLE.equals(name))
+				return success(window.document.getTitle());
+			if (DriverCommand.GET_PAGE_SOURCE.equals(name))
+				return success(window.document.getSource());
+			
+			if (DriverCommand.FIND_ELEMENT.equals(name) || DriverCommand.FIND_ELEMENTS.equals(name)) {
+				
+				final List<Element> found = window.document.find(window.document.getDocument(), 
+						(String) parameters.get("using"), (String) parameters.get("value"));
+				return found(found, DriverCommand.FIND_ELEMENTS.equals(name), parameters);
+			}
+			
+			if (DriverCommand.FIND_CHILD_ELEMENT.equals(name) || DriverCommand.FIND_CHILD_ELEMENTS.equals(name)) {
+				
+				final Element parent = resolve(window, parameters.get("id"));
+				
+				if (parent == null)
+					return stale();
+				
+				final List<Element> found = window.document.find(parent, (String) parameters.get("using"), (String) parameters.get("value"));
+				return found(found, DriverCommand.FIND_CHILD_ELEMENTS.equals(name), parameters);
+			}
+			
+			if (DriverCommand.GET_ACTIVE_ELEMENT.equals(name)) {
+				
+				final NodeList bodies = window.document.getDocument().getElementsByTagName("body");
+				return bodies.getLength() == 0 ? success(null) : success(reference((Element) bodies.item(0)));
+			}
+			
+			if (DriverCommand.EXECUTE_SCRIPT.equals(name) || DriverCommand.EXECUTE_ASYNC_SCRIPT.equals(name))
+				return executeScript(window, (String) parameters.get("script"), (List<?>) parameters.get("args"));
+			
+			if (DriverCommand.ADD_COOKIE.equals(name)) {
+				addCookie(parameters.get("cookie"));
+				return success(null);
+			}
+			
+			if (DriverCommand.GET_ALL_COOKIES.equals(name))
+				return success(getCookies());
+			
+			if (DriverCommand.DELETE_COOKIE.equals(name)) {
+				cookies.remove(parameters.get("name"));
+				return success(null);
+			}
+			
+			if (DriverCommand.DELETE_ALL_COOKIES.equals(name)) {
+				cookies.clear();
+				return success(null);
+			}
+			
+			if (DriverCommand.SCREENSHOT.equals(name))
+				return success(SCREENSHOT);
+			
+			if (parameters.containsKey("id"))
+				return answerElementCommand(window, name, parameters);
+			
+		} catch (InvalidSelectorException e) {
+			return error(ErrorCodes.INVALID_SELECTOR_ERROR, e.getMessage());
+		}
+		
+		return error(ErrorCodes.UNKNOWN_COMMAND, "Unsupported command : " + name);
+	}
+	
+	@GuardedBy("this")
+	private Response answerElementCommand(Window window, String name, Map<String, ?> parameters) {
+		
+		final Element element = resolve(window, parameters.get("id"));
+		
+		if (element == null)
+			return stale();
+		
+		final String tag = element.getTagName().toLowerCase(Locale.ENGLISH);
+		
+		if (DriverCommand.GET_ELEMENT_TEXT.equals(name))
+			return success(FakeDocument.getText(element));
+		if (DriverCommand.GET_ELEMENT_TAG_NAME.equals(name))
+			return success(tag);
+		if (DriverCommand.GET_ELEMENT_ATTRIBUTE.equals(name))
+			return success(getAttribute(element, (String) parameters.get("name")));
+		if (DriverCommand.GET_ELEMENT_VALUE_OF_CSS_PROPERTY.equals(name))
+			return success(FakeDocument.getStyle(element, (String) parameters.get("propertyName")));
+		if (DriverCommand.IS_ELEMENT_DISPLAYED.equals(name))
+			return success(FakeDocument.isDisplayed(element));
+		if (DriverCommand.IS_ELEMENT_ENABLED.equals(name))
+			return success(! element.hasAttribute("disabled"));
+		if (DriverCommand.IS_ELEMENT_SELECTED.equals(name))
+			return success(element.hasAttribute("option".equals(tag) ? "selected" : "checked"));
+		
+		if (DriverCommand.GET_ELEMENT_LOCATION.equals(name) || DriverCommand.GET_ELEMENT_LOCATION_ONCE_SCROLLED_INTO_VIEW.equals(name)) {
+			
+			final Map<String, Object> location = new HashMap<String, Object>();
+			location.put("x", getLong(element, "data-x"));
+			location.put("y", getLong(element, "data-y"));
+			return success(location);
+		}
+		
+		if (DriverCommand.GET_ELEMENT_SIZE.equals(name)) {
+			
+			final Map<String, Object> size = new HashMap<String, Object>();
+			size.put("width", getLong(element, "data-width"));
+			size.put("height", getLong(element, "data-height"));
+			return success(size);
+		}
+		
+		if (DriverCommand.ELEMENT_EQUALS.equals(name))
+			return success(element == resolve(window, parameters.get("other")));
+		
+		if (DriverCommand.CLICK_ELEMENT.equals(name) || DriverCommand.CLEAR_ELEMENT.equals(name) 
+				|| DriverCommand.SEND_KEYS_TO_ELEMENT.equals(name) || DriverCommand.SUBMIT_ELEMENT.equals(name)) {
+			
+			if (! FakeDocument.isDisplayed(element))
+				return error(ErrorCodes.ELEMENT_NOT_VISIBLE, "Element is not currently visible and so may not be interacted with");
+			
+			if (! element.hasAttribute("disabled")) {
+				
+				if (DriverCommand.CLICK_ELEMENT.equals(name))
+					click(window, element, tag);
+				else if (DriverCommand.CLEAR_ELEMENT.equals(name))
+					element.setAttribute("value", "");
+				else if (DriverCommand.SEND_KEYS_TO_ELEMENT.equals(name))
+					element.setAttribute("value", element.getAttribute("value") + keys(parameters.get("value")));
+			}
+			
+			return success(null);
+		}
+		
+		return error(ErrorCodes.UNKNOWN_COMMAND, "Unsupported command : " + name);
+	}
+	
+	@GuardedBy("this")
+	private void click(Window window, Element element, String tag) {
+		
+		if ("option".equals(tag)) {
+			
+			final Node select = element.getParentNode();
+			
+			if (select instanceof Element && ! ((Element) select).hasAttribute("multiple")) {
+				
+				final NodeList options = ((Element) select).getElementsByTagName("option");
+				
+				for (int i = 0; i < options.getLength(); i++)
+					((Element) options.item(i)).removeAttribute("selected");
+			}
+			
+			element.setAttribute("selected", "selected");
+			
+		} else if ("input".equals(tag) && "checkbox".equalsIgnoreCase(element.getAttribute("type"))) {
+			
+			if (element.hasAttribute("checked"))
+				element.removeAttribute("checked");
+			else
+				element.setAttribute("checked", "checked");
+			
+		} else if ("input".equals(tag) && "radio".equalsIgnoreCase(element.getAttribute("type"))) {
+			
+			for (Element radio : window.document.find(window.document.getDocument(), "name", element.getAttribute("name")))
+				radio.removeAttribute("checked");
+			element.setAttribute("checked", "checked");
+			
+		} else {
+			
+			// follow the nearest enclosing link
+			for (Node n = element; n instanceof Element; n = n.getParentNode()) {
+				
+				final Element e = (Element) n;
+				
+				if ("a".equalsIgnoreCase(e.getTagName()) && e.hasAttribute("href")) {
+					
+					final String url = URI.create(window.getUrl()).resolve(e.getAttribute("href")).toString();
+					
+					if ("_blank".equals(e.getAttribute("target")))
+						navigate(openWindow(), url);
+					else
+						navigate(window, url);
+					break;
+				}
+			}
+		}
+	}
+	
+	@GuardedBy("this")
+	private Response newSession() {
+		
+		windows.clear();
+		currentHandle = null;
+		navigate(openWindow(), BLANK);
+		currentHandle = windows.keySet().iterator().next();
+		
+		final Map<String, Object> capabilities = new HashMap<String, Object>();
+		capabilities.put("browserName", "fake");
+		capabilities.put("javascriptEnabled", true);
+		capabilities.put("takesScreenshot", true);
+		return success(capabilities);
+	}
+	
+	@GuardedBy("this")
+	private Window openWindow() {
+		
+		final Window window = new Window();
+		windows.put("window-" + windowSequence++, window);
+		return window;
+	}
+	
+	@GuardedBy("this")
+	private void navigate(Window window, String url) {
+		
+		while (window.history.size() > window.position + 1)
+			window.history.remove(window.history.size() - 1);
+		
+		window.history.add(url);
+		window.position++;
+		show(window, render(url));
+	}
+	
+	@GuardedBy("this")
+	private void show(Window window, FakeDocument document) { // $codepro.audit.disable methodJavadoc
+		window.document = document;
+		prune();
+	}
+	
+	/**
+	 * Drops the references to elements of documents no window shows any more
+	 */
+	@GuardedBy("this")
+	private void prune() {
+		
+		final Set<Document> shown = Collections.newSetFromMap(new IdentityHashMap<Document, Boolean>());
+		
+		for (Window window : windows.values()) {
+			
+			if (window.document != null)
+				shown.add(window.document.getDocument());
+		}
+		
+		final Iterator<Map.Entry<String, Element>> entries = elements.entrySet().iterator();
+		
+		while (entries.hasNext()) {
+			
+			final Map.Entry<String, Element> entry = entries.next();
+			
+			if (! shown.contains(entry.getValue().getOwnerDocument())) {
+				elementIds.remove(entry.getValue());
+				entries.remove();
+			}
+		}
+	}
+	
+	@GuardedBy("this")
+	private FakeDocument render(String url) {
+		
+		if (BLANK.equals(url))
+			return FakeDocument.empty();
+		
+		FakeDocument document = routes.get(url);
+		
+		if (document == null && url.indexOf('?') > 0)
+			document = routes.get(url.substring(0, url.indexOf('?')));
+		
+		return document == null ? FakeDocument.parse(NOT_FOUND) : document.copy();
+	}
+	
+	@GuardedBy("this")
+	private Element resolve(Window window, Object id) {
+		
+		final Element element = elements.get(id instanceof Map ? ((Map<?, ?>) id).get("ELEMENT") : id);
+		
+		// elements of documents which have since been navigated away from are stale
+		if (element == null || element.getOwnerDocument() != window.document.getDocument())
+			return null;
+		
+		return element;
+	}
+	
+	@GuardedBy("this")
+	private Map<String, Object> reference(Element element) {
+		
+		String id = elementIds.get(element);
+		
+		if (id == null) {
+			id = String.valueOf(elementSequence++);
+			elementIds.put(element, id);
+			elements.put(id, element);
+		}
+		
+		return Collections.<String, Object>singletonMap("ELEMENT", id);
+	}
+	
+	@GuardedBy("this")
+	private Response found(List<Element> found, boolean many, Map<String, ?> parameters) {
+		
+		if (many) {
+			
+			final List<Object> references = new ArrayList<Object>(found.size());
+			
+			for (Element element : found)
+				references.add(reference(element));
+			
+			return success(references);
+		}
+		
+		if (found.isEmpty())
+			return error(ErrorCodes.NO_SUCH_ELEMENT, String.format("Unable to locate element: {\"method\":\"%s\",\"selector\":\"%s\"}", 
+					parameters.get("using"), parameters.get("value")));
+		
+		return success(reference(found.get(0)));
+	}
+	
+	@GuardedBy("this")
+	private Response executeScript(Window window, String script, List<?> args) {
+		
+		final List<Object> arguments = new ArrayList<Object>();
+		
+		if (args != null) {
+			
+			for (Object arg : args) {
+				
+				if (arg instanceof Map && ((Map<?, ?>) arg).containsKey("ELEMENT")) {
+					
+					final Element element = resolve(window, arg);
+					
+					if (element == null)
+						return stale();
+					arguments.add(element);
+					
+				} else
+					arguments.add(arg);
+			}
+		}
+		
+		// the only script with an effect beyond the document
+		if (script != null && script.contains(TabMultiplexer.OPEN_WINDOW_MARKER)) {
+			navigate(openWindow(), BLANK);
+			return success(null);
+		}
+		
+		for (Map.Entry<String, IScriptHandler> entry : scripts.entrySet()) {
+			
+			if (script != null && script.contains(entry.getKey()))
+				return success(toWire(entry.getValue().execute(window.document, script, arguments)));
+		}
+		
+		return success(null);
+	}
+	
+	@GuardedBy("this")
+	private Object toWire(Object value) {
+		
+		if (value instanceof Element)
+			return reference((Element) value);
+		
+		if (value instanceof List) {
+			
+			final List<Object> values = new ArrayList<Object>();
+			
+			for (Object v : (List<?>) value)
+				values.add(toWire(v));
+			return values;
+		}
+		
+		if (value instanceof Integer)
+			return Long.valueOf((Integer) value);
+		
+		return value;
+	}
+	
+	@GuardedBy("this")
+	private void addCookie(Object cookie) {
+		
+		if (cookie instanceof Cookie) {
+			cookies.put(((Cookie) cookie).getName(), (Cookie) cookie);
+			
+		} else if (cookie instanceof Map) {
+			
+			final Map<?, ?> raw = (Map<?, ?>) cookie;
+			final Object path = raw.get("path");
+			cookies.put((String) raw.get("name"), new Cookie((String) raw.get("name"), (String) raw.get("value"), 
+					path == null ? "/" : (String) path, null));
+		}
+	}
+	
+	@GuardedBy("this")
+	private List<Map<String, Object>> getCookies() {
+		
+		final List<Map<String, Object>> raw = new ArrayList<Map<String, Object>>();
+		
+		for (Cookie cookie : cookies.values()) {
+			
+			final Map<String, Object> c = new HashMap<String, Object>();
+			c.put("name", cookie.getName());
+			c.put("value", cookie.getValue());
+			c.put("path", cookie.getPath());
+			c.put("domain", cookie.getDomain());
+			c.put("secure", cookie.isSecure());
+			raw.add(c);
+		}
+		
+		return raw;
+	}
+	
+	static Object getAttribute(Element element, String name) {
+		
+		if ("checked".equals(name) || "selected".equals(name) || "disabled".equals(name) || "readonly".equals(name))
+			return element.hasAttribute(name) ? "true" : null;
+		
+		if ("value".equals(name) && ! element.hasAttribute(name) && "option".equalsIgnoreCase(element.getTagName()))
+			return FakeDocument.getText(element);
+		
+		return element.hasAttribute(name) ? element.getAttribute(name) : null;
+	}
+	
+	static Long getLong(Element element, String name) {
+		
+		try {
+			return element.hasAttribute(name) ? Long.valueOf(element.getAttribute(name).trim()) : 0L;
+		} catch (NumberFormatException e) {
+			return 0L;
+		}
+	}
+	
+	private static String keys(Object value) {
+		
+		final StringBuilder s = new StringBuilder();
+		
+		if (value instanceof CharSequence[]) {
+			
+			for (CharSequence sequence : (CharSequence[]) value)
+				s.append(sequence);
+			
+		} else if (value instanceof List) {
+			
+			for (Object sequence : (List<?>) value)
+				s.append(sequence);
+		}
+		
+		return s.toString();
+	}
+	
+	private static Response success(Object value) {
+		
+		final Response response = new Response();
+		response.setSessionId(SESSION_ID);
+		response.setStatus(ErrorCodes.SUCCESS);
+		response.setValue(value);
+		return response;
+	}
+	
+	private static Response stale() {
+		return error(ErrorCodes.STALE_ELEMENT_REFERENCE, InjectedFailure.STALE_ELEMENT.getMessage());
+	}
+	
+	private static Response error(int status, String message) {
+		
+		final Response response = new Response();
+		response.setSessionId(SESSION_ID);
+		response.setStatus(status);
+		response.setValue(Collections.<String, Object>singletonMap("message", message));
+		return response;
+	}
+}
@@ -0,0 +1,450 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.fake;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.cyberneko.html.parsers.DOMParser;
+import org.openqa.selenium.InvalidSelectorException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * A tiny DOM model for the FakeCommandExecutor, backed by a W3C Document.
+ * 
+ * Documents are parsed as XML when they are well-formed, and otherwise as HTML (with NekoHTML, 
+ * which balances tags the way a browser would), so saved page snapshots can be used as-is.
+ * 
+ * Locators are evaluated by translating each WebDriver lookup strategy (CSS selectors included)
+ * into an XPath expression which is evaluated with javax.xml.xpath. Visibility is approximated from the markup : an element
+ * is hidden when it (or an ancestor) carries the hidden attribute, a display:none or 
+ * visibility:hidden inline style, or is a hidden input / non-rendered element.
+ * 
+ * WARNING : Not ThreadSafe; the FakeCommandExecutor serializes all access.
+ */
+public final class FakeDocument {
+
+	private static final String EMPTY = "<html><head><title></title></head><body></body></html>";
+	
+	// fatal errors are reported through the SAXException; nothing is printed
+	private static final ErrorHandler SILENT = new ErrorHandler() {
+		
+		public void warning(SAXParseException exception) {}
+		
+		public void error(SAXParseException exception) {}
+		
+		public void fatalError(SAXParseException exception) throws SAXException {
+			throw exception;
+		}
+	};
+	
+	private final Document document;
+	private final XPath xpath;
+	
+	/**
+	 * @param document the W3C Document to model
+	 */
+	public FakeDocument(Document document) {
+		this.document = checkNotNull(document);
+		this.xpath = XPathFactory.newInstance().newXPath();
+	}
+	
+	/**
+	 * @param markup (X)HTML markup
+	 * @return the FakeDocument modelling the markup; parsed as XML when well-formed, as HTML otherwise
+	 */
+	public static FakeDocument parse(String markup) {
+		
+		try {
+			return parseXml(markup);
+		} catch (IllegalArgumentException e) {
+			return parseHtml(markup);
+		}
+	}
+	
+	/**
+	 * @param markup well-formed (X)HTML markup
+	 * @return the FakeDocument modelling the markup
+	 * @throws IllegalArgumentException when the markup is not well-formed
+	 */
+	public static FakeDocument parseXml(String markup) {
+		
+		try {
+			
+			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(false);
+			factory.setValidating(false);
+			
+			setFeature(factory, "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			
+			// deferred nodes are expanded on first read, which is not ThreadSafe
+			setFeature(factory, "http://apache.org/xml/features/dom/defer-node-expansion", false);
+			
+			final DocumentBuilder builder = factory.newDocumentBuilder();
+			builder.setErrorHandler(SILENT);
+			return new FakeDocument(builder.parse(new InputSource(new StringReader(checkNotNull(markup)))));
+			
+		} catch (ParserConfigurationException e) {
+			throw new IllegalStateException(e);
+		} catch (SAXException e) {
+			throw new IllegalArgumentException("The markup is not well-formed : " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * @param markup HTML markup, which need not be well-formed
+	 * @return the FakeDocument modelling the markup; element and attribute names are lower case
+	 */
+	public static FakeDocument parseHtml(String markup) {
+		
+		try {
+			
+			final DOMParser parser = new DOMParser();
+			parser.setFeature("http://xml.org/sax/features/namespaces", false);
+			parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+			
+			// the default HTMLDocumentImpl upper cases every tag name, which breaks lower case XPath name tests
+			parser.setProperty("http://apache.org/xml/properties/dom/document-class-name", "org.apache.xerces.dom.DocumentImpl");
+			parser.setProperty("http://cyberneko.org/html/properties/names/elems", "lower");
+			parser.setProperty("http://cyberneko.org/html/properties/names/attrs", "lower");
+			parser.parse(new InputSource(new StringReader(checkNotNull(markup))));
+			
+			return new FakeDocument(parser.getDocument());
+			
+		} catch (SAXException e) {
+			throw new IllegalArgumentException("The markup could not be parsed : " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static void setFeature(DocumentBuilderFactory factory, String feature, boolean value) {
+		
+		try {
+			factory.setFeature(feature, value);
+		} catch (ParserConfigurationException e) {
+			// not supported by this parser; the default applies
+		}
+	}
+	
+	/**
+	 * @return an empty document
+	 */
+	public static FakeDocument empty() {
+		return parse(EMPTY);
+	}
+	
+	/**
+	 * @return a deep copy of this document; used so every navigation starts from pristine markup
+	 */
+	public FakeDocument copy() {
+		
+		synchronized (document) {
+			return new FakeDocument((Document) document.cloneNode(true));
+		}
+	}
+	
+	/**
+	 * @return the underlying W3C Document
+	 */
+	public Document getDocument() {
+		return document;
+	}
+	
+	/**
+	 * @return the text of the title element, or an empty string
+	 */
+	public String getTitle() {
+		
+		final NodeList titles = document.getElementsByTagName("title");
+		
+		if (titles.getLength() == 0)
+			return "";
+		return normalize(titles.item(0).getTextContent());
+	}
+	
+	/**
+	 * @return the serialized markup of the document
+	 */
+	public String getSource() {
+		
+		try {
+			
+			final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+			
+			final StringWriter writer = new StringWriter();
+			transformer.transform(new DOMSource(document), new StreamResult(writer));
+			return writer.toString();
+			
+		} catch (TransformerException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * @param xpathExpression an XPath expression evaluated against the document
+	 * @return the matching elements in document order
+	 */
+	public List<Element> findByXpath(String xpathExpression) {
+		return find(document, "xpath", xpathExpression);
+	}
+	
+	/**
+	 * Finds elements using a WebDriver wire protocol lookup strategy
+	 * 
+	 * @param context the node the search is relative to
+	 * @param using the wire protocol strategy name (e.g. "xpath", "link text")
+	 * @param value the locator
+	 * @return the matching elements in document order
+	 */
+	public List<Element> find(Node context, String using, String value) {
+		
+		final String expression = toXpath(context, checkNotNull(using), checkNotNull(value));
+		
+		try {
+			
+			final NodeList nodes = (NodeList) xpath.evaluate(expression, context, XPathConstants.NODESET);
+			final List<Element> elements = new ArrayList<Element>(nodes.getLength());
+			
+			for (int i = 0; i < nodes.getLength(); i++) {
+				
+				if (nodes.item(i) instanceof Element)
+					elements.add((Element) nodes.item(i));
+			}
+			
+			return elements;
+			
+		} catch (XPathExpressionException e) {
+			throw new InvalidSelectorException(String.format("Unable to evaluate %s locator [%s] : %s", using, value, e.getMessage()));
+		}
+	}
+	
+	/**
+	 * Translates a lookup strategy into an equivalent XPath expression
+	 * 
+	 * @param context the node the search is relative to
+	 * @param using the wire protocol strategy name
+	 * @param value the locator
+	 * @return String the XPath expression
+	 */
+	String toXpath(Node context, String using, String value) {
+		
+		final String prefix = context instanceof Document ? "//" : ".//";
+		
+		if ("xpath".equals(using))
+			return value;
+		if ("id".equals(using))
+			return prefix + "*[@id=" + literal(value) + "]";
+		if ("name".equals(using))
+			return prefix + "*[@name=" + literal(value) + "]";
+		if ("tag name".equals(using))
+			return prefix + value.toLowerCase(Locale.ENGLISH);
+		if ("class name".equals(using))
+			return prefix + "*[contains(concat(' ', normalize-space(@class), ' '), " + literal(" " + value + " ") + ")]";
+		if ("link text".equals(using))
+			return prefix + "a[normalize-space(.)=" + literal(value.trim()) + "]";
+		if ("partial link text".equals(using))
+			return prefix + "a[contains(normalize-space(.), " + literal(value.trim()) + ")]";
+		if ("css selector".equals(using))
+			return CssSelectors.toXpath(value, ! (context instanceof Document));
+		
+		throw new InvalidSelectorException("Unsupported lookup strategy : " + using);
+	}
+	
+	/**
+	 * @param value the string to quote
+	 * @return the value as an XPath string literal, using concat() when it contains both quote types
+	 */
+	static String literal(String value) {
+		
+		if (value.indexOf('\'') < 0)
+			return "'" + value + "'";
+		if (value.indexOf('"') < 0)
+			return "\"" + value + "\"";
+		
+		final StringBuilder s = new StringBuilder("concat(");
+		final String[] parts = value.split("'", -1);
+		
+		for (int i = 0; i < parts.length; i++) {
+			
+			if (i > 0)
+				s.append(", \"'\", ");
+			s.append("'").append(parts[i]).append("'");
+		}
+		
+		return s.append(")").toString();
+	}
+	
+	/**
+	 * @param element the element to test
+	 * @return a flag indicating whether the element would be rendered
+	 */
+	public static boolean isDisplayed(Element element) {
+		
+		if ("input".equalsIgnoreCase(element.getTagName()) && "hidden".equalsIgnoreCase(element.getAttribute("type")))
+			return false;
+		
+		for (Node n = element; n instanceof Element; n = n.getParentNode()) {
+			
+			final Element e = (Element) n;
+			final String tag = e.getTagName().toLowerCase(Locale.ENGLISH);
+			
+			if ("head".equals(tag) || "script".equals(tag) || "style".equals(tag) || "title".equals(tag))
+				return false;
+			
+			if (e.hasAttribute("hidden"))
+				return false;
+			
+			final String display = getStyle(e, "display");
+			final String visibility = getStyle(e, "visibility");
+			
+			if ("none".equals(display) || "hidden".equals(visibility))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @param element the element to inspect
+	 * @param property the CSS property name
+	 * @return the value of the property from the inline style attribute, or an empty string
+	 */
+	public static String getStyle(Element element, String property) {
+		
+		final String style = element.getAttribute("style");
+		
+		if (style == null || style.length() == 0)
+			return "";
+		
+		for (String declaration : style.split(";")) {
+			
+			final int colon = declaration.indexOf(':');
+			
+			if (colon > 0 && declaration.substring(0, colon).trim().equalsIgnoreCase(property))
+				return declaration.substring(colon + 1).trim().toLowerCase(Locale.ENGLISH);
+		}
+		
+		return "";
+	}
+	
+	/**
+	 * @param element the element to inspect
+	 * @return the whitespace-normalized text of the element and it's visible descendants
+	 */
+	public static String getText(Element element) {
+		
+		if (! isDisplayed(element))
+			return "";
+		
+		final StringBuilder s = new StringBuilder();
+		appendVisibleText(element, s);
+		return normalize(s.toString());
+	}
+	
+	private static void appendVisibleText(Node node, StringBuilder s) {
+		
+		final NodeList children = node.getChildNodes();
+		
+		for (int i = 0; i < children.getLength(); i++) {
+			
+			final Node child = children.item(i);
+			
+			if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE)
+				s.append(child.getNodeValue());
+			else if (child instanceof Element && isDisplayed((Element) child)) {
+				s.append(' ');
+				appendVisibleText(child, s);
+				s.append(' ');
+			}
+		}
+	}
+	
+	private static String normalize(String text) {
+		return text.replaceAll("\\s+", " ").trim();
+	}
+	
+	/**
+	 * @return the elements of the document in document order
+	 */
+	public List<Element> getAllElements() {
+		
+		final NodeList nodes = document.getElementsByTagName("*");
+		
+		if (nodes.getLength() == 0)
+			return Collections.emptyList();
+		
+		final List<Element> elements = new ArrayList<Element>(nodes.getLength());
+		
+		for (int i = 0; i < nodes.getLength(); i++)
+			elements.add((Element) nodes.item(i));
+		
+		return elements;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return "FakeDocument : " + getTitle();
+	}
+}
@@ -0,0 +1,61 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.fake;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Failures which can be injected into the FakeCommandExecutor. Each failure is reported with
+ * the wire status code a real driver would use, so RemoteWebDriver raises the same exception
+ * type (and message) that the framework sees against a real browser.
+ */
+public enum InjectedFailure {
+
+	STALE_ELEMENT(10, "Element is no longer attached to the DOM"),
+	NOT_CLICKABLE(13, "Element is not clickable at point (0, 0). Other element would receive the click"),
+	TIMEOUT(21, "Timed out waiting for the command to complete");
+	
+	private final int status;
+	private final String message;
+	
+	private InjectedFailure(int status, String message) {
+		this.status = status;
+		this.message = message;
+	}
+	
+	/**
+	 * @return the wire status code reported for this failure
+	 */
+	public int getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return the message reported for this failure
+	 */
+	public String getMessage() {
+		return message;
+	}
+}
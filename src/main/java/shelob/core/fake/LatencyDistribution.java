@@ -0,0 +1,145 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.fake;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Models the round trip time of a wire command. Samples are drawn from the seeded Random of 
+ * the FakeCommandExecutor, so a given seed always produces the same sequence of latencies.
+ */
+public abstract class LatencyDistribution {
+
+	private static final LatencyDistribution NONE = new LatencyDistribution() {
+		
+		@Override
+		public long sampleNanos(Random random) {
+			return 0;
+		}
+	};
+	
+	/**
+	 * @param random the source of randomness
+	 * @return the latency of a single command in nanoseconds
+	 */
+	public abstract long sampleNanos(Random random);
+	
+	/**
+	 * @return a distribution which never adds latency
+	 */
+	public static LatencyDistribution none() {
+		return NONE;
+	}
+	
+	/**
+	 * @param latency the latency of every command
+	 * @param unit the TimeUnit of the latency
+	 * @return a distribution which always adds the same latency
+	 */
+	public static LatencyDistribution fixed(long latency, TimeUnit unit) {
+		
+		checkArgument(latency >= 0, "latency must not be negative");
+		final long nanos = checkNotNull(unit).toNanos(latency);
+		
+		return new LatencyDistribution() {
+			
+			@Override
+			public long sampleNanos(Random random) {
+				return nanos;
+			}
+		};
+	}
+	
+	/**
+	 * @param min the minimum latency
+	 * @param max the maximum latency
+	 * @param unit the TimeUnit of the bounds
+	 * @return a distribution which adds a latency uniformly distributed between min and max
+	 */
+	public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+		
+		checkArgument(min >= 0 && max >= min, "bounds must satisfy 0 <= min <= max");
+		final long minNanos = checkNotNull(unit).toNanos(min);
+		final long rangeNanos = unit.toNanos(max) - minNanos;
+		
+		return new LatencyDistribution() {
+			
+			@Override
+			public long sampleNanos(Random random) {
+				return minNanos + (long) (random.nextDouble() * rangeNanos);
+			}
+		};
+	}
+	
+	/**
+	 * @param mean the mean latency
+	 * @param standardDeviation the standard deviation of the latency
+	 * @param unit the TimeUnit of the parameters
+	 * @return a normally distributed latency, truncated at zero
+	 */
+	public static LatencyDistribution normal(long mean, long standardDeviation, TimeUnit unit) {
+		
+		checkArgument(mean >= 0 && standardDeviation >= 0, "parameters must not be negative");
+		final long meanNanos = checkNotNull(unit).toNanos(mean);
+		final long deviationNanos = unit.toNanos(standardDeviation);
+		
+		return new LatencyDistribution() {
+			
+			@Override
+			public long sampleNanos(Random random) {
+				return Math.max(0, meanNanos + (long) (random.nextGaussian() * deviationNanos));
+			}
+		};
+	}
+	
+	/**
+	 * Exponentially distributed latencies produce the long tail typically seen against a busy Grid.
+	 * 
+	 * @param mean the mean latency
+	 * @param unit the TimeUnit of the mean
+	 * @return an exponentially distributed latency
+	 */
+	public static LatencyDistribution exponential(long mean, TimeUnit unit) {
+		
+		checkArgument(mean >= 0, "mean must not be negative");
+		final long meanNanos = checkNotNull(unit).toNanos(mean);
+		
+		return new LatencyDistribution() {
+			
+			@Override
+			public long sampleNanos(Random random) {
+				return (long) (-Math.log(1.0 - random.nextDouble()) * meanNanos);
+			}
+		};
+	}
+}
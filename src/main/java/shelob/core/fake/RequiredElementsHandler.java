@@ -0,0 +1,81 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.fake;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriverException;
+
+import shelob.core.interfaces.IScriptHandler;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Answers the Page.verifyRequired() script against the FakeDocument, in place of a JavaScript engine.
+ */
+final class RequiredElementsHandler implements IScriptHandler {
+
+	public Object execute(FakeDocument document, String script, List<Object> arguments) {
+		
+		final Map<String, Object> outcome = new HashMap<String, Object>();
+		final List<Long> missing = new ArrayList<Long>();
+		long index = 0;
+		
+		// nested arguments arrive as collections rather than lists
+		for (Object raw : (Collection<?>) arguments.get(0)) {
+			
+			final List<?> spec = new ArrayList<Object>((Collection<?>) raw);
+			boolean found = false;
+			
+			for (int j = 1; j < spec.size() && ! found; j++) {
+				
+				try {
+					found = ! document.find(document.getDocument(), (String) spec.get(0), (String) spec.get(j)).isEmpty();
+				} catch (WebDriverException e) {
+					
+					// as in the browser, an invalid locator is reported rather than treated as missing
+					outcome.put("status", "error");
+					outcome.put("index", Long.valueOf(index));
+					outcome.put("message", e.getMessage());
+					
+					return outcome;
+				}
+			}
+			
+			if (! found)
+				missing.add(Long.valueOf(index));
+			index++;
+		}
+		
+		outcome.put("status", "ok");
+		outcome.put("missing", missing);
+		
+		return outcome;
+	}
+}
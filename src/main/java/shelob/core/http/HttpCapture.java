@@ -0,0 +1,483 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Charsets;
+
+import shelob.core.ApplicationURL;
+import shelob.core.User;
+import shelob.core.interfaces.IHttpExchangeListener;
+import shelob.core.interfaces.IOperationListener;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.trace.OperationOutcome;
+import shelob.core.trace.OperationType;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Records the HTTP requests a page flow makes, and turns them into an HttpScript which the 
+ * HttpReplayEngine replays without a browser, at a far higher rate than virtual users driving 
+ * browsers can reach :
+ * 
+ * 		HttpCapture capture = new HttpCapture(url, alice).exclude(ResourceProxy.STATIC_ASSETS);
+ * 		ResourceProxy proxy = new ResourceProxy.Builder().capture(capture).build().start();
+ * 		RemoteWebDriver driver = HtmlUnit.getDriver(true, new CapabilityProfile.Builder("capture").proxy(proxy).build());
+ * 		ApplicationParameters parameters = new ApplicationParameters(driver, url, alice).setOperationListener(capture);
+ * 
+ * 		... run the flow through the Page/Element model ...
+ * 
+ * 		capture.toScript().write(new File("checkout.json"));
+ * 
+ * Each request is labelled with the top level Page/Element operation it was made by (e.g. 
+ * "goToLink Orders : Order"), that is the operation which was running when the proxy received the 
+ * request, or the last one to have started when none was (e.g. a request made by a script after 
+ * a click returned). Operations are followed on each thread they run on, so operations of an 
+ * AsyncElement are top level operations of their own. Only requests to the scheme, host and port of the ApplicationURL 
+ * are recorded. The script is parameterized by replacing, wherever they appear whole in the 
+ * URLs, header values and bodies :
+ * 
+ * 		the scheme, host and port of the ApplicationURL		with ${base}
+ * 		the email and password of the User					with ${user.email} and ${user.password}
+ * 		the identifiers template elements were found with	with a parameter named after the label of 
+ * 															the element (${Order}, or ${Order.1}, ${Order.2} 
+ * 															for elements taking several identifiers)
+ * 
+ * The URL encoded form of each value is replaced as well (e.g. ${user.email|url}). Identifiers are 
+ * only replaced in the requests of the operation which used them, and only in header values when 
+ * they are long enough not to be mistaken for a version or a q-value. Cookies are not recorded; 
+ * the replay engine keeps the cookies of each virtual user as the browser did.
+ * 
+ * NOTE : Values generated by the server for the session (e.g. anti-forgery tokens) are recorded 
+ * 		  as they were sent, and must be removed from the flow or the script by hand. A request 
+ * 		  made while several operations overlap (e.g. an AsyncElement waiting while the flow 
+ * 		  goes on) is labelled with the one which started last, so flows which overlap operations 
+ * 		  should be checked by hand, and each proxy should capture a single flow.
+ */
+@ThreadSafe
+public class HttpCapture implements IHttpExchangeListener, IOperationListener {
+
+	/** the parameter replacing the scheme, host and port of the application */
+	public static final String BASE = "base";
+	
+	/** the parameter replacing the email of the User */
+	public static final String USER_EMAIL = "user.email";
+	
+	/** the parameter replacing the password of the User */
+	public static final String USER_PASSWORD = "user.password";
+	
+	// the session is kept by the replay engine; the rest are set by the connection
+	private static final Set<String> NOT_RECORDED = new HashSet<String>(Arrays.asList(
+			"cookie", "host", "content-length", "connection", "keep-alive", "proxy-connection", 
+			"proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade"));
+	
+	// identifiers shorter than this are left alone in header values, e.g. in User-Agent or q=0.9
+	private static final int MIN_HEADER_IDENTIFIER = 4;
+	
+	private final String base;
+	private final User user;
+	private final List<Pattern> excluded = new CopyOnWriteArrayList<Pattern>();
+	
+	// the requests made before the first operation
+	private static final Operation START = new Operation(0, "start", Long.MIN_VALUE);
+	
+	// the top level operation running on each thread, and the depth of the operations within it
+	private final ThreadLocal<Frame> frames = new ThreadLocal<Frame>() {
+		@Override
+		protected Frame initialValue() {
+			return new Frame();
+		}
+	};
+	
+	@GuardedBy("this") private final List<Exchange> exchanges = new ArrayList<Exchange>();
+	@GuardedBy("this") private final Map<String, String> identifiers = new LinkedHashMap<String, String>();
+	// identifier -> the top level operations which used it
+	@GuardedBy("this") private final Map<String, Set<Integer>> uses = new HashMap<String, Set<Integer>>();
+	// the top level operations, in the order they started
+	@GuardedBy("this") private final List<Operation> operations = new ArrayList<Operation>();
+	@GuardedBy("this") private int count = 0;
+	
+	private static final class Frame {
+		
+		private int depth;
+		private Operation operation;
+	}
+	
+	private static final class Operation {
+		
+		private final int number;
+		private final String step;
+		private final long startNanos;
+		@GuardedBy("HttpCapture.this") private long endNanos = Long.MAX_VALUE;
+		
+		Operation(int number, String step, long startNanos) {
+			this.number = number;
+			this.step = step;
+			this.startNanos = startNanos;
+		}
+	}
+	
+	private static final class Exchange {
+		
+		private final Operation operation;
+		private final String method;
+		private final String url;
+		private final Map<String, String> headers;
+		private final String body;
+		private final int status;
+		private final long startNanos;
+		
+		Exchange(Operation operation, String method, String url, Map<String, String> headers, String body, int status, long startNanos) {
+			this.operation = operation;
+			this.method = method;
+			this.url = url;
+			this.headers = headers;
+			this.body = body;
+			this.status = status;
+			this.startNanos = startNanos;
+		}
+	}
+	
+	/**
+	 * @param url the ApplicationURL of the flow
+	 * @param user the User the flow runs as
+	 */
+	public HttpCapture(ApplicationURL url, User user) {
+		
+		final String full = url.getURL();
+		this.base = full.substring(0, full.length() - url.getBaseURL().length());
+		this.user = checkNotNull(user);
+	}
+	
+	/**
+	 * @param pattern the regular expression matched against the full URL of requests which are not recorded
+	 * @return this; fluent interface
+	 */
+	public HttpCapture exclude(String pattern) {
+		excluded.add(Pattern.compile(pattern));
+		return this;
+	}
+	
+	public synchronized void operationStarted(OperationType type, String operation, IPage page, IElement element) {
+		
+		final Frame frame = frames.get();
+		
+		if (frame.depth++ == 0) {
+			
+			final StringBuilder name = new StringBuilder(operation).append(' ').append(page.getPageTitle());
+			
+			if (element != null && element.hasLabel())
+				name.append(" : ").append(element.getLabel());
+			
+			frame.operation = new Operation(++count, name.toString(), System.nanoTime());
+			operations.add(frame.operation);
+		}
+		
+		if (element != null && element.isTemplate())
+			recordIdentifiers(element, frame.operation.number);
+	}
+	
+	public synchronized void operationCompleted(OperationType type, String operation, IPage page, IElement element, 
+			long startNanos, long durationNanos, OperationOutcome outcome) {
+		
+		final Frame frame = frames.get();
+		
+		if (frame.depth == 0)
+			return;
+		
+		if (--frame.depth == 0) {
+			frame.operation.endNanos = System.nanoTime();
+			frame.operation = null;
+		}
+	}
+	
+	public void exchanged(String method, String url, Map<String, String> headers, byte[] body, int status, long startNanos) {
+		
+		if (! url.equals(base) && ! url.startsWith(base + "/") && ! url.startsWith(base + "?"))
+			return;
+		
+		for (Pattern pattern : excluded) {
+			
+			if (pattern.matcher(url).matches())
+				return;
+		}
+		
+		final Map<String, String> recorded = new LinkedHashMap<String, String>();
+		
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			
+			if (! NOT_RECORDED.contains(header.getKey().toLowerCase(Locale.ENGLISH)))
+				recorded.put(header.getKey(), header.getValue());
+		}
+		
+		final String text = body.length == 0 ? null : new String(body, Charsets.UTF_8);
+		
+		synchronized (this) {
+			exchanges.add(new Exchange(getOperation(startNanos), method, url, recorded, text, status, startNanos));
+		}
+	}
+	
+	/**
+	 * @return the number of requests recorded so far
+	 */
+	public synchronized int size() {
+		return exchanges.size();
+	}
+	
+	/**
+	 * Forgets the requests and identifiers recorded so far, e.g. those made while setting up the flow
+	 */
+	public synchronized void clear() {
+		
+		exchanges.clear();
+		identifiers.clear();
+		uses.clear();
+		
+		// those still running label the requests still to come
+		for (Iterator<Operation> i = operations.iterator(); i.hasNext();) {
+			
+			if (i.next().endNanos != Long.MAX_VALUE)
+				i.remove();
+		}
+	}
+	
+	/**
+	 * @return the requests recorded so far, parameterized
+	 */
+	public synchronized HttpScript toScript() {
+		
+		// value -> parameter, matched longest first so that no value is replaced inside another
+		final Map<String, String> replacements = new LinkedHashMap<String, String>();
+		replacements.put("${", "$${");
+		replacements.put(base, "${" + BASE + "}");
+		putValue(replacements, user.getEmail(), USER_EMAIL);
+		putValue(replacements, user.getPassword(), USER_PASSWORD);
+		
+		final Map<String, String> defaults = new LinkedHashMap<String, String>();
+		defaults.put(BASE, base);
+		
+		for (Map.Entry<String, String> identifier : identifiers.entrySet())
+			defaults.put(identifier.getValue(), identifier.getKey());
+		
+		final List<HttpScript.Request> requests = new ArrayList<HttpScript.Request>();
+		
+		Map<String, String> scoped = null;
+		Map<String, String> headerScoped = null;
+		Pattern pattern = null;
+		Pattern headerPattern = null;
+		int last = -1;
+		
+		// in the order the browser sent them
+		final List<Exchange> ordered = new ArrayList<Exchange>(exchanges);
+		
+		Collections.sort(ordered, new Comparator<Exchange>() {
+			public int compare(Exchange a, Exchange b) {
+				return Long.signum(a.startNanos - b.startNanos);
+			}
+		});
+		
+		for (Exchange exchange : ordered) {
+			
+			// the requests of one operation are mostly consecutive, so the values are only gathered again as it changes
+			if (exchange.operation.number != last) {
+				
+				last = exchange.operation.number;
+				scoped = scope(replacements, last, 1);
+				headerScoped = scope(replacements, last, MIN_HEADER_IDENTIFIER);
+				pattern = compile(scoped.keySet());
+				headerPattern = compile(headerScoped.keySet());
+			}
+			
+			final Map<String, String> headers = new LinkedHashMap<String, String>();
+			
+			for (Map.Entry<String, String> header : exchange.headers.entrySet())
+				headers.put(header.getKey(), replace(headerPattern, headerScoped, header.getValue()));
+			
+			requests.add(new HttpScript.Request(exchange.operation.step, exchange.method, replace(pattern, scoped, exchange.url), 
+								headers, exchange.body == null ? null : replace(pattern, scoped, exchange.body), exchange.status));
+		}
+		
+		return new HttpScript(requests, defaults);
+	}
+	
+	/**
+	 * @param startNanos the System.nanoTime() the request was received at
+	 * @return the top level operation which made the request
+	 */
+	@GuardedBy("this")
+	private Operation getOperation(long startNanos) {
+		
+		Operation running = null;
+		Operation started = START;
+		
+		for (Operation operation : operations) {
+			
+			if (operation.startNanos - startNanos > 0)
+				break;
+			
+			started = operation;
+			
+			if (operation.endNanos == Long.MAX_VALUE || operation.endNanos - startNanos >= 0)
+				running = operation;
+		}
+		
+		return running == null ? started : running;
+	}
+	
+	@GuardedBy("this")
+	private void recordIdentifiers(IElement element, int operation) { // $codepro.audit.disable methodJavadoc
+		
+		final List<String> values = new ArrayList<String>(element.getTemplateIdentifiers());
+		final String label = element.hasLabel() ? element.getLabel().trim().replaceAll("[^A-Za-z0-9_.-]+", "_") : "identifier";
+		
+		for (int i = 0; i < values.size(); i++) {
+			
+			final String value = values.get(i);
+			
+			if (value.isEmpty())
+				continue;
+			
+			if (! uses.containsKey(value))
+				uses.put(value, new HashSet<Integer>());
+			
+			uses.get(value).add(operation);
+			
+			if (identifiers.containsKey(value))
+				continue;
+			
+			final String name = values.size() == 1 ? label : label + "." + (i + 1);
+			String unique = name;
+			
+			// the same element found again with another identifier
+			for (int n = 2; identifiers.containsValue(unique); n++)
+				unique = name + "#" + n;
+			
+			identifiers.put(value, unique);
+		}
+	}
+	
+	/**
+	 * @param replacements the values replaced in every request
+	 * @param used the top level operation which made the requests
+	 * @param minLength the shortest identifier replaced
+	 * @return the values replaced in the requests of the operation
+	 */
+	@GuardedBy("this")
+	private Map<String, String> scope(Map<String, String> replacements, int used, int minLength) {
+		
+		final Map<String, String> scoped = new LinkedHashMap<String, String>(replacements);
+		
+		for (Map.Entry<String, String> identifier : identifiers.entrySet()) {
+			
+			if (identifier.getKey().length() >= minLength && uses.get(identifier.getKey()).contains(used))
+				putValue(scoped, identifier.getKey(), identifier.getValue());
+		}
+		
+		return scoped;
+	}
+	
+	private static void putValue(Map<String, String> replacements, String value, String parameter) { // $codepro.audit.disable methodJavadoc
+		
+		if (value == null || value.isEmpty())
+			return;
+		
+		replacements.put(value, "${" + parameter + "}");
+		
+		final String encoded = HttpScript.encode(value);
+		
+		if (! encoded.equals(value))
+			replacements.put(encoded, "${" + parameter + "|url}");
+	}
+	
+	private Pattern compile(Set<String> values) { // $codepro.audit.disable methodJavadoc
+		
+		final List<String> ordered = new ArrayList<String>(values);
+		
+		Collections.sort(ordered, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return b.length() - a.length();
+			}
+		});
+		
+		final StringBuilder regex = new StringBuilder();
+		
+		for (String value : ordered) {
+			
+			if (regex.length() > 0)
+				regex.append('|');
+			
+			// values are only replaced whole, so identifier 12 is left alone in 3124
+			if (value.equals(base) || value.equals("${"))
+				regex.append(Pattern.quote(value));
+			else
+				regex.append("(?<![A-Za-z0-9])").append(Pattern.quote(value)).append("(?![A-Za-z0-9])");
+		}
+		
+		return Pattern.compile(regex.toString());
+	}
+	
+	private static String replace(Pattern pattern, Map<String, String> replacements, String text) { // $codepro.audit.disable methodJavadoc
+		
+		final Matcher matcher = pattern.matcher(text);
+		final StringBuffer s = new StringBuffer();
+		
+		while (matcher.find())
+			matcher.appendReplacement(s, Matcher.quoteReplacement(replacements.get(matcher.group())));
+		
+		matcher.appendTail(s);
+		return s.toString();
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public synchronized String toString() {
+		return "HttpCapture [" + base + ", " + exchanges.size() + " requests, identifiers " + identifiers + "]";
+	}
+}
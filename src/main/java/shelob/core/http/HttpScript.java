@@ -0,0 +1,445 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import shelob.core.exceptions.InsufficientArgumentsException;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The HTTP requests of a recorded page flow (see HttpCapture), replayable without a browser by 
+ * the HttpReplayEngine. The URL, header values and body of every request are templates, in which 
+ * the values which vary between runs are parameters :
+ * 
+ * 		${base}				the scheme, host and port of the application, e.g. http://localhost:8080
+ * 		${user.email}		the credentials of the User
+ * 		${user.password}
+ * 		${Order}			the identifier a template element was found with, named after it's label
+ * 		${Order|url}		the same value, URL encoded (as in query strings and form posts)
+ * 		$${					a literal "${"
+ * 
+ * Scripts are written and read as JSON, so a recorded flow can be checked in and edited. The 
+ * values the flow was recorded with are kept as defaults, except for the credentials.
+ * 
+ * NOTE : Bodies are held as UTF-8 text; flows posting binary content cannot be replayed.
+ */
+@Immutable
+public final class HttpScript {
+
+	private final List<Request> requests;
+	private final Map<String, String> defaults;
+	private final Set<String> parameters;
+	
+	/**
+	 * One request of the script
+	 */
+	@Immutable
+	public static final class Request {
+		
+		private final String step;
+		private final String method;
+		private final Template url;
+		private final Map<String, Template> headers;
+		private final Template body;
+		private final int status;
+		
+		/**
+		 * @param step the page flow operation the request was made by, e.g. "goToLink Orders : Order"
+		 * @param method the request method
+		 * @param url the URL template
+		 * @param headers the header value templates, by name
+		 * @param body the body template, or null
+		 * @param status the status the request was answered with when recorded
+		 */
+		public Request(String step, String method, String url, Map<String, String> headers, @Nullable String body, int status) {
+			
+			this.step = checkNotNull(step);
+			this.method = checkNotNull(method);
+			this.url = new Template(url);
+			this.body = body == null ? null : new Template(body);
+			this.status = status;
+			
+			final Map<String, Template> h = new LinkedHashMap<String, Template>();
+			
+			for (Map.Entry<String, String> header : headers.entrySet())
+				h.put(header.getKey(), new Template(header.getValue()));
+			
+			this.headers = Collections.unmodifiableMap(h);
+		}
+		
+		public String getStep() {
+			return step;
+		}
+		
+		public String getMethod() {
+			return method;
+		}
+		
+		/**
+		 * @return the URL template, e.g. "${base}/app/orders/${Order}"
+		 */
+		public String getUrl() {
+			return url.source;
+		}
+		
+		/**
+		 * @return the header value templates, by name
+		 */
+		public Map<String, String> getHeaders() {
+			
+			final Map<String, String> h = new LinkedHashMap<String, String>();
+			
+			for (Map.Entry<String, Template> header : headers.entrySet())
+				h.put(header.getKey(), header.getValue().source);
+			
+			return h;
+		}
+		
+		/**
+		 * @return the body template, or null
+		 */
+		public String getBody() {
+			return body == null ? null : body.source;
+		}
+		
+		/**
+		 * @return the status the request was answered with when recorded
+		 */
+		public int getStatus() {
+			return status;
+		}
+		
+		/**
+		 * @param values the value of every parameter of the request
+		 * @return the URL
+		 * @throws InsufficientArgumentsException when a parameter has no value
+		 */
+		public String resolveUrl(Map<String, String> values) {
+			return url.resolve(values);
+		}
+		
+		/**
+		 * @param values the value of every parameter of the request
+		 * @return the header values, by name
+		 * @throws InsufficientArgumentsException when a parameter has no value
+		 */
+		public Map<String, String> resolveHeaders(Map<String, String> values) {
+			
+			final Map<String, String> h = new LinkedHashMap<String, String>();
+			
+			for (Map.Entry<String, Template> header : headers.entrySet())
+				h.put(header.getKey(), header.getValue().resolve(values));
+			
+			return h;
+		}
+		
+		/**
+		 * @param values the value of every parameter of the request
+		 * @return the body, or null
+		 * @throws InsufficientArgumentsException when a parameter has no value
+		 */
+		public byte[] resolveBody(Map<String, String> values) {
+			return body == null ? null : body.resolve(values).getBytes(Charsets.UTF_8);
+		}
+		
+		private void collectParameters(Set<String> names) { // $codepro.audit.disable methodJavadoc
+			
+			names.addAll(url.names);
+			
+			for (Template header : headers.values())
+				names.addAll(header.names);
+			
+			if (body != null)
+				names.addAll(body.names);
+		}
+		
+		/**
+		 * Method toString.
+		 * @return String
+		 */
+		@Override
+		public String toString() {
+			return step + " : " + method + " " + url.source + " (" + status + ")";
+		}
+	}
+	
+	/**
+	 * A string split into literal text and parameters once, so it is resolved without parsing
+	 */
+	@Immutable
+	private static final class Template {
+		
+		private final String source;
+		
+		// the literal text before each parameter, followed by the text after the last one
+		private final List<String> literals = new ArrayList<String>();
+		private final List<String> names = new ArrayList<String>();
+		private final List<Boolean> encoded = new ArrayList<Boolean>();
+		
+		Template(String source) {
+			
+			this.source = checkNotNull(source);
+			
+			final StringBuilder literal = new StringBuilder();
+			int i = 0;
+			
+			while (i < source.length()) {
+				
+				if (source.startsWith("$${", i)) {
+					literal.append("${");
+					i += 3;
+					
+				} else if (source.startsWith("${", i)) {
+					
+					final int end = source.indexOf('}', i);
+					
+					if (end < 0)
+						throw new IllegalArgumentException("Unterminated parameter in [" + source + "]");
+					
+					String name = source.substring(i + 2, end);
+					final boolean url = name.endsWith("|url");
+					
+					if (url)
+						name = name.substring(0, name.length() - 4);
+					
+					literals.add(literal.toString());
+					names.add(name);
+					encoded.add(url);
+					literal.setLength(0);
+					i = end + 1;
+					
+				} else
+					literal.append(source.charAt(i++));
+			}
+			
+			literals.add(literal.toString());
+		}
+		
+		String resolve(Map<String, String> values) {
+			
+			if (names.isEmpty())
+				return literals.get(0);
+			
+			final StringBuilder s = new StringBuilder(source.length() + 32);
+			
+			for (int i = 0; i < names.size(); i++) {
+				
+				final String value = values.get(names.get(i));
+				
+				if (value == null)
+					throw new InsufficientArgumentsException("No value for the parameter ${" + names.get(i) + "} of [" + source + "]");
+				
+				s.append(literals.get(i)).append(encoded.get(i) ? encode(value) : value);
+			}
+			
+			return s.append(literals.get(names.size())).toString();
+		}
+	}
+	
+	/**
+	 * @param requests the requests, in the order they are replayed
+	 * @param defaults the values of the parameters the flow was recorded with
+	 */
+	public HttpScript(List<Request> requests, Map<String, String> defaults) {
+		
+		this.requests = Collections.unmodifiableList(new ArrayList<Request>(requests));
+		this.defaults = Collections.unmodifiableMap(new LinkedHashMap<String, String>(defaults));
+		
+		final Set<String> names = new TreeSet<String>();
+		
+		for (Request request : requests)
+			request.collectParameters(names);
+		
+		this.parameters = Collections.unmodifiableSet(names);
+	}
+	
+	public List<Request> getRequests() {
+		return requests;
+	}
+	
+	/**
+	 * @return the values of the parameters the flow was recorded with, by name; no credentials
+	 */
+	public Map<String, String> getDefaults() {
+		return defaults;
+	}
+	
+	/**
+	 * @return the names of the parameters used by the requests, sorted
+	 */
+	public Set<String> getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * @param value a parameter value
+	 * @return the value, as it appears in URLs and form posts
+	 */
+	public static String encode(String value) {
+		
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * @param file the file the script is written to, as JSON
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		Files.write(toJson(), file, Charsets.UTF_8);
+	}
+	
+	/**
+	 * @param file a script written by write()
+	 * @return the HttpScript
+	 * @throws IOException when the file cannot be read or is not a script
+	 */
+	public static HttpScript read(File file) throws IOException {
+		return fromJson(Files.toString(file, Charsets.UTF_8));
+	}
+	
+	/**
+	 * @return the script as JSON
+	 */
+	public String toJson() {
+		
+		try {
+			
+			final JSONArray array = new JSONArray();
+			
+			for (Request request : requests) {
+				
+				final JSONObject o = new JSONObject();
+				o.put("step", request.step);
+				o.put("method", request.method);
+				o.put("url", request.getUrl());
+				o.put("headers", new JSONObject(request.getHeaders()));
+				
+				if (request.body != null)
+					o.put("body", request.getBody());
+				
+				o.put("status", request.status);
+				array.put(o);
+			}
+			
+			final JSONObject script = new JSONObject();
+			script.put("defaults", new JSONObject(defaults));
+			script.put("requests", array);
+			return script.toString(2);
+			
+		} catch (JSONException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * @param json a script as written by toJson()
+	 * @return the HttpScript
+	 * @throws IOException when the JSON is not a script
+	 */
+	public static HttpScript fromJson(String json) throws IOException {
+		
+		try {
+			
+			final JSONObject script = new JSONObject(json);
+			final Map<String, String> defaults = toMap(script.optJSONObject("defaults"));
+			final JSONArray array = script.getJSONArray("requests");
+			final List<Request> requests = new ArrayList<Request>();
+			
+			for (int i = 0; i < array.length(); i++) {
+				
+				final JSONObject o = array.getJSONObject(i);
+				requests.add(new Request(o.getString("step"), o.getString("method"), o.getString("url"), 
+										 toMap(o.optJSONObject("headers")), o.has("body") ? o.getString("body") : null, o.getInt("status")));
+			}
+			
+			return new HttpScript(requests, defaults);
+			
+		} catch (JSONException e) {
+			throw new IOException("Not an HttpScript : " + e.getMessage());
+		}
+	}
+	
+	private static Map<String, String> toMap(@Nullable JSONObject o) throws JSONException { // $codepro.audit.disable methodJavadoc
+		
+		final Map<String, String> map = new LinkedHashMap<String, String>();
+		
+		if (o == null)
+			return map;
+		
+		for (Iterator<?> keys = o.keys(); keys.hasNext();) {
+			
+			final String key = (String) keys.next();
+			map.put(key, o.getString(key));
+		}
+		
+		return map;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		
+		final String newLine = System.getProperty("line.separator");
+		final StringBuilder s = new StringBuilder("HttpScript ").append(parameters);
+		
+		for (Request request : requests)
+			s.append(newLine).append('\t').append(request);
+		
+		return s.toString();
+	}
+}
@@ -0,0 +1,1321 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.openqa.selenium.Proxy;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import shelob.core.http.ResourceTiming.Source;
+import shelob.core.interfaces.IHttpExchangeListener;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * An embeddable HTTP proxy which the browser is pointed at (see CapabilityProfile.Builder.proxy()) 
+ * to cut the resources a page load pulls in :
+ * 
+ * 		ResourceProxy proxy = new ResourceProxy.Builder()
+ * 								.block(ResourceProxy.ANALYTICS)
+ * 								.stub(ResourceProxy.FONTS, "font/woff", new byte[0])
+ * 								.cache(ResourceProxy.STATIC_ASSETS)
+ * 								.build().start();
+ * 
+ * Rules are matched against the full URL, in the order they were added, and the first match wins. 
+ * Blocked resources are answered with 204 No Content, stubbed resources with the stub, and 
+ * cached resources are fetched once and then served from memory to every session using the 
+ * proxy. Responses which set cookies or are marked no-store or private are never cached. A 
+ * response which names request headers in Vary is cached once for each combination of their 
+ * values, and one which varies on * is never cached. A conditional request for a cached response 
+ * whose ETag or Last-Modified the browser already has is answered with 304 Not Modified. The time 
+ * taken to answer every resource is recorded as a ResourceTiming, up to maxTimings() of them 
+ * between two drainTimings(). Requests which reach the server or the cache can also be captured 
+ * (see HttpCapture).
+ * 
+ * Requests are passed on as the browser sent them, whatever their method or headers (Origin and 
+ * the CORS preflight headers included), over connections to the server which are kept alive. A 
+ * request which is not idempotent, such as a POST, is only ever sent once, on a new connection. 
+ * Responses which are not cached are streamed to the browser as they arrive.
+ * 
+ * NOTE : HTTPS is tunnelled without being decrypted, so only block rules apply to it, matched 
+ * 		  against https://host:port/. Request bodies, and the responses which are cached, are 
+ * 		  buffered in memory.
+ */
+@ThreadSafe
+public class ResourceProxy implements Closeable {
+
+	/** stylesheets, scripts, images and fonts */
+	public static final String STATIC_ASSETS = "(?i)[^?#]*\\.(css|js|png|gif|jpe?g|webp|svg|ico|woff2?|ttf|otf|eot)([?#].*)?";
+	
+	/** the common analytics and tag manager hosts */
+	public static final String ANALYTICS = "(?i)https?://[^/]*(google-analytics\\.com|googletagmanager\\.com|doubleclick\\.net|hotjar\\.com|segment\\.(io|com)|newrelic\\.com|nr-data\\.net)([:/].*)?";
+	
+	/** web fonts, and the Google font hosts */
+	public static final String FONTS = "(?i)([^?#]*\\.(woff2?|ttf|otf|eot)([?#].*)?|https?://fonts\\.(googleapis|gstatic)\\.com([:/].*)?)";
+	
+	/** raster images */
+	public static final String IMAGES = "(?i)[^?#]*\\.(png|gif|jpe?g|webp|bmp)([?#].*)?";
+	
+	/** a transparent 1x1 GIF, for stubbing images */
+	private static final byte[] TRANSPARENT_GIF = { 
+		0x47, 0x49, 0x46, 0x38, 0x39, 0x61, 0x01, 0x00, 0x01, 0x00, (byte) 0x80, 0x00, 0x00, 0x00, 0x00, 0x00, 
+		(byte) 0xff, (byte) 0xff, (byte) 0xff, 0x21, (byte) 0xf9, 0x04, 0x01, 0x00, 0x00, 0x00, 0x00, 0x2c, 0x00, 0x00, 
+		0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00, 0x02, 0x02, 0x44, 0x01, 0x00, 0x3b };
+	
+	// hop-by-hop headers, and the headers which frame the message on each side of the proxy
+	private static final Set<String> NOT_FORWARDED = new HashSet<String>(Arrays.asList(
+		"connection", "proxy-connection", "keep-alive", "proxy-authorization", "proxy-authenticate", 
+		"te", "trailer", "transfer-encoding", "upgrade", "content-length", "host"));
+	
+	// the methods a request can be sent twice with, e.g. again after a kept-alive connection turned out closed
+	private static final Set<String> IDEMPOTENT = new HashSet<String>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE"));
+	
+	private static final String CSV_HEADER = "start,method,url,status,source,bytes,milliseconds";
+	
+	private final String host;
+	private final int requestedPort;
+	private final List<Rule> rules;
+	private final long maxCacheBytes;
+	private final int maxTimings;
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	private final List<IHttpExchangeListener> listeners;
+	
+	// by the url and the values of the request headers named in Vary
+	private final ConcurrentMap<String, BufferedResponse> cache = new ConcurrentHashMap<String, BufferedResponse>();
+	// the request headers named in Vary, by the url of the cached responses
+	private final ConcurrentMap<String, List<String>> varies = new ConcurrentHashMap<String, List<String>>();
+	private final AtomicLong cacheBytes = new AtomicLong();
+	private final ExecutorService connections = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setNameFormat("shelob-proxy-%d").setDaemon(true).build());
+	
+	@GuardedBy("this") private final ArrayDeque<ResourceTiming> timings = new ArrayDeque<ResourceTiming>();
+	@GuardedBy("this") private long droppedTimings;
+	@GuardedBy("this") private final Set<Socket> sockets = new HashSet<Socket>();
+	// connections to the servers which are kept alive, by host:port
+	@GuardedBy("this") private final Map<String, List<ServerConnection>> idle = new HashMap<String, List<ServerConnection>>();
+	@GuardedBy("this") private ServerSocket server;
+	
+	private enum Action { BLOCK, STUB, CACHE }
+	
+	@Immutable
+	private static final class Rule {
+		
+		private final Pattern pattern;
+		private final Action action;
+		private final String contentType;
+		private final byte[] body;
+		
+		Rule(String pattern, Action action, String contentType, byte[] body) {
+			this.pattern = Pattern.compile(checkNotNull(pattern));
+			this.action = action;
+			this.contentType = contentType;
+			this.body = body;
+		}
+		
+		boolean matches(String url) {
+			return pattern.matcher(url).matches();
+		}
+	}
+	
+	@Immutable
+	private static final class BufferedResponse {
+		
+		private final int status;
+		private final String reason;
+		private final List<String[]> headers;
+		private final byte[] body;
+		
+		BufferedResponse(int status, String reason, List<String[]> headers, byte[] body) {
+			this.status = status;
+			this.reason = reason;
+			this.headers = headers;
+			this.body = body;
+		}
+	}
+	
+	/**
+	 * A connection to a server
+	 */
+	private static final class ServerConnection {
+		
+		private final String authority;
+		private final Socket socket;
+		private final InputStream in;
+		private final OutputStream out;
+		
+		ServerConnection(String authority, Socket socket) throws IOException {
+			this.authority = authority;
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream());
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+		}
+	}
+	
+	/**
+	 * The status and headers of a server response; the body is still to be read from the connection
+	 */
+	private static final class Upstream {
+		
+		private final ServerConnection connection;
+		private final int status;
+		private final String reason;
+		private final List<String[]> headers;
+		private final long length;
+		private final boolean chunked;
+		private final boolean bodyless;
+		private final boolean persistent;
+		
+		Upstream(ServerConnection connection, String method, String version, int status, String reason, List<String[]> received) {
+			
+			this.connection = connection;
+			this.status = status;
+			this.reason = reason;
+			this.headers = new ArrayList<String[]>();
+			
+			for (String[] header : received) {
+				
+				if (! NOT_FORWARDED.contains(header[0].toLowerCase(Locale.ENGLISH)))
+					headers.add(header);
+			}
+			
+			final String encoding = header(received, "Transfer-Encoding");
+			final String contentLength = header(received, "Content-Length");
+			final String keepAlive = header(received, "Connection");
+			
+			chunked = encoding != null && encoding.toLowerCase(Locale.ENGLISH).contains("chunked");
+			length = chunked || contentLength == null ? -1 : Long.parseLong(contentLength.trim());
+			bodyless = "HEAD".equals(method) || status == 204 || status == 304;
+			
+			// a body which runs until the connection closes leaves nothing to reuse
+			persistent = ("HTTP/1.1".equals(version) ? ! "close".equalsIgnoreCase(keepAlive) : "keep-alive".equalsIgnoreCase(keepAlive)) 
+					&& (bodyless || chunked || length >= 0);
+		}
+		
+		InputStream body() { // $codepro.audit.disable methodJavadoc
+			
+			if (bodyless)
+				return new ByteArrayInputStream(new byte[0]);
+			if (chunked)
+				return new ChunkedInputStream(connection.in);
+			
+			return length >= 0 ? new BoundedInputStream(connection.in, length) : connection.in;
+		}
+	}
+	
+	/**
+	 * Reads the data of a chunked body, up to and including it's last chunk
+	 */
+	private static final class ChunkedInputStream extends InputStream {
+		
+		private final InputStream in;
+		private long remaining = -1;
+		private boolean done;
+		
+		ChunkedInputStream(InputStream in) {
+			this.in = in;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			
+			final byte[] one = new byte[1];
+			return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			
+			if (done)
+				return -1;
+			
+			if (remaining == 0) {
+				readLine(in);
+				remaining = -1;
+			}
+			
+			if (remaining == -1) {
+				
+				final String size = readLine(in);
+				
+				if (size == null)
+					throw new EOFException("The server closed the connection within a chunked body");
+				
+				remaining = Long.parseLong(size.split(";")[0].trim(), 16);
+				
+				if (remaining == 0) {
+					readHeaders(in);
+					done = true;
+					return -1;
+				}
+			}
+			
+			final int read = in.read(b, off, (int) Math.min(len, remaining));
+			
+			if (read == -1)
+				throw new EOFException("The server closed the connection within a chunked body");
+			
+			remaining -= read;
+			return read;
+		}
+	}
+	
+	/**
+	 * The ResourceProxy Builder
+	 * @author melllaguno
+	 */
+	public static class Builder {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		// Optional parameters
+		private String host = "127.0.0.1";
+		private int port = 0;
+		private final List<Rule> rules = new ArrayList<Rule>();
+		private long maxCacheBytes = 64L * 1024 * 1024;
+		private int maxTimings = 10000;
+		private int connectTimeoutMillis = 10000;
+		private int readTimeoutMillis = 60000;
+		private final List<IHttpExchangeListener> listeners = new ArrayList<IHttpExchangeListener>();
+		
+		/**
+		 * @param host the address the proxy listens on, and the browser connects to; a Grid node on 
+		 * 		  another machine needs an address of this machine it can reach
+		 * @return this; fluent interface
+		 */
+		public Builder host(String host) {
+			this.host = checkNotNull(host);
+			return this;
+		}
+		
+		/**
+		 * @param port the port the proxy listens on; 0 (the default) for any free port
+		 * @return this; fluent interface
+		 */
+		public Builder port(int port) {
+			checkArgument(port >= 0, "port must be positive");
+			this.port = port;
+			return this;
+		}
+		
+		/**
+		 * @param pattern the regular expression matched against the full URL
+		 * @return this; fluent interface
+		 */
+		public Builder block(String pattern) {
+			rules.add(new Rule(pattern, Action.BLOCK, null, null));
+			return this;
+		}
+		
+		/**
+		 * @param pattern the regular expression matched against the full URL
+		 * @param contentType the content type of the stub
+		 * @param body the body of the stub
+		 * @return this; fluent interface
+		 */
+		public Builder stub(String pattern, String contentType, byte[] body) {
+			rules.add(new Rule(pattern, Action.STUB, checkNotNull(contentType), body.clone()));
+			return this;
+		}
+		
+		/**
+		 * Answers every image with a transparent 1x1 GIF
+		 * 
+		 * @return this; fluent interface
+		 */
+		public Builder stubImages() {
+			return stub(IMAGES, "image/gif", TRANSPARENT_GIF);
+		}
+		
+		/**
+		 * @param pattern the regular expression matched against the full URL
+		 * @return this; fluent interface
+		 */
+		public Builder cache(String pattern) {
+			rules.add(new Rule(pattern, Action.CACHE, null, null));
+			return this;
+		}
+		
+		/**
+		 * @param bytes the most response body bytes held in the cache; once full, nothing more is cached
+		 * @return this; fluent interface
+		 */
+		public Builder maxCacheBytes(long bytes) {
+			checkArgument(bytes >= 0, "maxCacheBytes must be positive");
+			maxCacheBytes = bytes;
+			return this;
+		}
+		
+		/**
+		 * @param count the timings kept between two drainTimings(), the oldest being dropped beyond it; 0 records none
+		 * @return this; fluent interface
+		 */
+		public Builder maxTimings(int count) {
+			checkArgument(count >= 0, "maxTimings must be positive");
+			maxTimings = count;
+			return this;
+		}
+		
+		/**
+		 * @param connectTimeoutMillis the time allowed to connect to the server
+		 * @param readTimeoutMillis the time allowed for the server to answer
+		 * @return this; fluent interface
+		 */
+		public Builder timeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+			this.connectTimeoutMillis = connectTimeoutMillis;
+			this.readTimeoutMillis = readTimeoutMillis;
+			return this;
+		}
+		
+		/**
+		 * @param listener notified of every request answered from the server or the cache
+		 * @return this; fluent interface
+		 */
+		public Builder capture(IHttpExchangeListener listener) {
+			listeners.add(checkNotNull(listener));
+			return this;
+		}
+		
+		/**
+		 * @return a new ResourceProxy; not yet listening
+		 */
+		public ResourceProxy build() {
+			return new ResourceProxy(this);
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param builder the ResourceProxy.Builder responsible for creating this object
+	 */
+	private ResourceProxy(Builder builder) {
+		host = builder.host;
+		requestedPort = builder.port;
+		rules = Collections.unmodifiableList(new ArrayList<Rule>(builder.rules));
+		maxCacheBytes = builder.maxCacheBytes;
+		maxTimings = builder.maxTimings;
+		connectTimeoutMillis = builder.connectTimeoutMillis;
+		readTimeoutMillis = builder.readTimeoutMillis;
+		listeners = Collections.unmodifiableList(new ArrayList<IHttpExchangeListener>(builder.listeners));
+	}
+	
+	/**
+	 * @return this, listening; fluent interface
+	 * @throws IOException when the port cannot be bound
+	 */
+	public synchronized ResourceProxy start() throws IOException {
+		
+		checkState(server == null, "The proxy has already been started");
+		
+		server = new ServerSocket();
+		server.bind(new InetSocketAddress(InetAddress.getByName(host), requestedPort));
+		
+		final ServerSocket listening = server;
+		
+		connections.execute(new Runnable() {
+			public void run() {
+				accept(listening);
+			}
+		});
+		
+		return this;
+	}
+	
+	/**
+	 * @return the port the proxy listens on
+	 */
+	public synchronized int getPort() {
+		checkState(server != null, "The proxy has not been started");
+		return server.getLocalPort();
+	}
+	
+	/**
+	 * @return host:port, as the browser's proxy settings expect it
+	 */
+	public String getHostAndPort() {
+		return host + ":" + getPort();
+	}
+	
+	/**
+	 * @return the Selenium Proxy settings for HTTP and HTTPS through this proxy
+	 */
+	public Proxy getProxy() {
+		
+		final String address = getHostAndPort();
+		return new Proxy().setHttpProxy(address).setSslProxy(address);
+	}
+	
+	/**
+	 * @return the timings recorded since the last drainTimings()
+	 */
+	public synchronized List<ResourceTiming> getTimings() {
+		return new ArrayList<ResourceTiming>(timings);
+	}
+	
+	/**
+	 * e.g. once per navigation, to attribute the resources to the page which loaded them
+	 * 
+	 * @return the timings recorded since the last drainTimings(), which are then discarded
+	 */
+	public synchronized List<ResourceTiming> drainTimings() {
+		
+		final List<ResourceTiming> drained = new ArrayList<ResourceTiming>(timings);
+		timings.clear();
+		droppedTimings = 0;
+		return drained;
+	}
+	
+	/**
+	 * @return the timings dropped since the last drainTimings(), once more than maxTimings() were recorded
+	 */
+	public synchronized long getDroppedTimings() {
+		return droppedTimings;
+	}
+	
+	/**
+	 * @return the response body bytes held in the cache
+	 */
+	public long getCacheBytes() {
+		return cacheBytes.get();
+	}
+	
+	/**
+	 * Discards every cached response
+	 */
+	public void clearCache() {
+		cache.clear();
+		varies.clear();
+		cacheBytes.set(0);
+	}
+	
+	/**
+	 * Writes one row per recorded resource, slowest first
+	 * 
+	 * @param file the CSV report
+	 * @throws IOException
+	 */
+	public void writeReport(File file) throws IOException {
+		
+		final List<ResourceTiming> rows = getTimings();
+		
+		Collections.sort(rows, new Comparator<ResourceTiming>() {
+			public int compare(ResourceTiming a, ResourceTiming b) {
+				return a.getDurationNanos() < b.getDurationNanos() ? 1 : a.getDurationNanos() == b.getDurationNanos() ? 0 : -1;
+			}
+		});
+		
+		final Writer csv = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		
+		try {
+			csv.write(CSV_HEADER);
+			csv.write('\n');
+			
+			for (ResourceTiming timing : rows) {
+				csv.write(String.format(Locale.ENGLISH, "%d,%s,\"%s\",%d,%s,%d,%.3f%n", timing.getStartMillis(), timing.getMethod(), 
+						timing.getUrl().replace("\"", "\"\""), timing.getStatus(), timing.getSource(), timing.getBytes(), 
+						timing.getDurationNanos() / 1000000.0));
+			}
+		} finally {
+			csv.close();
+		}
+	}
+	
+	/**
+	 * Stops listening and closes every open connection; the cache and timings are kept
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException {
+		
+		final List<Closeable> open = new ArrayList<Closeable>();
+		
+		synchronized (this) {
+			
+			if (server != null)
+				open.add(server);
+			open.addAll(sockets);
+			sockets.clear();
+			idle.clear();
+		}
+		
+		for (Closeable closeable : open) {
+			
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+		
+		connections.shutdownNow();
+	}
+	
+	private void accept(ServerSocket listening) { // $codepro.audit.disable methodJavadoc
+		
+		while (! listening.isClosed()) {
+			
+			try {
+				final Socket client = listening.accept();
+				
+				connections.execute(new Runnable() {
+					public void run() {
+						serve(client);
+					}
+				});
+				
+			} catch (IOException e) {
+				// closed
+			}
+		}
+	}
+	
+	private void serve(Socket client) { // $codepro.audit.disable methodJavadoc
+		
+		register(client);
+		
+		try {
+			final InputStream in = new BufferedInputStream(client.getInputStream());
+			final OutputStream out = new BufferedOutputStream(client.getOutputStream());
+			
+			boolean keepAlive = true;
+			
+			while (keepAlive) {
+				
+				String requestLine = readLine(in);
+				
+				while (requestLine != null && requestLine.isEmpty())
+					requestLine = readLine(in);
+				
+				if (requestLine == null)
+					return;
+				
+				final String[] parts = requestLine.split(" ");
+				
+				if (parts.length != 3) {
+					respond(out, 400, "Bad Request", Collections.<String[]>emptyList(), new byte[0], false);
+					return;
+				}
+				
+				final String method = parts[0];
+				final String target = parts[1];
+				final List<String[]> headers = readHeaders(in);
+				
+				if ("CONNECT".equals(method)) {
+					tunnel(client, in, out, target);
+					return;
+				}
+				
+				final String connection = header(headers, "Proxy-Connection") != null ? header(headers, "Proxy-Connection") : header(headers, "Connection");
+				keepAlive = "HTTP/1.1".equals(parts[2]) ? ! "close".equalsIgnoreCase(connection) : "keep-alive".equalsIgnoreCase(connection);
+				
+				keepAlive = exchange(method, target, headers, readBody(in, headers), out, keepAlive, "HTTP/1.1".equals(parts[2]));
+			}
+			
+		} catch (IOException e) {
+			// the browser or the proxy closed the connection
+		} finally {
+			unregister(client);
+		}
+	}
+	
+	/**
+	 * Answers one request of the browser
+	 * 
+	 * @return whether the connection to the browser can be kept alive
+	 * @throws IOException when the browser closed the connection, or the server did within a streamed response
+	 */
+	private boolean exchange(String method, String url, List<String[]> headers, byte[] body, OutputStream out, boolean keepAlive, boolean chunkable) throws IOException {
+		
+		final long startMillis = System.currentTimeMillis();
+		final long start = System.nanoTime();
+		final Rule rule = match(url);
+		
+		// recorded before answering, so the timing is there once the browser has the response
+		
+		if (rule != null && rule.action == Action.BLOCK) {
+			record(method, url, 204, 0, startMillis, start, Source.BLOCKED);
+			respond(out, 204, "No Content", Collections.<String[]>emptyList(), new byte[0], keepAlive);
+			return keepAlive;
+		}
+		
+		if (rule != null && rule.action == Action.STUB) {
+			record(method, url, 200, rule.body.length, startMillis, start, Source.STUBBED);
+			respond(out, 200, "OK", Collections.singletonList(new String[] { "Content-Type", rule.contentType }), rule.body, keepAlive);
+			return keepAlive;
+		}
+		
+		final boolean cacheable = rule != null && rule.action == Action.CACHE && "GET".equals(method);
+		
+		if (cacheable) {
+			
+			final List<String> vary = varies.get(url);
+			final BufferedResponse cached = vary == null ? null : cache.get(getCacheKey(url, vary, headers));
+			
+			if (cached != null && isNotModified(headers, cached)) {
+				record(method, url, 304, 0, startMillis, start, Source.CACHE);
+				notify(method, url, headers, body, 304, start);
+				respond(out, 304, "Not Modified", getValidators(cached), new byte[0], keepAlive);
+				return keepAlive;
+			}
+			
+			if (cached != null) {
+				record(method, url, cached.status, cached.body.length, startMillis, start, Source.CACHE);
+				notify(method, url, headers, body, cached.status, start);
+				respond(out, cached.status, cached.reason, cached.headers, cached.body, keepAlive);
+				return keepAlive;
+			}
+		}
+		
+		final Upstream upstream;
+		final BufferedResponse response;
+		
+		try {
+			upstream = fetch(method, url, headers, body);
+			response = cacheable ? buffer(upstream) : null;
+		} catch (IOException e) {
+			
+			final byte[] message = String.valueOf(e.getMessage()).getBytes(Charsets.UTF_8);
+			record(method, url, 502, message.length, startMillis, start, Source.FAILED);
+			respond(out, 502, "Bad Gateway", Collections.singletonList(new String[] { "Content-Type", "text/plain; charset=UTF-8" }), message, keepAlive);
+			return keepAlive;
+		}
+		
+		if (response == null) {
+			
+			// a body which runs until the server closes the connection does the same to an HTTP/1.0 browser
+			final boolean open = keepAlive && (chunkable || upstream.bodyless || upstream.length >= 0);
+			
+			notify(method, url, headers, body, upstream.status, start);
+			stream(upstream, out, open, chunkable, method, url, startMillis, start);
+			return open;
+		}
+		
+		if (isCacheable(response)) {
+			
+			// a url is only cached while it's responses all vary on the same request headers
+			final List<String> vary = getVary(response);
+			final List<String> previous = varies.putIfAbsent(url, vary);
+			
+			// once the cache is full, responses are passed through without being cached
+			if ((previous == null || previous.equals(vary)) && (cacheBytes.addAndGet(response.body.length) > maxCacheBytes 
+					|| cache.putIfAbsent(getCacheKey(url, vary, headers), response) != null))
+				cacheBytes.addAndGet(-response.body.length);
+		}
+		
+		record(method, url, response.status, response.body.length, startMillis, start, Source.NETWORK);
+		notify(method, url, headers, body, response.status, start);
+		respond(out, response.status, response.reason, response.headers, response.body, keepAlive);
+		return keepAlive;
+	}
+	
+	/**
+	 * Sends a request to the server and reads the status and headers of it's response
+	 * 
+	 * @return the response, it's body still to be read
+	 * @throws IOException when the server cannot be reached or does not answer
+	 */
+	private Upstream fetch(String method, String url, List<String[]> headers, byte[] body) throws IOException {
+		
+		if (! url.startsWith("http://"))
+			throw new IOException("Not a proxy request : " + url);
+		
+		final URL target = new URL(url);
+		final int port = target.getPort() < 0 ? 80 : target.getPort();
+		final String authority = target.getHost() + ":" + port;
+		
+		// a kept-alive connection may have been closed by the server meanwhile, in which case the request goes out again
+		if (IDEMPOTENT.contains(method)) {
+			
+			ServerConnection kept;
+			
+			while ((kept = take(authority)) != null) {
+				
+				try {
+					return send(kept, method, target, headers, body);
+				} catch (IOException e) {
+					unregister(kept.socket);
+				}
+			}
+		}
+		
+		final Socket socket = new Socket();
+		register(socket);
+		
+		try {
+			socket.connect(new InetSocketAddress(target.getHost(), port), connectTimeoutMillis);
+			socket.setSoTimeout(readTimeoutMillis);
+			
+			return send(new ServerConnection(authority, socket), method, target, headers, body);
+		} catch (IOException e) {
+			unregister(socket);
+			throw e;
+		}
+	}
+	
+	private static Upstream send(ServerConnection connection, String method, URL target, List<String[]> headers, byte[] body) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final StringBuilder head = new StringBuilder(method).append(' ').append(target.getFile().isEmpty() ? "/" : target.getFile()).append(" HTTP/1.1\r\n");
+		
+		head.append("Host: ").append(target.getPort() < 0 ? target.getHost() : target.getHost() + ":" + target.getPort()).append("\r\n");
+		
+		for (String[] header : headers) {
+			
+			if (! NOT_FORWARDED.contains(header[0].toLowerCase(Locale.ENGLISH)))
+				head.append(header[0]).append(": ").append(header[1]).append("\r\n");
+		}
+		
+		if (body.length > 0 || ! IDEMPOTENT.contains(method))
+			head.append("Content-Length: ").append(body.length).append("\r\n");
+		
+		head.append("Connection: keep-alive\r\n\r\n");
+		
+		connection.out.write(head.toString().getBytes(Charsets.ISO_8859_1));
+		connection.out.write(body);
+		connection.out.flush();
+		
+		while (true) {
+			
+			final String line = readLine(connection.in);
+			
+			if (line == null)
+				throw new EOFException("The server closed the connection");
+			
+			final String[] status = line.split(" ", 3);
+			final List<String[]> received = readHeaders(connection.in);
+			
+			try {
+				final int code = Integer.parseInt(status.length > 1 ? status[1] : "");
+				
+				// interim responses, such as 100 Continue, are followed by the response
+				if (code >= 200 || code < 100)
+					return new Upstream(connection, method, status[0], code, status.length > 2 ? status[2] : "", received);
+				
+			} catch (NumberFormatException e) {
+				throw new IOException("Not an HTTP response : " + line);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the whole body of a response, for the cache
+	 * 
+	 * @param upstream Upstream
+	 * @return BufferedResponse
+	 * @throws IOException
+	 */
+	private BufferedResponse buffer(Upstream upstream) throws IOException {
+		
+		final byte[] content;
+		
+		try {
+			content = ByteStreams.toByteArray(upstream.body());
+			
+			if (upstream.length >= 0 && ! upstream.bodyless && content.length < upstream.length)
+				throw new EOFException("The server closed the connection within the body");
+			
+		} catch (IOException e) {
+			unregister(upstream.connection.socket);
+			throw e;
+		}
+		
+		release(upstream);
+		return new BufferedResponse(upstream.status, upstream.reason, upstream.headers, content);
+	}
+	
+	/**
+	 * Passes a response on to the browser as it arrives
+	 * 
+	 * @throws IOException
+	 */
+	private void stream(Upstream upstream, OutputStream out, boolean keepAlive, boolean chunkable, String method, String url, long startMillis, long start) throws IOException {
+		
+		final StringBuilder head = new StringBuilder("HTTP/1.1 ").append(upstream.status).append(' ').append(upstream.reason).append("\r\n");
+		
+		for (String[] header : upstream.headers)
+			head.append(header[0]).append(": ").append(header[1]).append("\r\n");
+		
+		// the length of a HEAD response is that of the body it leaves out
+		final boolean chunked = ! upstream.bodyless && upstream.length < 0 && chunkable;
+		
+		if (upstream.length >= 0)
+			head.append("Content-Length: ").append(upstream.length).append("\r\n");
+		else if (chunked)
+			head.append("Transfer-Encoding: chunked\r\n");
+		
+		head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+		out.write(head.toString().getBytes(Charsets.ISO_8859_1));
+		
+		final InputStream in = upstream.body();
+		final byte[] buffer = new byte[8192];
+		long bytes = 0;
+		
+		try {
+			int read;
+			
+			while ((read = in.read(buffer)) != -1) {
+				
+				if (chunked)
+					out.write((Integer.toHexString(read) + "\r\n").getBytes(Charsets.ISO_8859_1));
+				
+				out.write(buffer, 0, read);
+				
+				if (chunked)
+					out.write("\r\n".getBytes(Charsets.ISO_8859_1));
+				
+				out.flush();
+				bytes += read;
+			}
+			
+			if (upstream.length >= 0 && ! upstream.bodyless && bytes < upstream.length)
+				throw new EOFException("The server closed the connection within the body");
+			
+		} catch (IOException e) {
+			unregister(upstream.connection.socket);
+			record(method, url, upstream.status, bytes, startMillis, start, Source.FAILED);
+			throw e;
+		}
+		
+		release(upstream);
+		record(method, url, upstream.status, bytes, startMillis, start, Source.NETWORK);
+		
+		if (chunked)
+			out.write("0\r\n\r\n".getBytes(Charsets.ISO_8859_1));
+		
+		out.flush();
+	}
+	
+	/**
+	 * Keeps the connection of a fully read response for the next request to the server, or closes it
+	 * 
+	 * @param upstream Upstream
+	 */
+	private void release(Upstream upstream) {
+		
+		if (! upstream.persistent) {
+			unregister(upstream.connection.socket);
+			return;
+		}
+		
+		synchronized (this) {
+			
+			if (! sockets.contains(upstream.connection.socket))
+				return;
+			
+			if (! idle.containsKey(upstream.connection.authority))
+				idle.put(upstream.connection.authority, new ArrayList<ServerConnection>());
+			
+			idle.get(upstream.connection.authority).add(upstream.connection);
+		}
+	}
+	
+	private synchronized ServerConnection take(String authority) { // $codepro.audit.disable methodJavadoc
+		
+		final List<ServerConnection> kept = idle.get(authority);
+		
+		return kept == null || kept.isEmpty() ? null : kept.remove(kept.size() - 1);
+	}
+	
+	private void tunnel(final Socket client, InputStream in, OutputStream out, String target) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final long startMillis = System.currentTimeMillis();
+		final long start = System.nanoTime();
+		final String url = "https://" + target + "/";
+		final Rule rule = match(url);
+		
+		if (rule != null && rule.action == Action.BLOCK) {
+			respond(out, 403, "Forbidden", Collections.<String[]>emptyList(), new byte[0], false);
+			record("CONNECT", url, 403, 0, startMillis, start, Source.BLOCKED);
+			return;
+		}
+		
+		final int colon = target.lastIndexOf(':');
+		final Socket server = new Socket();
+		
+		try {
+			server.connect(new InetSocketAddress(colon < 0 ? target : target.substring(0, colon), 
+					colon < 0 ? 443 : Integer.parseInt(target.substring(colon + 1))), connectTimeoutMillis);
+		} catch (IOException e) {
+			server.close();
+			respond(out, 502, "Bad Gateway", Collections.<String[]>emptyList(), new byte[0], false);
+			record("CONNECT", url, 502, 0, startMillis, start, Source.FAILED);
+			return;
+		}
+		
+		register(server);
+		
+		try {
+			out.write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes(Charsets.ISO_8859_1));
+			out.flush();
+			
+			final AtomicLong received = new AtomicLong();
+			final InputStream upstream = server.getInputStream();
+			final OutputStream downstream = client.getOutputStream();
+			
+			connections.execute(new Runnable() {
+				public void run() {
+					received.set(pump(upstream, downstream));
+					close(client);
+				}
+			});
+			
+			pump(in, server.getOutputStream());
+			close(server);
+			record("CONNECT", url, 200, received.get(), startMillis, start, Source.TUNNEL);
+			
+		} finally {
+			unregister(server);
+		}
+	}
+	
+	private Rule match(String url) { // $codepro.audit.disable methodJavadoc
+		
+		for (Rule rule : rules) {
+			
+			if (rule.matches(url))
+				return rule;
+		}
+		
+		return null;
+	}
+	
+	private synchronized void record(String method, String url, int status, long bytes, long startMillis, long start, Source source) { // $codepro.audit.disable methodJavadoc
+		
+		if (timings.size() >= maxTimings) {
+			
+			droppedTimings++;
+			
+			if (timings.isEmpty())
+				return;
+			
+			timings.removeFirst();
+		}
+		
+		timings.addLast(new ResourceTiming(method, url, status, bytes, startMillis, System.nanoTime() - start, source));
+	}
+	
+	private void notify(String method, String url, List<String[]> headers, byte[] body, int status, long start) { // $codepro.audit.disable methodJavadoc
+		
+		if (listeners.isEmpty())
+			return;
+		
+		final Map<String, String> joined = new LinkedHashMap<String, String>();
+		
+		for (String[] header : headers) {
+			
+			final String previous = joined.get(header[0]);
+			joined.put(header[0], previous == null ? header[1] : previous + ", " + header[1]);
+		}
+		
+		final Map<String, String> unmodifiable = Collections.unmodifiableMap(joined);
+		
+		for (IHttpExchangeListener listener : listeners)
+			listener.exchanged(method, url, unmodifiable, body.clone(), status, start);
+	}
+	
+	private synchronized void register(Socket socket) { // $codepro.audit.disable methodJavadoc
+		sockets.add(socket);
+	}
+	
+	private synchronized void unregister(Socket socket) { // $codepro.audit.disable methodJavadoc
+		sockets.remove(socket);
+		close(socket);
+	}
+	
+	private static boolean isCacheable(BufferedResponse response) { // $codepro.audit.disable methodJavadoc
+		
+		if (response.status != 200)
+			return false;
+		
+		for (String[] header : response.headers) {
+			
+			final String name = header[0].toLowerCase(Locale.ENGLISH);
+			final String value = header[1].toLowerCase(Locale.ENGLISH);
+			
+			if ("set-cookie".equals(name) || ("cache-control".equals(name) && (value.contains("no-store") || value.contains("private"))) 
+					|| ("vary".equals(name) && value.contains("*")))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	private static List<String> getVary(BufferedResponse response) { // $codepro.audit.disable methodJavadoc
+		
+		final List<String> vary = new ArrayList<String>();
+		
+		for (String[] header : response.headers) {
+			
+			if (! "vary".equalsIgnoreCase(header[0]))
+				continue;
+			
+			for (String name : header[1].split(",")) {
+				
+				final String trimmed = name.trim().toLowerCase(Locale.ENGLISH);
+				
+				if (! trimmed.isEmpty() && ! vary.contains(trimmed))
+					vary.add(trimmed);
+			}
+		}
+		
+		Collections.sort(vary);
+		return vary;
+	}
+	
+	private static String getCacheKey(String url, List<String> vary, List<String[]> headers) { // $codepro.audit.disable methodJavadoc
+		
+		final StringBuilder key = new StringBuilder(url);
+		
+		for (String name : vary) {
+			
+			final String value = header(headers, name);
+			key.append('\n').append(name).append(value == null ? "" : ": " + value);
+		}
+		
+		return key.toString();
+	}
+	
+	private static boolean isNotModified(List<String[]> request, BufferedResponse cached) { // $codepro.audit.disable methodJavadoc
+		
+		final String ifNoneMatch = header(request, "If-None-Match");
+		
+		// If-Modified-Since is ignored alongside If-None-Match, and compared as the browser was sent it
+		if (ifNoneMatch != null) {
+			
+			final String etag = header(cached.headers, "ETag");
+			
+			if (etag == null)
+				return false;
+			
+			for (String candidate : ifNoneMatch.split(",")) {
+				
+				if ("*".equals(candidate.trim()) || getOpaqueTag(candidate).equals(getOpaqueTag(etag)))
+					return true;
+			}
+			
+			return false;
+		}
+		
+		final String lastModified = header(cached.headers, "Last-Modified");
+		return lastModified != null && lastModified.equals(header(request, "If-Modified-Since"));
+	}
+	
+	private static String getOpaqueTag(String etag) { // $codepro.audit.disable methodJavadoc
+		
+		// the weak comparison, as for If-None-Match
+		final String trimmed = etag.trim();
+		return trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed;
+	}
+	
+	private static List<String[]> getValidators(BufferedResponse cached) { // $codepro.audit.disable methodJavadoc
+		
+		final List<String[]> validators = new ArrayList<String[]>();
+		
+		for (String[] header : cached.headers) {
+			
+			final String name = header[0].toLowerCase(Locale.ENGLISH);
+			
+			if ("etag".equals(name) || "last-modified".equals(name) || "cache-control".equals(name) || "expires".equals(name) || "vary".equals(name))
+				validators.add(header);
+		}
+		
+		return validators;
+	}
+	
+	private static void respond(OutputStream out, int status, String reason, List<String[]> headers, byte[] body, boolean keepAlive) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append(' ').append(reason == null ? "" : reason).append("\r\n");
+		
+		for (String[] header : headers)
+			head.append(header[0]).append(": ").append(header[1]).append("\r\n");
+		
+		head.append("Content-Length: ").append(body.length).append("\r\n");
+		head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+		
+		out.write(head.toString().getBytes(Charsets.ISO_8859_1));
+		out.write(body);
+		out.flush();
+	}
+	
+	private static String readLine(InputStream in) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		
+		while ((b = in.read()) != -1 && b != '\n')
+			line.write(b);
+		
+		if (b == -1 && line.size() == 0)
+			return null;
+		
+		final String s = new String(line.toByteArray(), Charsets.ISO_8859_1);
+		return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+	}
+	
+	private static List<String[]> readHeaders(InputStream in) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final List<String[]> headers = new ArrayList<String[]>();
+		String line;
+		
+		while ((line = readLine(in)) != null && ! line.isEmpty()) {
+			
+			final int colon = line.indexOf(':');
+			
+			if (colon > 0)
+				headers.add(new String[] { line.substring(0, colon).trim(), line.substring(colon + 1).trim() });
+		}
+		
+		return headers;
+	}
+	
+	private static String header(List<String[]> headers, String name) { // $codepro.audit.disable methodJavadoc
+		
+		for (String[] header : headers) {
+			
+			if (header[0].equalsIgnoreCase(name))
+				return header[1];
+		}
+		
+		return null;
+	}
+	
+	private static byte[] readBody(InputStream in, List<String[]> headers) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final String length = header(headers, "Content-Length");
+		
+		if (length != null) {
+			
+			final byte[] body = new byte[Integer.parseInt(length.trim())];
+			ByteStreams.readFully(in, body);
+			return body;
+		}
+		
+		if (! "chunked".equalsIgnoreCase(header(headers, "Transfer-Encoding")))
+			return new byte[0];
+		
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		
+		while (true) {
+			
+			final String size = readLine(in);
+			final int chunk = size == null ? 0 : Integer.parseInt(size.split(";")[0].trim(), 16);
+			
+			if (chunk == 0) {
+				readHeaders(in);
+				return body.toByteArray();
+			}
+			
+			final byte[] bytes = new byte[chunk];
+			ByteStreams.readFully(in, bytes);
+			body.write(bytes);
+			readLine(in);
+		}
+	}
+	
+	private static long pump(InputStream in, OutputStream out) { // $codepro.audit.disable methodJavadoc
+		
+		final byte[] buffer = new byte[8192];
+		long total = 0;
+		
+		try {
+			int read;
+			
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+				out.flush();
+				total += read;
+			}
+		} catch (IOException e) {
+			// either side closed the tunnel
+		}
+		
+		return total;
+	}
+	
+	private static void close(Socket socket) { // $codepro.audit.disable methodJavadoc
+		
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("ResourceProxy [%s:%d, %d rules, %d cached bytes]", host, requestedPort, rules.size(), cacheBytes.get());
+	}
+}
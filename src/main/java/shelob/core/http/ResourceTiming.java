@@ -0,0 +1,125 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.http;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The timing of one resource requested through a ResourceProxy.
+ */
+@Immutable
+public final class ResourceTiming {
+
+	/**
+	 * How the resource was answered
+	 */
+	public enum Source {
+		
+		/** fetched from the server */
+		NETWORK,
+		
+		/** served from the static asset cache */
+		CACHE,
+		
+		/** refused by a block rule */
+		BLOCKED,
+		
+		/** answered by a stub rule */
+		STUBBED,
+		
+		/** an HTTPS tunnel; the timing covers the lifetime of the tunnel */
+		TUNNEL,
+		
+		/** the server could not be reached */
+		FAILED
+	}
+	
+	private final String method;
+	private final String url;
+	private final int status;
+	private final long bytes;
+	private final long startMillis;
+	private final long durationNanos;
+	private final Source source;
+	
+	/**
+	 * @param method the HTTP method
+	 * @param url the requested URL
+	 * @param status the status answered to the browser
+	 * @param bytes the size of the response body
+	 * @param startMillis the wall clock time the request was received
+	 * @param durationNanos the time from receiving the request to answering it
+	 * @param source how the resource was answered
+	 */
+	public ResourceTiming(String method, String url, int status, long bytes, long startMillis, long durationNanos, Source source) {
+		this.method = method;
+		this.url = url;
+		this.status = status;
+		this.bytes = bytes;
+		this.startMillis = startMillis;
+		this.durationNanos = durationNanos;
+		this.source = source;
+	}
+	
+	public String getMethod() {
+		return method;
+	}
+	
+	public String getUrl() {
+		return url;
+	}
+	
+	public int getStatus() {
+		return status;
+	}
+	
+	public long getBytes() {
+		return bytes;
+	}
+	
+	public long getStartMillis() {
+		return startMillis;
+	}
+	
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+	
+	public Source getSource() {
+		return source;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s %s %d %s %d bytes %.1f ms", method, url, status, source, bytes, durationNanos / 1000000.0);
+	}
+}
@@ -0,0 +1,530 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import shelob.core.exceptions.HttpRetrievalException;
+import shelob.core.interfaces.IResponseHandler;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Retrieves content over plain HTTP with the cookies of a browser session, so content such as 
+ * a multi-megabyte report can be read without opening a window or rendering it :
+ * 
+ * 		final SessionHttpClient client = new SessionHttpClient.Builder(driver).build();
+ * 		client.download(new URL("http://host/app/report.csv"), new File("target/report.csv"));
+ * 
+ * The cookies are read from the browser once, when the client is built; build a new client 
+ * (or call refreshCookies()) after the session changes, e.g. after logging in again. The 
+ * response is streamed to the handler as it is received and is never held in memory.
+ * 
+ * Redirects are followed by the client itself, so the cookies sent are matched against each hop. 
+ * A redirect to the loginPage() means the session has expired and fails the request, rather than 
+ * returning the login page as the content.
+ * 
+ * NOTE : A session cookie is only sent to the host, path (see RFC 6265 5.1.4) and scheme it was 
+ * 		  issued for, as the browser would.
+ */
+@ThreadSafe
+public final class SessionHttpClient {
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_REDIRECTS = 20;
+	
+	private final WebDriver driver;
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	private final String userAgent;
+	private final boolean compression;
+	private final URL loginPage;
+	
+	// the host of the page the cookies were read on; cookies without a domain belong to it
+	private volatile String host;
+	private volatile List<Cookie> cookies;
+	
+	/**
+	 * The SessionHttpClient Builder
+	 * @author melllaguno
+	 */
+	public static class Builder {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		// Required parameters
+		private final WebDriver driver;
+		
+		// Optional parameters
+		private int connectTimeoutMillis = 30000;
+		private int readTimeoutMillis = 120000;
+		private String userAgent = null;
+		private boolean browserUserAgent = false;
+		private boolean compression = true;
+		private URL loginPage = null;
+		
+		/**
+		 * @param driver the browser whose session is reused
+		 */
+		public Builder(WebDriver driver) {
+			this.driver = checkNotNull(driver);
+		}
+		
+		/**
+		 * @param millis the time allowed to establish a connection
+		 * @return this; fluent interface
+		 */
+		public Builder connectTimeout(int millis) {
+			checkArgument(millis >= 0, "The connect timeout cannot be negative");
+			connectTimeoutMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * @param millis the time allowed between reads of the response
+		 * @return this; fluent interface
+		 */
+		public Builder readTimeout(int millis) {
+			checkArgument(millis >= 0, "The read timeout cannot be negative");
+			readTimeoutMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * @param agent the User-Agent sent with every request
+		 * @return this; fluent interface
+		 */
+		public Builder userAgent(String agent) {
+			userAgent = checkNotNull(agent);
+			browserUserAgent = false;
+			return this;
+		}
+		
+		/**
+		 * Sends the User-Agent of the browser, for servers which tie the session to it. This costs 
+		 * one script call when the client is built.
+		 * 
+		 * @return this; fluent interface
+		 */
+		public Builder browserUserAgent() {
+			browserUserAgent = true;
+			return this;
+		}
+		
+		/**
+		 * @param enabled whether to ask for gzip encoded responses; on by default
+		 * @return this; fluent interface
+		 */
+		public Builder compression(boolean enabled) {
+			compression = enabled;
+			return this;
+		}
+		
+		/**
+		 * @param location the page the application redirects to once the session has expired
+		 * @return this; fluent interface
+		 */
+		public Builder loginPage(String location) {
+			
+			try {
+				loginPage = new URL(checkNotNull(location));
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException("The login page must be an absolute URL : " + location);
+			}
+			
+			return this;
+		}
+		
+		/**
+		 * @return a new SessionHttpClient holding the current cookies of the browser
+		 */
+		public SessionHttpClient build() {
+			
+			if (browserUserAgent && driver instanceof RemoteWebDriver) {
+				
+				final Object agent = ((RemoteWebDriver) driver).executeScript("return navigator.userAgent;");
+				userAgent = agent == null ? null : agent.toString();
+			}
+			
+			return new SessionHttpClient(this);
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param builder the SessionHttpClient.Builder responsible for creating this object
+	 */
+	private SessionHttpClient(Builder builder) {
+		
+		driver = builder.driver;
+		connectTimeoutMillis = builder.connectTimeoutMillis;
+		readTimeoutMillis = builder.readTimeoutMillis;
+		userAgent = builder.userAgent;
+		compression = builder.compression;
+		loginPage = builder.loginPage;
+		
+		refreshCookies();
+	}
+	
+	/**
+	 * Reads the cookies of the browser session again
+	 * 
+	 * @return this
+	 */
+	public SessionHttpClient refreshCookies() {
+		
+		final Set<Cookie> current = driver.manage().getCookies();
+		
+		host = hostOf(driver.getCurrentUrl());
+		cookies = Collections.unmodifiableList(new ArrayList<Cookie>(current));
+		
+		return this;
+	}
+	
+	/**
+	 * @return the cookies sent with requests
+	 */
+	public List<Cookie> getCookies() {
+		return cookies;
+	}
+	
+	/**
+	 * Resolves a location the way a link on the current page of the browser would
+	 * 
+	 * @param location an absolute or relative URL, e.g. the href of a link
+	 * @return URL
+	 */
+	public URL resolve(String location) {
+		
+		try {
+			return new URL(new URL(driver.getCurrentUrl()), checkNotNull(location));
+		} catch (MalformedURLException e) {
+			throw new HttpRetrievalException(String.format("Cannot resolve [%s] : %s", location, e.getMessage()), location, -1);
+		}
+	}
+	
+	/**
+	 * Requests the URL and streams the response to the handler
+	 * 
+	 * @param url the http(s) URL to request
+	 * @param handler consumes the response body
+	 * @return the result of the handler
+	 * @throws HttpRetrievalException when the request fails, the response is not successful or the 
+	 * 		   request is redirected to the login page
+	 */
+	public <V> V get(URL url, IResponseHandler<V> handler) {
+		
+		checkNotNull(url);
+		checkNotNull(handler);
+		
+		HttpURLConnection connection = null;
+		
+		try {
+			connection = connect(url);
+			
+			final int status = connection.getResponseCode();
+			
+			if (status < 200 || status >= 300)
+				throw new HttpRetrievalException(String.format("Request for %s returned %d %s", url, status, connection.getResponseMessage()), url.toString(), status);
+			
+			final InputStream content = body(connection);
+			
+			try {
+				return handler.handle(connection.getContentType(), content);
+			} finally {
+				content.close();
+			}
+			
+		} catch (IOException e) {
+			
+			final HttpRetrievalException failure = new HttpRetrievalException(String.format("Request for %s failed : %s", url, e.getMessage()), url.toString(), -1);
+			failure.initCause(e);
+			
+			throw failure;
+		} finally {
+			
+			if (connection != null)
+				connection.disconnect();
+		}
+	}
+	
+	/**
+	 * Requests the URL and writes the response body to a file
+	 * 
+	 * @param url the http(s) URL to request
+	 * @param file the file written
+	 * @return the number of bytes written
+	 * @throws HttpRetrievalException when the request fails or the response is not successful
+	 */
+	public long download(URL url, final File file) {
+		
+		checkNotNull(file);
+		
+		return get(url, new IResponseHandler<Long>() {
+			
+			public Long handle(String contentType, InputStream content) throws IOException {
+				
+				final OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+				
+				try {
+					return copy(content, out);
+				} finally {
+					out.close();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * @param location String
+	 * @return the lower case host of the location, or null when it has none
+	 */
+	@Nullable
+	private static String hostOf(@Nullable String location) {
+		
+		try {
+			final String host = location == null ? null : new URL(location).getHost();
+			return host == null || host.length() == 0 ? null : host.toLowerCase(Locale.ENGLISH);
+		} catch (MalformedURLException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @param in InputStream
+	 * @param out OutputStream
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 */
+	public static long copy(InputStream in, OutputStream out) throws IOException {
+		
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		long total = 0;
+		int read;
+		
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+			total += read;
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Method connect.
+	 * 
+	 * Follows redirects, sending the cookies which match each hop.
+	 * 
+	 * @param url URL
+	 * @return the connection which received the final response
+	 * @throws IOException
+	 */
+	private HttpURLConnection connect(URL url) throws IOException {
+		
+		URL current = url;
+		
+		for (int hop = 0; ; hop++) {
+			
+			final HttpURLConnection connection = open(current);
+			final int status = connection.getResponseCode();
+			final String location = isRedirect(status) ? connection.getHeaderField("Location") : null;
+			
+			if (location == null)
+				return connection;
+			
+			connection.disconnect();
+			
+			if (hop == MAX_REDIRECTS)
+				throw new HttpRetrievalException(String.format("Request for %s was redirected more than %d times", url, MAX_REDIRECTS), url.toString(), status);
+			
+			current = new URL(current, location);
+			
+			if (loginPage != null && isSamePage(current, loginPage))
+				throw new HttpRetrievalException(String.format("Request for %s was redirected to the login page %s; the session has expired", url, current), url.toString(), status);
+		}
+	}
+	
+	private static boolean isRedirect(int status) { // $codepro.audit.disable methodJavadoc
+		return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+	}
+	
+	/**
+	 * @param a URL
+	 * @param b URL
+	 * @return true when both URLs address the same page, whatever their query or fragment
+	 */
+	private static boolean isSamePage(URL a, URL b) {
+		
+		return a.getProtocol().equalsIgnoreCase(b.getProtocol()) 
+			&& a.getHost().equalsIgnoreCase(b.getHost()) 
+			&& (a.getPort() == -1 ? a.getDefaultPort() : a.getPort()) == (b.getPort() == -1 ? b.getDefaultPort() : b.getPort())
+			&& pathOf(a).equals(pathOf(b));
+	}
+	
+	private static String pathOf(URL url) { // $codepro.audit.disable methodJavadoc
+		return url.getPath().length() == 0 ? "/" : url.getPath();
+	}
+	
+	/**
+	 * Method open.
+	 * @param url URL
+	 * @return HttpURLConnection
+	 * @throws IOException
+	 */
+	private HttpURLConnection open(URL url) throws IOException {
+		
+		final URLConnection connection = url.openConnection();
+		
+		if (! (connection instanceof HttpURLConnection))
+			throw new HttpRetrievalException(String.format("%s is not an http(s) URL", url), url.toString(), -1);
+		
+		final HttpURLConnection http = (HttpURLConnection) connection;
+		final String cookie = getCookieHeader(url);
+		
+		http.setConnectTimeout(connectTimeoutMillis);
+		http.setReadTimeout(readTimeoutMillis);
+		http.setUseCaches(false);
+		http.setInstanceFollowRedirects(false);
+		
+		if (cookie != null)
+			http.setRequestProperty("Cookie", cookie);
+		if (userAgent != null)
+			http.setRequestProperty("User-Agent", userAgent);
+		if (compression)
+			http.setRequestProperty("Accept-Encoding", "gzip");
+		
+		return http;
+	}
+	
+	/**
+	 * Method body.
+	 * @param connection HttpURLConnection
+	 * @return the response body, decoded when it was compressed
+	 * @throws IOException
+	 */
+	private static InputStream body(HttpURLConnection connection) throws IOException {
+		
+		final InputStream raw = connection.getInputStream();
+		
+		if ("gzip".equalsIgnoreCase(connection.getContentEncoding()))
+			return new GZIPInputStream(raw, BUFFER_SIZE);
+		
+		return raw;
+	}
+	
+	/**
+	 * @param url the URL requested
+	 * @return the Cookie header for the URL, or null when no cookie applies
+	 */
+	@Nullable
+	public String getCookieHeader(URL url) {
+		
+		final StringBuilder header = new StringBuilder();
+		
+		final String sessionHost = host;
+		
+		for (Cookie cookie : cookies) {
+			
+			if (! matches(cookie, sessionHost, url))
+				continue;
+			
+			if (header.length() > 0)
+				header.append("; ");
+			
+			header.append(cookie.getName()).append('=').append(cookie.getValue());
+		}
+		
+		return header.length() == 0 ? null : header.toString();
+	}
+	
+	/**
+	 * Method matches.
+	 * @param cookie Cookie
+	 * @param sessionHost the host the cookies were read on
+	 * @param url URL
+	 * @return whether the browser would send the cookie with a request for the URL
+	 */
+	private static boolean matches(Cookie cookie, @Nullable String sessionHost, URL url) {
+		
+		final String host = url.getHost().toLowerCase(Locale.ENGLISH);
+		final String cookiePath = cookie.getPath() == null || cookie.getPath().length() == 0 ? "/" : cookie.getPath();
+		
+		if (cookie.isSecure() && ! "https".equalsIgnoreCase(url.getProtocol()))
+			return false;
+		
+		// a cookie without a domain is only sent to the host which set it
+		if (cookie.getDomain() == null) {
+			if (! host.equals(sessionHost))
+				return false;
+		} else {
+			
+			final String domain = cookie.getDomain().toLowerCase(Locale.ENGLISH);
+			final String bare = domain.startsWith(".") ? domain.substring(1) : domain;
+			
+			if (! host.equals(bare) && ! host.endsWith("." + bare))
+				return false;
+		}
+		
+		return pathMatches(pathOf(url), cookiePath);
+	}
+	
+	/**
+	 * @param path the path of the request
+	 * @param cookiePath the path of the cookie
+	 * @return true when the path path-matches the cookie path (RFC 6265 5.1.4)
+	 */
+	static boolean pathMatches(String path, String cookiePath) {
+		
+		if (path.equals(cookiePath))
+			return true;
+		
+		return path.startsWith(cookiePath) && (cookiePath.endsWith("/") || path.charAt(cookiePath.length()) == '/');
+	}
+}
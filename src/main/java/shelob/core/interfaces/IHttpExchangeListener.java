@@ -0,0 +1,50 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.interfaces;
+
+import java.util.Map;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Notified of every request a ResourceProxy answers from the server or it's cache (blocked and 
+ * stubbed requests never reach the application, and are not passed on). Listeners are registered 
+ * through ResourceProxy.Builder.capture() and are called on the proxy thread serving the request, 
+ * before the response is returned to the browser, so implementations must be ThreadSafe. As 
+ * requests are served concurrently, listeners may be called in another order than the browser 
+ * sent them; the order they arrived in is given by startNanos.
+ */
+public interface IHttpExchangeListener {
+
+	/**
+	 * @param method the request method (e.g. "POST")
+	 * @param url the full URL of the request
+	 * @param headers the request headers, in the order they were sent; repeated headers are joined with ", "
+	 * @param body the request body; empty when there is none
+	 * @param status the status of the response
+	 * @param startNanos the System.nanoTime() the proxy received the request at
+	 */
+	void exchanged(String method, String url, Map<String, String> headers, byte[] body, int status, long startNanos);
+}
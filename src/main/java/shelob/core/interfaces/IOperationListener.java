@@ -0,0 +1,65 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.interfaces;
+
+import javax.annotation.Nullable;
+
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.trace.OperationOutcome;
+import shelob.core.trace.OperationType;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Notified as each Element and Page operation starts and completes. Listeners are registered through 
+ * ApplicationParameters.setOperationListener() and are called on the thread which performed 
+ * the operation, so implementations must be cheap and ThreadSafe.
+ * 
+ * Operations nest : a WAIT contains the LOOKUPs made while polling, and an ACTION contains the 
+ * LOOKUP resolving it's element. Nested operations start after and complete before the operation containing them.
+ */
+public interface IOperationListener {
+
+	/**
+	 * @param type the kind of operation
+	 * @param operation the name of the operation (e.g. "click"); always a compile-time constant
+	 * @param page the page the operation is performed on
+	 * @param element the element the operation is performed on, or null for page operations
+	 */
+	void operationStarted(OperationType type, String operation, IPage page, @Nullable IElement element);
+	
+	/**
+	 * @param type the kind of operation
+	 * @param operation the name of the operation (e.g. "click"); always a compile-time constant
+	 * @param page the page the operation was performed on
+	 * @param element the element the operation was performed on, or null for page operations
+	 * @param startNanos the System.nanoTime() at which the operation started
+	 * @param durationNanos the duration of the operation in nanoseconds
+	 * @param outcome the outcome of the operation
+	 */
+	void operationCompleted(OperationType type, String operation, IPage page, @Nullable IElement element, 
+			long startNanos, long durationNanos, OperationOutcome outcome);
+}
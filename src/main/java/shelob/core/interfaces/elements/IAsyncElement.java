@@ -0,0 +1,115 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.interfaces.elements;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Asynchronous facet of an IElement; every operation is run on the executor of the session and 
+ * completes the returned future with the result (or the exception) of the blocking call. 
+ * 
+ * NOTE : WebDriver is not ThreadSafe, so operations against the same driver are run one at a time, 
+ * 		  in the order they were submitted. Operations against different drivers run concurrently.
+ */
+public interface IAsyncElement {
+
+	/**
+	 * @return the IElement this facet operates on
+	 */
+	IElement getElement();
+	
+	/**
+	 * @param operation the blocking operation to run against the element
+	 * @return CompletableFuture<V> completed with the result of the operation
+	 */
+	<V> CompletableFuture<V> submit(Function<? super IElement, ? extends V> operation);
+	
+	/**
+	 * @return CompletableFuture<IElement>
+	 */
+	CompletableFuture<IElement> click();
+	
+	/**
+	 * @return CompletableFuture<IElement>
+	 */
+	CompletableFuture<IElement> clickWhenVisible();
+	
+	/**
+	 * @param waitTimeInSeconds
+	 * @return CompletableFuture<IElement>
+	 */
+	CompletableFuture<IElement> clickWhenVisible(int waitTimeInSeconds);
+	
+	/**
+	 * @return CompletableFuture<IElement>
+	 */
+	CompletableFuture<IElement> clearWhenVisible();
+	
+	/**
+	 * @param arg0
+	 * @return CompletableFuture<IElement>
+	 */
+	CompletableFuture<IElement> sendKeysWhenVisible(CharSequence... arg0);
+	
+	/**
+	 * @return CompletableFuture<IElement>
+	 */
+	CompletableFuture<IElement> submitWhenVisible();
+	
+	/**
+	 * @param waitTimeInSeconds
+	 * @return CompletableFuture<IElement>
+	 */
+	CompletableFuture<IElement> waitUntilVisible(long waitTimeInSeconds);
+	
+	/**
+	 * @return CompletableFuture<String>
+	 */
+	CompletableFuture<String> getText();
+	
+	/**
+	 * @return CompletableFuture<String>
+	 */
+	CompletableFuture<String> getTextWhenVisible();
+	
+	/**
+	 * @param arg0
+	 * @return CompletableFuture<String>
+	 */
+	CompletableFuture<String> getAttributeWhenVisible(String arg0);
+	
+	/**
+	 * @return CompletableFuture<Boolean>
+	 */
+	CompletableFuture<Boolean> isDisplayed();
+	
+	/**
+	 * @return CompletableFuture<Boolean>
+	 */
+	CompletableFuture<Boolean> isDisplayedWhenVisible();
+}
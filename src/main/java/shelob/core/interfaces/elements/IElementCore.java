@@ -29,6 +29,7 @@ import java.util.List;
 import org.openqa.selenium.WebElement;
 
 import shelob.core.LookUp;
+import shelob.core.elements.ElementState;
 import shelob.core.interfaces.page.IPage;
 import shelob.core.interfaces.webdriver.IWaitable;
 
@@ -63,6 +64,12 @@ public interface IElementCore extends IWaitable {
 	 */
 	String getLocator();
 	
+	/**
+	 * @param identifiers the template identifiers to substitute into the locator
+	 * @return the string locator with the identifiers substituted; the identifiers of the Element are left unchanged
+	 */
+	String getLocatorFor(String... identifiers);
+	
 	/**
 	 * @return returns the LookUp enumeration associated with the Element 
 	 */
@@ -204,4 +211,23 @@ public interface IElementCore extends IWaitable {
 	 */
 	IElement waitUntilVisible(long waitTimeInSeconds);
 	
+	/**
+	 * @return the asynchronous facet of the element; operations return a CompletableFuture 
+	 * 		   instead of blocking the calling thread
+	 */
+	IAsyncElement async();
+	
+	/**
+	 * Looks the element up and reads it's state in a single script call
+	 * 
+	 * @return ElementState the visibility, text, value, location and size of the element
+	 */
+	ElementState snapshot();
+	
+	/**
+	 * @param query the attributes and CSS values to include
+	 * @return ElementState
+	 */
+	ElementState snapshot(ElementState.Query query);
+	
 }
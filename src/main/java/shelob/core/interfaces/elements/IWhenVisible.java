@@ -30,6 +30,8 @@ import org.openqa.selenium.Dimension;
 import org.openqa.selenium.Point;
 import org.openqa.selenium.WebElement;
 
+import shelob.core.elements.ElementState;
+
 /**
  * @author melllaguno
  * @version $Revision 1.0 $
@@ -40,7 +42,7 @@ import org.openqa.selenium.WebElement;
 public interface IWhenVisible {
 
 	/**
-	 * @param waitTimeInSeconds
+	 * @param waitTimeInSeconds 0 not to wait; Element.UNSET_TIMEOUT to use the default wait of the current session
 	 * @return IElement fluent interface; this
 	 */
 	IElement setTimeout(int waitTimeInSeconds);
@@ -71,6 +73,24 @@ public interface IWhenVisible {
 	 * @return IElement fluent interface;  this
 	 */
 	IElement clickWhenVisible(int waitTimeInSeconds);
+	
+	/**
+	 * @return ElementState the first snapshot in which the element is displayed
+	 */
+	ElementState snapshotWhenVisible();
+	
+	/**
+	 * @param query the attributes and CSS values to include
+	 * @return ElementState
+	 */
+	ElementState snapshotWhenVisible(ElementState.Query query);
+	
+	/**
+	 * @param query the attributes and CSS values to include
+	 * @param waitTimeInSeconds
+	 * @return ElementState
+	 */
+	ElementState snapshotWhenVisible(ElementState.Query query, int waitTimeInSeconds);
 		
 	/**
 	 * @param arg0
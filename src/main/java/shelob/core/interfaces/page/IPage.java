@@ -28,9 +28,12 @@ import org.openqa.selenium.remote.RemoteWebDriver;
 import shelob.core.ApplicationParameters;
 import shelob.core.ApplicationURL;
 import shelob.core.User;
+import shelob.core.exceptions.PageMismatchException;
+import shelob.core.exceptions.RequiredElementMissingException;
 import shelob.core.interfaces.IHasElements;
 import shelob.core.interfaces.INavigable;
 import shelob.core.page.Page;
+import shelob.core.page.PageIdentity;
 
 
 
@@ -66,4 +69,25 @@ public interface IPage extends INavigable<Page>, IHasElements {
 	 * @return the page title 
 	 */
 	String getPageTitle();
+	
+	/**
+	 * Checks that every required element of the page is present, in a single script call
+	 * 
+	 * @return the page; fluent interface
+	 * @throws RequiredElementMissingException listing every required element which is missing
+	 */
+	Page verifyRequired() throws RequiredElementMissingException;
+	
+	/**
+	 * @return the signatures identifying the page in the browser, or null when the page declares none
+	 */
+	PageIdentity getIdentity();
+	
+	/**
+	 * Checks that the browser is on this page; does nothing when the page declares no identity
+	 * 
+	 * @return the page; fluent interface
+	 * @throws PageMismatchException when the browser is on another page
+	 */
+	Page verifyIdentity() throws PageMismatchException;
 }
@@ -0,0 +1,538 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import shelob.core.User;
+import shelob.core.exceptions.InsufficientArgumentsException;
+import shelob.core.http.HttpCapture;
+import shelob.core.http.HttpScript;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Replays an HttpScript recorded from a page flow (see HttpCapture) without a browser, so that 
+ * the flow can be run at thousands of requests per second from a single machine :
+ * 
+ * 		LoadReport report = new HttpReplayEngine.Builder(HttpScript.read(new File("checkout.json")))
+ * 								.baseUrl("http://staging:8080")
+ * 								.users(alice, bob)
+ * 								.parameter("Order", "1001", "1002", "1003")
+ * 								.virtualUsers(200)
+ * 								.duration(5, TimeUnit.MINUTES)
+ * 								.build().run();
+ * 
+ * Each virtual user is a thread running the script from start to end, again and again, with the 
+ * credentials of one of the users (handed out in turn) and it's own cookies, started afresh on 
+ * every iteration as a new browser session would be. Parameter values are handed out in turn, one 
+ * per iteration; parameters without values keep the value the flow was recorded with. Redirects 
+ * are not followed, as the script holds the request the browser made for each of them.
+ * 
+ * A request answered with another status than when it was recorded fails the iteration, and the 
+ * rest of the script is skipped. The LoadReport has one "script" row for the iterations, and one 
+ * row per request (e.g. "03 goToLink Orders : Order : GET /app/orders/${Order}").
+ * 
+ * NOTE : HttpURLConnection keeps at most http.maxConnections (5 by default) idle connections per 
+ * 		  server; run with -Dhttp.maxConnections set to at least the number of virtual users so 
+ * 		  every virtual user keeps it's connection alive between requests.
+ */
+@ThreadSafe
+public class HttpReplayEngine {
+
+	/** the row of the report timing whole iterations of the script */
+	public static final String SCRIPT = "script";
+	
+	// the date of Expires, as RFC 1123 has it and in the older forms servers still send
+	private static final String[] EXPIRES_FORMATS = { 
+		"EEE, dd MMM yyyy HH:mm:ss zzz", "EEE, dd-MMM-yyyy HH:mm:ss zzz", "EEE, dd-MMM-yy HH:mm:ss zzz", "EEEE, dd-MMM-yy HH:mm:ss zzz" };
+	
+	private final HttpScript script;
+	private final List<User> users;
+	private final Map<String, List<String>> parameters;
+	private final int virtualUsers;
+	private final long durationNanos;
+	private final long maxIterations;
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	
+	private final List<String> names;
+	private final List<Step> steps;
+	private final Step iterations = new Step();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	
+	@GuardedBy("this") private boolean ran = false;
+	
+	private static final class Step {
+		
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final AtomicLong errors = new AtomicLong();
+	}
+	
+	/**
+	 * The HttpReplayEngine Builder
+	 * @author melllaguno
+	 */
+	public static class Builder {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		// Required parameters
+		private final HttpScript script;
+		
+		// Optional parameters
+		private final List<User> users = new ArrayList<User>();
+		private final Map<String, List<String>> parameters = new LinkedHashMap<String, List<String>>();
+		private int virtualUsers = 10;
+		private long durationNanos = TimeUnit.MINUTES.toNanos(1);
+		private long maxIterations = 0;
+		private int connectTimeoutMillis = 10000;
+		private int readTimeoutMillis = 60000;
+		
+		/**
+		 * @param script the HttpScript replayed
+		 */
+		public Builder(HttpScript script) {
+			this.script = checkNotNull(script);
+		}
+		
+		/**
+		 * @param baseUrl the scheme, host and port the script is replayed against, e.g. http://staging:8080
+		 * @return this; fluent interface
+		 */
+		public Builder baseUrl(String baseUrl) {
+			return parameter(HttpCapture.BASE, baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl);
+		}
+		
+		/**
+		 * @param users the credentials handed out to the virtual users in turn
+		 * @return this; fluent interface
+		 */
+		public Builder users(User... users) {
+			this.users.addAll(Arrays.asList(users));
+			return this;
+		}
+		
+		/**
+		 * @param name the name of the parameter, e.g. "Order" for ${Order}
+		 * @param values the values handed out to the iterations in turn
+		 * @return this; fluent interface
+		 */
+		public Builder parameter(String name, String... values) {
+			checkArgument(values.length > 0, "At least one value is required");
+			parameters.put(checkNotNull(name), Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(values))));
+			return this;
+		}
+		
+		/**
+		 * @param count the number of threads replaying the script
+		 * @return this; fluent interface
+		 */
+		public Builder virtualUsers(int count) {
+			checkArgument(count > 0, "virtualUsers must be positive");
+			virtualUsers = count;
+			return this;
+		}
+		
+		/**
+		 * @param duration how long iterations are started for
+		 * @param unit the unit of the duration
+		 * @return this; fluent interface
+		 */
+		public Builder duration(long duration, TimeUnit unit) {
+			checkArgument(duration > 0, "duration must be positive");
+			durationNanos = unit.toNanos(duration);
+			return this;
+		}
+		
+		/**
+		 * @param count the most iterations started over the run; 0 (the default) for no limit
+		 * @return this; fluent interface
+		 */
+		public Builder iterations(long count) {
+			checkArgument(count >= 0, "iterations must be positive");
+			maxIterations = count;
+			return this;
+		}
+		
+		/**
+		 * @param connectTimeoutMillis the time allowed to connect to the server
+		 * @param readTimeoutMillis the time allowed for the server to answer
+		 * @return this; fluent interface
+		 */
+		public Builder timeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+			this.connectTimeoutMillis = connectTimeoutMillis;
+			this.readTimeoutMillis = readTimeoutMillis;
+			return this;
+		}
+		
+		/**
+		 * @return a new HttpReplayEngine
+		 * @throws IllegalStateException when a parameter of the script has no value
+		 */
+		public HttpReplayEngine build() {
+			
+			for (String name : script.getParameters()) {
+				
+				final boolean credential = HttpCapture.USER_EMAIL.equals(name) || HttpCapture.USER_PASSWORD.equals(name);
+				
+				checkState(parameters.containsKey(name) || script.getDefaults().containsKey(name) || (credential && ! users.isEmpty()), 
+						"No value for the parameter ${%s}", name);
+			}
+			
+			return new HttpReplayEngine(this);
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param builder the HttpReplayEngine.Builder responsible for creating this object
+	 */
+	private HttpReplayEngine(Builder builder) {
+		
+		script = builder.script;
+		users = Collections.unmodifiableList(new ArrayList<User>(builder.users));
+		parameters = Collections.unmodifiableMap(new LinkedHashMap<String, List<String>>(builder.parameters));
+		virtualUsers = builder.virtualUsers;
+		durationNanos = builder.durationNanos;
+		maxIterations = builder.maxIterations;
+		connectTimeoutMillis = builder.connectTimeoutMillis;
+		readTimeoutMillis = builder.readTimeoutMillis;
+		
+		final List<String> n = new ArrayList<String>();
+		final List<Step> s = new ArrayList<Step>();
+		final List<HttpScript.Request> requests = script.getRequests();
+		
+		for (int i = 0; i < requests.size(); i++) {
+			
+			final HttpScript.Request request = requests.get(i);
+			final String url = request.getUrl();
+			final String path = url.startsWith("${" + HttpCapture.BASE + "}") ? url.substring(HttpCapture.BASE.length() + 3) : url;
+			
+			n.add(String.format("%02d %s : %s %s", i + 1, request.getStep(), request.getMethod(), path));
+			s.add(new Step());
+		}
+		
+		names = Collections.unmodifiableList(n);
+		steps = Collections.unmodifiableList(s);
+	}
+	
+	/**
+	 * Starts the virtual users, and waits for them to complete their last iteration once the 
+	 * duration has passed or the iterations have all been started.
+	 * 
+	 * @return the LoadReport of the run; arrivals are the iterations started, and none are dropped
+	 * @throws InterruptedException
+	 */
+	public LoadReport run() throws InterruptedException {
+		
+		synchronized (this) {
+			checkState(! ran, "An HttpReplayEngine runs once");
+			ran = true;
+		}
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(virtualUsers, 
+				new ThreadFactoryBuilder().setNameFormat("shelob-replay-%d").setDaemon(true).build());
+		
+		final long start = System.nanoTime();
+		final long deadline = start + durationNanos;
+		
+		try {
+			
+			for (int i = 0; i < virtualUsers; i++)
+				executor.execute(virtualUser(users.isEmpty() ? null : users.get(i % users.size()), deadline));
+			
+			executor.shutdown();
+			
+			// iterations in progress are allowed as long again as the run to complete
+			executor.awaitTermination(durationNanos + Math.max(durationNanos, TimeUnit.SECONDS.toNanos(30)), TimeUnit.NANOSECONDS);
+			
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		final long elapsed = System.nanoTime() - start;
+		final List<LoadReport.Row> rows = new ArrayList<LoadReport.Row>();
+		rows.add(new LoadReport.Row(SCRIPT, iterations.histogram, iterations.errors.get(), elapsed));
+		
+		for (int i = 0; i < steps.size(); i++)
+			rows.add(new LoadReport.Row(names.get(i), steps.get(i).histogram, steps.get(i).errors.get(), elapsed));
+		
+		return new LoadReport(elapsed, started.get(), completed.get(), failed.get(), 0, rows);
+	}
+	
+	private Runnable virtualUser(final User user, final long deadline) { // $codepro.audit.disable methodJavadoc
+		
+		return new Runnable() {
+			public void run() {
+				
+				final byte[] buffer = new byte[8192];
+				final Map<String, String> cookies = new LinkedHashMap<String, String>();
+				
+				while (System.nanoTime() - deadline < 0 && ! Thread.currentThread().isInterrupted()) {
+					
+					final long iteration = started.getAndIncrement();
+					
+					if (maxIterations > 0 && iteration >= maxIterations) {
+						started.decrementAndGet();
+						return;
+					}
+					
+					cookies.clear();
+					
+					final long begin = System.nanoTime();
+					final boolean success = iterate(values(user, iteration), cookies, buffer);
+					
+					iterations.histogram.record(System.nanoTime() - begin);
+					
+					if (success)
+						completed.incrementAndGet();
+					else {
+						failed.incrementAndGet();
+						iterations.errors.incrementAndGet();
+					}
+				}
+			}
+		};
+	}
+	
+	private Map<String, String> values(User user, long iteration) { // $codepro.audit.disable methodJavadoc
+		
+		final Map<String, String> values = new HashMap<String, String>(script.getDefaults());
+		
+		if (user != null) {
+			values.put(HttpCapture.USER_EMAIL, user.getEmail());
+			values.put(HttpCapture.USER_PASSWORD, user.getPassword());
+		}
+		
+		for (Map.Entry<String, List<String>> parameter : parameters.entrySet())
+			values.put(parameter.getKey(), parameter.getValue().get((int) (iteration % parameter.getValue().size())));
+		
+		return values;
+	}
+	
+	private boolean iterate(Map<String, String> values, Map<String, String> cookies, byte[] buffer) { // $codepro.audit.disable methodJavadoc
+		
+		final List<HttpScript.Request> requests = script.getRequests();
+		
+		for (int i = 0; i < requests.size(); i++) {
+			
+			final HttpScript.Request request = requests.get(i);
+			final Step step = steps.get(i);
+			final long begin = System.nanoTime();
+			int status = -1;
+			
+			try {
+				status = send(request, values, cookies, buffer);
+			} catch (IOException e) {
+				// counted as an error below
+			} catch (InsufficientArgumentsException e) {
+				// counted as an error below
+			}
+			
+			step.histogram.record(System.nanoTime() - begin);
+			
+			if (status != request.getStatus()) {
+				step.errors.incrementAndGet();
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private int send(HttpScript.Request request, Map<String, String> values, Map<String, String> cookies, byte[] buffer) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final HttpURLConnection connection = (HttpURLConnection) new URL(request.resolveUrl(values)).openConnection();
+		connection.setRequestMethod(request.getMethod());
+		connection.setInstanceFollowRedirects(false);
+		connection.setUseCaches(false);
+		connection.setConnectTimeout(connectTimeoutMillis);
+		connection.setReadTimeout(readTimeoutMillis);
+		
+		for (Map.Entry<String, String> header : request.resolveHeaders(values).entrySet())
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		
+		if (! cookies.isEmpty()) {
+			
+			final StringBuilder cookie = new StringBuilder();
+			
+			for (Map.Entry<String, String> c : cookies.entrySet()) {
+				
+				if (cookie.length() > 0)
+					cookie.append("; ");
+				
+				cookie.append(c.getKey()).append('=').append(c.getValue());
+			}
+			
+			connection.setRequestProperty("Cookie", cookie.toString());
+		}
+		
+		final byte[] body = request.resolveBody(values);
+		
+		if (body != null) {
+			
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(body.length);
+			
+			final OutputStream out = connection.getOutputStream();
+			
+			try {
+				out.write(body);
+			} finally {
+				out.close();
+			}
+		}
+		
+		final int status = connection.getResponseCode();
+		
+		// header names are not case sensitive, and servers differ in how they write them
+		for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+			
+			if ("Set-Cookie".equalsIgnoreCase(header.getKey())) {
+				
+				for (String setCookie : header.getValue())
+					keepCookie(cookies, setCookie);
+			}
+		}
+		
+		// the body is read to the end, so the connection is kept alive for the next request
+		final InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		
+		if (in != null) {
+			
+			try {
+				while (in.read(buffer) >= 0) {
+					// drained
+				}
+			} finally {
+				in.close();
+			}
+		}
+		
+		return status;
+	}
+	
+	private static void keepCookie(Map<String, String> cookies, String setCookie) { // $codepro.audit.disable methodJavadoc
+		
+		final String[] attributes = setCookie.split(";");
+		final int equals = attributes[0].indexOf('=');
+		
+		if (equals <= 0)
+			return;
+		
+		final String name = attributes[0].substring(0, equals).trim();
+		final String value = attributes[0].substring(equals + 1).trim();
+		boolean expired = value.isEmpty();
+		boolean maxAge = false;
+		boolean expiredAt = false;
+		
+		for (int i = 1; i < attributes.length; i++) {
+			
+			final String attribute = attributes[i].trim().toLowerCase(Locale.ENGLISH);
+			
+			if (attribute.startsWith("max-age=")) {
+				maxAge = true;
+				expired |= attribute.equals("max-age=0") || attribute.startsWith("max-age=-");
+			} else if (attribute.startsWith("expires="))
+				expiredAt = isPast(attributes[i].trim().substring("expires=".length()));
+		}
+		
+		// Max-Age wins over Expires when a server sends both
+		if (expired || (expiredAt && ! maxAge))
+			cookies.remove(name);
+		else
+			cookies.put(name, value);
+	}
+	
+	private static boolean isPast(String expires) { // $codepro.audit.disable methodJavadoc
+		
+		for (String format : EXPIRES_FORMATS) {
+			
+			final SimpleDateFormat parser = new SimpleDateFormat(format, Locale.ENGLISH);
+			parser.setTimeZone(TimeZone.getTimeZone("GMT"));
+			
+			final Date date = parser.parse(expires, new ParsePosition(0));
+			
+			if (date != null)
+				return date.getTime() <= System.currentTimeMillis();
+		}
+		
+		// an Expires the cookie cannot be read from is ignored
+		return false;
+	}
+	
+	/**
+	 * @return the names of the rows of the report: "script", then one per request
+	 */
+	public List<String> getRowNames() {
+		
+		final List<String> rows = new ArrayList<String>();
+		rows.add(SCRIPT);
+		rows.addAll(names);
+		return rows;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("HttpReplayEngine [%d requests, %d virtual users for %d s]", 
+				script.getRequests().size(), virtualUsers, TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+	}
+}
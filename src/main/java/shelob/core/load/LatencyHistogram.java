@@ -0,0 +1,192 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * A latency histogram in the style of HdrHistogram : values are counted in log-linear buckets 
+ * (256 exact microsecond buckets, then 128 linear sub-buckets per power of two), so recording is 
+ * a lock-free increment, the footprint is fixed (about 30KB) and every percentile is reported 
+ * within 1% of the recorded value, from microseconds up to 19 hours. Longer values are counted 
+ * as the longest trackable value.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR = SUB_BUCKETS * 2;
+	private static final long MAX_MICROS = (1L << 36) - 1;
+	private static final int BUCKETS = index(MAX_MICROS) + 1;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalMicros = new AtomicLong();
+	private final AtomicLong minMicros = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong maxMicros = new AtomicLong();
+	
+	/**
+	 * @param nanos the latency to record
+	 */
+	public void record(long nanos) {
+		
+		final long micros = Math.min(MAX_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+		
+		counts.incrementAndGet(index(micros));
+		count.incrementAndGet();
+		totalMicros.addAndGet(micros);
+		
+		long min;
+		while (micros < (min = minMicros.get()) && ! minMicros.compareAndSet(min, micros));
+		
+		long max;
+		while (micros > (max = maxMicros.get()) && ! maxMicros.compareAndSet(max, micros));
+	}
+	
+	/**
+	 * @param other the histogram whose counts are added to this one
+	 * @return this; fluent interface
+	 */
+	public LatencyHistogram add(LatencyHistogram other) {
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			
+			final long n = other.counts.get(i);
+			
+			if (n > 0)
+				counts.addAndGet(i, n);
+		}
+		
+		count.addAndGet(other.count.get());
+		totalMicros.addAndGet(other.totalMicros.get());
+		
+		long min;
+		final long otherMin = other.minMicros.get();
+		while (otherMin < (min = minMicros.get()) && ! minMicros.compareAndSet(min, otherMin));
+		
+		long max;
+		final long otherMax = other.maxMicros.get();
+		while (otherMax > (max = maxMicros.get()) && ! maxMicros.compareAndSet(max, otherMax));
+		
+		return this;
+	}
+	
+	/**
+	 * @return a copy of the counts recorded so far
+	 */
+	public LatencyHistogram copy() {
+		return new LatencyHistogram().add(this);
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * @return the shortest recorded latency in nanoseconds; 0 when empty
+	 */
+	public long getMinNanos() {
+		return count.get() == 0 ? 0 : TimeUnit.MICROSECONDS.toNanos(minMicros.get());
+	}
+	
+	/**
+	 * @return the longest recorded latency in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return TimeUnit.MICROSECONDS.toNanos(maxMicros.get());
+	}
+	
+	/**
+	 * @return the mean latency in nanoseconds; 0 when empty
+	 */
+	public double getMeanNanos() {
+		
+		final long n = count.get();
+		return n == 0 ? 0 : totalMicros.get() * 1000.0 / n;
+	}
+	
+	/**
+	 * @param percentile between 0 and 100, e.g. 99.9
+	 * @return the latency in nanoseconds at or below which the percentile of the recorded values fall; 0 when empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		
+		final long n = count.get();
+		
+		if (n == 0)
+			return 0;
+		
+		final long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * n));
+		long cumulative = 0;
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			
+			cumulative += counts.get(i);
+			
+			if (cumulative >= target)
+				return TimeUnit.MICROSECONDS.toNanos(Math.min(highestEquivalent(i), maxMicros.get()));
+		}
+		
+		return getMaxNanos();
+	}
+	
+	private static int index(long micros) { // $codepro.audit.disable methodJavadoc
+		
+		if (micros < LINEAR)
+			return (int) micros;
+		
+		// the shift which brings the value into [SUB_BUCKETS, LINEAR)
+		final int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+		return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+	}
+	
+	private static long highestEquivalent(int index) { // $codepro.audit.disable methodJavadoc
+		
+		if (index < LINEAR)
+			return index;
+		
+		final int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+		final long subBucket = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("LatencyHistogram [count=%d, p50=%.3f ms, p99=%.3f ms, max=%.3f ms]", getCount(), 
+				getValueAtPercentile(50) / 1e6, getValueAtPercentile(99) / 1e6, getMaxNanos() / 1e6);
+	}
+}
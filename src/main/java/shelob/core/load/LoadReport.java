@@ -0,0 +1,350 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The outcome of a LoadRunner run : the arrivals, completions, failures and dropped arrivals of 
+ * the run, and one row of latency percentiles and throughput per scenario and per step. For each 
+ * scenario there are two rows :
+ * 
+ * 		checkout			the service time, from the virtual user starting the journey to it's end
+ * 		checkout response	the response time, from the scheduled arrival to the end of the journey;
+ * 							includes the time spent waiting for a free virtual user, so a saturated 
+ * 							pool shows up as latency rather than as fewer, faster samples
+ * 
+ * and one row per step (e.g. "checkout / goTo Orders").
+ */
+@Immutable
+public final class LoadReport {
+
+	/** the CSV report written by writeReports() */
+	public static final String CSV_REPORT = "load-report.csv";
+	
+	/** the JSON report written by writeReports() */
+	public static final String JSON_REPORT = "load-report.json";
+	
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	
+	private final long elapsedNanos;
+	private final long arrivals;
+	private final long completed;
+	private final long failed;
+	private final long dropped;
+	private final List<Row> rows;
+	
+	/**
+	 * The latencies and throughput of one scenario or step
+	 */
+	@Immutable
+	public static final class Row {
+		
+		private final String name;
+		private final LatencyHistogram histogram;
+		private final long errors;
+		private final double throughput;
+		
+		Row(String name, LatencyHistogram histogram, long errors, long elapsedNanos) {
+			this.name = name;
+			this.histogram = histogram.copy();
+			this.errors = errors;
+			this.throughput = elapsedNanos == 0 ? 0 : histogram.getCount() * 1e9 / elapsedNanos;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return a copy of the latencies of the row
+		 */
+		public LatencyHistogram getHistogram() {
+			return histogram.copy();
+		}
+		
+		public long getCount() {
+			return histogram.getCount();
+		}
+		
+		public long getErrors() {
+			return errors;
+		}
+		
+		/**
+		 * @return completions per second over the run
+		 */
+		public double getThroughput() {
+			return throughput;
+		}
+		
+		/**
+		 * @param percentile between 0 and 100
+		 * @return the latency at the percentile, in milliseconds
+		 */
+		public double getMillisAtPercentile(double percentile) {
+			return histogram.getValueAtPercentile(percentile) / 1e6;
+		}
+	}
+	
+	LoadReport(long elapsedNanos, long arrivals, long completed, long failed, long dropped, List<Row> rows) {
+		this.elapsedNanos = elapsedNanos;
+		this.arrivals = arrivals;
+		this.completed = completed;
+		this.failed = failed;
+		this.dropped = dropped;
+		this.rows = Collections.unmodifiableList(new ArrayList<Row>(rows));
+	}
+	
+	/**
+	 * @return the time from the first scheduled arrival to the last completion
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * @return the journeys scheduled at the target arrival rate
+	 */
+	public long getArrivals() {
+		return arrivals;
+	}
+	
+	/**
+	 * @return the journeys which ran to the end
+	 */
+	public long getCompleted() {
+		return completed;
+	}
+	
+	/**
+	 * @return the journeys which threw
+	 */
+	public long getFailed() {
+		return failed;
+	}
+	
+	/**
+	 * @return the arrivals which were not run, because too many were already waiting for a virtual user
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+	
+	/**
+	 * @return completed journeys per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : completed * 1e9 / elapsedNanos;
+	}
+	
+	/**
+	 * @return the scenario rows, each followed by it's steps
+	 */
+	public List<Row> getRows() {
+		return rows;
+	}
+	
+	/**
+	 * @param name the name of the scenario or step
+	 * @return the Row, or null
+	 */
+	public Row getRow(String name) {
+		
+		for (Row row : rows) {
+			
+			if (row.name.equals(name))
+				return row;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Writes load-report.csv and load-report.json
+	 * 
+	 * @param directory the directory the reports are written to; created when missing
+	 * @throws IOException
+	 */
+	public void writeReports(File directory) throws IOException {
+		
+		if (! directory.isDirectory() && ! directory.mkdirs())
+			throw new IOException("Unable to create " + directory);
+		
+		final Writer csv = new OutputStreamWriter(new FileOutputStream(new File(directory, CSV_REPORT)), "UTF-8");
+		
+		try {
+			writeCsv(csv);
+		} finally {
+			csv.close();
+		}
+		
+		final Writer json = new OutputStreamWriter(new FileOutputStream(new File(directory, JSON_REPORT)), "UTF-8");
+		
+		try {
+			writeJson(json);
+		} finally {
+			json.close();
+		}
+	}
+	
+	/**
+	 * Writes one line per row
+	 * 
+	 * @param writer the Writer receiving the report
+	 * @throws IOException
+	 */
+	public void writeCsv(Writer writer) throws IOException {
+		
+		final StringBuilder s = new StringBuilder("name,count,errors,throughput_per_s,min_ms,mean_ms");
+		
+		for (double percentile : PERCENTILES)
+			s.append(",p").append(label(percentile)).append("_ms");
+		
+		s.append(",max_ms\n");
+		
+		for (Row row : rows) {
+			
+			final LatencyHistogram h = row.histogram;
+			
+			s.append(csv(row.name)).append(',').append(h.getCount()).append(',').append(row.errors)
+			 .append(',').append(format(row.throughput)).append(',').append(millis(h.getMinNanos())).append(',').append(millis((long) h.getMeanNanos()));
+			
+			for (double percentile : PERCENTILES)
+				s.append(',').append(millis(h.getValueAtPercentile(percentile)));
+			
+			s.append(',').append(millis(h.getMaxNanos())).append('\n');
+		}
+		
+		writer.write(s.toString());
+		writer.flush();
+	}
+	
+	/**
+	 * Writes the totals of the run and it's rows as a JSON object
+	 * 
+	 * @param writer the Writer receiving the report
+	 * @throws IOException
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		
+		try {
+			
+			final JSONObject report = new JSONObject();
+			report.put("elapsedMillis", elapsedNanos / 1e6);
+			report.put("arrivals", arrivals);
+			report.put("completed", completed);
+			report.put("failed", failed);
+			report.put("dropped", dropped);
+			report.put("throughput", getThroughput());
+			
+			final JSONArray array = new JSONArray();
+			
+			for (Row row : rows) {
+				
+				final LatencyHistogram h = row.histogram;
+				final JSONObject o = new JSONObject();
+				o.put("name", row.name);
+				o.put("count", h.getCount());
+				o.put("errors", row.errors);
+				o.put("throughput", row.throughput);
+				o.put("minMillis", h.getMinNanos() / 1e6);
+				o.put("meanMillis", h.getMeanNanos() / 1e6);
+				
+				for (double percentile : PERCENTILES)
+					o.put("p" + label(percentile) + "Millis", h.getValueAtPercentile(percentile) / 1e6);
+				
+				o.put("maxMillis", h.getMaxNanos() / 1e6);
+				array.put(o);
+			}
+			
+			report.put("rows", array);
+			writer.write(report.toString(2));
+			writer.flush();
+			
+		} catch (JSONException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+	
+	private static String label(double percentile) {
+		return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile).replace('.', '_');
+	}
+	
+	private static String format(double value) {
+		return String.format(Locale.ENGLISH, "%.3f", value);
+	}
+	
+	private static String millis(long nanos) {
+		return String.format(Locale.ENGLISH, "%.3f", nanos / 1e6);
+	}
+	
+	private static String csv(String value) {
+		
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+			return value;
+		
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		
+		final String newLine = System.getProperty("line.separator");
+		final StringBuilder s = new StringBuilder(String.format(Locale.ENGLISH, 
+				"%d arrivals, %d completed, %d failed, %d dropped in %.1f s (%.2f/s)", 
+				arrivals, completed, failed, dropped, elapsedNanos / 1e9, getThroughput()));
+		
+		s.append(newLine).append(String.format(Locale.ENGLISH, "%-48s %8s %6s %10s %10s %10s %10s", "", "count", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+		
+		for (Row row : rows) {
+			s.append(newLine).append(String.format(Locale.ENGLISH, "%-48s %8d %6d %10.1f %10.1f %10.1f %10.1f", row.name, row.getCount(), row.errors, 
+					row.getMillisAtPercentile(50), row.getMillisAtPercentile(99), row.getMillisAtPercentile(99.9), row.histogram.getMaxNanos() / 1e6));
+		}
+		
+		return s.toString();
+	}
+}
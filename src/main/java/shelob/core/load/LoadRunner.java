@@ -0,0 +1,519 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.User;
+import shelob.core.browsers.HtmlUnit;
+import shelob.core.interfaces.IDriverFactory;
+import shelob.core.interfaces.IOperationListener;
+import shelob.core.interfaces.IRequiresLogin;
+import shelob.core.interfaces.IScenario;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.interfaces.page.IPageFactory;
+import shelob.core.trace.OperationOutcome;
+import shelob.core.trace.OperationType;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Runs page flow scenarios as virtual users, at a target arrival rate, so that the page model 
+ * of the application doubles as a load generator :
+ * 
+ * 		LoadReport report = new LoadRunner.Builder(url)
+ * 								.scenario("login", LoadRunner.login(loginPages))
+ * 								.scenario("checkout", 3, checkout)
+ * 								.users(alice, bob)
+ * 								.virtualUsers(20)
+ * 								.arrivalRate(10)
+ * 								.duration(5, TimeUnit.MINUTES)
+ * 								.build().run();
+ * 		report.writeReports(new File("target/load"));
+ * 
+ * Each virtual user owns one driver (the in-process HtmlUnit driver unless an IDriverFactory 
+ * is given) and ApplicationParameters for one of the users, handed out in turn. Arrivals are 
+ * scheduled at fixed intervals whether or not the previous journeys have completed (an open 
+ * model); an arrival waits for a free virtual user, and once maxBacklog arrivals are waiting 
+ * further arrivals are dropped and counted. Scenarios are picked by weight, in a fixed rotation.
+ * 
+ * Every navigation of a journey (Page.goTo() and Element.goToLink()) is recorded as a step of the 
+ * scenario, e.g. "checkout / goTo Orders". A virtual user whose journey throws is given a new driver.
+ */
+@ThreadSafe
+public class LoadRunner {
+
+	private final ApplicationURL url;
+	private final List<User> users;
+	private final List<String> names;
+	private final List<IScenario> rotation;
+	private final IDriverFactory drivers;
+	private final int virtualUsers;
+	private final double arrivalRate;
+	private final long durationNanos;
+	private final int maxBacklog;
+	private final int defaultWait;
+	
+	private final ConcurrentMap<String, Step> steps = new ConcurrentHashMap<String, Step>();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicInteger backlog = new AtomicInteger();
+	
+	@GuardedBy("this") private boolean ran = false;
+	
+	private static final class Step {
+		
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final AtomicLong errors = new AtomicLong();
+	}
+	
+	/**
+	 * One driver and session, running one journey at a time
+	 */
+	private final class VirtualUser implements IOperationListener {
+		
+		private final User user;
+		private RemoteWebDriver driver;
+		private ApplicationParameters parameters;
+		private volatile String scenario;
+		
+		VirtualUser(User user) {
+			this.user = user;
+			connect();
+		}
+		
+		void connect() {
+			driver = drivers.createDriver();
+			parameters = new ApplicationParameters(driver, url, user).setDefaultWait(defaultWait).setOperationListener(this);
+		}
+		
+		void reconnect() {
+			quit();
+			connect();
+		}
+		
+		void quit() {
+			
+			try {
+				driver.quit();
+			} catch (WebDriverException e) {
+				// the session is being replaced anyway
+			}
+		}
+		
+		public void operationStarted(OperationType type, String operation, IPage page, IElement element) {
+			// steps are recorded on completion
+		}
+		
+		public void operationCompleted(OperationType type, String operation, IPage page, IElement element, 
+				long startNanos, long durationNanos, OperationOutcome outcome) {
+			
+			if (type != OperationType.NAVIGATION)
+				return;
+			
+			final StringBuilder name = new StringBuilder(scenario).append(" / ").append(operation).append(' ').append(page.getPageTitle());
+			
+			if (element != null && element.hasLabel())
+				name.append(" : ").append(element.getLabel());
+			
+			final Step step = step(name.toString());
+			step.histogram.record(durationNanos);
+			
+			if (outcome != OperationOutcome.SUCCESS)
+				step.errors.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * The LoadRunner Builder
+	 * @author melllaguno
+	 */
+	public static class Builder {  // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		// Required parameters
+		private final ApplicationURL url;
+		
+		// Optional parameters
+		private final Map<String, IScenario> scenarios = new LinkedHashMap<String, IScenario>();
+		private final Map<String, Integer> weights = new LinkedHashMap<String, Integer>();
+		private final List<User> users = new ArrayList<User>();
+		private IDriverFactory drivers = new IDriverFactory() {
+			public RemoteWebDriver createDriver() {
+				return HtmlUnit.getDriver();
+			}
+		};
+		private int virtualUsers = 10;
+		private double arrivalRate = 1;
+		private long durationNanos = TimeUnit.MINUTES.toNanos(1);
+		private int maxBacklog = -1;
+		private int defaultWait = 0;
+		
+		/**
+		 * @param url the ApplicationURL of every virtual user
+		 */
+		public Builder(ApplicationURL url) {
+			this.url = checkNotNull(url);
+		}
+		
+		/**
+		 * @param name the name of the scenario in the report
+		 * @param scenario the journey
+		 * @return this; fluent interface
+		 */
+		public Builder scenario(String name, IScenario scenario) {
+			return scenario(name, 1, scenario);
+		}
+		
+		/**
+		 * @param name the name of the scenario in the report
+		 * @param weight the share of arrivals running the scenario, relative to the other scenarios
+		 * @param scenario the journey
+		 * @return this; fluent interface
+		 */
+		public Builder scenario(String name, int weight, IScenario scenario) {
+			checkArgument(weight > 0, "weight must be positive");
+			checkArgument(! scenarios.containsKey(name), "%s has already been added", name);
+			scenarios.put(checkNotNull(name), checkNotNull(scenario));
+			weights.put(name, weight);
+			return this;
+		}
+		
+		/**
+		 * @param users the credentials handed out to the virtual users, in turn
+		 * @return this; fluent interface
+		 */
+		public Builder users(User... users) {
+			for (User user : users)
+				this.users.add(checkNotNull(user));
+			return this;
+		}
+		
+		/**
+		 * @param factory creates the driver of each virtual user; HtmlUnit by default
+		 * @return this; fluent interface
+		 */
+		public Builder drivers(IDriverFactory factory) {
+			drivers = checkNotNull(factory);
+			return this;
+		}
+		
+		/**
+		 * @param count the number of virtual users, and so of drivers and concurrent journeys
+		 * @return this; fluent interface
+		 */
+		public Builder virtualUsers(int count) {
+			checkArgument(count > 0, "virtualUsers must be positive");
+			virtualUsers = count;
+			return this;
+		}
+		
+		/**
+		 * @param perSecond the journeys started per second
+		 * @return this; fluent interface
+		 */
+		public Builder arrivalRate(double perSecond) {
+			checkArgument(perSecond > 0, "arrivalRate must be positive");
+			arrivalRate = perSecond;
+			return this;
+		}
+		
+		/**
+		 * @param duration the time during which journeys are started
+		 * @param unit the TimeUnit of the duration
+		 * @return this; fluent interface
+		 */
+		public Builder duration(long duration, TimeUnit unit) {
+			checkArgument(duration > 0, "duration must be positive");
+			durationNanos = unit.toNanos(duration);
+			return this;
+		}
+		
+		/**
+		 * @param arrivals the arrivals which may wait for a free virtual user before further 
+		 * 		  arrivals are dropped; ten per virtual user by default
+		 * @return this; fluent interface
+		 */
+		public Builder maxBacklog(int arrivals) {
+			checkArgument(arrivals >= 0, "maxBacklog must be positive");
+			maxBacklog = arrivals;
+			return this;
+		}
+		
+		/**
+		 * @param seconds the default wait of every virtual user's ApplicationParameters
+		 * @return this; fluent interface
+		 */
+		public Builder defaultWait(int seconds) {
+			defaultWait = seconds;
+			return this;
+		}
+		
+		/**
+		 * @return a new LoadRunner
+		 */
+		public LoadRunner build() {
+			checkState(! scenarios.isEmpty(), "At least one scenario is required");
+			checkState(! users.isEmpty(), "At least one user is required");
+			return new LoadRunner(this);
+		}
+	}
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param builder the LoadRunner.Builder responsible for creating this object
+	 */
+	private LoadRunner(Builder builder) {
+		
+		url = builder.url;
+		users = Collections.unmodifiableList(new ArrayList<User>(builder.users));
+		drivers = builder.drivers;
+		virtualUsers = builder.virtualUsers;
+		arrivalRate = builder.arrivalRate;
+		durationNanos = builder.durationNanos;
+		maxBacklog = builder.maxBacklog < 0 ? builder.virtualUsers * 10 : builder.maxBacklog;
+		defaultWait = builder.defaultWait;
+		
+		// each scenario appears in the rotation as many times as it's weight
+		final List<String> n = new ArrayList<String>();
+		final List<IScenario> r = new ArrayList<IScenario>();
+		
+		for (Map.Entry<String, IScenario> scenario : builder.scenarios.entrySet()) {
+			
+			for (int i = builder.weights.get(scenario.getKey()); i > 0; i--) {
+				n.add(scenario.getKey());
+				r.add(scenario.getValue());
+			}
+		}
+		
+		names = Collections.unmodifiableList(n);
+		rotation = Collections.unmodifiableList(r);
+		
+		for (String name : builder.scenarios.keySet()) {
+			step(name);
+			step(name + " response");
+		}
+	}
+	
+	/**
+	 * @param pages creates the IRequiresLogin page of each virtual user
+	 * @return a scenario logging in and navigating to the page
+	 */
+	public static IScenario login(final IPageFactory<? extends IRequiresLogin<?>> pages) {
+		
+		return new IScenario() {
+			public void run(ApplicationParameters parameters) {
+				pages.createPage(parameters).loginAndNavigateToPage();
+			}
+		};
+	}
+	
+	/**
+	 * Starts the virtual users, schedules arrivals for the duration of the run, waits for the 
+	 * journeys in progress to complete and quits the drivers.
+	 * 
+	 * @return the LoadReport of the run
+	 * @throws InterruptedException
+	 */
+	public LoadReport run() throws InterruptedException {
+		
+		synchronized (this) {
+			checkState(! ran, "A LoadRunner runs once");
+			ran = true;
+		}
+		
+		final BlockingQueue<VirtualUser> pool = new ArrayBlockingQueue<VirtualUser>(virtualUsers);
+		final List<VirtualUser> all = new ArrayList<VirtualUser>();
+		
+		for (int i = 0; i < virtualUsers; i++) {
+			
+			final VirtualUser user = new VirtualUser(users.get(i % users.size()));
+			all.add(user);
+			pool.add(user);
+		}
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(virtualUsers, 
+				new ThreadFactoryBuilder().setNameFormat("shelob-load-%d").setDaemon(true).build());
+		
+		final long interval = (long) (1e9 / arrivalRate);
+		final long start = System.nanoTime();
+		long arrivals = 0;
+		long dropped = 0;
+		
+		try {
+			
+			for (long intended = start; intended - start < durationNanos; intended = start + arrivals * interval) {
+				
+				final long wait = intended - System.nanoTime();
+				
+				if (wait > 0)
+					TimeUnit.NANOSECONDS.sleep(wait);
+				
+				final int slot = (int) (arrivals++ % rotation.size());
+				
+				if (backlog.get() >= maxBacklog) {
+					dropped++;
+					continue;
+				}
+				
+				backlog.incrementAndGet();
+				executor.execute(journey(pool, names.get(slot), rotation.get(slot), intended));
+			}
+			
+			executor.shutdown();
+			
+			// journeys are allowed as long again as the run to drain
+			executor.awaitTermination(Math.max(durationNanos, TimeUnit.SECONDS.toNanos(30)), TimeUnit.NANOSECONDS);
+			
+		} finally {
+			
+			executor.shutdownNow();
+			
+			for (VirtualUser user : all)
+				user.quit();
+		}
+		
+		final long elapsed = System.nanoTime() - start;
+		return new LoadReport(elapsed, arrivals, completed.get(), failed.get(), dropped, getRows(elapsed));
+	}
+	
+	private Runnable journey(final BlockingQueue<VirtualUser> pool, final String name, final IScenario scenario, final long intended) { // $codepro.audit.disable methodJavadoc
+		
+		return new Runnable() {
+			public void run() {
+				
+				final VirtualUser user;
+				
+				try {
+					user = pool.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} finally {
+					backlog.decrementAndGet();
+				}
+				
+				final long started = System.nanoTime();
+				boolean success = false;
+				
+				try {
+					user.scenario = name;
+					scenario.run(user.parameters);
+					success = true;
+					
+				} catch (RuntimeException e) {
+					user.reconnect();
+					
+				} finally {
+					
+					final long end = System.nanoTime();
+					
+					step(name).histogram.record(end - started);
+					step(name + " response").histogram.record(end - intended);
+					
+					if (success)
+						completed.incrementAndGet();
+					else {
+						failed.incrementAndGet();
+						step(name).errors.incrementAndGet();
+					}
+					
+					pool.add(user);
+				}
+			}
+		};
+	}
+	
+	private Step step(String name) { // $codepro.audit.disable methodJavadoc
+		
+		Step step = steps.get(name);
+		
+		if (step == null) {
+			
+			final Step created = new Step();
+			step = steps.putIfAbsent(name, created);
+			
+			if (step == null)
+				step = created;
+		}
+		
+		return step;
+	}
+	
+	private List<LoadReport.Row> getRows(long elapsed) { // $codepro.audit.disable methodJavadoc
+		
+		final List<String> ordered = new ArrayList<String>(steps.keySet());
+		Collections.sort(ordered);
+		
+		final List<LoadReport.Row> rows = new ArrayList<LoadReport.Row>();
+		
+		for (String name : ordered) {
+			
+			final Step step = steps.get(name);
+			rows.add(new LoadReport.Row(name, step.histogram, step.errors.get(), elapsed));
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return String.format("LoadRunner [%s, %d virtual users, %.2f arrivals/s for %d s]", 
+				url.getURL(), virtualUsers, arrivalRate, TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+	}
+}
@@ -0,0 +1,175 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.metrics;
+
+import java.io.Closeable;
+
+import javax.annotation.Nullable;
+
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Records which Page and Element are currently issuing driver commands on the calling thread.
+ * 
+ * NOTE : WebDriver commands are executed synchronously on the thread which invokes them, so the
+ * 		  Element which last resolved itself is the one responsible for any commands that follow.
+ * 		  Each traced Page/Element operation binds itself for it's duration and restores the previous 
+ * 		  binding when it ends, so the commands of direct driver use are not charged to it.
+ * 		  Only references are stored here; the (comparatively expensive) Page path is only computed
+ * 		  by the MeteredCommandExecutor when a command is actually recorded.
+ */
+public final class CommandAttribution {
+
+	private static final String UNATTRIBUTED = "<unattributed>";
+	
+	private static final ThreadLocal<CommandAttribution> CURRENT = new ThreadLocal<CommandAttribution>() {
+		
+		@Override
+		protected CommandAttribution initialValue() {
+			return new CommandAttribution();
+		}
+	};
+	
+	private IPage page;
+	private IElement element;
+	
+	private CommandAttribution() {}
+	
+	/**
+	 * The attribution of an operation; closing it restores the attribution from before the operation
+	 */
+	public static final class Binding implements Closeable {
+		
+		private final IPage previousPage;
+		private final IElement previousElement;
+		
+		private Binding(@Nullable IPage previousPage, @Nullable IElement previousElement) {
+			this.previousPage = previousPage;
+			this.previousElement = previousElement;
+		}
+		
+		/**
+		 * Restores the attribution which was current when the binding was made
+		 */
+		public void close() {
+			
+			if (previousPage == null && previousElement == null) {
+				CURRENT.remove();
+				return;
+			}
+			
+			final CommandAttribution current = CURRENT.get();
+			current.page = previousPage;
+			current.element = previousElement;
+		}
+	}
+	
+	/**
+	 * Attributes the commands on this thread to a Page or Element until the returned Binding is closed
+	 * 
+	 * @param page the IPage issuing commands
+	 * @param element the IElement issuing commands, or null for the page itself
+	 * @return Binding
+	 */
+	public static Binding bind(@Nullable IPage page, @Nullable IElement element) {
+		
+		final CommandAttribution current = CURRENT.get();
+		final Binding binding = new Binding(current.page, current.element);
+		
+		current.page = page;
+		current.element = element;
+		return binding;
+	}
+	
+	/**
+	 * Attributes subsequent commands on this thread to the given Page
+	 * 
+	 * @param page the IPage issuing commands
+	 */
+	public static void attribute(IPage page) {
+		
+		final CommandAttribution current = CURRENT.get();
+		current.page = page;
+		current.element = null;
+	}
+	
+	/**
+	 * Attributes subsequent commands on this thread to the given Element (and it's parent Page)
+	 * 
+	 * @param element the IElement issuing commands
+	 */
+	public static void attribute(IElement element) {
+		
+		final CommandAttribution current = CURRENT.get();
+		current.page = element.getParentPage();
+		current.element = element;
+	}
+	
+	/**
+	 * Removes any attribution associated with the calling thread
+	 */
+	public static void clear() {
+		CURRENT.remove();
+	}
+	
+	/**
+	 * @return the application path of the Page currently issuing commands
+	 */
+	public static String getPagePath() {
+		
+		final IPage page = CURRENT.get().page;
+		
+		if (page == null)
+			return UNATTRIBUTED;
+		
+		return page.toString().trim();
+	}
+	
+	/**
+	 * @return the label of the Element currently issuing commands
+	 */
+	public static String getElementLabel() {
+		
+		final IElement element = CURRENT.get().element;
+		
+		if (element == null)
+			return UNATTRIBUTED;
+		
+		return getLabel(element);
+	}
+	
+	/**
+	 * @param element the IElement to describe
+	 * @return the label of the Element, or it's class name when it has no label
+	 */
+	public static String getLabel(IElement element) {
+		return element.hasLabel() ? element.getLabel() : element.getClass().getSimpleName();
+	}
+}
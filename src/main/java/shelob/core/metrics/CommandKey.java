@@ -0,0 +1,108 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Identifies a driver command by the Page and Element which issued it
+ */
+@Immutable
+public final class CommandKey {
+
+	private final String pagePath;
+	private final String elementLabel;
+	private final String command;
+	
+	/**
+	 * CommandKey Default Constructor
+	 * 
+	 * @param pagePath the application path of the Page issuing the command
+	 * @param elementLabel the label of the Element issuing the command
+	 * @param command the name of the wire command
+	 */
+	public CommandKey(String pagePath, String elementLabel, String command) {
+		this.pagePath = checkNotNull(pagePath);
+		this.elementLabel = checkNotNull(elementLabel);
+		this.command = checkNotNull(command);
+	}
+	
+	/**
+	 * @return the application path of the Page issuing the command
+	 */
+	public String getPagePath() {
+		return pagePath;
+	}
+	
+	/**
+	 * @return the label of the Element issuing the command
+	 */
+	public String getElementLabel() {
+		return elementLabel;
+	}
+	
+	/**
+	 * @return the name of the wire command
+	 */
+	public String getCommand() {
+		return command;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		
+		if (this == o)
+			return true;
+		
+		if (! (o instanceof CommandKey))
+			return false;
+		
+		final CommandKey other = (CommandKey) o;
+		
+		return pagePath.equals(other.pagePath) 
+				&& elementLabel.equals(other.elementLabel) 
+				&& command.equals(other.command);
+	}
+	
+	@Override
+	public int hashCode() {
+		return (31 * (31 * pagePath.hashCode() + elementLabel.hashCode())) + command.hashCode();
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return pagePath + " Element : " + elementLabel + " Command : " + command;
+	}
+}
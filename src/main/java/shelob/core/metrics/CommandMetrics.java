@@ -0,0 +1,216 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Accumulates the count and duration of driver round trips, attributed to the Page and Element 
+ * which issued them. Totals are kept for the whole suite as well as for each named test.
+ * 
+ * Tests are delimited per thread using beginTest()/endTest() so that suites running in parallel
+ * can share a single CommandMetrics instance.
+ * 
+ * NOTE : Only commands issued on the thread which called beginTest() are counted against the test. 
+ * 		  Commands issued from other threads, such as the queue threads running Element.async() 
+ * 		  operations, are counted in the suite totals only.
+ */
+@ThreadSafe
+public final class CommandMetrics {
+
+	private final TestAccumulators<CommandKey, Accumulator> accumulators = new TestAccumulators<CommandKey, Accumulator>() {
+		
+		@Override
+		protected Accumulator create() {
+			return new Accumulator();
+		}
+	};
+	
+	/**
+	 * Marks the start of a test on the calling thread; subsequent commands are also counted against it.
+	 * 
+	 * @param name the name of the test
+	 * @return fluent interface; this
+	 */
+	public CommandMetrics beginTest(String name) {
+		accumulators.beginTest(name);
+		return this;
+	}
+	
+	/**
+	 * Marks the end of the test running on the calling thread.
+	 * 
+	 * @return fluent interface; this
+	 */
+	public CommandMetrics endTest() {
+		accumulators.endTest();
+		return this;
+	}
+	
+	/**
+	 * Records a single round trip against the Page/Element currently attributed on the calling thread.
+	 * 
+	 * @param command the name of the wire command
+	 * @param nanos the round trip time in nanoseconds
+	 * @param failed a flag indicating whether the command failed
+	 */
+	public void record(String command, long nanos, boolean failed) {
+		
+		final CommandKey key = new CommandKey(CommandAttribution.getPagePath(), 
+											  CommandAttribution.getElementLabel(), 
+											  command);
+		
+		accumulators.forSuite(key).add(nanos, failed);
+		
+		final Accumulator test = accumulators.forCurrentTest(key);
+		
+		if (test != null)
+			test.add(nanos, failed);
+	}
+	
+	/**
+	 * @return the statistics for every command issued during the suite
+	 */
+	public Map<CommandKey, CommandStatistics> getSuiteStatistics() {
+		return snapshot(accumulators.getSuite());
+	}
+	
+	/**
+	 * @return the totals for every command issued during the suite
+	 */
+	public CommandStatistics getSuiteTotal() {
+		return total(accumulators.getSuite());
+	}
+	
+	/**
+	 * @return the names of the tests which have been recorded
+	 */
+	public Set<String> getTestNames() {
+		return accumulators.getTestNames();
+	}
+	
+	/**
+	 * @param name the name of the test
+	 * @return the statistics for every command issued during the test
+	 */
+	public Map<CommandKey, CommandStatistics> getTestStatistics(String name) {
+		return snapshot(accumulators.getTest(name));
+	}
+	
+	/**
+	 * @param name the name of the test
+	 * @return the totals for every command issued during the test
+	 */
+	public CommandStatistics getTestTotal(String name) {
+		return total(accumulators.getTest(name));
+	}
+	
+	/**
+	 * Discards all recorded statistics; tests in progress carry on against fresh totals
+	 * 
+	 * @return fluent interface; this
+	 */
+	public CommandMetrics reset() {
+		accumulators.reset();
+		return this;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		
+		final StringBuilder s = new StringBuilder("CommandMetrics : ").append(getSuiteTotal());
+		
+		for (Map.Entry<CommandKey, CommandStatistics> entry : getSuiteStatistics().entrySet()) {
+			
+			s.append(System.getProperty("line.separator"));
+			s.append(entry.getKey()).append(" -> ").append(entry.getValue());
+		}
+		
+		return s.toString();
+	}
+	
+	private static Map<CommandKey, CommandStatistics> snapshot(Map<CommandKey, Accumulator> map) {
+		
+		final Map<CommandKey, CommandStatistics> copy = new HashMap<CommandKey, CommandStatistics>();
+		
+		for (Map.Entry<CommandKey, Accumulator> entry : map.entrySet())
+			copy.put(entry.getKey(), entry.getValue().snapshot());
+		
+		return Collections.unmodifiableMap(copy);
+	}
+	
+	private static CommandStatistics total(Map<CommandKey, Accumulator> map) {
+		
+		CommandStatistics total = CommandStatistics.EMPTY;
+		
+		for (Accumulator accumulator : map.values())
+			total = total.plus(accumulator.snapshot());
+		
+		return total;
+	}
+	
+	/*
+	 * Lock-free running totals for a single CommandKey
+	 */
+	private static final class Accumulator {
+		
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		
+		void add(long nanos, boolean failed) {
+			
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			
+			if (failed)
+				failures.incrementAndGet();
+			
+			long max = maxNanos.get();
+			
+			while (nanos > max && ! maxNanos.compareAndSet(max, nanos))
+				max = maxNanos.get();
+		}
+		
+		CommandStatistics snapshot() {
+			return new CommandStatistics(count.get(), failures.get(), totalNanos.get(), maxNanos.get());
+		}
+	}
+}
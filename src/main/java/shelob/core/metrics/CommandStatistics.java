@@ -0,0 +1,125 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Snapshot of the number and duration of driver round trips
+ */
+@Immutable
+public final class CommandStatistics {
+
+	public static final CommandStatistics EMPTY = new CommandStatistics(0, 0, 0, 0);
+	
+	private final long count;
+	private final long failures;
+	private final long totalNanos;
+	private final long maxNanos;
+	
+	/**
+	 * CommandStatistics Default Constructor
+	 * 
+	 * @param count the number of commands executed
+	 * @param failures the number of commands which failed
+	 * @param totalNanos the accumulated round trip time in nanoseconds
+	 * @param maxNanos the longest single round trip in nanoseconds
+	 */
+	public CommandStatistics(long count, long failures, long totalNanos, long maxNanos) {
+		this.count = count;
+		this.failures = failures;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+	}
+	
+	/**
+	 * @return the number of commands executed
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the number of commands which failed (transport errors or non-zero response status)
+	 */
+	public long getFailures() {
+		return failures;
+	}
+	
+	/**
+	 * @return the accumulated round trip time in milliseconds
+	 */
+	public long getTotalMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+	}
+	
+	/**
+	 * @return the accumulated round trip time in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	/**
+	 * @return the longest single round trip in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	/**
+	 * @return the mean round trip time in nanoseconds
+	 */
+	public long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+	
+	/**
+	 * @param other the statistics to combine with these
+	 * @return a new instance representing the sum of both
+	 */
+	public CommandStatistics plus(CommandStatistics other) {
+		return new CommandStatistics(count + other.count, 
+									 failures + other.failures, 
+									 totalNanos + other.totalNanos, 
+									 Math.max(maxNanos, other.maxNanos));
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return "Count : " + count + " Failures : " + failures + " Total (ms) : " + getTotalMillis() 
+				+ " Mean (ns) : " + getMeanNanos() + " Max (ns) : " + maxNanos;
+	}
+}
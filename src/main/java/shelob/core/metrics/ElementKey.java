@@ -0,0 +1,100 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Identifies an Element by it's label and the application path of it's Page
+ */
+@Immutable
+public final class ElementKey implements Comparable<ElementKey> {
+
+	private final String pagePath;
+	private final String elementLabel;
+	
+	/**
+	 * ElementKey Default Constructor
+	 * 
+	 * @param pagePath the application path of the Page
+	 * @param elementLabel the label of the Element
+	 */
+	public ElementKey(String pagePath, String elementLabel) {
+		this.pagePath = checkNotNull(pagePath);
+		this.elementLabel = checkNotNull(elementLabel);
+	}
+	
+	/**
+	 * @return the application path of the Page
+	 */
+	public String getPagePath() {
+		return pagePath;
+	}
+	
+	/**
+	 * @return the label of the Element
+	 */
+	public String getElementLabel() {
+		return elementLabel;
+	}
+	
+	public int compareTo(ElementKey other) {
+		
+		final int byPage = pagePath.compareTo(other.pagePath);
+		return byPage != 0 ? byPage : elementLabel.compareTo(other.elementLabel);
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		
+		if (this == o)
+			return true;
+		
+		if (! (o instanceof ElementKey))
+			return false;
+		
+		final ElementKey other = (ElementKey) o;
+		
+		return pagePath.equals(other.pagePath) && elementLabel.equals(other.elementLabel);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * pagePath.hashCode() + elementLabel.hashCode();
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		return pagePath + " Element : " + elementLabel;
+	}
+}
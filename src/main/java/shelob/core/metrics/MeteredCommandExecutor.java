@@ -0,0 +1,91 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * CommandExecutor decorator which counts and times every wire command sent by a RemoteWebDriver.
+ * 
+ * Every WebDriver/WebElement call made through a RemoteWebDriver is funnelled through its 
+ * CommandExecutor, so wrapping the executor captures all round trips regardless of whether they 
+ * were issued by an Element, a Page or the test itself.
+ */
+public final class MeteredCommandExecutor implements CommandExecutor {
+
+	private static final int SUCCESS = 0;
+	
+	private final CommandExecutor delegate;
+	private final CommandMetrics metrics;
+	
+	/**
+	 * MeteredCommandExecutor Default Constructor
+	 * 
+	 * @param delegate the CommandExecutor which actually sends the commands
+	 * @param metrics the CommandMetrics which round trips are recorded against
+	 */
+	public MeteredCommandExecutor(CommandExecutor delegate, CommandMetrics metrics) {
+		this.delegate = checkNotNull(delegate);
+		this.metrics = checkNotNull(metrics);
+	}
+	
+	/**
+	 * @return the CommandMetrics round trips are recorded against
+	 */
+	public CommandMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Method execute.
+	 * @param command the wire command
+	 * @return Response
+	 * @throws IOException
+	 * @see org.openqa.selenium.remote.CommandExecutor#execute(Command)
+	 */
+	public Response execute(Command command) throws IOException {
+		
+		final long start = System.nanoTime();
+		boolean failed = true;
+		
+		try {
+			final Response response = delegate.execute(command);
+			failed = response != null && response.getStatus() != SUCCESS;
+			return response;
+		} finally {
+			metrics.record(command.getName(), System.nanoTime() - start, failed);
+		}
+	}
+}
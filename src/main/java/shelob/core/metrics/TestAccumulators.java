@@ -0,0 +1,148 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The running totals shared by CommandMetrics and TimeBreakdownRecorder : one accumulator per key 
+ * for the whole suite, and one per key for each named test. Tests are delimited per thread using 
+ * beginTest()/endTest().
+ * 
+ * Accumulators are created on first use, so recording carries on against fresh totals when reset() 
+ * is called while a test is running.
+ *
+ * @param <K> the key the totals are accumulated against
+ * @param <A> the accumulator
+ */
+@ThreadSafe
+abstract class TestAccumulators<K, A> {
+
+	private final ConcurrentMap<K, A> suite = new ConcurrentHashMap<K, A>();
+	private final ConcurrentMap<String, ConcurrentMap<K, A>> tests = new ConcurrentHashMap<String, ConcurrentMap<K, A>>();
+	private final ThreadLocal<String> currentTest = new ThreadLocal<String>();
+	
+	/**
+	 * @return a new, empty accumulator
+	 */
+	protected abstract A create();
+	
+	/**
+	 * @param name the name of the test starting on the calling thread
+	 */
+	void beginTest(String name) {
+		currentTest.set(checkNotNull(name));
+		testFor(name);
+	}
+	
+	void endTest() {
+		currentTest.remove();
+	}
+	
+	/**
+	 * @param key the key
+	 * @return the suite accumulator of the key
+	 */
+	A forSuite(K key) {
+		return getOrCreate(suite, key);
+	}
+	
+	/**
+	 * @param key the key
+	 * @return the accumulator of the key for the test running on the calling thread, or null when there is none
+	 */
+	@Nullable
+	A forCurrentTest(K key) {
+		
+		final String test = currentTest.get();
+		return test == null ? null : getOrCreate(testFor(test), key);
+	}
+	
+	/**
+	 * @return the suite accumulators, by key
+	 */
+	Map<K, A> getSuite() {
+		return suite;
+	}
+	
+	/**
+	 * @param name the name of the test
+	 * @return the accumulators of the test, by key; empty when the test has not been recorded
+	 */
+	Map<K, A> getTest(String name) {
+		
+		final Map<K, A> test = tests.get(checkNotNull(name));
+		return test == null ? Collections.<K, A>emptyMap() : test;
+	}
+	
+	Set<String> getTestNames() {
+		return Collections.unmodifiableSet(new TreeSet<String>(tests.keySet()));
+	}
+	
+	void reset() {
+		suite.clear();
+		tests.clear();
+	}
+	
+	private ConcurrentMap<K, A> testFor(String name) { // $codepro.audit.disable methodJavadoc
+		
+		final ConcurrentMap<K, A> existing = tests.get(name);
+		
+		if (existing != null)
+			return existing;
+		
+		final ConcurrentMap<K, A> created = new ConcurrentHashMap<K, A>();
+		final ConcurrentMap<K, A> raced = tests.putIfAbsent(name, created);
+		
+		return raced == null ? created : raced;
+	}
+	
+	private A getOrCreate(ConcurrentMap<K, A> map, K key) { // $codepro.audit.disable methodJavadoc
+		
+		final A existing = map.get(key);
+		
+		if (existing != null)
+			return existing;
+		
+		final A created = create();
+		final A raced = map.putIfAbsent(key, created);
+		
+		return raced == null ? created : raced;
+	}
+}
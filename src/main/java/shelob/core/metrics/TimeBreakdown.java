@@ -0,0 +1,146 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.Immutable;
+
+import shelob.core.trace.OperationType;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Snapshot of where the time of an Element (or a test) went, split by OperationType.
+ * 
+ * Times are exclusive : an ACTION does not include the LOOKUP resolving it's element, and a 
+ * NAVIGATION does not include the click and pause of goToLink(). WAIT and RETRY are the 
+ * exception; they include everything performed while polling or retrying.
+ */
+@Immutable
+public final class TimeBreakdown {
+
+	private static final int TYPES = OperationType.values().length;
+	
+	public static final TimeBreakdown EMPTY = new TimeBreakdown(new long[TYPES], new long[TYPES], 0);
+	
+	private final long[] counts;
+	private final long[] nanos;
+	private final long timeouts;
+	
+	/**
+	 * TimeBreakdown Default Constructor
+	 * 
+	 * @param counts the number of operations, indexed by OperationType ordinal
+	 * @param nanos the exclusive time of the operations in nanoseconds, indexed by OperationType ordinal
+	 * @param timeouts the number of waits which timed out
+	 */
+	public TimeBreakdown(long[] counts, long[] nanos, long timeouts) {
+		
+		checkArgument(counts.length == TYPES && nanos.length == TYPES, "counts and nanos must have an entry per OperationType");
+		
+		this.counts = counts.clone();
+		this.nanos = nanos.clone();
+		this.timeouts = timeouts;
+	}
+	
+	/**
+	 * @param type the OperationType
+	 * @return the number of operations of the type
+	 */
+	public long getCount(OperationType type) {
+		return counts[type.ordinal()];
+	}
+	
+	/**
+	 * @param type the OperationType
+	 * @return the time spent in operations of the type in nanoseconds
+	 */
+	public long getNanos(OperationType type) {
+		return nanos[type.ordinal()];
+	}
+	
+	/**
+	 * @param type the OperationType
+	 * @return the time spent in operations of the type in milliseconds
+	 */
+	public long getMillis(OperationType type) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos[type.ordinal()]);
+	}
+	
+	/**
+	 * @return the number of waits which timed out
+	 */
+	public long getTimeouts() {
+		return timeouts;
+	}
+	
+	/**
+	 * @return the time spent in all operations in nanoseconds
+	 */
+	public long getTotalNanos() {
+		
+		long total = 0;
+		
+		for (long n : nanos)
+			total += n;
+		
+		return total;
+	}
+	
+	/**
+	 * @param other the breakdown to combine with this one
+	 * @return a new instance representing the sum of both
+	 */
+	public TimeBreakdown plus(TimeBreakdown other) {
+		
+		final long[] c = new long[TYPES];
+		final long[] n = new long[TYPES];
+		
+		for (int i = 0; i < TYPES; i++) {
+			c[i] = counts[i] + other.counts[i];
+			n[i] = nanos[i] + other.nanos[i];
+		}
+		
+		return new TimeBreakdown(c, n, timeouts + other.timeouts);
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		
+		final StringBuilder s = new StringBuilder();
+		
+		for (OperationType type : OperationType.values())
+			s.append(type.name()).append(" : ").append(getCount(type)).append(" / ").append(getMillis(type)).append(" ms ");
+		
+		return s.append("Timeouts : ").append(timeouts).toString();
+	}
+}
@@ -0,0 +1,512 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.google.common.collect.MapMaker;
+
+import shelob.core.interfaces.IOperationListener;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.trace.OperationOutcome;
+import shelob.core.trace.OperationType;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Accumulates, per test and per Element, the time spent waiting for visibility, pausing, 
+ * retrying, resolving locators, acting and navigating. Register it through 
+ * ApplicationParameters.setOperationListener() and write the report at the end of the suite :
+ * 
+ * 		@AfterClass
+ * 		public static void runAfterSuite() throws IOException {
+ * 			breakdown.writeReports(new File("target"));
+ * 		}
+ * 
+ * Tests are delimited per thread using beginTest()/endTest(), as with CommandMetrics. Report rows
+ * are sorted by wait time, then pause time, so the elements most worth a faster wait strategy 
+ * (and the most wasteful explicit pauses) come first.
+ * 
+ * NOTE : time is accumulated per page path and label, so the recorder does not keep Pages or 
+ * 		  Elements reachable. The key of each instance is rendered once, and forgotten with it.
+ */
+@ThreadSafe
+public final class TimeBreakdownRecorder implements IOperationListener {
+
+	public static final String CSV_REPORT = "time-breakdown.csv";
+	public static final String JSON_REPORT = "time-breakdown.json";
+	public static final String SUITE = "<suite>";
+	
+	private static final String PAGE = "<page>";
+	private static final int TYPES = OperationType.values().length;
+	private static final int MAX_DEPTH = 64;
+	
+	// compared by identity, and dropped once the Page or Element is no longer reachable
+	private final ConcurrentMap<Object, ElementKey> keys = new MapMaker().weakKeys().makeMap();
+	
+	private final TestAccumulators<ElementKey, Accumulator> accumulators = new TestAccumulators<ElementKey, Accumulator>() {
+		
+		@Override
+		protected Accumulator create() {
+			return new Accumulator();
+		}
+	};
+	
+	private final ThreadLocal<Frames> frames = new ThreadLocal<Frames>() {
+		
+		@Override
+		protected Frames initialValue() {
+			return new Frames();
+		}
+	};
+	
+	/*
+	 * The operations currently open on a thread, and the time their completed children took
+	 */
+	private static final class Frames {
+		
+		private final OperationType[] types = new OperationType[MAX_DEPTH];
+		private final long[] childNanos = new long[MAX_DEPTH];
+		private int depth;
+		private int absorbing;
+		
+		// operations started beyond MAX_DEPTH, whose completions are ignored
+		private int skipped;
+	}
+	
+	/**
+	 * Marks the start of a test on the calling thread
+	 * 
+	 * @param name the name of the test
+	 * @return fluent interface; this
+	 */
+	public TimeBreakdownRecorder beginTest(String name) {
+		
+		accumulators.beginTest(name);
+		return this;
+	}
+	
+	/**
+	 * Marks the end of the test running on the calling thread.
+	 * 
+	 * @return fluent interface; this
+	 */
+	public TimeBreakdownRecorder endTest() {
+		accumulators.endTest();
+		return this;
+	}
+	
+	/**
+	 * @see shelob.core.interfaces.IOperationListener#operationStarted(OperationType, String, IPage, IElement)
+	 */
+	public void operationStarted(OperationType type, String operation, IPage page, IElement element) {
+		
+		final Frames f = frames.get();
+		
+		if (f.depth == MAX_DEPTH) {
+			f.skipped++;
+			return;
+		}
+		
+		f.types[f.depth] = type;
+		f.childNanos[f.depth] = 0;
+		f.depth++;
+		
+		if (absorbsChildren(type))
+			f.absorbing++;
+	}
+	
+	/**
+	 * @see shelob.core.interfaces.IOperationListener#operationCompleted(OperationType, String, IPage, IElement, long, long, OperationOutcome)
+	 */
+	public void operationCompleted(OperationType type, String operation, IPage page, IElement element, 
+			long startNanos, long durationNanos, OperationOutcome outcome) {
+		
+		final Frames f = frames.get();
+		
+		if (f.skipped > 0) {
+			f.skipped--;
+			return;
+		}
+		
+		long childNanos = 0;
+		
+		// an operation which started before this listener was registered has no frame
+		if (f.depth > 0 && f.types[f.depth - 1] == type) {
+			
+			f.depth--;
+			childNanos = f.childNanos[f.depth];
+			
+			if (absorbsChildren(type))
+				f.absorbing--;
+		}
+		
+		if (f.depth > 0)
+			f.childNanos[f.depth - 1] += durationNanos;
+		
+		// the time is already accounted for by an enclosing WAIT or RETRY
+		if (f.absorbing > 0)
+			return;
+		
+		final long nanos = absorbsChildren(type) ? durationNanos : Math.max(0, durationNanos - childNanos);
+		final boolean timedOut = outcome == OperationOutcome.TIMEOUT;
+		final ElementKey key = getKey(page, element);
+		
+		accumulators.forSuite(key).add(type, nanos, timedOut);
+		
+		final Accumulator test = accumulators.forCurrentTest(key);
+		
+		if (test != null)
+			test.add(type, nanos, timedOut);
+	}
+	
+	/**
+	 * @return the names of the tests which have been recorded
+	 */
+	public Set<String> getTestNames() {
+		return accumulators.getTestNames();
+	}
+	
+	/**
+	 * @return the breakdown of every element used during the suite, including outside of tests
+	 */
+	public Map<ElementKey, TimeBreakdown> getSuiteBreakdown() {
+		return snapshot(accumulators.getSuite());
+	}
+	
+	/**
+	 * @param name the name of the test
+	 * @return the breakdown of every element used during the test
+	 */
+	public Map<ElementKey, TimeBreakdown> getTestBreakdown(String name) {
+		return snapshot(accumulators.getTest(name));
+	}
+	
+	/**
+	 * @param name the name of the test
+	 * @return the breakdown of the whole test
+	 */
+	public TimeBreakdown getTestTotal(String name) {
+		
+		TimeBreakdown total = TimeBreakdown.EMPTY;
+		
+		for (TimeBreakdown breakdown : getTestBreakdown(name).values())
+			total = total.plus(breakdown);
+		
+		return total;
+	}
+	
+	/**
+	 * Discards all recorded times
+	 * 
+	 * @return fluent interface; this
+	 */
+	public TimeBreakdownRecorder reset() {
+		accumulators.reset();
+		return this;
+	}
+	
+	/**
+	 * Writes CSV_REPORT and JSON_REPORT into the directory
+	 * 
+	 * @param directory the directory receiving the reports
+	 * @throws IOException
+	 */
+	public void writeReports(File directory) throws IOException {
+		
+		if (! directory.isDirectory() && ! directory.mkdirs())
+			throw new IOException("Unable to create " + directory);
+		
+		final List<Row> rows = getRows();
+		
+		final Writer csv = new OutputStreamWriter(new FileOutputStream(new File(directory, CSV_REPORT)), "UTF-8");
+		
+		try {
+			writeCsv(rows, csv);
+		} finally {
+			csv.close();
+		}
+		
+		final Writer json = new OutputStreamWriter(new FileOutputStream(new File(directory, JSON_REPORT)), "UTF-8");
+		
+		try {
+			writeJson(rows, json);
+		} finally {
+			json.close();
+		}
+	}
+	
+	/**
+	 * Writes one row per test and element, followed by the suite rows (test SUITE)
+	 * 
+	 * @param writer the Writer receiving the report
+	 * @throws IOException
+	 */
+	public void writeCsv(Writer writer) throws IOException {
+		writeCsv(getRows(), writer);
+	}
+	
+	/**
+	 * Writes the rows of the CSV report as an array of JSON objects
+	 * 
+	 * @param writer the Writer receiving the report
+	 * @throws IOException
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		writeJson(getRows(), writer);
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		
+		final StringBuilder s = new StringBuilder("TimeBreakdownRecorder : ");
+		
+		for (Map.Entry<ElementKey, TimeBreakdown> entry : getSuiteBreakdown().entrySet()) {
+			
+			s.append(System.getProperty("line.separator"));
+			s.append(entry.getKey()).append(" -> ").append(entry.getValue());
+		}
+		
+		return s.toString();
+	}
+	
+	private static boolean absorbsChildren(OperationType type) {
+		return type == OperationType.WAIT || type == OperationType.RETRY;
+	}
+	
+	private static void writeCsv(List<Row> rows, Writer writer) throws IOException {
+		
+		final StringBuilder s = new StringBuilder("test,page,element");
+		
+		for (OperationType type : OperationType.values()) {
+			
+			final String name = type.name().toLowerCase(Locale.ENGLISH);
+			s.append(',').append(name).append("_count,").append(name).append("_ms");
+		}
+		
+		s.append(",timeouts,total_ms\n");
+		
+		for (Row row : rows) {
+			
+			s.append(csv(row.test)).append(',').append(csv(row.key.getPagePath())).append(',').append(csv(row.key.getElementLabel()));
+			
+			for (OperationType type : OperationType.values())
+				s.append(',').append(row.breakdown.getCount(type)).append(',').append(millis(row.breakdown.getNanos(type)));
+			
+			s.append(',').append(row.breakdown.getTimeouts()).append(',').append(millis(row.breakdown.getTotalNanos())).append('\n');
+		}
+		
+		writer.write(s.toString());
+		writer.flush();
+	}
+	
+	private static void writeJson(List<Row> rows, Writer writer) throws IOException {
+		
+		try {
+			
+			final JSONArray array = new JSONArray();
+			
+			for (Row row : rows) {
+				
+				final JSONObject o = new JSONObject();
+				o.put("test", row.test);
+				o.put("page", row.key.getPagePath());
+				o.put("element", row.key.getElementLabel());
+				
+				for (OperationType type : OperationType.values()) {
+					
+					final String name = type.name().toLowerCase(Locale.ENGLISH);
+					o.put(name + "Count", row.breakdown.getCount(type));
+					o.put(name + "Millis", row.breakdown.getNanos(type) / 1e6);
+				}
+				
+				o.put("timeouts", row.breakdown.getTimeouts());
+				o.put("totalMillis", row.breakdown.getTotalNanos() / 1e6);
+				array.put(o);
+			}
+			
+			writer.write(array.toString(2));
+			writer.flush();
+			
+		} catch (JSONException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+	
+	private List<Row> getRows() {
+		
+		final List<Row> rows = new ArrayList<Row>();
+		
+		for (String test : getTestNames())
+			rows.addAll(sorted(test, getTestBreakdown(test)));
+		
+		rows.addAll(sorted(SUITE, getSuiteBreakdown()));
+		return rows;
+	}
+	
+	private static List<Row> sorted(String test, Map<ElementKey, TimeBreakdown> breakdown) {
+		
+		final List<Row> rows = new ArrayList<Row>();
+		
+		for (Map.Entry<ElementKey, TimeBreakdown> entry : breakdown.entrySet())
+			rows.add(new Row(test, entry.getKey(), entry.getValue()));
+		
+		Collections.sort(rows, Row.BY_WAITING);
+		return rows;
+	}
+	
+	private static String millis(long nanos) {
+		return String.format(Locale.ENGLISH, "%.3f", nanos / 1e6);
+	}
+	
+	private static String csv(String value) {
+		
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+			return value;
+		
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+	
+	private static Map<ElementKey, TimeBreakdown> snapshot(Map<ElementKey, Accumulator> map) {
+		
+		final Map<ElementKey, TimeBreakdown> copy = new HashMap<ElementKey, TimeBreakdown>();
+		
+		for (Map.Entry<ElementKey, Accumulator> entry : map.entrySet())
+			copy.put(entry.getKey(), entry.getValue().snapshot());
+		
+		return Collections.unmodifiableMap(copy);
+	}
+	
+	private ElementKey getKey(IPage page, IElement element) { // $codepro.audit.disable methodJavadoc
+		
+		final Object instance = element != null ? element : page;
+		
+		if (instance == null)
+			return new ElementKey("", PAGE);
+		
+		ElementKey key = keys.get(instance);
+		
+		if (key == null) {
+			
+			// distinct instances of the same Page class share a path, and so a key
+			key = new ElementKey(page == null ? "" : page.toString().trim(), element == null ? PAGE : CommandAttribution.getLabel(element));
+			keys.put(instance, key);
+		}
+		
+		return key;
+	}
+	
+	/*
+	 * Lock-free running totals for a single ElementKey
+	 */
+	private static final class Accumulator {
+		
+		private final AtomicLongArray counts = new AtomicLongArray(TYPES);
+		private final AtomicLongArray nanos = new AtomicLongArray(TYPES);
+		private final AtomicLongArray timeouts = new AtomicLongArray(1);
+		
+		void add(OperationType type, long n, boolean timedOut) {
+			
+			counts.incrementAndGet(type.ordinal());
+			nanos.addAndGet(type.ordinal(), n);
+			
+			if (timedOut)
+				timeouts.incrementAndGet(0);
+		}
+		
+		TimeBreakdown snapshot() {
+			
+			final long[] c = new long[TYPES];
+			final long[] n = new long[TYPES];
+			
+			for (int i = 0; i < TYPES; i++) {
+				c[i] = counts.get(i);
+				n[i] = nanos.get(i);
+			}
+			
+			return new TimeBreakdown(c, n, timeouts.get(0));
+		}
+	}
+	
+	/*
+	 * A line of the report
+	 */
+	private static final class Row {
+		
+		static final Comparator<Row> BY_WAITING = new Comparator<Row>() {
+			
+			public int compare(Row a, Row b) {
+				
+				final long[] x = { b.breakdown.getNanos(OperationType.WAIT), b.breakdown.getNanos(OperationType.PAUSE) };
+				final long[] y = { a.breakdown.getNanos(OperationType.WAIT), a.breakdown.getNanos(OperationType.PAUSE) };
+				
+				for (int i = 0; i < x.length; i++) {
+					
+					if (x[i] != y[i])
+						return x[i] < y[i] ? -1 : 1;
+				}
+				
+				return a.key.compareTo(b.key);
+			}
+		};
+		
+		private final String test;
+		private final ElementKey key;
+		private final TimeBreakdown breakdown;
+		
+		Row(String test, ElementKey key, TimeBreakdown breakdown) {
+			this.test = test;
+			this.key = key;
+			this.breakdown = breakdown;
+		}
+	}
+}
@@ -24,7 +24,13 @@
 // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.preferInterfacesToAbstractClasses, fieldJavadoc
 package shelob.core.page;
 
+import java.io.File;
+import java.net.URL;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.http.SessionHttpClient;
 import shelob.core.interfaces.IOpensNewWindow;
+import shelob.core.interfaces.IResponseHandler;
+import shelob.core.interfaces.elements.IElement;
 
 /**
  * @author melllaguno
@@ -33,11 +39,16 @@ import shelob.core.interfaces.IOpensNewWindow;
  * @param <T> the Page type which is Navigable
  *
  * Abstract Template : Generic Report Window
+ * 
+ * A report can also be retrieved without opening it's window : fetch() and download() request 
+ * the location of the link over HTTP with the cookies of the browser session and stream the 
+ * response, so large reports are neither rendered nor read element by element.
+ * 
+ * NOTE : The window handle belongs to the browser, so it is kept by the WindowManager of the 
+ * 		  driver; a report window shared by several sessions tracks the window opened in each of them.
  */
 public abstract class GenericReportWindow<T> extends SubPage implements IOpensNewWindow<T> {
 
-	private String handle;
-	
 	/**
 	 * GenericReportWindow Default Constructor
 	 * 
@@ -54,7 +65,7 @@ public abstract class GenericReportWindow<T> extends SubPage implements IOpensNe
 	 */
 	@SuppressWarnings("unchecked")
 	public T setWindowHandle(String handle) {
-		this.handle = handle;
+		getWindows().register(this, handle);
 		return (T) this; // $codepro.audit.disable unnecessaryCast
 	}
 	
@@ -63,6 +74,8 @@ public abstract class GenericReportWindow<T> extends SubPage implements IOpensNe
 	 */
 	public String getReportWindowHandle() {
 		
+		final String handle = getWindows().getHandle(this);
+		
 		if (handle == null)
 			return "";
 		return handle;
@@ -72,15 +85,99 @@ public abstract class GenericReportWindow<T> extends SubPage implements IOpensNe
 	 * @return boolean
 	 */
 	public boolean hasWindowHandle() {
-		return handle != null;
+		return getWindows().getHandle(this) != null;
 	}
 	
 	/**
+	 * A report opens in it's own window, so it does not share the identity of it's parent.
+	 * 
+	 * @return PageIdentity
+	 * @see shelob.core.interfaces.page.IPage#getIdentity()
+	 */
+	@Override
+	public PageIdentity getIdentity() {
+		return null;
+	}
+	
+	/**
+	 * Switches to the report window; no command is sent when the driver is already on it
+	 * 
 	 * @return T
 	 */
 	@SuppressWarnings("unchecked")
 	public T switchToWindow() {
-		getDriver().switchTo().window(getReportWindowHandle());
+		getWindows().switchTo(getReportWindowHandle());
 		return (T) this; // $codepro.audit.disable unnecessaryCast
 	}
+	
+	/**
+	 * Closes the report window, if it is open, and returns to the main window of the session
+	 * 
+	 * @return whether a window was closed
+	 */
+	public boolean closeWindow() {
+		return getWindows().close(this);
+	}
+	
+	/**
+	 * @return the WindowManager of the current session
+	 */
+	protected WindowManager getWindows() {
+		return WindowManager.of(getDriver());
+	}
+	
+	/**
+	 * Retrieves the report the link points to over HTTP, using the session of the browser
+	 * 
+	 * @param link the Element which opens this report
+	 * @param handler consumes the report as it is received
+	 * @return the result of the handler
+	 * @throws shelob.core.exceptions.HttpRetrievalException when the report cannot be retrieved
+	 */
+	public <V> V fetch(IElement link, IResponseHandler<V> handler) {
+		
+		final SessionHttpClient client = newClient();
+		return client.get(client.resolve(getReportLocation(link)), handler);
+	}
+	
+	/**
+	 * Writes the report the link points to to a file, using the session of the browser
+	 * 
+	 * @param link the Element which opens this report
+	 * @param file the file written
+	 * @return the number of bytes written
+	 * @throws shelob.core.exceptions.HttpRetrievalException when the report cannot be retrieved
+	 */
+	public long download(IElement link, File file) {
+		
+		final SessionHttpClient client = newClient();
+		final URL location = client.resolve(getReportLocation(link));
+		
+		return client.download(location, file);
+	}
+	
+	/**
+	 * @return a client holding the cookies of the session; a redirect to the application's entry 
+	 * 		   page (where an expired session is sent) fails the request
+	 */
+	private SessionHttpClient newClient() {
+		return new SessionHttpClient.Builder(getDriver()).loginPage(getURL().getURL()).build();
+	}
+	
+	/**
+	 * The location of the report; the href of the link by default. Override when the report is 
+	 * opened by script rather than by an ordinary link.
+	 * 
+	 * @param link the Element which opens this report
+	 * @return an absolute URL, or one relative to the current page
+	 */
+	protected String getReportLocation(IElement link) {
+		
+		final String href = link.getAttribute("href");
+		
+		if (href == null || href.length() == 0 || href.startsWith("javascript:"))
+			throw new AutomationException(String.format("%s does not link to a report location : %s", link.toString(), href));
+		
+		return href;
+	}
 }
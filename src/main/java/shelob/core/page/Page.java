@@ -26,18 +26,38 @@ package shelob.core.page;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import javax.annotation.concurrent.GuardedBy;
 
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
 import shelob.core.ApplicationParameters;
 import shelob.core.ApplicationURL;
+import shelob.core.SessionContext;
 import shelob.core.User;
+import shelob.core.browsers.HtmlUnit;
+import shelob.core.capture.FailureCapture;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.exceptions.IncompatibleDriverException;
+import shelob.core.exceptions.InsufficientArgumentsException;
 import shelob.core.exceptions.NonExistentWebElementException;
+import shelob.core.exceptions.PageMismatchException;
+import shelob.core.exceptions.RequiredElementMissingException;
 import shelob.core.interfaces.IHasParentPage;
 import shelob.core.interfaces.elements.IElement;
 import shelob.core.interfaces.elements.IElementCollection;
 import shelob.core.interfaces.page.IPage;
+import shelob.core.metrics.CommandAttribution;
+import shelob.core.trace.OperationType;
+import shelob.core.trace.TracedOperation;
 
 
 /**
@@ -73,7 +93,7 @@ public abstract class Page implements IPage {
 	 * @see com.stratahealth.test.framework.core.interfaces.page.IPage#getDriver()
 	 */
 	public RemoteWebDriver getDriver() {
-		return parameters.getDriver();
+		return getParameters().getDriver();
 	}
 	
 	/**
@@ -82,7 +102,7 @@ public abstract class Page implements IPage {
 	 * @see com.stratahealth.test.framework.core.interfaces.page.IPage#getURL()
 	 */
 	public ApplicationURL getURL() {
-		return parameters.getURL();
+		return getParameters().getURL();
 	}
 	
 	/**
@@ -91,28 +111,228 @@ public abstract class Page implements IPage {
 	 * @see com.stratahealth.test.framework.core.interfaces.page.IPage#getUser()
 	 */
 	public User getUser() {
-		return parameters.getUser();
+		return getParameters().getUser();
 	}
 	
 	/**
 	 * Method getParameters.
+	 * 
+	 * The session bound to the calling thread takes precedence over the parameters the page was
+	 * constructed with, so a single page graph can serve many sessions.
+	 * 
 	 * @return ApplicationParameters
+	 * @see shelob.core.SessionContext
 	 * @see com.stratahealth.test.framework.core.interfaces.page.IPage#getParameters()
 	 */
 	public ApplicationParameters getParameters() {
-		return parameters;
+		return SessionContext.resolve(parameters);
 	}
 	
 	/**
 	 * Method goTo.
 	 * @return Page
+	 * @throws IncompatibleDriverException when the driver is HtmlUnit and the page is not ILightweightCompatible
 	 * @see com.stratahealth.test.framework.core.interfaces.INavigable#goTo()
 	 */
 	public Page goTo() {
-		parameters.getDriver().get(parameters.getURL().getURL());
+		
+		final ApplicationParameters parameters = getParameters();
+		
+		HtmlUnit.verifyCompatible(parameters.getDriver(), this);
+		
+		new TracedOperation<Void>() {
+			public Void call() {
+				CommandAttribution.attribute(Page.this);
+				parameters.getDriver().get(parameters.getURL().getURL());
+				return null;
+			}
+		}.run(parameters.getOperationListener(), OperationType.NAVIGATION, "goTo", this, null);
+		
+		if (parameters.isVerifyRequired())
+			verifyRequired();
+		
 		return this;
 	}
 	
+	/**
+	 * Method verifyRequired.
+	 * 
+	 * Every required element is looked up by one in-page script, so a page which failed to load
+	 * is reported immediately with all of it's missing elements rather than one timeout at a time.
+	 * An element with localizations is present when any of it's localized variants is found. 
+	 * Template elements without localizations are skipped, since they have no locator until 
+	 * identifiers are supplied. A locator the browser cannot evaluate raises an AutomationException.
+	 * 
+	 * @return Page
+	 * @throws RequiredElementMissingException
+	 * @see shelob.core.interfaces.page.IPage#verifyRequired()
+	 */
+	public Page verifyRequired() throws RequiredElementMissingException {
+		
+		final List<IElement> required = new ArrayList<IElement>();
+		final List<List<String>> specifications = new ArrayList<List<String>>();
+		
+		for (IElement element : getRequiredElements()) {
+			
+			final List<String> specification = getSpecification(element);
+			
+			if (specification != null) {
+				required.add(element);
+				specifications.add(specification);
+			}
+		}
+		
+		if (required.isEmpty())
+			return this;
+		
+		final ApplicationParameters parameters = getParameters();
+		
+		return new TracedOperation<Page>() {
+			public Page call() {
+				
+				CommandAttribution.attribute(Page.this);
+				
+				final Object result;
+				
+				try {
+					result = parameters.getDriver().executeScript(RequiredElementsScript.SCRIPT, specifications);
+				} catch (WebDriverException e) {
+					// some browsers fail the whole script rather than raising an error it can catch
+					throw new AutomationException(String.format("Automation Exception thrown for -> %s : Unable to verify the required elements : %s", 
+							Page.this.toString(), e.getMessage()));
+				}
+				
+				if (! (result instanceof Map))
+					throw new AutomationException("Unexpected result from the required elements script : " + result);
+				
+				final Map<?, ?> outcome = (Map<?, ?>) result;
+				
+				// a lookup which could not be evaluated is an error, not a missing element
+				if ("error".equals(outcome.get("status"))) {
+					
+					final IElement failed = required.get(((Number) outcome.get("index")).intValue());
+					
+					throw FailureCapture.attach(new AutomationException(String.format("Automation Exception thrown for -> %s : Unable to look up the required element : %s", 
+							failed.toString(), outcome.get("message"))), failed);
+				}
+				
+				final List<IElement> missing = new ArrayList<IElement>();
+				
+				for (Object index : (List<?>) outcome.get("missing"))
+					missing.add(required.get(((Number) index).intValue()));
+				
+				if (! missing.isEmpty())
+					throw new RequiredElementMissingException(getMissingMessage(missing), missing);
+				
+				return Page.this;
+			}
+		}.run(parameters.getOperationListener(), OperationType.LOOKUP, "verifyRequired", this, null);
+	}
+	
+	/**
+	 * Method getIdentity.
+	 * 
+	 * Pages declare their identity by overriding this method, e.g.
+	 * 
+	 * 		return new PageIdentity.Builder().title("Sign In").url("/login").build();
+	 * 
+	 * @return PageIdentity; null by default
+	 * @see shelob.core.interfaces.page.IPage#getIdentity()
+	 */
+	public PageIdentity getIdentity() {
+		return null;
+	}
+	
+	/**
+	 * Method verifyIdentity.
+	 * @return Page
+	 * @throws PageMismatchException
+	 * @see shelob.core.interfaces.page.IPage#verifyIdentity()
+	 */
+	public Page verifyIdentity() throws PageMismatchException {
+		
+		final PageIdentity identity = getIdentity();
+		
+		if (identity != null) {
+			
+			final String mismatch = identity.verify(getDriver());
+			
+			if (mismatch != null)
+				throw new PageMismatchException("The browser is not on the expected page; " + mismatch + toString(), this);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Method getRequiredElements.
+	 * @return the distinct required elements; localized elements are stored under several labels
+	 */
+	private Collection<IElement> getRequiredElements() {
+		
+		final Set<IElement> required = Collections.newSetFromMap(new IdentityHashMap<IElement, Boolean>());
+		final List<IElement> ordered = new ArrayList<IElement>();
+		
+		for (IElement element : getElements().getElementsByType(IElement.class)) {
+			
+			if (element.isRequired() && required.add(element))
+				ordered.add(element);
+		}
+		
+		return ordered;
+	}
+	
+	/**
+	 * Method getSpecification.
+	 * @param element IElement
+	 * @return the lookup strategy followed by the locator variants, or null when the element cannot be located
+	 */
+	private List<String> getSpecification(IElement element) {
+		
+		final List<String> specification = new ArrayList<String>();
+		specification.add(RequiredElementsScript.getStrategy(element.getLookUpType()));
+		
+		try {
+			if (element.hasLocalizations()) {
+				for (String localization : element.getLocalizations())
+					specification.add(element.getLocatorFor(localization));
+			} else if (! element.isTemplate())
+				specification.add(element.getLocator());
+			else
+				return null;
+		} catch (InsufficientArgumentsException e) {
+			return null;
+		}
+		
+		return specification;
+	}
+	
+	/**
+	 * Method getMissingMessage.
+	 * @param missing List<IElement>
+	 * @return String
+	 */
+	private String getMissingMessage(List<IElement> missing) {
+		
+		final StringBuilder s = new StringBuilder();
+		s.append(missing.size()).append(" required element(s) missing from ").append(getPageTitle()).append(" :");
+		
+		for (IElement element : missing) {
+			s.append(System.getProperty("line.separator")).append("  ").append(element.hasLabel() ? element.getLabel() : element.toString())
+			 .append(" [").append(element.getLookUpType()).append(" : ");
+			
+			if (element.hasLocalizations())
+				s.append(element.getLocalizations());
+			else
+				s.append(element.getLocator());
+			
+			s.append("]");
+		}
+		
+		s.append(toString());
+		return s.toString();
+	}
+	
 	/**
 	 * Method getTitle.
 	 * @return String
@@ -0,0 +1,192 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.page;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import shelob.core.LookUp;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The cheap signatures which identify the page a browser is on : the document title, a URL 
+ * pattern and/or a marker element. Element waits check the identity of their page about once a 
+ * second while the element is not displayed, and fail once the mismatch has been seen on two 
+ * consecutive checks, so a navigation which landed on the wrong page fails within seconds instead 
+ * of waiting out the timeout of every following element, while a page still loading is tolerated.
+ * 
+ * Each signature costs one driver command per check; declare only the ones which are needed.
+ */
+@Immutable
+public final class PageIdentity {
+	
+	private final String title;
+	private final Pattern url;
+	private final LookUp markerLookup;
+	private final String markerLocator;
+	
+	/**
+	 * The PageIdentity Builder
+	 */
+	public final static class Builder { // $codepro.audit.disable com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString
+		
+		private String title;
+		private Pattern url;
+		private LookUp markerLookup;
+		private String markerLocator;
+		
+		/**
+		 * @param title the expected document title
+		 * @return this; fluent interface
+		 */
+		public Builder title(String title) {
+			this.title = checkNotNull(title).trim();
+			return this;
+		}
+		
+		/**
+		 * @param regex a regular expression found in the URL of the page
+		 * @return this; fluent interface
+		 */
+		public Builder url(String regex) {
+			this.url = Pattern.compile(regex);
+			return this;
+		}
+		
+		/**
+		 * @param lookup the LookUp strategy of the marker element
+		 * @param locator the locator of an element which is only present on the page
+		 * @return this; fluent interface
+		 */
+		public Builder marker(LookUp lookup, String locator) {
+			this.markerLookup = checkNotNull(lookup);
+			this.markerLocator = checkNotNull(locator);
+			return this;
+		}
+		
+		/**
+		 * @return the PageIdentity
+		 */
+		public PageIdentity build() {
+			return new PageIdentity(this);
+		}
+	}
+	
+	/**
+	 * @param builder the Builder
+	 */
+	private PageIdentity(Builder builder) {
+		this.title = builder.title;
+		this.url = builder.url;
+		this.markerLookup = builder.markerLookup;
+		this.markerLocator = builder.markerLocator;
+	}
+	
+	/**
+	 * Checks the browser against each signature, cheapest first
+	 * 
+	 * @param driver the RemoteWebDriver of the page
+	 * @return a description of the first signature which does not match, or null when the browser is on the page
+	 */
+	@Nullable
+	public String verify(RemoteWebDriver driver) {
+		
+		if (title != null) {
+			
+			final String actual = driver.getTitle();
+			
+			if (actual == null || ! title.equals(actual.trim()))
+				return String.format("the title [%s] is not [%s]", actual, title);
+		}
+		
+		if (url != null) {
+			
+			final String actual = driver.getCurrentUrl();
+			
+			if (actual == null || ! url.matcher(actual).find())
+				return String.format("the URL [%s] does not match [%s]", actual, url.pattern());
+		}
+		
+		if (markerLocator != null && driver.findElements(getMarker()).isEmpty())
+			return String.format("the marker element [%s : %s] is not present", markerLookup, markerLocator);
+		
+		return null;
+	}
+	
+	/**
+	 * Method getMarker.
+	 * @return By
+	 */
+	private By getMarker() {
+		
+		switch (markerLookup) {
+		
+		case ByClassName:
+			return By.className(markerLocator);
+		case ByCSSSelector:
+			return By.cssSelector(markerLocator);
+		case ById:
+			return By.id(markerLocator);
+		case ByLinkText:
+			return By.linkText(markerLocator);
+		case ByName:
+			return By.name(markerLocator);
+		case ByPartialLinkText:
+			return By.partialLinkText(markerLocator);
+		case ByTagName:
+			return By.tagName(markerLocator);
+		default:
+			return By.xpath(markerLocator);
+		}
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		
+		final StringBuilder s = new StringBuilder("PageIdentity :");
+		
+		if (title != null)
+			s.append(" Title : ").append(title);
+		if (url != null)
+			s.append(" URL : ").append(url.pattern());
+		if (markerLocator != null)
+			s.append(" Marker : ").append(markerLookup).append(" ").append(markerLocator);
+		
+		return s.toString();
+	}
+}
@@ -0,0 +1,129 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.page;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import shelob.core.LookUp;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The in-page script used by Page.verifyRequired() to check every required element in a single 
+ * executeScript() call.
+ * 
+ * The script takes one argument, a list of element specifications. Each specification is a list 
+ * holding the wire protocol lookup strategy followed by one or more locators; an element is present 
+ * when any of its locators (e.g. the localized variants) matches. The script returns a map whose 
+ * status is one of :
+ * 
+ * 		ok 			missing holds the indices of the specifications which are missing
+ * 		error		the specification at index could not be looked up, e.g. an invalid locator or a 
+ * 					lookup the browser does not support; message holds the browser's error
+ */
+public final class RequiredElementsScript {
+	
+	/**
+	 * Identifies the script; the FakeCommandExecutor answers scripts containing this marker. 
+	 */
+	public static final String MARKER = "shelob:verifyRequired";
+	
+	/**
+	 * Defines find(using, value), which returns the first element matching a wire protocol lookup 
+	 * strategy and locator, or null. An invalid locator or unsupported strategy throws rather than 
+	 * matching nothing. Shared with the other in-page scripts.
+	 */
+	public static final String LOOKUP = 
+		"function text(e) { return (e.textContent || e.innerText || '').replace(/^\\s+|\\s+$/g, '').replace(/\\s+/g, ' '); }\n" +
+		"function link(value, partial) {\n" +
+		"  var anchors = document.getElementsByTagName('a');\n" +
+		"  for (var i = 0; i < anchors.length; i++) {\n" +
+		"    var t = text(anchors[i]);\n" +
+		"    if (partial ? t.indexOf(value) >= 0 : t === value) return anchors[i];\n" +
+		"  }\n" +
+		"  return null;\n" +
+		"}\n" +
+		"function find(using, value) {\n" +
+		"  switch (using) {\n" +
+		"    case 'id': return document.getElementById(value);\n" +
+		"    case 'name': return document.getElementsByName(value)[0] || null;\n" +
+		"    case 'class name': return document.getElementsByClassName(value)[0] || null;\n" +
+		"    case 'tag name': return document.getElementsByTagName(value)[0] || null;\n" +
+		"    case 'css selector': return document.querySelector(value);\n" +
+		"    case 'link text': return link(value, false);\n" +
+		"    case 'partial link text': return link(value, true);\n" +
+		"    case 'xpath': return document.evaluate(value, document, null, 9, null).singleNodeValue;\n" +
+		"  }\n" +
+		"  throw new Error('Unsupported lookup strategy ' + using);\n" +
+		"}\n";
+	
+	static final String SCRIPT = 
+		"/* " + MARKER + " */\n" +
+		"var specs = arguments[0], missing = [];\n" +
+		LOOKUP +
+		"for (var i = 0; i < specs.length; i++) {\n" +
+		"  var found = false;\n" +
+		"  for (var j = 1; j < specs[i].length && !found; j++) {\n" +
+		"    try { found = find(specs[i][0], specs[i][j]) != null; }\n" +
+		"    catch (e) { return { status: 'error', index: i, message: String(e && e.message ? e.message : e) }; }\n" +
+		"  }\n" +
+		"  if (!found) missing.push(i);\n" +
+		"}\n" +
+		"return { status: 'ok', missing: missing };";
+	
+	/**
+	 * Limited Scope Default Constructor
+	 */
+	private RequiredElementsScript() {
+	}
+	
+	/**
+	 * @param lookup the LookUp strategy of an element
+	 * @return the equivalent wire protocol lookup strategy name
+	 */
+	public static String getStrategy(LookUp lookup) {
+		
+		switch (checkNotNull(lookup)) {
+		
+		case ByClassName:
+			return "class name";
+		case ByCSSSelector:
+			return "css selector";
+		case ById:
+			return "id";
+		case ByLinkText:
+			return "link text";
+		case ByName:
+			return "name";
+		case ByPartialLinkText:
+			return "partial link text";
+		case ByTagName:
+			return "tag name";
+		default:
+			return "xpath";
+		}
+	}
+}
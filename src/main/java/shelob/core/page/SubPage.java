@@ -57,4 +57,16 @@ public abstract class SubPage extends StandardNavigationPage implements ISubPage
 	public IPage getParentPage() {
 		return parent;
 	}
+	
+	/**
+	 * A SubPage is a context within it's parent, so it is identified by the parent page
+	 * unless it declares an identity of it's own.
+	 * 
+	 * @return PageIdentity
+	 * @see shelob.core.interfaces.page.IPage#getIdentity()
+	 */
+	@Override
+	public PageIdentity getIdentity() {
+		return parent.getIdentity();
+	}
 }
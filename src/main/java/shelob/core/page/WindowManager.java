@@ -0,0 +1,377 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.page;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.WebDriver;
+
+import shelob.core.interfaces.page.IPage;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Keeps track of the windows of a browser session : the window the driver is on, the main window 
+ * of the session and the window each Page was opened in.
+ * 
+ * 		WindowManager.of(driver).switchTo(report);
+ * 
+ * Switching to the window the driver is already on sends no command. closeOrphans() closes every 
+ * window which no longer belongs to a Page in one pass, so abandoned report windows do not 
+ * accumulate in the browser.
+ * 
+ * NOTE : The current window is only known while every switch goes through the manager; call 
+ * 		  invalidate() after switching with driver.switchTo() directly.
+ */
+@ThreadSafe
+public final class WindowManager {
+	
+	private static final long POLL_INTERVAL_MILLIS = 100;
+	
+	@GuardedBy("MANAGERS")
+	private static final Map<WebDriver, WindowManager> MANAGERS = new WeakHashMap<WebDriver, WindowManager>();
+	
+	// the registry is keyed weakly by driver, so the manager must not hold the driver strongly
+	private final WeakReference<WebDriver> driver;
+	
+	@GuardedBy("this") private final Map<IPage, String> pages = new WeakHashMap<IPage, String>();
+	@GuardedBy("this") private String current;
+	@GuardedBy("this") private String main;
+	@GuardedBy("this") private long switches;
+	@GuardedBy("this") private long skipped;
+	
+	/**
+	 * Limited Scope Default Constructor
+	 * 
+	 * @param driver WebDriver
+	 */
+	private WindowManager(WebDriver driver) {
+		this.driver = new WeakReference<WebDriver>(driver);
+	}
+	
+	/**
+	 * @param driver the browser session
+	 * @return the WindowManager of the session
+	 */
+	public static WindowManager of(WebDriver driver) {
+		
+		checkNotNull(driver);
+		
+		synchronized (MANAGERS) {
+			
+			WindowManager manager = MANAGERS.get(driver);
+			
+			if (manager == null) {
+				manager = new WindowManager(driver);
+				MANAGERS.put(driver, manager);
+			}
+			
+			return manager;
+		}
+	}
+	
+	/**
+	 * @return the handle of the window the driver is on
+	 */
+	public synchronized String getCurrentHandle() {
+		
+		if (current == null)
+			current = driver().getWindowHandle();
+		
+		if (main == null)
+			main = current;
+		
+		return current;
+	}
+	
+	/**
+	 * @return the handle of the first window the session was seen on; the window Pages open in by default
+	 */
+	public synchronized String getMainHandle() {
+		
+		if (main == null)
+			getCurrentHandle();
+		
+		return main;
+	}
+	
+	/**
+	 * @return the handles of every open window
+	 */
+	public Set<String> getWindowHandles() {
+		return new LinkedHashSet<String>(driver().getWindowHandles());
+	}
+	
+	/**
+	 * Associates a Page with the window it was opened in
+	 * 
+	 * @param page IPage
+	 * @param handle the handle of the window
+	 * @return this
+	 */
+	public synchronized WindowManager register(IPage page, String handle) {
+		
+		pages.put(checkNotNull(page), checkNotNull(handle));
+		return this;
+	}
+	
+	/**
+	 * @param page IPage
+	 * @return the handle of the window the Page was opened in, or null when it has none
+	 */
+	@Nullable
+	public synchronized String getHandle(IPage page) {
+		return pages.get(page);
+	}
+	
+	/**
+	 * @param handle the handle of a window
+	 * @return whether a Page was opened in the window
+	 */
+	public synchronized boolean isRegistered(String handle) {
+		return pages.containsValue(handle);
+	}
+	
+	/**
+	 * Switches to a window, unless the driver is already on it
+	 * 
+	 * @param handle the handle of the window
+	 * @return whether a switch command was sent
+	 * @throws NoSuchWindowException when the window has been closed
+	 */
+	public synchronized boolean switchTo(String handle) {
+		
+		checkNotNull(handle);
+		
+		if (handle.equals(current)) {
+			skipped++;
+			return false;
+		}
+		
+		if (main == null)
+			getCurrentHandle();
+		
+		try {
+			driver().switchTo().window(handle);
+		} catch (NoSuchWindowException e) {
+			forget(handle);
+			throw e;
+		}
+		
+		current = handle;
+		switches++;
+		
+		return true;
+	}
+	
+	/**
+	 * Switches to the window a Page was opened in
+	 * 
+	 * @param page IPage
+	 * @return whether a switch command was sent
+	 * @throws IllegalStateException when the Page has no window
+	 */
+	public boolean switchTo(IPage page) {
+		
+		final String handle = getHandle(page);
+		
+		if (handle == null)
+			throw new IllegalStateException(String.format("%s has not been opened in a window", page.getPageTitle()));
+		
+		return switchTo(handle);
+	}
+	
+	/**
+	 * @return whether a switch command was sent
+	 */
+	public boolean switchToMain() {
+		return switchTo(getMainHandle());
+	}
+	
+	/**
+	 * Waits for a window which was not open before
+	 * 
+	 * @param before the handles open before the window was requested
+	 * @param timeoutMillis the time to wait
+	 * @return the handle of the new window, or null when none was opened in time
+	 */
+	@Nullable
+	public String awaitNewWindow(Set<String> before, long timeoutMillis) {
+		
+		final long deadline = System.currentTimeMillis() + timeoutMillis;
+		
+		while (true) {
+			
+			for (String handle : getWindowHandles()) {
+				
+				if (! before.contains(handle))
+					return handle;
+			}
+			
+			if (System.currentTimeMillis() >= deadline)
+				return null;
+			
+			try {
+				Thread.sleep(POLL_INTERVAL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Closes the window a Page was opened in and returns to the main window
+	 * 
+	 * @param page IPage
+	 * @return whether a window was closed
+	 */
+	public synchronized boolean close(IPage page) {
+		
+		final String handle = pages.remove(page);
+		
+		if (handle == null || handle.equals(getMainHandle()) || pages.containsValue(handle))
+			return false;
+		
+		close(Collections.singletonList(handle));
+		return true;
+	}
+	
+	/**
+	 * Closes every window other than the main window which no Page belongs to any longer, 
+	 * and returns to the main window when the current window was closed
+	 * 
+	 * @return the number of windows closed
+	 */
+	public synchronized int closeOrphans() {
+		
+		final List<String> orphans = new ArrayList<String>();
+		final String keep = getMainHandle();
+		
+		for (String handle : getWindowHandles()) {
+			
+			if (! handle.equals(keep) && ! pages.containsValue(handle))
+				orphans.add(handle);
+		}
+		
+		close(orphans);
+		return orphans.size();
+	}
+	
+	/**
+	 * Drops a window from the registry, e.g. after it was closed outside the manager
+	 * 
+	 * @param handle the handle of the window
+	 */
+	public synchronized void forget(String handle) {
+		
+		pages.values().removeAll(Collections.singleton(handle));
+		
+		if (handle.equals(current))
+			current = null;
+	}
+	
+	/**
+	 * Forgets the current window, which is read from the driver again when next needed
+	 */
+	public synchronized void invalidate() {
+		current = null;
+	}
+	
+	/**
+	 * @return the number of switch commands sent
+	 */
+	public synchronized long getSwitches() {
+		return switches;
+	}
+	
+	/**
+	 * @return the number of switches skipped because the driver was already on the window
+	 */
+	public synchronized long getSkippedSwitches() {
+		return skipped;
+	}
+	
+	/**
+	 * Method close.
+	 * @param handles the windows to close
+	 */
+	@GuardedBy("this")
+	private void close(List<String> handles) {
+		
+		if (handles.isEmpty())
+			return;
+		
+		final String returnTo = handles.contains(getCurrentHandle()) ? getMainHandle() : current;
+		
+		for (String handle : handles) {
+			
+			try {
+				switchTo(handle);
+				driver().close();
+			} catch (NoSuchWindowException e) {
+				// already closed
+			}
+			
+			forget(handle);
+		}
+		
+		switchTo(returnTo);
+	}
+	
+	private WebDriver driver() { // $codepro.audit.disable methodJavadoc
+		
+		final WebDriver d = driver.get();
+		
+		if (d == null)
+			throw new IllegalStateException("The driver of this WindowManager is no longer in use");
+		
+		return d;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("WindowManager [current=%s, main=%s, pages=%d, switches=%d, skipped=%d]", current, main, pages.size(), switches, skipped);
+	}
+}
@@ -0,0 +1,313 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.replay;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.Response;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * An append-only log of wire commands and their responses.
+ * 
+ * The log starts with a 4 byte magic number and a version, followed by one length-prefixed 
+ * record per command :
+ * 
+ * 		int length | int key length | key (name, parameters) | int status | session id | response value
+ * 
+ * Values use a compact tagged binary encoding. Successive recordings can be appended to the 
+ * same file and are replayed in order. A last record which was only partly written (e.g. the 
+ * recording process was killed) is ignored when the log is read, and discarded when the log is 
+ * opened for appending. A length which cannot be right (negative, longer than MAX_RECORD_LENGTH 
+ * or than the record holding it) raises an IOException rather than being trusted.
+ */
+@ThreadSafe
+public final class CommandLog implements Closeable {
+
+	static final int MAGIC = 0x53484c42; // SHLB
+	static final int VERSION = 1;
+	
+	// a longer record is taken to be a corrupt length rather than a real response
+	static final int MAX_RECORD_LENGTH = 64 << 20;
+	
+	@GuardedBy("this") private final DataOutputStream out;
+	@GuardedBy("this") private boolean closed;
+	
+	/**
+	 * Opens the log for appending, creating it when it does not exist
+	 * 
+	 * @param file the log file
+	 * @throws IOException when the file is not a command log
+	 */
+	public CommandLog(File file) throws IOException {
+		this(openForAppend(checkNotNull(file)), file.length() == 0);
+	}
+	
+	/**
+	 * @param stream the stream records are appended to
+	 * @param writeHeader true when the stream is at the start of a new log
+	 * @throws IOException
+	 */
+	public CommandLog(OutputStream stream, boolean writeHeader) throws IOException {
+		
+		out = new DataOutputStream(new BufferedOutputStream(checkNotNull(stream)));
+		
+		if (writeHeader) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Appends a command and it's response; the record is flushed before returning so that 
+	 * the log survives the recording process being killed.
+	 * 
+	 * @param command the wire command
+	 * @param response the response it received
+	 * @throws IOException
+	 */
+	public void append(Command command, Response response) throws IOException {
+		
+		final byte[] key = RecordedCommand.encode(command);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length + 64);
+		final DataOutputStream record = new DataOutputStream(bytes);
+		
+		record.writeInt(key.length);
+		record.write(key);
+		record.writeInt(response.getStatus());
+		WireCodec.writeString(record, response.getSessionId() == null ? "" : response.getSessionId());
+		WireCodec.write(record, response.getValue());
+		record.flush();
+		
+		synchronized (this) {
+			
+			if (closed)
+				throw new IOException("The command log is closed");
+			
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * @throws IOException
+	 * @see java.io.Closeable#close()
+	 */
+	public synchronized void close() throws IOException {
+		
+		if (! closed) {
+			closed = true;
+			out.close();
+		}
+	}
+	
+	/**
+	 * Truncates a partly written last record, so that appended records follow the last complete one
+	 * 
+	 * @param file the log file
+	 * @return a stream appending to the file
+	 * @throws IOException when the file is not a command log
+	 */
+	private static OutputStream openForAppend(File file) throws IOException {
+		
+		if (file.length() > 0) {
+			
+			final long complete = getCompleteLength(file);
+			
+			if (complete < file.length()) {
+				
+				final RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+				
+				try {
+					truncated.setLength(complete);
+				} finally {
+					truncated.close();
+				}
+			}
+		}
+		
+		return new FileOutputStream(file, true);
+	}
+	
+	/**
+	 * @param file the log file
+	 * @return the length of the header and of every complete record; 0 when the header itself is incomplete
+	 * @throws IOException when the file is not a command log
+	 */
+	private static long getCompleteLength(File file) throws IOException {
+		
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		
+		try {
+			
+			if (file.length() < 8)
+				return 0;
+			
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a command log");
+			
+			in.readInt();
+			long length = 8;
+			
+			// record lengths are read in turn; the bodies are skipped
+			for (int index = 0; length + 4 <= file.length(); index++) {
+				
+				final int record = checkRecordLength(in.readInt(), index);
+				
+				if (length + 4 + record > file.length())
+					break;
+				
+				ByteStreams.skipFully(in, record);
+				length += 4 + record;
+			}
+			
+			return length;
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * @param file the log file
+	 * @return the recorded commands, in order
+	 * @throws IOException when the file is not a command log
+	 */
+	public static List<RecordedCommand> read(File file) throws IOException {
+		
+		final InputStream in = new FileInputStream(checkNotNull(file));
+		
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * @param stream the log
+	 * @return the recorded commands, in order
+	 * @throws IOException when the stream is not a command log
+	 */
+	public static List<RecordedCommand> read(InputStream stream) throws IOException {
+		
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(checkNotNull(stream)));
+		
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a command log");
+		
+		final int version = in.readInt();
+		
+		if (version != VERSION)
+			throw new IOException("Unsupported command log version : " + version);
+		
+		final List<RecordedCommand> commands = new ArrayList<RecordedCommand>();
+		
+		while (true) {
+			
+			final byte[] record;
+			
+			try {
+				record = new byte[checkRecordLength(in.readInt(), commands.size())];
+				in.readFully(record);
+			} catch (EOFException e) {
+				break; // end of log, or a partly written last record
+			}
+			
+			final DataInputStream r = new DataInputStream(new ByteArrayInputStream(record));
+			final int keyLength = r.readInt();
+			
+			if (keyLength < 0 || keyLength > record.length - 4)
+				throw new IOException(String.format("Corrupt command log : the key of record %d declares a length of %d bytes, in a record of %d bytes", 
+						commands.size(), keyLength, record.length));
+			
+			final byte[] key = new byte[keyLength];
+			r.readFully(key);
+			
+			final int status = r.readInt();
+			final String session = WireCodec.readString(r);
+			final Object value = WireCodec.read(r);
+			
+			commands.add(new RecordedCommand(commands.size(), key, status, session.length() == 0 ? null : session, value));
+		}
+		
+		return Collections.unmodifiableList(commands);
+	}
+	
+	/**
+	 * @param length the length read from the log
+	 * @param index the index of the record
+	 * @return the length, when it is plausible
+	 * @throws IOException when the length is negative or longer than MAX_RECORD_LENGTH
+	 */
+	private static int checkRecordLength(int length, int index) throws IOException {
+		
+		if (length < 0 || length > MAX_RECORD_LENGTH)
+			throw new IOException(String.format("Corrupt command log : record %d declares a length of %d bytes", index, length));
+		
+		return length;
+	}
+	
+	/**
+	 * Writes one line per command; diff the output of two runs to compare their command streams
+	 * 
+	 * @param commands the recorded commands
+	 * @param appendable where the lines are written
+	 * @throws IOException
+	 */
+	public static void dump(List<RecordedCommand> commands, Appendable appendable) throws IOException {
+		
+		for (RecordedCommand command : commands)
+			appendable.append(command.toString()).append(System.getProperty("line.separator"));
+	}
+}
@@ -0,0 +1,172 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.replay;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * A wire command and the response it received, as stored in a command log.
+ * 
+ * Commands are compared by their encoded name and parameters, so that a replayed run can 
+ * be checked against the recording without regard to session ids or map ordering.
+ */
+@Immutable
+public final class RecordedCommand {
+
+	private final int index;
+	private final byte[] key;
+	private final String name;
+	private final Map<String, Object> parameters;
+	private final int status;
+	private final String sessionId;
+	private final Object value;
+	
+	/**
+	 * @param index the position of the command in the log
+	 * @param key the encoded name and parameters of the command
+	 * @param status the response status
+	 * @param sessionId the response session id; may be null
+	 * @param value the response value
+	 * @throws IOException when the key cannot be decoded
+	 */
+	RecordedCommand(int index, byte[] key, int status, String sessionId, Object value) throws IOException {
+		
+		this.index = index;
+		this.key = checkNotNull(key);
+		this.status = status;
+		this.sessionId = sessionId;
+		this.value = value;
+		
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(key));
+		this.name = WireCodec.readString(in);
+		this.parameters = decodeParameters(WireCodec.read(in));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> decodeParameters(Object parameters) { // $codepro.audit.disable methodJavadoc
+		return (Map<String, Object>) parameters;
+	}
+	
+	/**
+	 * @param command the wire command
+	 * @return the encoded name and parameters of the command
+	 * @throws IOException
+	 */
+	static byte[] encode(Command command) throws IOException {
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		
+		WireCodec.writeString(out, command.getName());
+		WireCodec.write(out, command.getParameters());
+		out.flush();
+		
+		return bytes.toByteArray();
+	}
+	
+	byte[] getKey() {
+		return key;
+	}
+	
+	/**
+	 * @param encoded the result of encode(command)
+	 * @return true when the command has the same name and parameters as the recorded command
+	 */
+	boolean matches(byte[] encoded) {
+		return Arrays.equals(key, encoded);
+	}
+	
+	/**
+	 * @return the position of the command in the log, from 0
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * @return the wire command name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the command parameters
+	 */
+	public Map<String, Object> getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * @return the response status
+	 */
+	public int getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return the response value
+	 */
+	public Object getValue() {
+		return value;
+	}
+	
+	/**
+	 * @return a new Response equivalent to the recorded response
+	 */
+	public Response toResponse() {
+		
+		final Response response = new Response();
+		response.setStatus(status);
+		response.setSessionId(sessionId);
+		response.setValue(value);
+		return response;
+	}
+	
+	/**
+	 * Method toString.
+	 * @return String one line; suitable for diffing the command streams of two runs
+	 */
+	@Override
+	public String toString() {
+		return index + " " + name + " " + parameters + " -> " + status + " " + value;
+	}
+}
@@ -0,0 +1,79 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.replay;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * CommandExecutor decorator which appends every wire command, and the response it received, 
+ * to a CommandLog. Wrap the executor of a live driver to record a run for later replay by a 
+ * ReplayCommandExecutor.
+ */
+public final class RecordingCommandExecutor implements CommandExecutor {
+
+	private final CommandExecutor delegate;
+	private final CommandLog log;
+	
+	/**
+	 * RecordingCommandExecutor Default Constructor
+	 * 
+	 * @param delegate the CommandExecutor which actually sends the commands
+	 * @param log the CommandLog commands are appended to
+	 */
+	public RecordingCommandExecutor(CommandExecutor delegate, CommandLog log) {
+		this.delegate = checkNotNull(delegate);
+		this.log = checkNotNull(log);
+	}
+	
+	/**
+	 * @return the CommandLog commands are appended to
+	 */
+	public CommandLog getLog() {
+		return log;
+	}
+	
+	/**
+	 * Method execute.
+	 * @param command the wire command
+	 * @return Response
+	 * @throws IOException
+	 * @see org.openqa.selenium.remote.CommandExecutor#execute(Command)
+	 */
+	public Response execute(Command command) throws IOException {
+		
+		final Response response = delegate.execute(command);
+		log.append(command, response);
+		return response;
+	}
+}
@@ -0,0 +1,173 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+package shelob.core.replay;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * CommandExecutor which answers wire commands from a recorded CommandLog, in order, without a 
+ * browser or the application under test.
+ * 
+ * The whole log is held in memory. Each command is checked against the recording (by name and 
+ * parameters, ignoring the session id). The new session command is only checked by name, so a 
+ * recording made with any desired capabilities replays through createDriver(); the replayed 
+ * session reports the recorded capabilities. From the first command which differs every command 
+ * fails with an error response describing the difference, so a replay fails as soon as the 
+ * framework or the test behaves differently from the recorded run; verify() throws the 
+ * difference as a ReplayMismatchException. Use loose() to only check command names.
+ */
+@ThreadSafe
+public final class ReplayCommandExecutor implements CommandExecutor {
+
+	private final List<RecordedCommand> commands;
+	
+	@GuardedBy("this") private int position;
+	@GuardedBy("this") private ReplayMismatchException mismatch;
+	private volatile boolean strict = true;
+	
+	/**
+	 * @param commands the recorded commands
+	 */
+	public ReplayCommandExecutor(List<RecordedCommand> commands) {
+		this.commands = new ArrayList<RecordedCommand>(checkNotNull(commands));
+	}
+	
+	/**
+	 * @param log the CommandLog file
+	 * @return a ReplayCommandExecutor answering from the log
+	 * @throws IOException
+	 */
+	public static ReplayCommandExecutor fromFile(File log) throws IOException {
+		return new ReplayCommandExecutor(CommandLog.read(log));
+	}
+	
+	/**
+	 * Only checks command names; parameters such as typed text or script arguments may differ
+	 * 
+	 * @return ReplayCommandExecutor this
+	 */
+	public synchronized ReplayCommandExecutor loose() {
+		strict = false;
+		return this;
+	}
+	
+	/**
+	 * @return a RemoteWebDriver answered by this executor; the recording must start with it's new session command
+	 */
+	public RemoteWebDriver createDriver() {
+		return new RemoteWebDriver(this, new DesiredCapabilities());
+	}
+	
+	/**
+	 * @return the number of recorded commands which have been replayed
+	 */
+	public synchronized int getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Method execute.
+	 * @param command the wire command
+	 * @return Response the recorded response
+	 * @throws IOException
+	 * @see org.openqa.selenium.remote.CommandExecutor#execute(Command)
+	 */
+	public Response execute(Command command) throws IOException {
+		
+		final byte[] encoded = strict ? RecordedCommand.encode(command) : null;
+		
+		synchronized (this) {
+			
+			// once diverged, the recording no longer describes the run
+			if (mismatch != null)
+				return error(mismatch.getMessage());
+			
+			if (position == commands.size())
+				return diverged(String.format("The recording has ended; unexpected command %s %s", 
+						command.getName(), command.getParameters()));
+			
+			final RecordedCommand recorded = commands.get(position);
+			
+			if (! recorded.getName().equals(command.getName()) || (strict && ! isNewSession(command) && ! recorded.matches(encoded)))
+				return diverged(String.format("Command %d differs from the recording; expected %s %s but was %s %s", 
+						position, recorded.getName(), recorded.getParameters(), command.getName(), command.getParameters()));
+			
+			position++;
+			return recorded.toResponse();
+		}
+	}
+	
+	/**
+	 * Checks that the run issued exactly the recorded commands
+	 * 
+	 * @throws ReplayMismatchException describing the first difference from the recording
+	 */
+	public synchronized void verify() throws ReplayMismatchException {
+		
+		if (mismatch != null)
+			throw mismatch;
+		
+		if (position != commands.size())
+			throw new ReplayMismatchException(String.format("Only %d of %d recorded commands were replayed", position, commands.size()));
+	}
+	
+	private static boolean isNewSession(Command command) { // $codepro.audit.disable methodJavadoc
+		return DriverCommand.NEW_SESSION.equals(command.getName());
+	}
+	
+	@GuardedBy("this")
+	private Response diverged(String message) { // $codepro.audit.disable methodJavadoc
+		mismatch = new ReplayMismatchException(message);
+		return error(message);
+	}
+	
+	private static Response error(String message) { // $codepro.audit.disable methodJavadoc
+		
+		final Response response = new Response();
+		response.setStatus(ErrorCodes.UNHANDLED_ERROR);
+		response.setValue(Collections.singletonMap("message", message));
+		return response;
+	}
+}
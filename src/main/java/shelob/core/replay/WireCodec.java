@@ -0,0 +1,207 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.replay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.JsonToBeanConverter;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Tagged binary encoding of wire protocol values : null, booleans, numbers, strings, lists and 
+ * maps. Map keys are written in sorted order so that the same command always encodes to the 
+ * same bytes. Any other object (e.g. Capabilities, Cookies) is written as it's JSON form.
+ */
+final class WireCodec {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final byte NULL = 'N';
+	private static final byte TRUE = 'T';
+	private static final byte FALSE = 'F';
+	private static final byte LONG = 'L';
+	private static final byte DOUBLE = 'D';
+	private static final byte STRING = 'S';
+	private static final byte LIST = 'A';
+	private static final byte MAP = 'M';
+	private static final byte JSON = 'J';
+	
+	/**
+	 * Limited Scope Default Constructor
+	 */
+	private WireCodec() {
+	}
+	
+	static void write(DataOutput out, Object value) throws IOException {
+		
+		if (value == null)
+			out.writeByte(NULL);
+		
+		else if (value instanceof Boolean)
+			out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+		
+		else if (value instanceof Double || value instanceof Float) {
+			out.writeByte(DOUBLE);
+			out.writeDouble(((Number) value).doubleValue());
+			
+		} else if (value instanceof Number) {
+			out.writeByte(LONG);
+			out.writeLong(((Number) value).longValue());
+			
+		} else if (value instanceof CharSequence || value instanceof Enum<?>) {
+			out.writeByte(STRING);
+			writeString(out, value.toString());
+			
+		} else if (value instanceof Collection<?>) {
+			
+			final Collection<?> values = (Collection<?>) value;
+			out.writeByte(LIST);
+			out.writeInt(values.size());
+			
+			for (Object v : values)
+				write(out, v);
+			
+		} else if (value.getClass().isArray()) {
+			
+			final int length = Array.getLength(value);
+			out.writeByte(LIST);
+			out.writeInt(length);
+			
+			for (int i = 0; i < length; i++)
+				write(out, Array.get(value, i));
+			
+		} else if (value instanceof Map<?, ?>) {
+			
+			final Map<String, Object> sorted = new TreeMap<String, Object>();
+			
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+				sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+			
+			out.writeByte(MAP);
+			out.writeInt(sorted.size());
+			
+			for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+				writeString(out, entry.getKey());
+				write(out, entry.getValue());
+			}
+			
+		} else {
+			out.writeByte(JSON);
+			writeString(out, new BeanToJsonConverter().convert(value));
+		}
+	}
+	
+	static Object read(DataInput in) throws IOException {
+		
+		final byte tag = in.readByte();
+		
+		switch (tag) {
+		
+		case NULL:
+			return null;
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case LONG:
+			return Long.valueOf(in.readLong());
+		case DOUBLE:
+			return Double.valueOf(in.readDouble());
+		case STRING:
+			return readString(in);
+			
+		case LIST: {
+			
+			final int size = readLength(in);
+			final List<Object> values = new ArrayList<Object>(size);
+			
+			for (int i = 0; i < size; i++)
+				values.add(read(in));
+			return values;
+		}
+		
+		case MAP: {
+			
+			final int size = readLength(in);
+			final Map<String, Object> values = new LinkedHashMap<String, Object>();
+			
+			for (int i = 0; i < size; i++)
+				values.put(readString(in), read(in));
+			return values;
+		}
+		
+		case JSON: {
+			
+			final String json = readString(in);
+			
+			if (json.startsWith("{"))
+				return new JsonToBeanConverter().convert(Map.class, json);
+			if (json.startsWith("["))
+				return new JsonToBeanConverter().convert(List.class, json);
+			return json;
+		}
+		
+		default:
+			throw new IOException("Corrupt command log : unknown value tag " + tag);
+		}
+	}
+	
+	static void writeString(DataOutput out, String value) throws IOException {
+		
+		final byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	static String readString(DataInput in) throws IOException {
+		
+		final byte[] bytes = new byte[readLength(in)];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+	
+	// values are read from a single record, so no length or size can exceed it's maximum length
+	private static int readLength(DataInput in) throws IOException { // $codepro.audit.disable methodJavadoc
+		
+		final int length = in.readInt();
+		
+		if (length < 0 || length > CommandLog.MAX_RECORD_LENGTH)
+			throw new IOException("Corrupt command log : invalid value length " + length);
+		
+		return length;
+	}
+}
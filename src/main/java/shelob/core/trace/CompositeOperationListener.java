@@ -0,0 +1,75 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.trace;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.concurrent.Immutable;
+
+import shelob.core.interfaces.IOperationListener;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Forwards every notification to several IOperationListeners, in order; used to trace and 
+ * measure the same run.
+ */
+@Immutable
+public final class CompositeOperationListener implements IOperationListener {
+
+	private final IOperationListener[] listeners;
+	
+	/**
+	 * @param listeners the IOperationListeners to notify
+	 */
+	public CompositeOperationListener(IOperationListener... listeners) {
+		
+		this.listeners = listeners.clone();
+		
+		for (IOperationListener listener : this.listeners)
+			checkNotNull(listener);
+	}
+	
+	/**
+	 * @see shelob.core.interfaces.IOperationListener#operationStarted(OperationType, String, IPage, IElement)
+	 */
+	public void operationStarted(OperationType type, String operation, IPage page, IElement element) {
+		
+		for (IOperationListener listener : listeners)
+			listener.operationStarted(type, operation, page, element);
+	}
+	
+	/**
+	 * @see shelob.core.interfaces.IOperationListener#operationCompleted(OperationType, String, IPage, IElement, long, long, OperationOutcome)
+	 */
+	public void operationCompleted(OperationType type, String operation, IPage page, IElement element, 
+			long startNanos, long durationNanos, OperationOutcome outcome) {
+		
+		for (IOperationListener listener : listeners)
+			listener.operationCompleted(type, operation, page, element, startNanos, durationNanos, outcome);
+	}
+}
@@ -0,0 +1,523 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable fieldJavadoc
+
+package shelob.core.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.collect.MapMaker;
+
+import shelob.core.interfaces.IOperationListener;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.metrics.CommandAttribution;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * Records operations as spans in the Chrome trace-event format, which opens in chrome://tracing
+ * and Perfetto. Each span carries the page path, element label, LookUp type and outcome.
+ * 
+ * Recording is split between the test threads and a single writer thread :
+ * 
+ * - each test thread appends into it's own pre-allocated EventBuffer (parallel primitive and 
+ *   reference arrays, so recording a span does not allocate)
+ * - full buffers are handed to the writer thread, which formats and writes them, then returns 
+ *   them to a pool for reuse
+ * - if the writer falls behind and the queue is full, events are dropped rather than stalling 
+ *   the test; see getDroppedEvents()
+ * 
+ * Page paths and labels are only rendered on the writer thread, and are cached there for as long 
+ * as the Page or Element is reachable. Call close() once the tests 
+ * have finished to flush the remaining events and complete the file.
+ * 
+ * A buffer is only ever handed off by the thread appending to it, or once that thread has ended. 
+ * Threads still running when close() is called should call flush() first; the events they have 
+ * not handed off are counted as dropped.
+ */
+@ThreadSafe
+public final class TraceRecorder implements IOperationListener, Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 1024;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final int PID = 1;
+	
+	private final Writer writer;
+	private final int bufferSize;
+	private final long origin = System.nanoTime();
+	
+	private final BlockingQueue<EventBuffer> pending = new ArrayBlockingQueue<EventBuffer>(QUEUE_CAPACITY);
+	private final BlockingQueue<EventBuffer> free = new ArrayBlockingQueue<EventBuffer>(QUEUE_CAPACITY);
+	private final List<ThreadState> threads = new CopyOnWriteArrayList<ThreadState>();
+	private final AtomicLong dropped = new AtomicLong();
+	private final EventBuffer end = new EventBuffer(0);
+	private final Thread writerThread;
+	
+	private volatile boolean closed;
+	private volatile IOException failure;
+	
+	private final ThreadLocal<ThreadState> state = new ThreadLocal<ThreadState>() {
+		
+		@Override
+		protected ThreadState initialValue() {
+			
+			prune();
+			
+			final ThreadState s = new ThreadState(Thread.currentThread(), newBuffer());
+			threads.add(s);
+			return s;
+		}
+	};
+	
+	// the buffer a thread is currently appending to
+	private static final class ThreadState {
+		
+		private final WeakReference<Thread> thread;
+		private final long threadId;
+		private final String threadName;
+		private volatile EventBuffer current;
+		
+		ThreadState(Thread thread, EventBuffer buffer) {
+			this.thread = new WeakReference<Thread>(thread);
+			this.threadId = thread.getId();
+			this.threadName = thread.getName();
+			this.current = buffer;
+		}
+		
+		boolean isEnded() {
+			
+			final Thread t = thread.get();
+			return t == null || ! t.isAlive();
+		}
+		
+		boolean isCurrent() {
+			return thread.get() == Thread.currentThread();
+		}
+	}
+	
+	// a block of events recorded by a single thread
+	private static final class EventBuffer {
+		
+		private final OperationType[] types;
+		private final String[] operations;
+		private final IPage[] pages;
+		private final IElement[] elements;
+		private final long[] starts;
+		private final long[] durations;
+		private final OperationOutcome[] outcomes;
+		
+		private ThreadState owner;
+		private volatile int size;
+		
+		EventBuffer(int capacity) {
+			types = new OperationType[capacity];
+			operations = new String[capacity];
+			pages = new IPage[capacity];
+			elements = new IElement[capacity];
+			starts = new long[capacity];
+			durations = new long[capacity];
+			outcomes = new OperationOutcome[capacity];
+		}
+		
+		boolean isFull() {
+			return size == types.length;
+		}
+		
+		void reset() {
+			
+			for (int i = 0; i < size; i++) {
+				pages[i] = null;
+				elements[i] = null;
+			}
+			
+			owner = null;
+			size = 0;
+		}
+	}
+	
+	/**
+	 * @param output the trace file to create
+	 * @throws IOException
+	 */
+	public TraceRecorder(File output) throws IOException {
+		this(new OutputStreamWriter(new FileOutputStream(checkNotNull(output)), "UTF-8"), DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * @param writer the Writer receiving the trace; closed by close()
+	 * @param bufferSize the number of events each thread buffers before handing them to the writer thread
+	 * @throws IOException
+	 */
+	public TraceRecorder(Writer writer, int bufferSize) throws IOException {
+		
+		checkArgument(bufferSize > 0, "bufferSize must be positive");
+		
+		this.writer = new BufferedWriter(checkNotNull(writer));
+		this.bufferSize = bufferSize;
+		this.writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+		
+		writerThread = new Thread(new Runnable() {
+			
+			public void run() {
+				drain();
+			}
+		}, "shelob-trace-writer");
+		
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+	
+	/**
+	 * Spans are recorded on completion
+	 * 
+	 * @see shelob.core.interfaces.IOperationListener#operationStarted(OperationType, String, IPage, IElement)
+	 */
+	public void operationStarted(OperationType type, String operation, IPage page, IElement element) {}
+	
+	/**
+	 * @see shelob.core.interfaces.IOperationListener#operationCompleted(OperationType, String, IPage, IElement, long, long, OperationOutcome)
+	 */
+	public void operationCompleted(OperationType type, String operation, IPage page, IElement element, 
+			long startNanos, long durationNanos, OperationOutcome outcome) {
+		
+		if (closed)
+			return;
+		
+		final ThreadState s = state.get();
+		final EventBuffer buffer = s.current;
+		final int i = buffer.size;
+		
+		buffer.types[i] = type;
+		buffer.operations[i] = operation;
+		buffer.pages[i] = page;
+		buffer.elements[i] = element;
+		buffer.starts[i] = startNanos;
+		buffer.durations[i] = durationNanos;
+		buffer.outcomes[i] = outcome;
+		buffer.size = i + 1;
+		
+		if (buffer.isFull())
+			handOff(s);
+	}
+	
+	/**
+	 * Hands the events buffered by the calling thread to the writer thread
+	 */
+	public void flush() {
+		
+		if (closed)
+			return;
+		
+		final ThreadState s = state.get();
+		
+		if (s.current.size > 0)
+			handOff(s);
+	}
+	
+	/**
+	 * @return the number of events dropped because the writer thread fell behind
+	 */
+	public long getDroppedEvents() {
+		return dropped.get();
+	}
+	
+	/**
+	 * @return the number of threads whose buffers are still tracked; threads that have ended are released 
+	 * 		   when the next thread starts recording, or on close()
+	 */
+	public int getThreadCount() {
+		return threads.size();
+	}
+	
+	/**
+	 * Flushes the events of the calling thread and of the threads that have ended, completes the trace 
+	 * file and stops the writer thread.
+	 * 
+	 * @throws IOException when the trace could not be written
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException {
+		
+		if (closed)
+			return;
+		
+		closed = true;
+		
+		try {
+			
+			for (ThreadState s : threads) {
+				
+				if (! s.isCurrent() && ! s.isEnded()) {
+					dropped.addAndGet(s.current.size);
+					continue;
+				}
+				
+				if (threads.remove(s) && s.current.size > 0) {
+					s.current.owner = s;
+					pending.put(s.current);
+				}
+			}
+			
+			pending.put(end);
+			writerThread.join();
+			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		if (failure != null)
+			throw failure;
+	}
+	
+	private EventBuffer newBuffer() {
+		
+		final EventBuffer buffer = free.poll();
+		return buffer == null ? new EventBuffer(bufferSize) : buffer;
+	}
+	
+	private void handOff(ThreadState s) {
+		
+		final EventBuffer buffer = s.current;
+		buffer.owner = s;
+		
+		if (pending.offer(buffer))
+			s.current = newBuffer();
+		else {
+			dropped.addAndGet(buffer.size);
+			buffer.reset();
+		}
+	}
+	
+	/**
+	 * Hands off the remaining events of the threads that have ended, and stops tracking them
+	 */
+	private void prune() {
+		
+		for (ThreadState s : threads) {
+			
+			// only one caller wins the remove, so an ended thread's buffer is handed off once
+			if (s.isEnded() && threads.remove(s) && s.current.size > 0) {
+				
+				s.current.owner = s;
+				
+				if (! pending.offer(s.current))
+					dropped.addAndGet(s.current.size);
+			}
+		}
+	}
+	
+	private void drain() {
+		
+		// compared by identity, and dropped once the Page or Element is no longer reachable
+		final Map<Object, String> names = new MapMaker().weakKeys().makeMap();
+		boolean first = true;
+		
+		try {
+			
+			while (true) {
+				
+				final EventBuffer buffer = pending.take();
+				
+				if (buffer == end)
+					break;
+				
+				first = writeThreadName(buffer.owner, names, first);
+				
+				for (int i = 0; i < buffer.size; i++) {
+					
+					if (! first)
+						writer.write(",\n");
+					
+					writeEvent(buffer, i, names);
+					first = false;
+				}
+				
+				buffer.reset();
+				free.offer(buffer);
+			}
+			
+			writer.write("\n]}\n");
+			
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			failure = new IOException("Interrupted while writing the trace");
+		} finally {
+			
+			try {
+				writer.close();
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+			}
+		}
+	}
+	
+	private boolean writeThreadName(ThreadState s, Map<Object, String> names, boolean first) throws IOException {
+		
+		if (names.containsKey(s))
+			return first;
+		
+		names.put(s, s.threadName);
+		
+		if (! first)
+			writer.write(",\n");
+		
+		writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":");
+		writer.write(String.valueOf(PID));
+		writer.write(",\"tid\":");
+		writer.write(String.valueOf(s.threadId));
+		writer.write(",\"args\":{\"name\":");
+		quote(s.threadName);
+		writer.write("}}");
+		return false;
+	}
+	
+	private void writeEvent(EventBuffer buffer, int i, Map<Object, String> names) throws IOException {
+		
+		final IPage page = buffer.pages[i];
+		final IElement element = buffer.elements[i];
+		
+		writer.write("{\"name\":");
+		quote(buffer.operations[i]);
+		writer.write(",\"cat\":\"");
+		writer.write(buffer.types[i].name());
+		writer.write("\",\"ph\":\"X\",\"ts\":");
+		writeMicros(buffer.starts[i] - origin);
+		writer.write(",\"dur\":");
+		writeMicros(buffer.durations[i]);
+		writer.write(",\"pid\":");
+		writer.write(String.valueOf(PID));
+		writer.write(",\"tid\":");
+		writer.write(String.valueOf(buffer.owner.threadId));
+		writer.write(",\"args\":{\"page\":");
+		quote(getPagePath(page, names));
+		
+		if (element != null) {
+			writer.write(",\"element\":");
+			quote(getLabel(element, names));
+			writer.write(",\"lookup\":\"");
+			writer.write(element.getLookUpType().name());
+			writer.write("\"");
+		}
+		
+		writer.write(",\"outcome\":\"");
+		writer.write(buffer.outcomes[i].name());
+		writer.write("\"}}");
+	}
+	
+	private static String getPagePath(IPage page, Map<Object, String> names) {
+		
+		if (page == null)
+			return "";
+		
+		String path = names.get(page);
+		
+		if (path == null) {
+			path = page.toString().trim();
+			names.put(page, path);
+		}
+		
+		return path;
+	}
+	
+	private static String getLabel(IElement element, Map<Object, String> names) {
+		
+		String label = names.get(element);
+		
+		if (label == null) {
+			label = CommandAttribution.getLabel(element);
+			names.put(element, label);
+		}
+		
+		return label;
+	}
+	
+	private void writeMicros(long nanos) throws IOException {
+		
+		if (nanos < 0)
+			writer.write('-');
+		
+		final long fraction = Math.abs(nanos % 1000);
+		
+		writer.write(Long.toString(Math.abs(nanos / 1000)));
+		writer.write(fraction < 10 ? ".00" : fraction < 100 ? ".0" : ".");
+		writer.write(Long.toString(fraction));
+	}
+	
+	private void quote(String value) throws IOException {
+		
+		writer.write('"');
+		
+		for (int i = 0; i < value.length(); i++) {
+			
+			final char c = value.charAt(i);
+			
+			switch (c) {
+			case '"':
+				writer.write("\\\"");
+				break;
+			case '\\':
+				writer.write("\\\\");
+				break;
+			case '\n':
+				writer.write("\\n");
+				break;
+			case '\r':
+				writer.write("\\r");
+				break;
+			case '\t':
+				writer.write("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					writer.write(String.format("\\u%04x", (int) c));
+				else
+					writer.write(c);
+			}
+		}
+		
+		writer.write('"');
+	}
+}
@@ -0,0 +1,100 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package shelob.core.trace;
+
+import javax.annotation.Nullable;
+
+import org.openqa.selenium.TimeoutException;
+
+import shelob.core.interfaces.IOperationListener;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.page.IPage;
+import shelob.core.metrics.CommandAttribution;
+
+/**
+ * @author melllaguno
+ * @version $Revision: 1.0 $
+ *
+ * The body of a Page or Element operation. run() reports the start and completion of the body 
+ * to an IOperationListener, so operations do not each repeat the bookkeeping :
+ * 
+ * 		return new TracedOperation<String>() {
+ * 			public String call() {
+ * 				return getWebElement().getText();
+ * 			}
+ * 		}.run(listener, OperationType.ACTION, "getText", page, element);
+ * 
+ * The commands call() sends are attributed to the page or element (see CommandAttribution) until 
+ * it returns. The outcome is SUCCESS when call() returns, TIMEOUT when it throws a TimeoutException and 
+ * FAILURE when it throws anything else.
+ *
+ * @param <V> the result of the operation
+ */
+public abstract class TracedOperation<V> {
+
+	/**
+	 * @return the result of the operation
+	 */
+	public abstract V call();
+	
+	/**
+	 * @param result the result returned by call()
+	 * @return the outcome reported for the result; SUCCESS unless overridden
+	 */
+	protected OperationOutcome outcome(V result) {
+		return OperationOutcome.SUCCESS;
+	}
+	
+	/**
+	 * @param listener the IOperationListener notified of the operation, or null
+	 * @param type the kind of operation
+	 * @param operation the name of the operation (e.g. "click"); always a compile-time constant
+	 * @param page the page the operation is performed on
+	 * @param element the element the operation is performed on, or null for page operations
+	 * @return the result of call()
+	 */
+	public final V run(@Nullable IOperationListener listener, OperationType type, String operation, IPage page, @Nullable IElement element) {
+		
+		if (listener != null)
+			listener.operationStarted(type, operation, page, element);
+		
+		final long start = System.nanoTime();
+		final CommandAttribution.Binding attribution = CommandAttribution.bind(page, element);
+		OperationOutcome outcome = OperationOutcome.FAILURE;
+		
+		try {
+			final V result = call();
+			outcome = outcome(result);
+			return result;
+		} catch (TimeoutException e) {
+			outcome = OperationOutcome.TIMEOUT;
+			throw e;
+		} finally {
+			attribution.close();
+			
+			if (listener != null)
+				listener.operationCompleted(type, operation, page, element, start, System.nanoTime() - start, outcome);
+		}
+	}
+}
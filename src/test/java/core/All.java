@@ -28,10 +28,26 @@ import org.junit.BeforeClass;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import core.browsers.BrowserRecyclingTests;
+import core.browsers.CapabilityProfileTests;
 import core.browsers.ChromeTests;
 
 import core.browsers.FirefoxTests;
+import core.browsers.HtmlUnitTests;
 import core.browsers.IETests;
+import core.browsers.TabMultiplexerTests;
+import core.capture.FailureCaptureTests;
+import core.fake.DomFixtureTests;
+import core.fake.FakeCommandExecutorTests;
+import core.http.HttpCaptureTests;
+import core.http.ResourceProxyTests;
+import core.http.SessionHttpClientTests;
+import core.load.HttpReplayEngineTests;
+import core.load.LoadRunnerTests;
+import core.metrics.CommandMetricsTests;
+import core.metrics.TimeBreakdownRecorderTests;
+import core.replay.CommandReplayTests;
+import core.trace.TraceRecorderTests;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ 
@@ -40,10 +56,29 @@ import core.browsers.IETests;
 	IETests.class,
 	ApplicationParameterTests.class,
 	ApplicationURLTests.class,
+	BrowserRecyclingTests.class,
+	CapabilityProfileTests.class,
+	AsyncElementTests.class,
+	CommandMetricsTests.class,
+	CommandReplayTests.class,
+	DomFixtureTests.class,
 	ElementCollectionTests.class,
 	ElementTests.class,
+	FailureCaptureTests.class,
+	FakeCommandExecutorTests.class,
+	HtmlUnitTests.class,
+	HttpCaptureTests.class,
+	HttpReplayEngineTests.class,
+	LoadRunnerTests.class,
 	PageTests.class,
+	ResourceProxyTests.class,
+	SessionContextTests.class,
+	SessionHttpClientTests.class,
+	TabMultiplexerTests.class,
+	TimeBreakdownRecorderTests.class,
+	TraceRecorderTests.class,
 	UserTests.class,
+	WindowManagerTests.class,
 	YearMonthDayPickerTests.class,
 })
 
@@ -0,0 +1,183 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.LookUp;
+import shelob.core.SessionContext;
+import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.NonExistentWebElementException;
+import shelob.core.fake.DomFixture;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.Label;
+
+public class AsyncElementTests {
+
+	private static final String MARKUP = "<html><head><title>Summary</title></head><body>" +
+										 "<span id='first'>One</span><span id='second'>Two</span><span id='third'>Three</span>" +
+										 "</body></html>";
+	
+	private ExecutorService pool;
+	private AtomicInteger executed;
+	private ApplicationParameters parameters;
+	private SummaryPage page;
+	
+	static class SummaryPage extends StandardNavigationPage {
+
+		SummaryPage(ApplicationParameters parameters) {
+			super(parameters, "Summary");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "first").label("First").build())
+											.put(new Label.Builder(this, LookUp.ById, "second").label("Second").build())
+											.put(new Label.Builder(this, LookUp.ById, "third").label("Third").build())
+											.put(new Label.Builder(this, LookUp.ById, "nowhere").label("Missing").build());
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() {
+		
+		pool = Executors.newFixedThreadPool(4);
+		executed = new AtomicInteger();
+		
+		parameters = DomFixture.fromHtml(MARKUP).createParameters().setAsyncExecutor(new Executor() {
+			
+			public void execute(Runnable command) {
+				executed.incrementAndGet();
+				pool.execute(command);
+			}
+		});
+		
+		page = new SummaryPage(parameters);
+	}
+	
+	@After
+	public void teardown() throws Exception {
+		pool.shutdown();
+		pool.awaitTermination(5, TimeUnit.SECONDS);
+	}
+	
+	@Test
+	public void independentOperationsCompose() throws Exception {
+		
+		final List<CompletableFuture<String>> texts = new ArrayList<CompletableFuture<String>>();
+		
+		for (String label : new String[] { "First", "Second", "Third" })
+			texts.add(page.find(label).async().getTextWhenVisible());
+		
+		CompletableFuture.allOf(texts.toArray(new CompletableFuture<?>[texts.size()])).get(5, TimeUnit.SECONDS);
+		
+		assertThat(texts.get(0).get(), is("One"));
+		assertThat(texts.get(1).get(), is("Two"));
+		assertThat(texts.get(2).get(), is("Three"));
+		assertThat(executed.get() > 0, is(true));
+		
+		final IElement first = page.find("First");
+		assertThat(first.async().click().get(5, TimeUnit.SECONDS) == first, is(true));
+	}
+	
+	@Test
+	public void failuresCompleteTheFuture() throws Exception {
+		
+		try {
+			page.find("Missing").async().getText().get(5, TimeUnit.SECONDS);
+			fail("The lookup of a missing element should fail the future");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof NonExistentWebElementException, is(true));
+		}
+	}
+	
+	@Test
+	public void operationsOnOneDriverRunOneAtATime() throws Exception {
+		
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlapped = new AtomicInteger();
+		final List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+		
+		for (int i = 0; i < 12; i++) {
+			
+			results.add(page.find(i % 2 == 0 ? "First" : "Second").async().submit(new Function<IElement, String>() {
+				
+				public String apply(IElement element) {
+					
+					if (running.incrementAndGet() > 1)
+						overlapped.incrementAndGet();
+					
+					try {
+						element.pause(5);
+						return element.getText();
+					} finally {
+						running.decrementAndGet();
+					}
+				}
+			}));
+		}
+		
+		for (int i = 0; i < 12; i++)
+			assertThat(results.get(i).get(5, TimeUnit.SECONDS), is(i % 2 == 0 ? "One" : "Two"));
+		
+		assertThat(overlapped.get(), is(0));
+	}
+	
+	@Test
+	public void theSubmittingSessionIsCarriedOver() throws Exception {
+		
+		final ApplicationParameters session = DomFixture.fromHtml(MARKUP.replace("One", "Uno")).createParameters();
+		final SessionContext.Binding binding = SessionContext.bind(session);
+		
+		try {
+			assertThat(page.find("First").async().getText().get(5, TimeUnit.SECONDS), is("Uno"));
+		} finally {
+			binding.close();
+		}
+	}
+}
@@ -33,6 +33,8 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -40,6 +42,8 @@ import org.junit.Test;
 
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
@@ -866,6 +870,15 @@ public class ElementTests {
 		
 		assertThat(anyElementWithDefaultWaitSetGlobally.getTimeout(), is(7));
 		
+		// 0 is no wait at all; only an unset timeout falls back to the default wait
+		anyElementWithDefaultWaitSetGlobally.setTimeout(0);
+		assertThat(anyElementWithDefaultWaitSetGlobally.getTimeout(), is(0));
+		
+		anyElementWithDefaultWaitSetGlobally.setTimeout(Element.UNSET_TIMEOUT);
+		assertThat(anyElementWithDefaultWaitSetGlobally.getTimeout(), is(7));
+		
+		final ILabel anyElementWithoutWait = new Label.Builder(pageWithWaitParameterSet, "Identifier").defaultWaitInterval(0).build();
+		assertThat(anyElementWithoutWait.getTimeout(), is(0));
 	}
 	
 	@Test
@@ -1595,4 +1608,84 @@ public class ElementTests {
 		assertThat(imageWithLocalizations.isTemplate(), is(true));
 	}
 	
+	@Test
+	public void definitionsAreSharedBetweenEqualElements() {
+		
+		final TestElement a = new TestElement(parentPage, LOOKUP, new String("//row[@id='%s']"), link, new String(LABEL));
+		final TestElement b = new TestElement(parentPage, LOOKUP, new String("//row[@id='%s']"), link, new String(LABEL));
+		
+		assertThat(a.getDefinition() == b.getDefinition(), is(true));
+		assertThat(a.getDefinition().getLocator() == b.getDefinition().getLocator(), is(true));
+		
+		a.setIsTemplate().setRequired().addLocalization("Localized");
+		assertThat(a.getDefinition() == b.getDefinition(), is(false));
+		
+		b.setIsTemplate().setRequired().addLocalization("Localized");
+		assertThat(a.getDefinition() == b.getDefinition(), is(true));
+		assertThat(b.getDefinition().toString(), 
+				   is("LookUp : ByXpath Locator : //row[@id='%s'] Label : Test Localizations : [Localized] IsRequired : true IsTemplate : true"));
+		
+		// identifiers are per element, even though the definition is shared
+		a.setTemplateIdentifier(" 1 ");
+		b.setTemplateIdentifiers("2");
+		assertThat(a.getLocator(), is("//row[@id='1']"));
+		assertThat(b.getLocator(), is("//row[@id='2']"));
+		assertThat(a.getLocatorFor("3"), is("//row[@id='3']"));
+		assertThat(a.getLocator(), is("//row[@id='1']"));
+	}
+	
+	@Test
+	public void driverCallsDoNotBlockConfiguration() throws Exception {
+		
+		final CountDownLatch inDriver = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		
+		when(delegate.isDisplayed()).thenAnswer(new Answer<Boolean>() {
+			
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				inDriver.countDown();
+				release.await(10, TimeUnit.SECONDS);
+				return true;
+			}
+		});
+		
+		final Thread caller = new Thread(new Runnable() {
+			
+			public void run() {
+				element.isDisplayed();
+			}
+		});
+		caller.start();
+		
+		try {
+			assertThat(inDriver.await(10, TimeUnit.SECONDS), is(true));
+			
+			// would deadlock if the pending driver call held the element's monitor
+			final Thread configurer = new Thread(new Runnable() {
+				
+				public void run() {
+					element.setTimeout(7);
+					element.getTimeout();
+					element.getLocator();
+				}
+			});
+			configurer.start();
+			configurer.join(5000);
+			
+			assertThat(configurer.isAlive(), is(false));
+			assertThat(element.getTimeout(), is(7));
+		} finally {
+			release.countDown();
+			caller.join(5000);
+		}
+	}
+	
+	@Test
+	public void clickRetryReturnsElement() {
+		
+		doThrow(new WebDriverException("Element is not clickable at point (1, 1)")).doNothing().when(delegate).click();
+		
+		assertThat(element.click() == element, is(true));
+		verify(delegate, times(2)).click();
+	}
 }
@@ -28,12 +28,20 @@ import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver.TargetLocator;
+import org.openqa.selenium.remote.DriverCommand;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
 import shelob.core.ApplicationParameters;
@@ -41,10 +49,17 @@ import shelob.core.ApplicationURL;
 import shelob.core.LookUp;
 import shelob.core.User;
 import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.exceptions.PageMismatchException;
+import shelob.core.exceptions.RequiredElementMissingException;
+import shelob.core.fake.DomFixture;
+import shelob.core.interfaces.IWaitDelegate;
+import shelob.core.interfaces.elements.IElement;
 import shelob.core.interfaces.elements.IElementCollection;
 import shelob.core.interfaces.page.IPage;
 import shelob.core.page.GenericReportWindow;
 import shelob.core.page.Page;
+import shelob.core.page.PageIdentity;
 import shelob.core.page.StandardNavigationPage;
 import shelob.core.page.SubPage;
 
@@ -102,6 +117,62 @@ public class PageTests {
 		}
 	}
 	
+	private final static String SIGN_IN = 
+		"<html><head><title>Sign In</title></head><body>" +
+		"<label>Courriel</label><input id='email'/><h1>Missing</h1>" +
+		"</body></html>";
+	
+	// Concrete test implementation of a Page with required elements
+	static class RequiredTestPage extends StandardNavigationPage {
+
+		RequiredTestPage(ApplicationParameters parameters) {
+			super(parameters, "Sign In");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "email").label("Email").required().build())
+											.put(new Label.Builder(this, LookUp.ById, "gone").label("Missing By Id").required().build())
+											.put(new Label.Builder(this, LookUp.ByXpath, "//label[.='%s']").label("Email Label").addLocalization("Courriel").required().build())
+											.put(new Label.Builder(this, LookUp.ByXpath, "//h1[.='%s']").label("Missing Localized").addLocalization("Absent").required().build())
+											.put(new Label.Builder(this, LookUp.ByXpath, "//row[%s]").label("Template").isTemplate().required().build())
+											.put(new Label.Builder(this, LookUp.ById, "optional").label("Optional").build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	// Concrete test implementation of a Page with an identity
+	static class IdentifiedTestPage extends StandardNavigationPage {
+
+		private final PageIdentity identity;
+		
+		IdentifiedTestPage(ApplicationParameters parameters, PageIdentity identity) {
+			super(parameters, "Sign In");
+			this.identity = identity;
+		}
+
+		@Override
+		public PageIdentity getIdentity() {
+			return identity;
+		}
+		
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "late").label("Late").build());
+			}
+			
+			return elements;
+		}
+	}
+	
 	// Concrete test implementation of SubPage
 	static class SubPageTestPage extends SubPage {
 
@@ -264,4 +335,202 @@ public class PageTests {
 		assertThat(b.toString(), is("\nLocation : " + pageName + "->" + b.getPageTitle()));
 		assertThat(c.toString(), is("\nLocation : " + pageName + "->" + a.getPageTitle() + "->" + c.getPageTitle()));
 	}
+	
+	@Test
+	public void verifyRequiredReportsEveryMissingElement() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN);
+		final RequiredTestPage required = new RequiredTestPage(fixture.createParameters());
+		
+		try {
+			required.verifyRequired();
+			fail("RequiredElementMissingException expected");
+		} catch (RequiredElementMissingException e) {
+			assertThat(labels(e), is(Arrays.asList("Missing By Id", "Missing Localized")));
+		}
+		
+		// a single script call regardless of the number of required elements
+		assertThat(fixture.getExecutor().getCommandCount(DriverCommand.EXECUTE_SCRIPT), is(1L));
+		assertThat(fixture.getExecutor().getCommandCount(DriverCommand.FIND_ELEMENT), is(0L));
+	}
+	
+	@Test
+	public void verifyRequiredAcceptsAnyLocalizedVariant() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN.replace("<h1>Missing</h1>", "<h1>Absent</h1>"));
+		final RequiredTestPage required = new RequiredTestPage(fixture.createParameters());
+		
+		try {
+			required.verifyRequired();
+			fail("RequiredElementMissingException expected");
+		} catch (RequiredElementMissingException e) {
+			assertThat(labels(e), is(Arrays.asList("Missing By Id")));
+		}
+	}
+	
+	@Test
+	public void verifyRequiredReportsUnlabeledElements() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN);
+		final StandardNavigationPage unlabeled = new StandardNavigationPage(fixture.createParameters(), "Unlabeled") {
+			
+			public IElementCollection getElements() {
+				
+				if (elements == null) {
+					
+					elements = ElementCollection.create()
+												.put("Unlabeled", new Label.Builder(this, LookUp.ById, "nowhere").required().build());
+				}
+				
+				return elements;
+			}
+		};
+		
+		try {
+			unlabeled.verifyRequired();
+			fail("RequiredElementMissingException expected");
+		} catch (RequiredElementMissingException e) {
+			assertThat(e.getMissingElements().size(), is(1));
+			assertThat(e.getMessage().contains(e.getMissingElements().get(0).toString()), is(true));
+		}
+	}
+	
+	@Test
+	public void verifyRequiredAfterGoToWhenEnabled() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN.replace("<h1>Missing</h1>", "<h1>Absent</h1><div id='gone'/>"));
+		final RequiredTestPage required = new RequiredTestPage(fixture.createParameters());
+		
+		assertThat(required.goTo() == required, is(true));
+		assertThat(fixture.getExecutor().getCommandCount(DriverCommand.EXECUTE_SCRIPT), is(0L));
+		
+		required.getParameters().setVerifyRequired(true);
+		required.goTo();
+		assertThat(fixture.getExecutor().getCommandCount(DriverCommand.EXECUTE_SCRIPT), is(1L));
+		
+		fixture.getExecutor().route(fixture.getDriver().getCurrentUrl(), "<html><head><title>Error</title></head><body/></html>");
+		
+		try {
+			required.goTo();
+			fail("RequiredElementMissingException expected");
+		} catch (RequiredElementMissingException e) {
+			assertThat(labels(e), is(Arrays.asList("Email", "Email Label", "Missing By Id", "Missing Localized")));
+		}
+	}
+	
+	@Test
+	public void verifyRequiredRaisesInvalidLocators() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN.replace("<h1>Missing</h1>", "<h1>Absent</h1><div id='gone'/>"));
+		final RequiredTestPage required = new RequiredTestPage(fixture.createParameters());
+		
+		required.getElements().put(new Label.Builder(required, LookUp.ByXpath, "//label[").label("Invalid").required().build());
+		
+		try {
+			required.verifyRequired();
+			fail("AutomationException expected");
+		} catch (RequiredElementMissingException e) {
+			fail("An invalid locator is not a missing element");
+		} catch (AutomationException e) {
+			assertThat(e.getMessage().contains("Unable to look up the required element"), is(true));
+		}
+	}
+	
+	private static List<String> labels(RequiredElementMissingException e) {
+		
+		final List<String> labels = new ArrayList<String>();
+		
+		for (IElement element : e.getMissingElements())
+			labels.add(element.getLabel());
+		
+		Collections.sort(labels);
+		return labels;
+	}
+	
+	@Test
+	public void verifyIdentityChecksEachSignature() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN);
+		final ApplicationParameters fixtureParameters = fixture.createParameters();
+		final String url = fixture.getDriver().getCurrentUrl();
+		
+		new IdentifiedTestPage(fixtureParameters, null).verifyIdentity();
+		new IdentifiedTestPage(fixtureParameters, new PageIdentity.Builder().title("Sign In").url("snapshot").marker(LookUp.ById, "email").build()).verifyIdentity();
+		
+		assertMismatch(new IdentifiedTestPage(fixtureParameters, new PageIdentity.Builder().title("Home").build()), "the title [Sign In] is not [Home]");
+		assertMismatch(new IdentifiedTestPage(fixtureParameters, new PageIdentity.Builder().url("/home$").build()), "the URL [" + url + "] does not match [/home$]");
+		assertMismatch(new IdentifiedTestPage(fixtureParameters, new PageIdentity.Builder().marker(LookUp.ByCSSSelector, "form#home").build()), "the marker element [ByCSSSelector : form#home] is not present");
+		
+		// a SubPage is identified by it's parent
+		final IdentifiedTestPage home = new IdentifiedTestPage(fixtureParameters, new PageIdentity.Builder().title("Home").build());
+		assertThat(new SubPageA(home, subPageATitle).getIdentity(), is(home.getIdentity()));
+	}
+	
+	@Test
+	public void elementWaitsFailFastOnTheWrongPage() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN);
+		final IdentifiedTestPage identified = new IdentifiedTestPage(fixture.createParameters(), new PageIdentity.Builder().title("Sign In").build());
+		
+		// the right page : the wait runs to it's timeout
+		try {
+			identified.find("Late").waitUntilVisible(1);
+			fail("TimeoutException expected");
+		} catch (TimeoutException e) {
+			// expected
+		}
+		
+		fixture.getExecutor().route(fixture.getDriver().getCurrentUrl(), "<html><head><title>Session Expired</title></head><body/></html>");
+		fixture.getDriver().navigate().refresh();
+		
+		final long start = System.nanoTime();
+		
+		try {
+			identified.find("Late").clickWhenVisible(60);
+			fail("PageMismatchException expected");
+		} catch (PageMismatchException e) {
+			assertThat(e.getExpectedPage() == identified, is(true));
+			assertThat(e.getMessage().startsWith("The browser is not on the expected page; the title [Session Expired] is not [Sign In]"), is(true));
+		}
+		
+		assertThat(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), is(true));
+	}
+	
+	@Test
+	public void elementWaitsTolerateAPageInTransition() {
+		
+		final DomFixture fixture = DomFixture.fromHtml(SIGN_IN);
+		final ApplicationParameters fixtureParameters = fixture.createParameters();
+		final IdentifiedTestPage identified = new IdentifiedTestPage(fixtureParameters, new PageIdentity.Builder().title("Sign In").build());
+		final String url = fixture.getDriver().getCurrentUrl();
+		
+		fixture.getExecutor().route(url, "<html><head><title>Loading</title></head><body/></html>");
+		fixture.getDriver().navigate().refresh();
+		
+		final long start = System.nanoTime();
+		
+		// the page finishes loading after the first identity check
+		fixtureParameters.setWaitDelegate(new IWaitDelegate() {
+			
+			public void run() {
+				
+				if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(1200) && fixture.getDriver().getTitle().equals("Loading")) {
+					fixture.getExecutor().route(url, SIGN_IN.replace("<h1>Missing</h1>", "<span id='late'>Late</span>"));
+					fixture.getDriver().navigate().refresh();
+				}
+			}
+		});
+		
+		assertThat(identified.find("Late").getTextWhenVisible(10), is("Late"));
+	}
+	
+	private static void assertMismatch(IPage page, String mismatch) {
+		
+		try {
+			page.verifyIdentity();
+			fail("PageMismatchException expected");
+		} catch (PageMismatchException e) {
+			assertThat(e.getMessage(), is("The browser is not on the expected page; " + mismatch + page.toString()));
+		}
+	}
 }
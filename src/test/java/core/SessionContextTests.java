@@ -0,0 +1,212 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.LookUp;
+import shelob.core.SessionContext;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.fake.DomFixture;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.Label;
+
+public class SessionContextTests {
+
+	private static final int SESSIONS = 8;
+	
+	private DomFixture template;
+	private AccountPage page;
+	
+	static class AccountPage extends StandardNavigationPage {
+
+		AccountPage(ApplicationParameters parameters) {
+			super(parameters, "Account");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "owner").label("Owner").build())
+											.put(new Label.Builder(this, LookUp.ByXpath, "//li[@id='%s']").label("Entry").isTemplate().build());
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() {
+		template = DomFixture.fromHtml(markup("nobody"));
+		page = new AccountPage(template.createParameters());
+	}
+	
+	@After
+	public void teardown() {
+		assertThat(SessionContext.isBound(), is(false));
+	}
+	
+	@Test
+	public void boundSessionTakesPrecedence() {
+		
+		final ApplicationParameters session = DomFixture.fromHtml(markup("alice")).createParameters(new User.Builder("alice@example.com", "secret").build());
+		session.setDefaultWait(3);
+		
+		assertThat(page.find("Owner").getText(), is("nobody"));
+		
+		final SessionContext.Binding binding = SessionContext.bind(session);
+		
+		try {
+			assertThat(page.getParameters() == session, is(true));
+			assertThat(page.getUser().getEmail(), is("alice@example.com"));
+			assertThat(page.find("Owner").getText(), is("alice"));
+			assertThat(page.find("Owner").getTimeout(), is(3));
+		} finally {
+			binding.close();
+		}
+		
+		assertThat(page.find("Owner").getText(), is("nobody"));
+		assertThat(page.find("Owner").getTimeout(), is(0));
+	}
+	
+	@Test
+	public void bindingsNest() throws Exception {
+		
+		final ApplicationParameters outer = DomFixture.fromHtml(markup("outer")).createParameters();
+		final ApplicationParameters inner = DomFixture.fromHtml(markup("inner")).createParameters();
+		
+		final String text = SessionContext.call(outer, new Callable<String>() {
+			
+			public String call() throws Exception {
+				
+				SessionContext.run(inner, new Runnable() {
+					
+					public void run() {
+						assertThat(page.find("Owner").getText(), is("inner"));
+					}
+				});
+				
+				return page.find("Owner").getText();
+			}
+		});
+		
+		assertThat(text, is("outer"));
+	}
+	
+	@Test
+	public void onePageGraphServesConcurrentSessions() throws Exception {
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<String>> results = new ArrayList<Future<String>>();
+		
+		try {
+			for (int i = 0; i < SESSIONS; i++) {
+				
+				final ApplicationParameters session = DomFixture.fromHtml(markup("user" + i)).createParameters();
+				
+				results.add(executor.submit(SessionContext.wrap(session, new Callable<String>() {
+					
+					public String call() {
+						return page.goTo().find("Owner").getText();
+					}
+				})));
+			}
+			
+			for (int i = 0; i < SESSIONS; i++)
+				assertThat(results.get(i).get(), is("user" + i));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void templateIdentifiersBelongToTheSession() throws Exception {
+		
+		final ApplicationParameters[] sessions = { DomFixture.fromHtml(markup("alice")).createParameters(), DomFixture.fromHtml(markup("bob")).createParameters() };
+		final String[] identifiers = { "first", "second" };
+		final CyclicBarrier found = new CyclicBarrier(sessions.length);
+		final ExecutorService executor = Executors.newFixedThreadPool(sessions.length);
+		final List<Future<String>> results = new ArrayList<Future<String>>();
+		
+		try {
+			for (int i = 0; i < sessions.length; i++) {
+				
+				final String identifier = identifiers[i];
+				
+				results.add(executor.submit(SessionContext.wrap(sessions[i], new Callable<String>() {
+					
+					public String call() throws Exception {
+						
+						final IElement entry = page.find("Entry", identifier);
+						
+						// both sessions have selected their identifiers before either resolves the element
+						found.await(5, TimeUnit.SECONDS);
+						return entry.getText();
+					}
+				})));
+			}
+			
+			for (int i = 0; i < sessions.length; i++)
+				assertThat(results.get(i).get(), is(identifiers[i]));
+		} finally {
+			executor.shutdown();
+		}
+		
+		// without a bound session the identifiers are kept by the element
+		page.find("Entry", "second");
+		
+		SessionContext.run(sessions[0], new Runnable() {
+			
+			public void run() {
+				page.find("Entry", "first");
+			}
+		});
+		
+		assertThat(page.find("Entry").getText(), is("second"));
+	}
+	
+	private static String markup(String owner) {
+		return "<html><head><title>Account</title></head><body><span id='owner'>" + owner + "</span>" + 
+			   "<ul><li id='first'>first</li><li id='second'>second</li></ul></body></html>";
+	}
+}
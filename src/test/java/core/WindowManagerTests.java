@@ -0,0 +1,146 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.LookUp;
+import shelob.core.elements.ElementCollection;
+import shelob.core.fake.DomFixture;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.GenericReportWindow;
+import shelob.core.page.Page;
+import shelob.core.page.StandardNavigationPage;
+import shelob.core.page.WindowManager;
+
+import core.examples.element.Label;
+
+public class WindowManagerTests {
+
+	private static final String MARKUP = "<html><head><title>Reports</title></head><body>" +
+										 "<a id='census' href='census' target='_blank'>Census</a></body></html>";
+	
+	private DomFixture fixture;
+	private ReportsPage page;
+	private WindowManager windows;
+	
+	static class ReportsPage extends StandardNavigationPage {
+
+		final ReportWindow census = new ReportWindow(this);
+		
+		ReportsPage(ApplicationParameters parameters) {
+			super(parameters, "Reports");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create().put(new Label.Builder(this, LookUp.ById, "census").label("Census").linksTo(census).build());
+			
+			return elements;
+		}
+	}
+	
+	static class ReportWindow extends GenericReportWindow<ReportWindow> {
+
+		ReportWindow(Page parent) {
+			super(parent, "Census");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create();
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		
+		fixture = DomFixture.fromHtml(MARKUP);
+		page = new ReportsPage(fixture.createParameters());
+		windows = WindowManager.of(page.getDriver());
+	}
+	
+	@Test
+	public void theManagerIsSharedByTheSession() {
+		
+		assertThat(WindowManager.of(fixture.getDriver()), is(sameInstance(windows)));
+		assertThat(WindowManager.of(fixture.fork().getDriver()), is(not(sameInstance(windows))));
+	}
+	
+	@Test
+	public void redundantSwitchesAreSkipped() {
+		
+		final String main = windows.getMainHandle();
+		final ReportWindow report = page.find("Census").goToLink();
+		
+		assertThat(report.hasWindowHandle(), is(true));
+		assertThat(report.getReportWindowHandle(), is(not(main)));
+		
+		fixture.getExecutor().resetCommandCounts();
+		
+		report.switchToWindow();
+		report.switchToWindow();
+		report.switchToWindow();
+		windows.switchToMain();
+		windows.switchToMain();
+		
+		assertThat(fixture.getExecutor().getCommandCount("switchToWindow"), is(2L));
+		assertThat(windows.getSkippedSwitches(), is(3L));
+		assertThat(fixture.getDriver().getWindowHandle(), is(main));
+	}
+	
+	@Test
+	public void orphanedWindowsAreClosedTogether() {
+		
+		final String main = windows.getMainHandle();
+		
+		// every visit opens a new window; the report only keeps the last
+		page.find("Census").goToLink();
+		page.find("Census").goToLink();
+		page.find("Census").goToLink();
+		
+		assertThat(windows.getWindowHandles().size(), is(4));
+		
+		page.census.switchToWindow();
+		
+		assertThat(windows.closeOrphans(), is(2));
+		assertThat(windows.getWindowHandles().size(), is(2));
+		assertThat(fixture.getDriver().getWindowHandle(), is(page.census.getReportWindowHandle()));
+		
+		assertThat(page.census.closeWindow(), is(true));
+		assertThat(page.census.hasWindowHandle(), is(false));
+		assertThat(windows.getWindowHandles().size(), is(1));
+		assertThat(fixture.getDriver().getWindowHandle(), is(main));
+	}
+}
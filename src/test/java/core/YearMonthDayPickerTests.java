@@ -28,6 +28,8 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
 import static org.hamcrest.CoreMatchers.*;
 
+import java.util.Map;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,13 +37,54 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import shelob.core.ApplicationParameters;
+import shelob.core.LookUp;
+import shelob.core.elements.CompositeElement;
+import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.fake.DomFixture;
+import shelob.core.interfaces.elements.IElementCollection;
 import shelob.core.interfaces.page.IPage;
+import shelob.core.page.StandardNavigationPage;
 
 import core.examples.composite.YearMonthDayPicker;
 import core.examples.composite.interfaces.IYearMonthDayPicker;
+import core.examples.element.Label;
+import core.examples.element.TextBox;
 
 public class YearMonthDayPickerTests {
 
+	private static final String FORM = 
+		"<html><head><title>Profile</title></head><body><table><tr>" +
+		"<td id='birth'>Date of Birth</td>" +
+		"<td><select id='_monthField'><option value='1'>January</option><option value='2'>February</option><option value='3'>March</option></select>" +
+		"<select id='_dayField'><option value='1'>1</option><option value='14'>14</option><option value='28'>28</option></select>" +
+		"<input type='text' id='_yearField' value='2000'/><span class='hint'>yyyy</span></td>" +
+		"</tr></table></body></html>";
+	
+	static class ProfilePage extends StandardNavigationPage {
+
+		ProfilePage(ApplicationParameters parameters) {
+			super(parameters, "Profile");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create();
+			
+			return elements;
+		}
+	}
+	
+	static class HintedYear extends CompositeElement {
+
+		HintedYear(IPage parent) {
+			super(parent, LookUp.ByXpath, "//td[@id='birth']/following-sibling::td", "Hinted Year", null);
+			addChild("year", new TextBox.Builder(parent, LookUp.ByXpath, "/input[@id='_yearField']").build());
+			addChild("hint", new Label.Builder(parent, LookUp.ByXpath, "/span[@class='hint']").build());
+		}
+	}
+
 	@Mock IPage parentPage;
 	@Mock ApplicationParameters parameters;
 	
@@ -75,6 +118,63 @@ public class YearMonthDayPickerTests {
 		assertThat(pickerWithLocatorRoot.year().getLocator(), is("//root/input[@id='_yearField']"));
 	}
 	
+	@Test
+	public void fusedOperationsRunInOneCommand() throws Exception {
+		
+		final DomFixture fixture = DomFixture.fromHtml(FORM);
+		final IYearMonthDayPicker birth = new YearMonthDayPicker.Builder(new ProfilePage(fixture.createParameters()), "//td[@id='birth']/following-sibling::td").build();
+		
+		fixture.getExecutor().resetCommandCounts();
+		birth.setDate("2012", "3", "14");
+		
+		assertThat(fixture.getExecutor().getCommandCount("executeScript"), is(1L));
+		assertThat(fixture.getExecutor().getCommandCounts().size(), is(1));
+		
+		fixture.getExecutor().resetCommandCounts();
+		final Map<String, String> date = birth.getDate();
+		
+		assertThat(fixture.getExecutor().getCommandCount("executeScript"), is(1L));
+		assertThat(date.get("year"), is("2012"));
+		assertThat(date.get("month"), is("3"));
+		assertThat(date.get("day"), is("14"));
+		
+		assertThat(((YearMonthDayPicker) birth).batch().readText("month").run().get("month"), is("March"));
+		assertThat(birth.month().getFirstSelectedOption().getText(), is("March"));
+	}
+	
+	@Test
+	public void batchesAreAppliedInFullOrNotAtAll() throws Exception {
+		
+		final DomFixture fixture = DomFixture.fromHtml(FORM);
+		final YearMonthDayPicker birth = (YearMonthDayPicker) new YearMonthDayPicker.Builder(new ProfilePage(fixture.createParameters()), "//td[@id='birth']/following-sibling::td").build();
+		
+		try {
+			birth.batch().set("year", "1999").selectByValue("month", "13").run();
+			fail("There is no thirteenth month");
+		} catch (AutomationException e) {
+			// expected
+		}
+		
+		assertThat(birth.getDate().get("year"), is("2000"));
+	}
+	
+	@Test
+	public void unfusibleChildrenFallBackToWebDriver() throws Exception {
+		
+		final DomFixture fixture = DomFixture.fromHtml(FORM);
+		final HintedYear composite = new HintedYear(new ProfilePage(fixture.createParameters()));
+		
+		final Map<String, String> values = composite.batch().set("year", "1999").read("year").readText("hint").run();
+		
+		assertThat(values.get("year"), is("1999"));
+		assertThat(values.get("hint"), is("yyyy"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownChildrenAreRejected() {
+		((YearMonthDayPicker) picker).batch().read("century");
+	}
+	
 	@Test(expected = UnsupportedOperationException.class)
 	public void goToLinkException(){
 		picker.goToLink();
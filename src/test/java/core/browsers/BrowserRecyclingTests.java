@@ -0,0 +1,195 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.browsers;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+import shelob.core.browsers.RecyclingCommandExecutor;
+import shelob.core.browsers.RecyclingPolicy;
+import shelob.core.fake.FakeCommandExecutor;
+import shelob.core.page.WindowManager;
+
+public class BrowserRecyclingTests {
+
+	private static final String URL = "http://fixture.local/app/orders";
+	private static final String PAGE = "<html><head><title>Orders</title></head><body><p id='total'>42</p></body></html>";
+	private static final String FORM_URL = "http://fixture.local/app/order";
+	private static final String FORM = "<html><head><title>Order</title></head><body><form><input id='quantity' value=''/></form></body></html>";
+	
+	private FakeCommandExecutor browser;
+	
+	@Before
+	public void setup() {
+		browser = new FakeCommandExecutor().route(URL, PAGE).route(FORM_URL, FORM);
+	}
+	
+	private RecyclingCommandExecutor recycling(RecyclingPolicy policy) {
+		return new RecyclingCommandExecutor(browser, policy);
+	}
+	
+	@Test
+	public void sessionsAreReplacedTransparently() {
+		
+		final RecyclingCommandExecutor executor = recycling(new RecyclingPolicy.Builder().maxCommands(20).build());
+		final RemoteWebDriver driver = new RemoteWebDriver(executor, new DesiredCapabilities());
+		
+		driver.get(URL);
+		driver.manage().addCookie(new Cookie("JSESSIONID", "abc123"));
+		
+		final String handle = WindowManager.of(driver).getCurrentHandle();
+		
+		for (int i = 0; i < 50; i++) {
+			driver.get(URL);
+			assertThat(driver.findElementById("total").getText(), is("42"));
+		}
+		
+		// three commands per visit, the navigation which replaces the session not counted in the new one
+		assertThat(executor.getRecycles(), is(7L));
+		assertThat(browser.getCommandCount("newSession"), is(8L));
+		
+		// the state of the old session is carried over
+		assertThat(driver.getCurrentUrl(), is(URL));
+		assertThat(driver.manage().getCookieNamed("JSESSIONID").getValue(), is("abc123"));
+		
+		// and the main window keeps it's handle
+		assertThat(driver.getWindowHandle(), is(handle));
+		assertThat(driver.getWindowHandles().contains(handle), is(true));
+		assertThat(WindowManager.of(driver).switchTo(handle), is(false));
+		driver.switchTo().window(handle);
+	}
+	
+	@Test
+	public void cookiesAreRestoredBeforeTheDestinationIsLoaded() {
+		
+		final List<String> sent = new ArrayList<String>();
+		final RecyclingCommandExecutor executor = new RecyclingCommandExecutor(new CommandExecutor() {
+			
+			public Response execute(Command command) throws IOException {
+				
+				if (DriverCommand.GET.equals(command.getName()))
+					sent.add("get " + command.getParameters().get("url"));
+				else if (DriverCommand.ADD_COOKIE.equals(command.getName()))
+					sent.add("addCookie");
+				
+				return browser.execute(command);
+			}
+		}, new RecyclingPolicy.Builder().maxAge(1, TimeUnit.HOURS).build());
+		final RemoteWebDriver driver = new RemoteWebDriver(executor, new DesiredCapabilities());
+		
+		driver.get(URL);
+		driver.manage().addCookie(new Cookie("JSESSIONID", "abc123"));
+		executor.recycleSoon();
+		sent.clear();
+		
+		// the cookies are set from the origin, and the destination is loaded once, with them
+		driver.get(FORM_URL);
+		
+		assertThat(executor.getRecycles(), is(1L));
+		assertThat(sent, is(Arrays.asList("get http://fixture.local/", "addCookie", "get " + FORM_URL)));
+		assertThat(driver.manage().getCookieNamed("JSESSIONID").getValue(), is("abc123"));
+		
+		// between tests, the old URL is loaded once the cookies are set
+		executor.recycleSoon();
+		sent.clear();
+		
+		assertThat(executor.recycleIfDue(), is(true));
+		assertThat(sent, is(Arrays.asList("get http://fixture.local/", "addCookie", "get " + FORM_URL)));
+		assertThat(driver.getCurrentUrl(), is(FORM_URL));
+	}
+	
+	@Test
+	public void sessionsAreOnlyReplacedAtSafePoints() {
+		
+		final RecyclingCommandExecutor executor = recycling(new RecyclingPolicy.Builder().maxAge(1, TimeUnit.HOURS).build());
+		final RemoteWebDriver driver = new RemoteWebDriver(executor, new DesiredCapabilities());
+		
+		driver.get(URL);
+		
+		final WebElement total = driver.findElementById("total");
+		executor.recycleSoon();
+		
+		// the element in use keeps working until the next navigation, lookups included
+		assertThat(total.getText(), is("42"));
+		assertThat(driver.getTitle(), is("Orders"));
+		assertThat(driver.findElementById("total").getText(), is("42"));
+		assertThat(executor.getRecycles(), is(0L));
+		
+		driver.get(URL);
+		assertThat(executor.getRecycles(), is(1L));
+		assertThat(driver.findElementById("total").getText(), is("42"));
+	}
+	
+	@Test
+	public void typedValuesSurviveALookupWhileDue() {
+		
+		final RecyclingCommandExecutor executor = recycling(new RecyclingPolicy.Builder().maxAge(1, TimeUnit.HOURS).build());
+		final RemoteWebDriver driver = new RemoteWebDriver(executor, new DesiredCapabilities());
+		
+		driver.get(FORM_URL);
+		driver.findElementById("quantity").sendKeys("12");
+		executor.recycleSoon();
+		
+		// a fresh session would reload the form empty
+		assertThat(driver.findElementById("quantity").getAttribute("value"), is("12"));
+		assertThat(driver.findElementsById("quantity").size(), is(1));
+		assertThat(executor.getRecycles(), is(0L));
+	}
+	
+	@Test
+	public void sessionsAreReplacedBetweenTestsWhenDue() {
+		
+		final RecyclingCommandExecutor executor = recycling(new RecyclingPolicy.Builder().maxAge(1, TimeUnit.HOURS).build());
+		final RemoteWebDriver driver = new RemoteWebDriver(executor, new DesiredCapabilities());
+		
+		driver.get(URL);
+		
+		assertThat(executor.recycleIfDue(), is(false));
+		
+		executor.recycleSoon();
+		
+		assertThat(executor.recycleIfDue(), is(true));
+		assertThat(executor.getRecycles(), is(1L));
+		assertThat(driver.getCurrentUrl(), is(URL));
+		assertThat(driver.findElementById("total").getText(), is("42"));
+	}
+}
@@ -0,0 +1,95 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.browsers;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import shelob.core.browsers.CapabilityProfile;
+import shelob.core.browsers.Chrome;
+import shelob.core.browsers.Firefox;
+
+public class CapabilityProfileTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void defaultProfileLeavesTheDefaultCapabilities() {
+		
+		assertThat(Chrome.getCapabilities(CapabilityProfile.DEFAULT).asMap(), is(Chrome.getDefaultCapabilities().asMap()));
+		assertThat(Firefox.getCapabilities(CapabilityProfile.DEFAULT).asMap(), is(Firefox.getDefaultCapabilities().asMap()));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void fastStartupProfileConfiguresChrome() {
+		
+		final DesiredCapabilities capabilities = Chrome.getCapabilities(CapabilityProfile.FAST_STARTUP);
+		final List<String> arguments = (List<String>) ((Map<String, Object>) capabilities.getCapability(ChromeOptions.CAPABILITY)).get("args");
+		
+		assertThat(arguments.contains("--headless"), is(true));
+		assertThat(arguments.contains("--blink-settings=imagesEnabled=false"), is(true));
+		assertThat(arguments.contains("--disable-extensions"), is(true));
+		assertThat((String) capabilities.getCapability(CapabilityProfile.PAGE_LOAD_STRATEGY), is("eager"));
+		assertThat(capabilities.getBrowserName(), is(DesiredCapabilities.chrome().getBrowserName()));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void templateProfileIsEncodedOnceAndReused() throws IOException {
+		
+		final File template = folder.newFolder("template");
+		Files.write("user_pref(\"browser.startup.homepage\", \"about:blank\");\n", new File(template, "user.js"), Charsets.UTF_8);
+		
+		final CapabilityProfile profile = new CapabilityProfile.Builder(CapabilityProfile.FAST_STARTUP, "template").templateProfile(template).build();
+		
+		final DesiredCapabilities first = Firefox.getCapabilities(profile);
+		final DesiredCapabilities second = Firefox.getCapabilities(profile);
+		
+		// the same encoded profile, not an equal copy
+		assertThat(first.getCapability(FirefoxDriver.PROFILE), is(notNullValue()));
+		assertTrue(first.getCapability(FirefoxDriver.PROFILE) == second.getCapability(FirefoxDriver.PROFILE));
+		
+		final Map<String, Object> options = (Map<String, Object>) first.getCapability(CapabilityProfile.FIREFOX_OPTIONS);
+		assertThat(((List<String>) options.get("args")).contains("-headless"), is(true));
+		assertThat(((Map<String, Object>) options.get("prefs")).get("permissions.default.image"), is((Object) 2));
+	}
+}
@@ -0,0 +1,334 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.browsers;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.browsers.HtmlUnit;
+import shelob.core.browsers.HtmlUnitCommandExecutor;
+import shelob.core.elements.ElementCollection;
+import shelob.core.elements.ElementState;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.exceptions.IncompatibleDriverException;
+import shelob.core.exceptions.RequiredElementMissingException;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.interfaces.page.ILightweightCompatible;
+import shelob.core.page.Page;
+
+import core.examples.element.Button;
+import core.examples.element.Label;
+import core.examples.element.TextBox;
+import core.examples.element.interfaces.IButton;
+import core.examples.element.interfaces.ITextBox;
+
+public class HtmlUnitTests {
+
+	private static final String LOGIN = "<html><head><title>Sign In</title></head><body>" + 
+										"<form method='post' action='/app/welcome'><input type='text' id='user' name='user'/>" + 
+										"<input type='submit' id='signIn' value='Sign In'/></form>" + 
+										"<script>var p = document.createElement('p'); p.id = 'scripted'; document.body.appendChild(p);</script>" + 
+										"</body></html>";
+	
+	private HttpServer server;
+	private ApplicationURL url;
+	private RemoteWebDriver driver;
+	
+	static class LoginPage extends Page implements ILightweightCompatible {
+
+		private final WelcomePage welcome;
+		
+		LoginPage(ApplicationParameters parameters) {
+			super(parameters, "Sign In");
+			welcome = new WelcomePage(parameters);
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new TextBox.Builder(this, LookUp.ById, "user").label("User").build())
+											.put(new Button.Builder(this, LookUp.ById, "signIn").label("Sign In").linksTo(welcome).build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	static class WelcomePage extends Page implements ILightweightCompatible {
+
+		WelcomePage(ApplicationParameters parameters) {
+			super(parameters, "Welcome");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create().put(new Label.Builder(this, LookUp.ById, "greeting").label("Greeting").build());
+			
+			return elements;
+		}
+	}
+	
+	static class RequiredPage extends Page implements ILightweightCompatible {
+
+		private final String locator;
+		
+		RequiredPage(ApplicationParameters parameters, String locator) {
+			super(parameters, "Sign In");
+			this.locator = locator;
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new TextBox.Builder(this, LookUp.ById, "user").label("User").required().build())
+											.put(new Label.Builder(this, LookUp.ByCSSSelector, "p#scripted").label("Scripted").required().build())
+											.put(new Label.Builder(this, LookUp.ByXpath, locator).label("Checked").required().build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	static class ChartPage extends Page {
+
+		ChartPage(ApplicationParameters parameters) {
+			super(parameters, "Chart");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create();
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/app/", new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				
+				final String body;
+				
+				if ("POST".equals(exchange.getRequestMethod())) {
+					
+					final String form = CharStreams.toString(new InputStreamReader(exchange.getRequestBody(), Charsets.UTF_8));
+					final String user = URLDecoder.decode(form.substring(form.indexOf("user=") + 5).split("&")[0], "UTF-8");
+					
+					exchange.getResponseHeaders().add("Set-Cookie", "JSESSIONID=" + user + "-session; Path=/");
+					body = "<html><head><title>Welcome</title></head><body><p id='greeting'>Welcome " + user + "</p></body></html>";
+				} else
+					body = LOGIN;
+				
+				final byte[] bytes = body.getBytes(Charsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+				exchange.sendResponseHeaders(200, bytes.length);
+				
+				final OutputStream out = exchange.getResponseBody();
+				out.write(bytes);
+				out.close();
+			}
+		});
+		server.start();
+		
+		url = new ApplicationURL("localhost", server.getAddress().getPort(), "app", "login");
+	}
+	
+	@After
+	public void teardown() {
+		
+		if (driver != null)
+			driver.quit();
+		server.stop(0);
+	}
+	
+	private ApplicationParameters parameters(boolean javascriptEnabled) {
+		
+		driver = HtmlUnit.getDriver(javascriptEnabled);
+		return new ApplicationParameters(driver, url, new User.Builder("alice@example.com", "secret").build());
+	}
+	
+	@Test
+	public void formsArePostedWithoutABrowser() {
+		
+		final ApplicationParameters parameters = parameters(true);
+		final LoginPage login = new LoginPage(parameters);
+		
+		assertThat(HtmlUnit.isHtmlUnit(parameters.getDriver()), is(true));
+		
+		login.goTo();
+		assertThat(driver.getTitle(), is("Sign In"));
+		
+		login.find(ITextBox.class, "User").type("alice");
+		
+		final long start = System.currentTimeMillis();
+		final WelcomePage welcome = login.find(IButton.class, "Sign In").goToLink(WelcomePage.class);
+		
+		// no fixed pause after the click, the page has been loaded by the time it returns
+		assertThat(System.currentTimeMillis() - start < 2000, is(true));
+		assertThat(welcome.find(Label.class, "Greeting").getWebElement().getText(), is("Welcome alice"));
+		assertThat(driver.manage().getCookieNamed("JSESSIONID").getValue(), is("alice-session"));
+	}
+	
+	@Test
+	public void javascriptCanBeDisabled() {
+		
+		new LoginPage(parameters(true)).goTo();
+		assertThat(driver.findElementsById("scripted").size(), is(1));
+		assertThat((String) driver.executeScript("return document.title;"), is("Sign In"));
+		driver.quit();
+		
+		new LoginPage(parameters(false)).goTo();
+		assertThat(driver.findElementsById("scripted").size(), is(0));
+		
+		try {
+			driver.executeScript("return document.title;");
+			fail("Scripts cannot be executed with JavaScript disabled");
+		} catch (UnsupportedOperationException e) {
+			// refused by the RemoteWebDriver, since the session does not support JavaScript
+		}
+	}
+	
+	@Test
+	public void requiredElementsAreVerifiedInPage() {
+		
+		final ApplicationParameters parameters = parameters(true);
+		new RequiredPage(parameters, "//input[@id='signIn']").goTo().verifyRequired();
+		
+		try {
+			new RequiredPage(parameters, "//input[@id='signOut']").verifyRequired();
+			fail("RequiredElementMissingException expected");
+		} catch (RequiredElementMissingException e) {
+			assertThat(e.getMissingElements().size(), is(1));
+			assertThat(e.getMissingElements().get(0).getLabel(), is("Checked"));
+		}
+		
+		try {
+			new RequiredPage(parameters, "//input[@id=").verifyRequired();
+			fail("An invalid locator is an error rather than a missing element");
+		} catch (RequiredElementMissingException e) {
+			fail("An invalid locator is an error rather than a missing element");
+		} catch (AutomationException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void snapshotsAreReadInPage() {
+		
+		final LoginPage login = new LoginPage(parameters(true));
+		login.goTo();
+		login.find(ITextBox.class, "User").type("alice");
+		
+		final ElementState state = login.find("User").snapshot();
+		
+		assertThat(state.isDisplayed(), is(true));
+		assertThat(state.isEnabled(), is(true));
+		assertThat(state.getTagName(), is("input"));
+		assertThat(state.getValue(), is("alice"));
+		assertThat(state.getSize().getWidth() >= 0, is(true));
+	}
+	
+	@Test
+	public void referencesAreDroppedWithTheirPage() {
+		
+		parameters(true);
+		
+		final HtmlUnitCommandExecutor executor = (HtmlUnitCommandExecutor) driver.getCommandExecutor();
+		
+		driver.get(url.getURL());
+		
+		final WebElement user = driver.findElementById("user");
+		driver.findElementById("signIn");
+		driver.findElementById("scripted");
+		
+		assertThat(executor.getElementCount(), is(3));
+		
+		driver.get(url.getURL());
+		driver.findElementById("user").sendKeys("alice");
+		
+		assertThat(executor.getElementCount(), is(1));
+		
+		try {
+			user.getText();
+			fail("An element of a page which has been left is stale");
+		} catch (StaleElementReferenceException e) {
+			// expected
+		}
+		
+		// a page loaded by a click replaces the page just as a navigation does
+		driver.findElementById("signIn").click();
+		
+		assertThat(driver.findElementById("greeting").getText(), is("Welcome alice"));
+		assertThat(executor.getElementCount(), is(1));
+	}
+	
+	@Test
+	public void incompatiblePagesAreRefused() {
+		
+		final ChartPage chart = new ChartPage(parameters(true));
+		
+		try {
+			chart.goTo();
+			fail("The page does not declare that it is compatible with HtmlUnit");
+		} catch (IncompatibleDriverException e) {
+			assertThat(e.getPage(), is((Object) chart));
+		}
+		
+		assertThat(driver.getCurrentUrl(), is(not(url.getURL())));
+	}
+}
@@ -0,0 +1,251 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.browsers;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import shelob.core.browsers.TabMultiplexer;
+import shelob.core.fake.FakeCommandExecutor;
+
+public class TabMultiplexerTests {
+
+	private static final String PAGE = "<html><head><title>%s</title></head><body><p id='name'>%s</p>" +
+			"<a id='report' href='report' target='_blank'>Report</a><input id='query'/></body></html>";
+	
+	private FakeCommandExecutor executor;
+	private TabMultiplexer browser;
+	
+	@Before
+	public void setup() {
+		
+		executor = new FakeCommandExecutor();
+		
+		for (int i = 0; i < 4; i++)
+			executor.route("http://fixture.local/flow/" + i, String.format(PAGE, "Flow " + i, "flow-" + i));
+		
+		browser = new TabMultiplexer(executor.createDriver());
+	}
+	
+	@After
+	public void teardown() {
+		browser.close();
+	}
+	
+	@Test
+	public void tabsShareOneBrowserWithTheirOwnWindows() {
+		
+		final RemoteWebDriver first = browser.openTab();
+		final RemoteWebDriver second = browser.openTab();
+		
+		first.get("http://fixture.local/flow/0");
+		second.get("http://fixture.local/flow/1");
+		
+		executor.resetCommandCounts();
+		
+		assertThat(first.getTitle(), is("Flow 0"));
+		assertThat(first.getTitle(), is("Flow 0"));
+		assertThat(second.getTitle(), is("Flow 1"));
+		assertThat(first.getTitle(), is("Flow 0"));
+		
+		// the browser was left on the second tab; only the changes of tab need a switch
+		assertThat(executor.getCommandCount("switchToWindow"), is(3L));
+		
+		assertThat(first.getWindowHandles().size(), is(1));
+		assertThat(first.getWindowHandle(), is(not(second.getWindowHandle())));
+		assertThat(browser.getTabCount(), is(2));
+		
+		second.quit();
+		
+		assertThat(browser.getTabCount(), is(1));
+		assertThat(first.getTitle(), is("Flow 0"));
+		
+		try {
+			second.getTitle();
+			fail("A tab which has quit cannot be used");
+		} catch (WebDriverException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void windowsBelongToTheTabWhichOpenedThem() {
+		
+		final RemoteWebDriver first = browser.openTab();
+		final RemoteWebDriver second = browser.openTab();
+		
+		first.get("http://fixture.local/flow/0");
+		second.get("http://fixture.local/flow/1");
+		
+		// the window opened by the first tab's click is not the second's, though the second looks first
+		first.findElement(By.id("report")).click();
+		
+		assertThat(second.getWindowHandles().size(), is(1));
+		assertThat(first.getWindowHandles().size(), is(2));
+		
+		for (String handle : first.getWindowHandles()) {
+			
+			if (! handle.equals(first.getWindowHandle())) {
+				
+				try {
+					second.switchTo().window(handle);
+					fail("A tab cannot switch to the window of another tab");
+				} catch (WebDriverException e) {
+					// expected
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void onlyLookingForWindowsReadsTheHandles() {
+		
+		final RemoteWebDriver first = browser.openTab();
+		final RemoteWebDriver second = browser.openTab();
+		
+		first.get("http://fixture.local/flow/0");
+		second.get("http://fixture.local/flow/1");
+		
+		executor.resetCommandCounts();
+		
+		first.findElement(By.id("name")).click();
+		first.findElement(By.id("query")).sendKeys("shelob");
+		first.executeScript("return 1;");
+		first.findElement(By.id("report")).click();
+		first.findElement(By.id("name")).click();
+		
+		assertThat(executor.getCommandCount("getWindowHandles"), is(0L));
+		
+		// another tab's click first tells apart the windows opened by the first tab's clicks
+		second.findElement(By.id("name")).click();
+		
+		assertThat(executor.getCommandCount("getWindowHandles"), is(1L));
+		assertThat(first.getWindowHandles().size(), is(2));
+		assertThat(second.getWindowHandles().size(), is(1));
+		
+		// keys which press Enter may submit a form into a new window
+		second.findElement(By.id("query")).sendKeys("shelob" + Keys.ENTER);
+		executor.resetCommandCounts();
+		
+		first.findElement(By.id("name")).click();
+		assertThat(executor.getCommandCount("getWindowHandles"), is(1L));
+	}
+	
+	@Test
+	public void theFrameOfATabIsSelectedAgainAfterASwitch() {
+		
+		final RemoteWebDriver first = browser.openTab();
+		final RemoteWebDriver second = browser.openTab();
+		
+		first.get("http://fixture.local/flow/0");
+		second.get("http://fixture.local/flow/1");
+		
+		executor.resetCommandCounts();
+		
+		first.switchTo().frame("report");
+		first.getTitle();
+		
+		assertThat(executor.getCommandCount("switchToFrame"), is(1L));
+		
+		second.getTitle();
+		first.getTitle();
+		
+		// the switch back to the first tab's window left the browser on the top of it
+		assertThat(executor.getCommandCount("switchToFrame"), is(2L));
+		
+		first.switchTo().defaultContent();
+		second.getTitle();
+		first.getTitle();
+		
+		assertThat(executor.getCommandCount("switchToFrame"), is(3L));
+	}
+	
+	@Test
+	public void theLastWindowIsKeptForTheNextTab() {
+		
+		final RemoteWebDriver only = browser.openTab();
+		final String handle = only.getWindowHandle();
+		
+		only.quit();
+		
+		assertThat(browser.openTab().getWindowHandle(), is(handle));
+	}
+	
+	@Test
+	public void concurrentFlowsAreIsolated() throws Exception {
+		
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		
+		try {
+			for (int i = 0; i < 4; i++) {
+				
+				final int flow = i;
+				final RemoteWebDriver tab = browser.openTab();
+				
+				results.add(pool.submit(new Callable<Integer>() {
+					
+					public Integer call() {
+						
+						int matches = 0;
+						
+						tab.get("http://fixture.local/flow/" + flow);
+						
+						for (int j = 0; j < 25; j++) {
+							
+							if (tab.findElementById("name").getText().equals("flow-" + flow) && tab.getTitle().equals("Flow " + flow))
+								matches++;
+						}
+						
+						return matches;
+					}
+				}));
+			}
+			
+			for (Future<Integer> result : results)
+				assertThat(result.get(), is(25));
+			
+		} finally {
+			pool.shutdown();
+		}
+		
+		assertThat(browser.getCommands() > 200, is(true));
+	}
+}
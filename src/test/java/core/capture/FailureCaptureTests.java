@@ -0,0 +1,253 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core.capture;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.CharStreams;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.LookUp;
+import shelob.core.capture.FailureCapture;
+import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.exceptions.NonExistentWebElementException;
+import shelob.core.fake.DomFixture;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.metrics.CommandAttribution;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.Label;
+
+public class FailureCaptureTests {
+
+	private static final String MARKUP = "<html><head><title>Orders</title></head><body><span id='total' style='display:none'>42</span></body></html>";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private ApplicationParameters parameters;
+	private OrdersPage page;
+	private FailureCapture capture;
+	
+	static class OrdersPage extends StandardNavigationPage {
+
+		OrdersPage(ApplicationParameters parameters) {
+			super(parameters, "Orders");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "total").label("Order Total").build())
+											.put(new Label.Builder(this, LookUp.ById, "nowhere").label("Missing").build());
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() {
+		parameters = DomFixture.fromHtml(MARKUP).createParameters();
+		page = new OrdersPage(parameters);
+	}
+	
+	@After
+	public void teardown() {
+		if (capture != null)
+			capture.close();
+	}
+	
+	@Test
+	public void failuresLinkTheirArtifacts() throws Exception {
+		
+		capture = new FailureCapture.Builder(folder.getRoot()).build();
+		parameters.setFailureCapture(capture);
+		
+		try {
+			page.find("Missing").getText();
+			fail("A missing element should not have text");
+		} catch (NonExistentWebElementException e) {
+			
+			assertThat(capture.awaitIdle(5, TimeUnit.SECONDS), is(true));
+			assertThat(e.getArtifacts().size(), is(2));
+			assertThat(e.getMessage().contains(e.getArtifacts().get(0).getPath()), is(true));
+			
+			final File screenshot = e.getArtifacts().get(0);
+			final File source = e.getArtifacts().get(1);
+			
+			assertThat(screenshot.getName(), is("00001-Orders-Missing.png"));
+			assertThat(screenshot.length() > 0, is(true));
+			assertThat(source.getName(), is("00001-Orders-Missing.html.gz"));
+			assertThat(read(source).contains(">42<"), is(true));
+		}
+		
+		try {
+			page.find("Order Total").clickWhenVisible(0);
+			fail("A hidden element should not be clicked");
+		} catch (AutomationException e) {
+			assertThat(capture.awaitIdle(5, TimeUnit.SECONDS), is(true));
+			assertThat(e.getArtifacts().size(), is(2));
+			assertThat(e.getArtifacts().get(0).exists(), is(true));
+		}
+		
+		assertThat(capture.getCaptured(), is(2L));
+		assertThat(capture.getFailedWrites(), is(0L));
+	}
+	
+	@Test
+	public void aSaturatedWriterDropsCaptures() throws Exception {
+		
+		final List<Runnable> pending = new ArrayList<Runnable>();
+		
+		capture = new FailureCapture.Builder(folder.getRoot()).capacity(1).writer(new Executor() {
+			
+			public void execute(Runnable command) {
+				pending.add(command);
+			}
+		}).build();
+		parameters.setFailureCapture(capture);
+		
+		// the artifacts are only attached once they have been written
+		final NonExistentWebElementException queued = lookUpMissing(page);
+		assertThat(queued.getArtifacts().size(), is(0));
+		
+		assertThat(lookUpMissing(page).getArtifacts().size(), is(0));
+		assertThat(capture.getDropped(), is(1L));
+		assertThat(capture.awaitIdle(0, TimeUnit.SECONDS), is(false));
+		
+		pending.remove(0).run();
+		
+		assertThat(capture.awaitIdle(0, TimeUnit.SECONDS), is(true));
+		assertThat(queued.getArtifacts().size(), is(2));
+		
+		final NonExistentWebElementException next = lookUpMissing(page);
+		pending.remove(0).run();
+		assertThat(next.getArtifacts().size(), is(2));
+		assertThat(capture.getCaptured(), is(2L));
+	}
+	
+	@Test
+	public void artifactsWhichCannotBeWrittenAreNotAttached() throws Exception {
+		
+		// the artifacts directory cannot be created under a file
+		capture = new FailureCapture.Builder(new File(folder.newFile("occupied"), "failures")).build();
+		parameters.setFailureCapture(capture);
+		
+		final NonExistentWebElementException e = lookUpMissing(page);
+		
+		assertThat(capture.awaitIdle(5, TimeUnit.SECONDS), is(true));
+		assertThat(e.getArtifacts().isEmpty(), is(true));
+		assertThat(capture.getFailedWrites(), is(2L));
+	}
+	
+	@Test
+	public void capturingRestoresTheCommandAttribution() throws Exception {
+		
+		capture = new FailureCapture.Builder(folder.getRoot()).build();
+		
+		final CommandAttribution.Binding binding = CommandAttribution.bind(null, page.find("Order Total"));
+		
+		try {
+			capture.capture(new AutomationException("Failed"), page, null);
+			assertThat(CommandAttribution.getElementLabel(), is("Order Total"));
+		} finally {
+			binding.close();
+		}
+		
+		assertThat(CommandAttribution.getPagePath(), is("<unattributed>"));
+	}
+	
+	@Test
+	public void absentElementsAnswerQueriesWithoutCapturing() throws Exception {
+		
+		capture = new FailureCapture.Builder(folder.getRoot()).build();
+		parameters.setFailureCapture(capture);
+		
+		assertThat(page.find("Missing").isEnabled(), is(false));
+		assertThat(page.find("Missing").isValid(), is(false));
+		assertThat(capture.getCaptured(), is(0L));
+		
+		lookUpMissing(page);
+		assertThat(capture.getCaptured(), is(1L));
+	}
+	
+	@Test
+	public void untitledPagesAreCaptured() throws Exception {
+		
+		capture = new FailureCapture.Builder(folder.getRoot()).build();
+		
+		final OrdersPage untitled = new OrdersPage(parameters) {
+			
+			@Override
+			public String getPageTitle() {
+				return null;
+			}
+		};
+		
+		final AutomationException e = capture.capture(new AutomationException("Failed"), untitled, null);
+		
+		assertThat(capture.awaitIdle(5, TimeUnit.SECONDS), is(true));
+		assertThat(e.getArtifacts().get(0).getName(), is("00001-page.png"));
+	}
+	
+	private static NonExistentWebElementException lookUpMissing(OrdersPage page) {
+		
+		try {
+			page.find("Missing").getText();
+		} catch (NonExistentWebElementException e) {
+			return e;
+		}
+		
+		throw new AssertionError("A missing element should not have text");
+	}
+	
+	private static String read(File file) throws Exception {
+		
+		final InputStreamReader in = new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8");
+		
+		try {
+			return CharStreams.toString(in);
+		} finally {
+			in.close();
+		}
+	}
+}
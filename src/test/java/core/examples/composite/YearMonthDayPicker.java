@@ -27,10 +27,12 @@ package core.examples.composite;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Map;
+
 import javax.annotation.concurrent.NotThreadSafe;
 
 import shelob.core.LookUp;
-import shelob.core.elements.Element;
+import shelob.core.elements.CompositeElement;
 import shelob.core.elements.ElementBuilder;
 import shelob.core.interfaces.page.IPage;
 
@@ -47,7 +49,7 @@ import core.examples.element.interfaces.ITextBox;
  * Year/Month/Day Aggregate element
  */
 @NotThreadSafe
-public final class YearMonthDayPicker extends Element implements IYearMonthDayPicker {
+public final class YearMonthDayPicker extends CompositeElement implements IYearMonthDayPicker {
 
 	private final IDropdown day;
 	private final IDropdown month;
@@ -113,14 +115,9 @@ public final class YearMonthDayPicker extends Element implements IYearMonthDayPi
 	private YearMonthDayPicker(Builder builder) {
 		super(builder.parent, builder.lookup, builder.locator, builder.label, null);
 		
-		month = checkNotNull(builder.month);
-		month.setRelativeToParent(this);
-		
-		day = checkNotNull(builder.day);
-		day.setRelativeToParent(this);
-		
-		year = checkNotNull(builder.year);
-		year.setRelativeToParent(this);
+		month = addChild("month", checkNotNull(builder.month));
+		day = addChild("day", checkNotNull(builder.day));
+		year = addChild("year", checkNotNull(builder.year));
 	}
 	
 	/**
@@ -150,6 +147,29 @@ public final class YearMonthDayPicker extends Element implements IYearMonthDayPi
 		return year;
 	}
 	
+	/**
+	 * Method setDate.
+	 * @param year String
+	 * @param month String
+	 * @param day String
+	 * @return IYearMonthDayPicker
+	 * @see core.examples.composite.interfaces.IYearMonthDayPicker#setDate(String, String, String)
+	 */
+	public IYearMonthDayPicker setDate(String year, String month, String day) {
+		
+		batch().selectByValue("month", month).selectByValue("day", day).set("year", year).run();
+		return this;
+	}
+	
+	/**
+	 * Method getDate.
+	 * @return Map<String,String>
+	 * @see core.examples.composite.interfaces.IYearMonthDayPicker#getDate()
+	 */
+	public Map<String, String> getDate() {
+		return readValues();
+	}
+	
 	/**
 	 * Method goToLink.
 	 * @return T * @see com.stratahealth.test.core.interfaces.ICanLinkToOtherPage#goToLink(Class<T>) */
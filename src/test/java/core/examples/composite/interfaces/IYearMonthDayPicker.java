@@ -23,6 +23,8 @@
 
 package core.examples.composite.interfaces;
 
+import java.util.Map;
+
 import shelob.core.interfaces.elements.IElement;
 import shelob.core.interfaces.elements.IIsComposite;
 import core.examples.element.interfaces.IDropdown;
@@ -52,4 +54,18 @@ public interface IYearMonthDayPicker extends IElement, IIsComposite {
 	 */
 	ITextBox year();
 	
+	/**
+	 * Sets the year, month and day in a single batch
+	 * 
+	 * @param year the year
+	 * @param month the value of the month option
+	 * @param day the value of the day option
+	 * @return this
+	 */
+	IYearMonthDayPicker setDate(String year, String month, String day);
+	
+	/**
+	 * @return the year, month and day values, keyed by "year", "month" and "day"
+	 */
+	Map<String, String> getDate();
 }
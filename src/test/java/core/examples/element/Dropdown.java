@@ -24,7 +24,9 @@
 // $codepro.audit.disable fieldJavadoc
 package core.examples.element;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -34,6 +36,8 @@ import org.openqa.selenium.support.ui.Select;
 import shelob.core.LookUp;
 import shelob.core.elements.Element;
 import shelob.core.elements.ElementBuilder;
+import shelob.core.elements.FusedOperation;
+import shelob.core.interfaces.elements.IFusible;
 import shelob.core.interfaces.elements.ILinkable;
 import shelob.core.interfaces.page.IPage;
 
@@ -46,7 +50,7 @@ import core.examples.element.interfaces.IDropdown;
  * The Dropdown primitive Element
  */
 @NotThreadSafe
-public final class Dropdown extends Element implements IDropdown { // $codepro.audit.disable typeJavadoc
+public final class Dropdown extends Element implements IDropdown, IFusible { // $codepro.audit.disable typeJavadoc
 	
 	/** // $codepro.audit.disable typeJavadoc
 	 * The Dropdown Builder
@@ -127,6 +131,16 @@ public final class Dropdown extends Element implements IDropdown { // $codepro.a
 	private Dropdown(Builder builder) {
 		super(builder.parent, builder.lookup, builder.locator, builder.label, builder.linksTo);
 	}
+	
+	/**
+	 * Method getFusibleOperations.
+	 * @return Set<FusedOperation>
+	 * @see shelob.core.interfaces.elements.IFusible#getFusibleOperations()
+	 */
+	public Set<FusedOperation> getFusibleOperations() {
+		return EnumSet.of(FusedOperation.READ_VALUE, FusedOperation.READ_TEXT, 
+						  FusedOperation.SELECT_BY_VISIBLE_TEXT, FusedOperation.SELECT_BY_VALUE);
+	}
 
 	/**
 	 * Method isMultiple.
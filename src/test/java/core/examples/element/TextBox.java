@@ -24,11 +24,16 @@
 // $codepro.audit.disable fieldJavadoc
 package core.examples.element;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import javax.annotation.concurrent.NotThreadSafe;
 
 import shelob.core.LookUp;
 import shelob.core.elements.Element;
 import shelob.core.elements.ElementBuilder;
+import shelob.core.elements.FusedOperation;
+import shelob.core.interfaces.elements.IFusible;
 import shelob.core.interfaces.page.IPage;
 
 import core.examples.element.interfaces.ITextBox;
@@ -40,7 +45,7 @@ import core.examples.element.interfaces.ITextBox;
  * The TextBox primitive Element
  */
 @NotThreadSafe
-public final class TextBox extends Element implements ITextBox { // $codepro.audit.disable typeJavadoc
+public final class TextBox extends Element implements ITextBox, IFusible { // $codepro.audit.disable typeJavadoc
 
 	/** // $codepro.audit.disable typeJavadoc
 	 * The TextBox Builder
@@ -104,6 +109,15 @@ public final class TextBox extends Element implements ITextBox { // $codepro.aud
 	private TextBox(Builder builder) {
 		super(builder.parent, builder.lookup, builder.locator, builder.label, null);
 	}
+	
+	/**
+	 * Method getFusibleOperations.
+	 * @return Set<FusedOperation>
+	 * @see shelob.core.interfaces.elements.IFusible#getFusibleOperations()
+	 */
+	public Set<FusedOperation> getFusibleOperations() {
+		return EnumSet.of(FusedOperation.READ_VALUE, FusedOperation.SET_VALUE);
+	}
 
 	/**
 	 * Method goToLink.
@@ -0,0 +1,237 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core.fake;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.w3c.dom.Element;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.LookUp;
+import shelob.core.elements.ElementCollection;
+import shelob.core.elements.ElementState;
+import shelob.core.exceptions.NonExistentWebElementException;
+import shelob.core.fake.DomFixture;
+import shelob.core.interfaces.elements.IElement;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.GridCell;
+import core.examples.element.Label;
+
+public class DomFixtureTests {
+
+	private static final String SNAPSHOT = "/fixtures/login.html";
+	
+	private DomFixture fixture;
+	private LoginPage page;
+	
+	static class LoginPage extends StandardNavigationPage {
+
+		LoginPage(ApplicationParameters parameters) {
+			super(parameters, "Login");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				final IElement row = new Label.Builder(this, LookUp.ByXpath, "//table[@id='sessions']//tr[td[1][.='%s']]").label("Session Row").isTemplate().build();
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "email").label("By Id").build())
+											.put(new Label.Builder(this, LookUp.ByName, "password").label("By Name").build())
+											.put(new Label.Builder(this, LookUp.ByClassName, "banner").label("By Class Name").build())
+											.put(new Label.Builder(this, LookUp.ByCSSSelector, "form#login input[type=checkbox]:checked").label("By CSS").build())
+											.put(new Label.Builder(this, LookUp.ByLinkText, "Help & Support").label("By Link Text").build())
+											.put(new Label.Builder(this, LookUp.ByPartialLinkText, "Home").label("By Partial Link Text").build())
+											.put(new Label.Builder(this, LookUp.ByTagName, "select").label("By Tag Name").build())
+											.put(new Label.Builder(this, LookUp.ByXpath, "//input[@value='Sign In']").label("By Xpath").build())
+											.put(row)
+											.put(new GridCell.Builder(this, LookUp.ByXpath, "/td[2]").label("Session Status").build().setRelativeToParent(row))
+											.put(new Label.Builder(this, LookUp.ByCSSSelector, "input[").label("Invalid").build())
+											.put(new Label.Builder(this, LookUp.ById, "nowhere").label("Missing").build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		fixture = DomFixture.fromResource(SNAPSHOT);
+		page = new LoginPage(fixture.createParameters());
+	}
+	
+	@Test
+	public void everyLookUpStrategyResolves() {
+		
+		assertThat(id("By Id"), is("email"));
+		assertThat(id("By Name"), is("password"));
+		assertThat(id("By Class Name"), is("header"));
+		assertThat(id("By CSS"), is("remember"));
+		assertThat(fixture.resolve(page.find("By Link Text")).get(0).getAttribute("href"), is("/help"));
+		assertThat(id("By Partial Link Text"), is("home-link"));
+		assertThat(id("By Tag Name"), is("language"));
+		assertThat(id("By Xpath"), is("submit"));
+	}
+	
+	@Test
+	public void elementsBehaveAsAgainstABrowser() {
+		
+		assertThat(page.getDriver().getTitle(), is("Login"));
+		assertThat(page.find("By Link Text").getText(), is("Help & Support"));
+		assertThat(page.find("By CSS").isSelected(), is(true));
+		assertThat(page.find("By Xpath").isEnabled(), is(false));
+		assertThat(page.find("Missing").isValid(), is(false));
+	}
+	
+	@Test
+	public void templatesAndRelativeElementsResolve() {
+		
+		page.find("Session Row", "Tuesday");
+		assertThat(page.find("Session Status").getText(), is("Closed"));
+		
+		page.find("Session Row", "Wednesday");
+		assertThat(page.find("Session Status").getText(), is("Open"));
+	}
+	
+	@Test
+	public void cssSelectorsAreEvaluated() {
+		
+		assertThat(count("input.field.required"), is(2));
+		assertThat(count("#login > p"), is(1));
+		assertThat(count("label + input"), is(2));
+		assertThat(count("label ~ select"), is(1));
+		assertThat(count("tr:nth-child(odd) td:first-child"), is(2));
+		assertThat(count("tr:last-child > td:last-child"), is(1));
+		assertThat(count("li[data-kind|=external]"), is(1));
+		assertThat(count("a[href^='/'], a[href$=\".pdf\"]"), is(4));
+		assertThat(count("a[href*=example]"), is(1));
+		assertThat(count("div[class~=top]"), is(1));
+		assertThat(count("a[href^=''], a[href$=\"\"], a[href*='']"), is(0));
+		assertThat(count("div[class~=''], div[class~='top banner']"), is(0));
+		assertThat(count("input:not([type=text]):not(:disabled)"), is(2));
+		assertThat(count("option:checked"), is(1));
+		assertThat(count("li:nth-child(-n+2)"), is(2));
+		assertThat(count("*"), is(fixture.getDocument().getAllElements().size()));
+	}
+	
+	@Test
+	public void snapshotsReadStateInOneCommand() {
+		
+		fixture.getExecutor().resetCommandCounts();
+		
+		final ElementState state = page.find("By Xpath").snapshot(new ElementState.Query().attributes("type", "disabled", "title").cssValues("display"));
+		
+		assertThat(state.getTagName(), is("input"));
+		assertThat(state.getValue(), is("Sign In"));
+		assertThat(state.isDisplayed(), is(true));
+		assertThat(state.isEnabled(), is(false));
+		assertThat(state.isSelected(), is(false));
+		assertThat(state.getAttribute("type"), is("submit"));
+		assertThat(state.getAttribute("disabled"), is("true"));
+		assertThat(state.getAttribute("title"), is(nullValue()));
+		assertThat(state.getCssValues().containsKey("display"), is(true));
+		assertThat(fixture.getExecutor().getCommandCounts().size(), is(1));
+		assertThat(fixture.getExecutor().getCommandCount("executeScript"), is(1L));
+		
+		assertThat(page.find("By CSS").snapshot().isSelected(), is(true));
+		
+		page.find("Session Row", "Tuesday");
+		assertThat(page.find("Session Status").snapshotWhenVisible().getText(), is("Closed"));
+		
+		try {
+			page.find("Missing").snapshot();
+			fail("A missing element has no state");
+		} catch (NonExistentWebElementException e) {
+			// expected
+		}
+	}
+	
+	@Test(expected = NonExistentWebElementException.class)
+	public void invalidSelectorsAreReported() {
+		page.find("Invalid").getWebElements();
+	}
+	
+	@Test
+	public void forkedFixturesResolveInParallel() throws Exception {
+		
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		
+		try {
+			
+			for (int i = 0; i < 8; i++) {
+				
+				final DomFixture fork = fixture.fork();
+				
+				results.add(pool.submit(new Callable<Integer>() {
+					
+					public Integer call() {
+						
+						final LoginPage p = new LoginPage(fork.createParameters());
+						int resolved = 0;
+						
+						for (int j = 0; j < 50; j++) {
+							
+							if (p.find("By CSS").isValid() && p.find("By Xpath").isValid())
+								resolved++;
+						}
+						
+						return resolved;
+					}
+				}));
+			}
+			
+			for (Future<Integer> result : results)
+				assertThat(result.get(), is(50));
+			
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	private String id(String label) {
+		
+		final List<Element> resolved = fixture.resolve(page.find(label));
+		assertThat(resolved.size(), is(1));
+		return resolved.get(0).getAttribute("id");
+	}
+	
+	private int count(String selector) {
+		return fixture.getDriver().findElements(By.cssSelector(selector)).size();
+	}
+}
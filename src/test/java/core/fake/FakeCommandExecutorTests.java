@@ -0,0 +1,280 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core.fake;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.ElementNotVisibleException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.w3c.dom.Element;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.fake.FakeCommandExecutor;
+import shelob.core.fake.FakeDocument;
+import shelob.core.fake.InjectedFailure;
+import shelob.core.fake.LatencyDistribution;
+import shelob.core.interfaces.IScriptHandler;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.Button;
+import core.examples.element.Label;
+
+public class FakeCommandExecutorTests {
+
+	private static final String PAGE_NAME = "Fake Page";
+	private static final String GREETING = "Greeting";
+	private static final String SAVE = "Save";
+	private static final String HIDDEN = "Hidden";
+	
+	private static final String MARKUP = 
+			"<html><head><title>Fake Page</title></head><body>" +
+			"<span id='greeting'>Hello <b>World</b></span>" +
+			"<input type='button' value='Save' id='save'/>" +
+			"<div style='display: none'><span id='hidden'>Hidden</span></div>" +
+			"<a id='next' href='next'>Next</a>" +
+			"<input type='checkbox' id='agree'/>" +
+			"</body></html>";
+	
+	private FakeCommandExecutor executor;
+	private RemoteWebDriver driver;
+	private ApplicationURL url;
+	private TestPage page;
+	
+	static class TestPage extends StandardNavigationPage {
+
+		TestPage(ApplicationParameters parameters) {
+			super(parameters, PAGE_NAME);
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "greeting").label(GREETING).build())
+											.put(new Button.Builder(this, LookUp.ById, "save").label(SAVE).build())
+											.put(new Label.Builder(this, LookUp.ById, "hidden").label(HIDDEN).build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() {
+		
+		url = new ApplicationURL("localhost", "cgi-bin", "app");
+		executor = new FakeCommandExecutor(42L).route(url.getURL(), MARKUP)
+											   .route("http://localhost/cgi-bin/next", "<html><head><title>Next</title></head><body/></html>");
+		driver = executor.createDriver();
+		
+		page = new TestPage(new ApplicationParameters(driver, url, new User.Builder("noone@test.com", "password").build()));
+		page.goTo();
+	}
+	
+	@Test
+	public void elementsResolveAgainstTheDocument() {
+		
+		assertThat(driver.getTitle(), is(PAGE_NAME));
+		assertThat(page.find(GREETING).getText(), is("Hello World"));
+		assertThat(page.find(SAVE).getAttribute("value"), is("Save"));
+		assertThat(page.find(SAVE).getTagName(), is("input"));
+		assertThat(page.find(HIDDEN).isDisplayed(), is(false));
+		assertThat(driver.findElements(By.tagName("span")).size(), is(2));
+		assertThat(driver.findElement(By.linkText("Next")).getAttribute("href"), is("next"));
+	}
+	
+	@Test
+	public void interactionsUpdateTheDocument() {
+		
+		final WebElement agree = driver.findElement(By.id("agree"));
+		assertThat(agree.isSelected(), is(false));
+		agree.click();
+		assertThat(agree.isSelected(), is(true));
+		
+		try {
+			page.find(HIDDEN).getWebElement().click();
+			fail();
+		} catch (ElementNotVisibleException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void navigationMakesElementsStale() {
+		
+		final WebElement greeting = driver.findElement(By.id("greeting"));
+		driver.findElement(By.partialLinkText("Ne")).click();
+		
+		assertThat(driver.getTitle(), is("Next"));
+		assertThat(driver.getCurrentUrl(), is("http://localhost/cgi-bin/next"));
+		
+		try {
+			greeting.getText();
+			fail();
+		} catch (StaleElementReferenceException e) {
+			// expected
+		}
+		
+		driver.navigate().back();
+		assertThat(driver.getTitle(), is(PAGE_NAME));
+	}
+	
+	@Test
+	public void navigationReleasesElementReferences() {
+		
+		driver.findElement(By.id("greeting"));
+		driver.findElement(By.id("save"));
+		assertThat(executor.getElementCount() >= 2, is(true));
+		
+		driver.get(driver.getCurrentUrl());
+		assertThat(executor.getElementCount(), is(0));
+		
+		driver.findElement(By.id("greeting"));
+		assertThat(executor.getElementCount(), is(1));
+	}
+	
+	@Test
+	public void latencyIsDeterministicForASeed() {
+		
+		final LatencyDistribution distribution = LatencyDistribution.normal(10, 5, TimeUnit.MILLISECONDS);
+		
+		final java.util.Random first = new java.util.Random(7L);
+		final java.util.Random second = new java.util.Random(7L);
+		
+		for (int i = 0; i < 100; i++) {
+			
+			final long sample = distribution.sampleNanos(first);
+			assertThat(sample, is(distribution.sampleNanos(second)));
+			assertThat(sample >= 0, is(true));
+		}
+		
+		executor.setLatency(DriverCommand.GET_TITLE, LatencyDistribution.fixed(20, TimeUnit.MILLISECONDS));
+		
+		final long start = System.nanoTime();
+		driver.getTitle();
+		assertThat(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20), is(true));
+	}
+	
+	@Test
+	public void injectedNotClickableFailuresAreRetried() {
+		
+		executor.injectFailure(DriverCommand.CLICK_ELEMENT, InjectedFailure.NOT_CLICKABLE, 2);
+		page.find(SAVE).click();
+		
+		// the two injected failures and the successful retry
+		assertThat(executor.getCommandCount(DriverCommand.CLICK_ELEMENT), is(3L));
+	}
+	
+	@Test
+	public void injectedFailuresSurfaceAsWebDriverExceptions() {
+		
+		executor.injectFailure(DriverCommand.GET_ELEMENT_TEXT, InjectedFailure.STALE_ELEMENT, 1)
+				.injectFailure(DriverCommand.GET_TITLE, InjectedFailure.TIMEOUT, 1);
+		
+		final WebElement greeting = driver.findElement(By.id("greeting"));
+		
+		try {
+			greeting.getText();
+			fail();
+		} catch (StaleElementReferenceException e) {
+			assertThat(greeting.getText(), is("Hello World"));
+		}
+		
+		try {
+			driver.getTitle();
+			fail();
+		} catch (WebDriverException e) {
+			assertThat(e.getMessage().startsWith(InjectedFailure.TIMEOUT.getMessage()), is(true));
+			assertThat(driver.getTitle(), is(PAGE_NAME));
+		}
+	}
+	
+	@Test
+	public void probabilisticFailuresAreRepeatable() {
+		
+		assertThat(countFailures(new FakeCommandExecutor(3L)), is(countFailures(new FakeCommandExecutor(3L))));
+	}
+	
+	@Test
+	public void scriptsAreAnsweredByHandlers() {
+		
+		executor.onScript("getElementById", new IScriptHandler() {
+			
+			public Object execute(FakeDocument document, String script, List<Object> arguments) {
+				return document.findByXpath("//*[@id='" + arguments.get(0) + "']").get(0);
+			}
+		});
+		
+		final Object result = driver.executeScript("return document.getElementById(arguments[0]);", "greeting");
+		
+		assertThat(result instanceof WebElement, is(true));
+		assertThat(((WebElement) result).getText(), is("Hello World"));
+		assertThat(driver.executeScript("window.scrollTo(0, 0);"), is(nullValue()));
+	}
+	
+	@Test
+	public void documentIsExposedForAssertions() {
+		
+		driver.findElement(By.id("agree")).click();
+		
+		final Element agree = executor.getDocument().findByXpath("//input[@id='agree']").get(0);
+		assertThat(agree.getAttribute("checked"), is("checked"));
+	}
+	
+	private int countFailures(FakeCommandExecutor fake) {
+		
+		final RemoteWebDriver d = fake.route(url.getURL(), MARKUP).createDriver();
+		fake.injectFailure(DriverCommand.GET_TITLE, InjectedFailure.TIMEOUT, 0.5);
+		
+		int failures = 0;
+		
+		for (int i = 0; i < 50; i++) {
+			
+			try {
+				d.getTitle();
+			} catch (WebDriverException e) {
+				failures++;
+			}
+		}
+		
+		return failures;
+	}
+}
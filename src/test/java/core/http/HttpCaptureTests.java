@@ -0,0 +1,410 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.http;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.browsers.CapabilityProfile;
+import shelob.core.browsers.HtmlUnit;
+import shelob.core.elements.ElementCollection;
+import shelob.core.http.HttpCapture;
+import shelob.core.http.HttpScript;
+import shelob.core.http.ResourceProxy;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.interfaces.page.ILightweightCompatible;
+import shelob.core.page.Page;
+import shelob.core.trace.OperationOutcome;
+import shelob.core.trace.OperationType;
+
+import core.examples.element.Button;
+import core.examples.element.Label;
+import core.examples.element.TextBox;
+import core.examples.element.interfaces.IButton;
+import core.examples.element.interfaces.ITextBox;
+
+public class HttpCaptureTests {
+
+	private static final User ALICE = new User.Builder("alice@example.com", "s3cret!").build();
+	
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	
+	private HttpServer server;
+	private ResourceProxy proxy;
+	private RemoteWebDriver driver;
+	private ApplicationURL url;
+	private HttpCapture capture;
+	
+	static class LoginPage extends Page implements ILightweightCompatible {
+
+		private final OrdersPage orders;
+		
+		LoginPage(ApplicationParameters parameters) {
+			super(parameters, "Sign In");
+			orders = new OrdersPage(parameters);
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new TextBox.Builder(this, LookUp.ById, "email").label("Email").build())
+											.put(new TextBox.Builder(this, LookUp.ById, "password").label("Password").build())
+											.put(new Button.Builder(this, LookUp.ById, "signIn").label("Sign In").linksTo(orders).build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	static class OrdersPage extends Page implements ILightweightCompatible {
+
+		private final OrderPage order;
+		
+		OrdersPage(ApplicationParameters parameters) {
+			super(parameters, "Orders");
+			order = new OrderPage(parameters);
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create().put(new Button.Builder(this, LookUp.ById, "order-%s").label("Order").isTemplate().linksTo(order).build());
+			
+			return elements;
+		}
+	}
+	
+	static class OrderPage extends Page implements ILightweightCompatible {
+
+		OrderPage(ApplicationParameters parameters) {
+			super(parameters, "Order");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create().put(new Label.Builder(this, LookUp.ById, "number").label("Number").build());
+			
+			return elements;
+		}
+	}
+	
+	/**
+	 * Signs in with the form, keeps the session in a cookie and lists two orders
+	 */
+	static class Shop implements HttpHandler {
+		
+		public void handle(HttpExchange exchange) throws IOException {
+			
+			final String path = exchange.getRequestURI().getPath();
+			final String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+			
+			if ("POST".equals(exchange.getRequestMethod())) {
+				
+				final Map<String, String> form = form(CharStreams.toString(new InputStreamReader(exchange.getRequestBody(), Charsets.UTF_8)));
+				
+				if (form.get("password").equals(form.get("email").startsWith("alice") ? "s3cret!" : "0ther!")) {
+					
+					exchange.getResponseHeaders().add("Set-Cookie", "SID=" + form.get("email").replace('@', '-') + "; Path=/");
+					exchange.getResponseHeaders().add("Location", "/app/orders");
+					exchange.sendResponseHeaders(302, -1);
+				} else
+					exchange.sendResponseHeaders(401, -1);
+				
+				exchange.close();
+				return;
+			}
+			
+			if (! path.equals("/app/login") && (cookie == null || ! cookie.contains("SID="))) {
+				exchange.sendResponseHeaders(403, -1);
+				exchange.close();
+				return;
+			}
+			
+			final String body;
+			
+			if (path.equals("/app/login")) {
+				body = "<html><head><title>Sign In</title></head><body><form method='post' action='/app/session'>" + 
+					   "<input type='text' id='email' name='email'/><input type='password' id='password' name='password'/>" + 
+					   "<input type='submit' id='signIn' value='Sign In'/></form></body></html>";
+			} else if (path.equals("/app/orders")) {
+				body = "<html><head><title>Orders</title></head><body>" + 
+					   "<a id='order-1001' href='/app/orders/1001?from=orders'>1001</a> <a id='order-1002' href='/app/orders/1002?from=orders'>1002</a>" + 
+					   " <a id='order-9' href='/app/orders/9?from=orders'>9</a>" + 
+					   "</body></html>";
+			} else
+				body = "<html><head><title>Order</title></head><body><span id='number'>" + path.substring(path.lastIndexOf('/') + 1) + "</span></body></html>";
+			
+			final byte[] bytes = body.getBytes(Charsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+			exchange.sendResponseHeaders(200, bytes.length);
+			
+			final OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		}
+		
+		static Map<String, String> form(String body) throws IOException {
+			
+			final Map<String, String> form = new HashMap<String, String>();
+			
+			for (String pair : body.split("&")) {
+				
+				final String[] parts = pair.split("=", 2);
+				form.put(URLDecoder.decode(parts[0], "UTF-8"), parts.length == 1 ? "" : URLDecoder.decode(parts[1], "UTF-8"));
+			}
+			
+			return form;
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/app/", new Shop());
+		server.start();
+		
+		url = new ApplicationURL("localhost", server.getAddress().getPort(), "app", "login");
+		capture = new HttpCapture(url, ALICE);
+		proxy = new ResourceProxy.Builder().capture(capture).build().start();
+		driver = HtmlUnit.getDriver(false, new CapabilityProfile.Builder("capture").proxy(proxy).build());
+	}
+	
+	@After
+	public void teardown() throws Exception {
+		
+		driver.quit();
+		proxy.close();
+		server.stop(0);
+	}
+	
+	private void placeOrder() {
+		placeOrder("1002");
+	}
+	
+	private OrdersPage placeOrder(String number) {
+		
+		final ApplicationParameters parameters = new ApplicationParameters(driver, url, ALICE).setOperationListener(capture);
+		final LoginPage login = new LoginPage(parameters);
+		
+		login.goTo();
+		login.find(ITextBox.class, "Email").type(parameters.getUser().getEmail());
+		login.find(ITextBox.class, "Password").type(parameters.getUser().getPassword());
+		
+		final OrdersPage orders = login.find(IButton.class, "Sign In").goToLink(OrdersPage.class);
+		final OrderPage order = orders.find(IButton.class, "Order", number).goToLink(OrderPage.class);
+		
+		assertThat(order.find(Label.class, "Number").getWebElement().getText(), is(number));
+		return orders;
+	}
+	
+	@Test
+	public void theRequestsOfAPageFlowAreRecordedAndParameterized() {
+		
+		placeOrder();
+		
+		final HttpScript script = capture.toScript();
+		final List<HttpScript.Request> requests = script.getRequests();
+		
+		assertThat(requests.size(), is(4));
+		assertThat(script.getParameters().contains(HttpCapture.BASE), is(true));
+		assertThat(script.getParameters().contains(HttpCapture.USER_EMAIL), is(true));
+		assertThat(script.getParameters().contains(HttpCapture.USER_PASSWORD), is(true));
+		assertThat(script.getParameters().contains("Order"), is(true));
+		
+		assertThat(requests.get(0).getMethod() + " " + requests.get(0).getUrl(), is("GET ${base}/app/login"));
+		assertThat(requests.get(0).getStep(), is("goTo Sign In"));
+		
+		// the form post, answered with a redirect which the browser followed
+		assertThat(requests.get(1).getMethod() + " " + requests.get(1).getUrl(), is("POST ${base}/app/session"));
+		assertThat(requests.get(1).getBody(), is("email=${user.email|url}&password=${user.password|url}"));
+		assertThat(requests.get(1).getStatus(), is(302));
+		assertThat(requests.get(1).getStep(), is("goToLink Sign In : Sign In"));
+		assertThat(requests.get(2).getUrl(), is("${base}/app/orders"));
+		
+		// the identifier the template element was found with, and nothing else
+		assertThat(requests.get(3).getUrl(), is("${base}/app/orders/${Order}?from=orders"));
+		assertThat(requests.get(3).getStep(), is("goToLink Orders : Order"));
+		assertThat(script.getDefaults().get("Order"), is("1002"));
+		
+		// the session is left to the replay
+		for (HttpScript.Request request : requests) {
+			assertThat(request.getHeaders().containsKey("Cookie"), is(false));
+			assertThat(request.getHeaders().containsKey("Host"), is(false));
+		}
+		
+		// no credentials are kept with the script
+		assertThat(script.toJson().contains("alice"), is(false));
+		assertThat(script.toJson().contains("s3cret"), is(false));
+	}
+	
+	@Test
+	public void scriptsAreResolvedWithOtherValues() throws Exception {
+		
+		placeOrder();
+		
+		final File file = new File(folder.getRoot(), "order.json");
+		capture.toScript().write(file);
+		
+		final HttpScript script = HttpScript.read(file);
+		final Map<String, String> values = new HashMap<String, String>(script.getDefaults());
+		values.put(HttpCapture.USER_EMAIL, "bob+1@example.com");
+		values.put(HttpCapture.USER_PASSWORD, "p&ss");
+		values.put("Order", "7");
+		
+		assertThat(script.getRequests().size(), is(4));
+		assertThat(new String(script.getRequests().get(1).resolveBody(values), Charsets.UTF_8), is("email=bob%2B1%40example.com&password=p%26ss"));
+		assertThat(script.getRequests().get(3).resolveUrl(values), is(url.getURL().replace("/app/login", "/app/orders/7?from=orders")));
+		
+		// literal ${ survive the round trip
+		final HttpScript literal = HttpScript.fromJson(new HttpScript(Collections.singletonList(
+				new HttpScript.Request("step", "POST", "${base}/x", new HashMap<String, String>(), "{\"a\":\"$${b}\"}", 200)), values).toJson());
+		assertThat(new String(literal.getRequests().get(0).resolveBody(values), Charsets.UTF_8), is("{\"a\":\"${b}\"}"));
+	}
+	
+	@Test
+	public void shortIdentifiersAreOnlyReplacedWhereTheyWereUsed() {
+		
+		final Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Accept", "text/html;q=0.9,*/*;q=0.8");
+		headers.put("User-Agent", "Agent/9.0");
+		
+		// before the flow, by no operation which used the identifier
+		capture.exchanged("GET", url.getURL() + "?page=9", headers, new byte[0], 200, System.nanoTime());
+		
+		final OrdersPage orders = placeOrder("9");
+		final IButton order = orders.find(IButton.class, "Order", "9");
+		
+		// a request of another operation using the identifier, with headers
+		capture.operationStarted(OperationType.ACTION, "click", orders, order);
+		capture.exchanged("GET", url.getURL().replace("/app/login", "/app/orders/9/lines"), headers, new byte[0], 200, System.nanoTime());
+		capture.operationCompleted(OperationType.ACTION, "click", orders, order, 0, 0, OperationOutcome.SUCCESS);
+		
+		final HttpScript script = capture.toScript();
+		final List<HttpScript.Request> requests = script.getRequests();
+		
+		assertThat(requests.size(), is(6));
+		assertThat(requests.get(0).getUrl(), is("${base}/app/login?page=9"));
+		assertThat(requests.get(4).getUrl(), is("${base}/app/orders/${Order}?from=orders"));
+		assertThat(requests.get(5).getUrl(), is("${base}/app/orders/${Order}/lines"));
+		assertThat(script.getDefaults().get("Order"), is("9"));
+		
+		// header values hold short numbers of their own
+		assertThat(requests.get(5).getHeaders().get("Accept"), is("text/html;q=0.9,*/*;q=0.8"));
+		assertThat(requests.get(5).getHeaders().get("User-Agent"), is("Agent/9.0"));
+		
+		for (HttpScript.Request request : requests) {
+			
+			for (String value : request.getHeaders().values())
+				assertThat(value, value.contains("${Order"), is(false));
+		}
+	}
+	
+	@Test
+	public void requestsAreLabelledWithTheOperationRunningWhenTheyArrived() throws InterruptedException {
+		
+		final OrdersPage orders = placeOrder("9");
+		final IButton order = orders.find(IButton.class, "Order", "9");
+		final String lines = url.getURL().replace("/app/login", "/app/orders/9/lines");
+		capture.clear();
+		
+		capture.operationStarted(OperationType.ACTION, "click", orders, order);
+		final long clicking = System.nanoTime();
+		capture.operationCompleted(OperationType.ACTION, "click", orders, order, 0, 0, OperationOutcome.SUCCESS);
+		
+		// an operation of an AsyncElement, still running on another thread as the flow goes on
+		final Thread async = new Thread(new Runnable() {
+			public void run() {
+				capture.operationStarted(OperationType.WAIT, "waitUntilVisible", orders, null);
+			}
+		});
+		async.start();
+		async.join();
+		
+		capture.operationStarted(OperationType.ACTION, "goTo", orders, null);
+		final long going = System.nanoTime();
+		capture.operationCompleted(OperationType.ACTION, "goTo", orders, null, 0, 0, OperationOutcome.SUCCESS);
+		
+		// passed on by the proxy after the operations which followed had started
+		capture.exchanged("GET", lines, new HashMap<String, String>(), new byte[0], 200, going);
+		capture.exchanged("GET", lines, new HashMap<String, String>(), new byte[0], 200, clicking);
+		
+		final List<HttpScript.Request> requests = capture.toScript().getRequests();
+		
+		assertThat(requests.size(), is(2));
+		assertThat(requests.get(0).getStep(), is("click " + orders.getPageTitle() + " : Order"));
+		assertThat(requests.get(0).getUrl(), is("${base}/app/orders/${Order}/lines"));
+		assertThat(requests.get(1).getStep(), is("goTo " + orders.getPageTitle()));
+		assertThat(requests.get(1).getUrl(), is("${base}/app/orders/9/lines"));
+	}
+	
+	@Test
+	public void excludedAndForeignRequestsAreNotRecorded() {
+		
+		capture.exclude(".*/orders/.*");
+		capture.exchanged("GET", "http://analytics.example.com/collect", new HashMap<String, String>(), new byte[0], 200, System.nanoTime());
+		
+		placeOrder();
+		
+		final HttpScript script = capture.toScript();
+		
+		assertThat(script.getRequests().size(), is(3));
+		assertThat(script.getParameters().contains("Order"), is(false));
+		
+		capture.clear();
+		assertThat(capture.size(), is(0));
+	}
+}
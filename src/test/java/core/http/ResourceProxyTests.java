@@ -0,0 +1,309 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.http;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.remote.CapabilityType;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import shelob.core.browsers.CapabilityProfile;
+import shelob.core.browsers.Chrome;
+import shelob.core.http.ResourceProxy;
+import shelob.core.http.ResourceTiming;
+
+public class ResourceProxyTests {
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	
+	private HttpServer server;
+	private ResourceProxy proxy;
+	private String origin;
+	private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<String, AtomicInteger>();
+	
+	@Before
+	public void setup() throws Exception {
+		
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				
+				final String path = exchange.getRequestURI().getPath();
+				hits.putIfAbsent(path, new AtomicInteger());
+				hits.get(path).incrementAndGet();
+				
+				if (path.endsWith(".css"))
+					exchange.getResponseHeaders().add("Content-Type", "text/css");
+				else
+					exchange.getResponseHeaders().add("Content-Type", "text/html");
+				
+				if (path.startsWith("/private"))
+					exchange.getResponseHeaders().add("Set-Cookie", "JSESSIONID=abc123");
+				
+				if (path.startsWith("/echo")) {
+					
+					// chunked, as the length is not given
+					final byte[] echo = (exchange.getRequestMethod() + " " + exchange.getRequestHeaders().getFirst("Origin") + " " 
+							+ exchange.getRequestHeaders().getFirst("Access-Control-Request-Method") + " " 
+							+ new String(ByteStreams.toByteArray(exchange.getRequestBody()), Charsets.UTF_8)).getBytes(Charsets.UTF_8);
+					exchange.sendResponseHeaders(200, 0);
+					
+					final OutputStream out = exchange.getResponseBody();
+					out.write(echo);
+					out.close();
+					return;
+				}
+				
+				if (path.startsWith("/varied")) {
+					exchange.getResponseHeaders().add("Vary", "Accept-Language");
+					exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				}
+				
+				final String language = path.startsWith("/varied") ? " in " + exchange.getRequestHeaders().getFirst("Accept-Language") : "";
+				final byte[] body = ("content of " + path + language).getBytes(Charsets.UTF_8);
+				
+				if ("HEAD".equals(exchange.getRequestMethod())) {
+					exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+					exchange.sendResponseHeaders(200, -1);
+					exchange.close();
+					return;
+				}
+				
+				exchange.sendResponseHeaders(200, body.length);
+				
+				final OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+		
+		origin = "http://localhost:" + server.getAddress().getPort();
+		
+		proxy = new ResourceProxy.Builder()
+									.block(".*/analytics/.*")
+									.stub(ResourceProxy.FONTS, "font/woff", new byte[0])
+									.cache(ResourceProxy.STATIC_ASSETS)
+									.build().start();
+	}
+	
+	@After
+	public void teardown() throws IOException {
+		proxy.close();
+		server.stop(0);
+	}
+	
+	private String get(String path) throws IOException {
+		
+		final HttpURLConnection connection = (HttpURLConnection) new URL(origin + path).openConnection(
+				new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", proxy.getPort())));
+		
+		if (connection.getResponseCode() == 204)
+			return null;
+		
+		final InputStream in = connection.getInputStream();
+		
+		try {
+			return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+	
+	private String send(String request) throws IOException {
+		
+		final Socket socket = new Socket("127.0.0.1", proxy.getPort());
+		
+		try {
+			socket.getOutputStream().write(request.getBytes(Charsets.ISO_8859_1));
+			return new String(ByteStreams.toByteArray(socket.getInputStream()), Charsets.ISO_8859_1);
+		} finally {
+			socket.close();
+		}
+	}
+	
+	private int hits(String path) {
+		return hits.containsKey(path) ? hits.get(path).get() : 0;
+	}
+	
+	@Test
+	public void resourcesAreBlockedAndStubbed() throws IOException {
+		
+		assertThat(get("/app/page"), is("content of /app/page"));
+		assertThat(get("/analytics/collect?event=view"), is(nullValue()));
+		assertThat(get("/fonts/roboto.woff2"), is(""));
+		
+		// neither reached the server
+		assertThat(hits("/analytics/collect"), is(0));
+		assertThat(hits("/fonts/roboto.woff2"), is(0));
+		
+		final List<ResourceTiming> timings = proxy.drainTimings();
+		
+		assertThat(timings.size(), is(3));
+		assertThat(timings.get(0).getSource(), is(ResourceTiming.Source.NETWORK));
+		assertThat(timings.get(1).getSource(), is(ResourceTiming.Source.BLOCKED));
+		assertThat(timings.get(2).getSource(), is(ResourceTiming.Source.STUBBED));
+		assertThat(proxy.getTimings().isEmpty(), is(true));
+	}
+	
+	@Test
+	public void staticAssetsAreServedFromTheCache() throws IOException {
+		
+		for (int session = 0; session < 3; session++) {
+			assertThat(get("/app/style.css?v=2"), is("content of /app/style.css"));
+			assertThat(get("/app/page"), is("content of /app/page"));
+			assertThat(get("/private/theme.css"), is("content of /private/theme.css"));
+		}
+		
+		assertThat(hits("/app/style.css"), is(1));
+		assertThat(hits("/app/page"), is(3));
+		
+		// responses setting cookies are never cached
+		assertThat(hits("/private/theme.css"), is(3));
+		assertThat(proxy.getCacheBytes(), is((long) "content of /app/style.css".length()));
+		
+		final File report = folder.newFile("resources.csv");
+		proxy.writeReport(report);
+		
+		final List<String> rows = Files.readLines(report, Charsets.UTF_8);
+		assertThat(rows.size(), is(10));
+		assertThat(rows.get(0), is("start,method,url,status,source,bytes,milliseconds"));
+	}
+	
+	@Test
+	public void variedResponsesAreCachedForEachValue() throws IOException {
+		
+		final String english = "GET " + origin + "/varied/app.js HTTP/1.1\r\nHost: localhost\r\nAccept-Language: en\r\nConnection: close\r\n";
+		final String french = "GET " + origin + "/varied/app.js HTTP/1.1\r\nHost: localhost\r\nAccept-Language: fr\r\nConnection: close\r\n";
+		
+		assertThat(send(english + "\r\n").endsWith("content of /varied/app.js in en"), is(true));
+		assertThat(send(french + "\r\n").endsWith("content of /varied/app.js in fr"), is(true));
+		assertThat(send(english + "\r\n").endsWith("content of /varied/app.js in en"), is(true));
+		assertThat(send(french + "\r\n").endsWith("content of /varied/app.js in fr"), is(true));
+		assertThat(hits("/varied/app.js"), is(2));
+		
+		// a browser which already has the cached response is told it has not changed
+		final String revalidated = send(english + "If-None-Match: W/\"v1\"\r\n\r\n");
+		
+		assertThat(revalidated.startsWith("HTTP/1.1 304"), is(true));
+		assertThat(revalidated.toLowerCase(Locale.ENGLISH).contains("etag: \"v1\""), is(true));
+		assertThat(revalidated.endsWith("\r\n\r\n"), is(true));
+		assertThat(send(english + "If-None-Match: \"v0\"\r\n\r\n").startsWith("HTTP/1.1 200"), is(true));
+		assertThat(hits("/varied/app.js"), is(2));
+	}
+	
+	@Test
+	public void timingsAreBounded() throws IOException {
+		
+		proxy.close();
+		proxy = new ResourceProxy.Builder().cache(ResourceProxy.STATIC_ASSETS).maxTimings(2).build().start();
+		
+		// buffered, so each is recorded before it is answered
+		get("/app/first.css");
+		get("/app/second.css");
+		get("/app/third.css");
+		
+		final List<ResourceTiming> timings = proxy.getTimings();
+		
+		// the oldest are dropped
+		assertThat(timings.size(), is(2));
+		assertThat(timings.get(0).getUrl(), is(origin + "/app/second.css"));
+		assertThat(timings.get(1).getUrl(), is(origin + "/app/third.css"));
+		assertThat(proxy.getDroppedTimings(), is(1L));
+		
+		proxy.drainTimings();
+		assertThat(proxy.getDroppedTimings(), is(0L));
+	}
+	
+	@Test
+	public void requestsArePassedOnAsTheBrowserSentThem() throws IOException {
+		
+		final String response = send("PATCH " + origin + "/echo HTTP/1.1\r\nHost: localhost\r\nOrigin: http://app.local\r\n" 
+				+ "Access-Control-Request-Method: PATCH\r\nContent-Length: 11\r\nConnection: close\r\n\r\nquantity=12");
+		
+		assertThat(response.startsWith("HTTP/1.1 200"), is(true));
+		assertThat(response.contains("Transfer-Encoding: chunked"), is(true));
+		assertThat(response.contains("PATCH http://app.local PATCH quantity=12"), is(true));
+		assertThat(hits("/echo"), is(1));
+		
+		// the streamed response is unchunked by the client as it arrives
+		final HttpURLConnection connection = (HttpURLConnection) new URL(origin + "/echo").openConnection(
+				new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", proxy.getPort())));
+		
+		assertThat(new String(ByteStreams.toByteArray(connection.getInputStream()), Charsets.UTF_8), is("GET null null "));
+	}
+	
+	@Test
+	public void headResponsesKeepTheirLength() throws IOException {
+		
+		final String response = send("HEAD " + origin + "/app/page HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+		
+		assertThat(response.startsWith("HTTP/1.1 200"), is(true));
+		assertThat(response.contains("Content-Length: " + "content of /app/page".length()), is(true));
+		assertThat(response.endsWith("\r\n\r\n"), is(true));
+		
+		// and the connection to the server is kept for the next request
+		assertThat(get("/app/page"), is("content of /app/page"));
+		assertThat(hits("/app/page"), is(2));
+	}
+	
+	@Test
+	public void profilesConnectThroughTheProxy() {
+		
+		final CapabilityProfile profile = new CapabilityProfile.Builder(CapabilityProfile.FAST_STARTUP, "proxied").proxy(proxy).build();
+		final org.openqa.selenium.Proxy settings = (org.openqa.selenium.Proxy) Chrome.getCapabilities(profile).getCapability(CapabilityType.PROXY);
+		
+		assertThat(settings.getHttpProxy(), is("127.0.0.1:" + proxy.getPort()));
+		assertThat(settings.getSslProxy(), is("127.0.0.1:" + proxy.getPort()));
+	}
+}
@@ -0,0 +1,261 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.http;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.Cookie;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.HttpRetrievalException;
+import shelob.core.fake.DomFixture;
+import shelob.core.fake.FakeDocument;
+import shelob.core.http.SessionHttpClient;
+import shelob.core.interfaces.IResponseHandler;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.GenericReportWindow;
+import shelob.core.page.Page;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.Label;
+
+public class SessionHttpClientTests {
+
+	private static final String REPORT = "id,patient,status\n1,Smith,Open\n2,Jones,Closed\n";
+	
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	
+	private HttpServer server;
+	private final List<String> cookies = new CopyOnWriteArrayList<String>();
+	
+	private DomFixture fixture;
+	private ReportsPage page;
+	private ReportWindow report;
+	
+	static class ReportsPage extends StandardNavigationPage {
+
+		ReportsPage(ApplicationParameters parameters) {
+			super(parameters, "Reports");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "census").label("Census").build())
+											.put(new Label.Builder(this, LookUp.ById, "missing").label("Missing").build())
+											.put(new Label.Builder(this, LookUp.ById, "expired").label("Expired").build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	static class ReportWindow extends GenericReportWindow<ReportWindow> {
+
+		ReportWindow(Page parent) {
+			super(parent, "Census");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create();
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/app/", new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				
+				final String path = exchange.getRequestURI().getPath();
+				cookies.add(String.valueOf(exchange.getRequestHeaders().getFirst("Cookie")));
+				
+				if (path.equals("/app/moved/census.csv") || path.equals("/app/expired.csv")) {
+					exchange.getResponseHeaders().set("Location", path.equals("/app/expired.csv") ? "/app/reports?expired=true" : "/app/census.csv");
+					exchange.sendResponseHeaders(302, -1);
+					exchange.close();
+					return;
+				}
+				
+				if (! path.endsWith("census.csv")) {
+					exchange.sendResponseHeaders(404, -1);
+					exchange.close();
+					return;
+				}
+				
+				exchange.getResponseHeaders().set("Content-Type", "text/csv");
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				exchange.sendResponseHeaders(200, 0);
+				
+				final OutputStream out = new GZIPOutputStream(exchange.getResponseBody());
+				out.write(REPORT.getBytes("UTF-8"));
+				out.close();
+			}
+		});
+		server.start();
+		
+		final int port = server.getAddress().getPort();
+		final String markup = String.format("<html><head><title>Reports</title></head><body>" +
+				"<a id='census' href='http://localhost:%d/app/census.csv'>Census</a>" +
+				"<a id='missing' href='http://localhost:%d/app/none.csv'>Missing</a>" +
+				"<a id='expired' href='/app/expired.csv'>Expired</a></body></html>", port, port);
+		
+		fixture = new DomFixture(FakeDocument.parse(markup), new ApplicationURL("localhost", port, "app", "reports"));
+		fixture.getDriver().manage().addCookie(new Cookie("JSESSIONID", "abc123", "/app", null));
+		fixture.getDriver().manage().addCookie(new Cookie("other", "x", "/elsewhere", null));
+		fixture.getDriver().manage().addCookie(new Cookie("narrow", "y", "/app/census", null));
+		fixture.getDriver().manage().addCookie(new Cookie("hop", "z", "/app/moved", null));
+		
+		page = new ReportsPage(fixture.createParameters());
+		report = new ReportWindow(page);
+	}
+	
+	@After
+	public void teardown() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void reportsAreStreamedWithTheSessionCookies() throws Exception {
+		
+		final String handle = fixture.getDriver().getWindowHandle();
+		fixture.getExecutor().resetCommandCounts();
+		
+		final String csv = report.fetch(page.find("Census"), new IResponseHandler<String>() {
+			
+			public String handle(String contentType, InputStream content) throws IOException {
+				
+				assertThat(contentType, is("text/csv"));
+				return CharStreams.toString(new InputStreamReader(content, "UTF-8"));
+			}
+		});
+		
+		assertThat(csv, is(REPORT));
+		assertThat(cookies.get(0), is("JSESSIONID=abc123"));
+		
+		// the report window is never opened
+		assertThat(fixture.getExecutor().getCommandCount("newWindow") + fixture.getExecutor().getCommandCount("switchToWindow"), is(0L));
+		assertThat(fixture.getDriver().getWindowHandle(), is(handle));
+		
+		final File file = folder.newFile("census.csv");
+		
+		assertThat(report.download(page.find("Census"), file), is((long) REPORT.length()));
+		assertThat(Files.toString(file, Charsets.UTF_8), is(REPORT));
+	}
+	
+	@Test
+	public void failedRequestsReportTheStatus() {
+		
+		try {
+			report.download(page.find("Missing"), new File(folder.getRoot(), "none.csv"));
+			fail("The report does not exist");
+		} catch (HttpRetrievalException e) {
+			assertThat(e.getStatus(), is(404));
+			assertThat(e.getUrl().endsWith("/app/none.csv"), is(true));
+		}
+	}
+	
+	@Test
+	public void redirectsAreFollowedWithTheCookiesOfEachHop() throws Exception {
+		
+		final SessionHttpClient client = new SessionHttpClient.Builder(fixture.getDriver()).build();
+		final File file = folder.newFile("moved.csv");
+		
+		assertThat(client.download(client.resolve("/app/moved/census.csv"), file), is((long) REPORT.length()));
+		
+		// the cookie scoped to the old location is not sent on to the new one
+		assertThat(sorted(cookies.get(0)), is(Arrays.asList("JSESSIONID=abc123", "hop=z")));
+		assertThat(sorted(cookies.get(1)), is(Arrays.asList("JSESSIONID=abc123")));
+	}
+	
+	@Test
+	public void aRedirectToTheLoginPageFails() {
+		
+		try {
+			report.download(page.find("Expired"), new File(folder.getRoot(), "expired.csv"));
+			fail("The session has expired");
+		} catch (HttpRetrievalException e) {
+			assertThat(e.getStatus(), is(302));
+			assertThat(e.getMessage().contains("login page"), is(true));
+		}
+		
+		assertThat(cookies.size(), is(1));
+	}
+	
+	@Test
+	public void cookiePathsFollowRfc6265() throws Exception {
+		
+		final SessionHttpClient client = new SessionHttpClient.Builder(fixture.getDriver()).build();
+		
+		assertThat(sorted(client.getCookieHeader(new URL("http://localhost/app/census"))), is(Arrays.asList("JSESSIONID=abc123", "narrow=y")));
+		assertThat(sorted(client.getCookieHeader(new URL("http://localhost/app/census/today.csv"))), is(Arrays.asList("JSESSIONID=abc123", "narrow=y")));
+		assertThat(client.getCookieHeader(new URL("http://localhost/app/census.csv")), is("JSESSIONID=abc123"));
+		assertThat(client.getCookieHeader(new URL("http://localhost/application")), is((String) null));
+	}
+	
+	private static List<String> sorted(String header) {
+		
+		final List<String> cookies = Arrays.asList(header.split("; "));
+		Collections.sort(cookies);
+		return cookies;
+	}
+}
@@ -0,0 +1,230 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.load;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import shelob.core.User;
+import shelob.core.http.HttpScript;
+import shelob.core.load.HttpReplayEngine;
+import shelob.core.load.LoadReport;
+
+public class HttpReplayEngineTests {
+
+	private HttpServer server;
+	private String base;
+	
+	// "SID path" -> requests seen by the server
+	private final ConcurrentMap<String, AtomicInteger> seen = new ConcurrentHashMap<String, AtomicInteger>();
+	
+	@Before
+	public void setup() throws Exception {
+		
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/app/", new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				
+				final String path = exchange.getRequestURI().getPath();
+				final String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+				
+				if ("POST".equals(exchange.getRequestMethod())) {
+					
+					final String form = CharStreams.toString(new InputStreamReader(exchange.getRequestBody(), Charsets.UTF_8));
+					final String email = URLDecoder.decode(form.substring(form.indexOf("email=") + 6).split("&")[0], "UTF-8");
+					final String password = URLDecoder.decode(form.substring(form.indexOf("password=") + 9).split("&")[0], "UTF-8");
+					
+					if (password.equals(email.substring(0, email.indexOf('@')) + "!")) {
+						exchange.getResponseHeaders().add("Set-Cookie", "SID=" + email + "; Path=/");
+						exchange.getResponseHeaders().add("Location", "/app/orders");
+						exchange.sendResponseHeaders(302, -1);
+					} else
+						exchange.sendResponseHeaders(401, -1);
+					
+					exchange.close();
+					return;
+				}
+				
+				if (cookie == null || ! cookie.startsWith("SID=")) {
+					exchange.sendResponseHeaders(403, -1);
+					exchange.close();
+					return;
+				}
+				
+				final AtomicInteger count = new AtomicInteger();
+				final AtomicInteger previous = seen.putIfAbsent(cookie.substring(4) + " " + path, count);
+				(previous == null ? count : previous).incrementAndGet();
+				
+				// signing out expires the session the way older servers do, by a date in the past
+				if (path.equals("/app/logout"))
+					exchange.getResponseHeaders().add("Set-Cookie", "SID=signed-out; Path=/; Expires=Thu, 01 Jan 1970 00:00:00 GMT");
+				
+				final byte[] bytes = ("<html><body>" + path + "</body></html>").getBytes(Charsets.UTF_8);
+				exchange.sendResponseHeaders(200, bytes.length);
+				
+				final OutputStream out = exchange.getResponseBody();
+				out.write(bytes);
+				out.close();
+			}
+		});
+		server.start();
+		
+		base = "http://localhost:" + server.getAddress().getPort();
+	}
+	
+	@After
+	public void teardown() {
+		server.stop(0);
+	}
+	
+	private static HttpScript script() {
+		
+		final Map<String, String> form = new HashMap<String, String>();
+		form.put("Content-Type", "application/x-www-form-urlencoded");
+		
+		final List<HttpScript.Request> requests = new ArrayList<HttpScript.Request>();
+		requests.add(new HttpScript.Request("goToLink Sign In : Sign In", "POST", "${base}/app/session", form, 
+											"email=${user.email|url}&password=${user.password|url}", 302));
+		requests.add(new HttpScript.Request("goToLink Sign In : Sign In", "GET", "${base}/app/orders", new HashMap<String, String>(), null, 200));
+		requests.add(new HttpScript.Request("goToLink Orders : Order", "GET", "${base}/app/orders/${Order}", new HashMap<String, String>(), null, 200));
+		
+		final Map<String, String> defaults = new HashMap<String, String>();
+		defaults.put("base", "http://localhost:1");
+		defaults.put("Order", "1001");
+		return new HttpScript(requests, defaults);
+	}
+	
+	private int seen(String key) {
+		
+		final AtomicInteger count = seen.get(key);
+		return count == null ? 0 : count.get();
+	}
+	
+	@Test
+	public void everyVirtualUserReplaysTheScriptWithItsOwnSession() throws Exception {
+		
+		final HttpReplayEngine engine = new HttpReplayEngine.Builder(script())
+												.baseUrl(base + "/")
+												.users(new User.Builder("bob@example.com", "bob!").build(), 
+													   new User.Builder("carol+ops@example.com", "carol+ops!").build())
+												.parameter("Order", "1001", "1002")
+												.virtualUsers(4)
+												.iterations(40)
+												.duration(1, TimeUnit.MINUTES)
+												.build();
+		
+		final LoadReport report = engine.run();
+		
+		assertThat(report.getArrivals(), is(40L));
+		assertThat(report.getCompleted(), is(40L));
+		assertThat(report.getFailed(), is(0L));
+		assertThat(report.getRow(HttpReplayEngine.SCRIPT).getCount(), is(40L));
+		assertThat(engine.getRowNames().get(3), is("03 goToLink Orders : Order : GET /app/orders/${Order}"));
+		
+		for (String name : engine.getRowNames()) {
+			assertThat(name, report.getRow(name).getCount(), is(40L));
+			assertThat(name, report.getRow(name).getErrors(), is(0L));
+		}
+		
+		// each session was kept by the cookie the virtual user was given when signing in
+		assertThat(seen("bob@example.com /app/orders") + seen("carol+ops@example.com /app/orders"), is(40));
+		assertThat(seen("bob@example.com /app/orders") > 0, is(true));
+		assertThat(seen("carol+ops@example.com /app/orders") > 0, is(true));
+		
+		// one value of the parameter per iteration
+		assertThat(seen("bob@example.com /app/orders/1001") + seen("carol+ops@example.com /app/orders/1001"), is(20));
+		assertThat(seen("bob@example.com /app/orders/1002") + seen("carol+ops@example.com /app/orders/1002"), is(20));
+	}
+	
+	@Test
+	public void anUnexpectedStatusFailsTheIteration() throws Exception {
+		
+		final LoadReport report = new HttpReplayEngine.Builder(script())
+										.baseUrl(base)
+										.users(new User.Builder("mallory@example.com", "guess").build())
+										.virtualUsers(2)
+										.iterations(10)
+										.build().run();
+		
+		assertThat(report.getCompleted(), is(0L));
+		assertThat(report.getFailed(), is(10L));
+		assertThat(report.getRow(HttpReplayEngine.SCRIPT).getErrors(), is(10L));
+		assertThat(report.getRow("01 goToLink Sign In : Sign In : POST /app/session").getErrors(), is(10L));
+		
+		// the rest of the script is skipped
+		assertThat(report.getRow("02 goToLink Sign In : Sign In : GET /app/orders").getCount(), is(0L));
+		assertThat(seen.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void cookiesExpiredByDateAreDropped() throws Exception {
+		
+		final HttpScript signedIn = script();
+		final List<HttpScript.Request> requests = new ArrayList<HttpScript.Request>(signedIn.getRequests().subList(0, 2));
+		requests.add(new HttpScript.Request("click Orders : Sign Out", "GET", "${base}/app/logout", new HashMap<String, String>(), null, 200));
+		requests.add(new HttpScript.Request("goTo Orders", "GET", "${base}/app/orders", new HashMap<String, String>(), null, 403));
+		
+		final LoadReport report = new HttpReplayEngine.Builder(new HttpScript(requests, signedIn.getDefaults()))
+										.baseUrl(base)
+										.users(new User.Builder("bob@example.com", "bob!").build())
+										.virtualUsers(1)
+										.iterations(3)
+										.build().run();
+		
+		assertThat(report.getCompleted(), is(3L));
+		assertThat(report.getFailed(), is(0L));
+		assertThat(seen("signed-out /app/orders"), is(0));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void credentialsAreRequiredWhenTheScriptSignsIn() {
+		new HttpReplayEngine.Builder(script()).baseUrl(base).build();
+	}
+}
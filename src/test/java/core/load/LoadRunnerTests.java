@@ -0,0 +1,199 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.load;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.fake.FakeCommandExecutor;
+import shelob.core.fake.LatencyDistribution;
+import shelob.core.interfaces.IDriverFactory;
+import shelob.core.interfaces.IRequiresLogin;
+import shelob.core.interfaces.IScenario;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.interfaces.page.IPageFactory;
+import shelob.core.load.LatencyHistogram;
+import shelob.core.load.LoadReport;
+import shelob.core.load.LoadRunner;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.Label;
+
+public class LoadRunnerTests {
+
+	private static final ApplicationURL URL = new ApplicationURL("localhost", "cgi-bin", "orders");
+	private static final String MARKUP = "<html><head><title>Orders</title></head><body><span id='total'>42</span></body></html>";
+	
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	
+	static class OrdersPage extends StandardNavigationPage implements IRequiresLogin<OrdersPage> {
+
+		OrdersPage(ApplicationParameters parameters) {
+			super(parameters, "Orders");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null)
+				elements = ElementCollection.create().put(new Label.Builder(this, LookUp.ById, "total").label("Total").build());
+			
+			return elements;
+		}
+
+		public OrdersPage loginAndNavigateToPage() {
+			goTo();
+			return this;
+		}
+	}
+	
+	private static IDriverFactory fakes(final long latencyMillis) {
+		
+		return new IDriverFactory() {
+			public RemoteWebDriver createDriver() {
+				return new FakeCommandExecutor().route(URL.getURL(), MARKUP)
+												.setLatency(DriverCommand.GET, LatencyDistribution.fixed(latencyMillis, TimeUnit.MILLISECONDS))
+												.createDriver();
+			}
+		};
+	}
+	
+	private static final IPageFactory<OrdersPage> ORDERS = new IPageFactory<OrdersPage>() {
+		public OrdersPage createPage(ApplicationParameters parameters) {
+			return new OrdersPage(parameters);
+		}
+	};
+	
+	@Test
+	public void journeysRunAtTheTargetArrivalRate() throws Exception {
+		
+		final LoadReport report = new LoadRunner.Builder(URL)
+												.scenario("orders", LoadRunner.login(ORDERS))
+												.users(new User.Builder("alice@example.com", "secret").build())
+												.drivers(fakes(5))
+												.virtualUsers(4)
+												.arrivalRate(50)
+												.duration(1, TimeUnit.SECONDS)
+												.build().run();
+		
+		assertThat(report.getArrivals(), is(50L));
+		assertThat(report.getCompleted(), is(50L));
+		assertThat(report.getFailed() + report.getDropped(), is(0L));
+		
+		final LoadReport.Row step = report.getRow("orders / goTo Orders");
+		
+		assertThat(step.getCount(), is(50L));
+		assertThat(step.getMillisAtPercentile(50) >= 5, is(true));
+		assertThat(step.getMillisAtPercentile(50) <= step.getMillisAtPercentile(99), is(true));
+		
+		// the response time includes the wait for a virtual user, so it is never shorter
+		assertThat(report.getRow("orders response").getMillisAtPercentile(99) >= report.getRow("orders").getMillisAtPercentile(99), is(true));
+	}
+	
+	@Test
+	public void failedJourneysAreCountedAndReported() throws Exception {
+		
+		final AtomicInteger runs = new AtomicInteger();
+		
+		final IScenario flaky = new IScenario() {
+			public void run(ApplicationParameters parameters) {
+				
+				new OrdersPage(parameters).goTo();
+				
+				if (runs.incrementAndGet() % 2 == 0)
+					throw new IllegalStateException("Every second journey fails");
+			}
+		};
+		
+		final LoadReport report = new LoadRunner.Builder(URL)
+												.scenario("flaky", flaky)
+												.scenario("orders", 3, LoadRunner.login(ORDERS))
+												.users(new User.Builder("alice@example.com", "secret").build(), 
+													   new User.Builder("bob@example.com", "secret").build())
+												.drivers(fakes(0))
+												.virtualUsers(2)
+												.arrivalRate(40)
+												.duration(500, TimeUnit.MILLISECONDS)
+												.build().run();
+		
+		// one in four arrivals runs the flaky scenario, half of which fail
+		assertThat(report.getRow("flaky").getCount(), is(5L));
+		assertThat(report.getFailed(), is(2L));
+		assertThat(report.getRow("flaky").getErrors(), is(2L));
+		assertThat(report.getRow("orders").getCount(), is(15L));
+		
+		final File directory = folder.newFolder("load");
+		report.writeReports(directory);
+		
+		final List<String> csv = Files.readLines(new File(directory, LoadReport.CSV_REPORT), Charsets.UTF_8);
+		assertThat(csv.get(0), is("name,count,errors,throughput_per_s,min_ms,mean_ms,p50_ms,p90_ms,p99_ms,p99_9_ms,max_ms"));
+		assertThat(csv.size(), is(report.getRows().size() + 1));
+		
+		final JSONObject json = new JSONObject(Files.toString(new File(directory, LoadReport.JSON_REPORT), Charsets.UTF_8));
+		assertThat(json.getLong("failed"), is(2L));
+	}
+	
+	@Test
+	public void histogramPercentilesAreWithinOnePercent() {
+		
+		final LatencyHistogram histogram = new LatencyHistogram();
+		
+		for (long micros = 1; micros <= 100000; micros++)
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+		
+		assertThat(histogram.getCount(), is(100000L));
+		assertThat(histogram.getMinNanos(), is(1000L));
+		assertThat(histogram.getMaxNanos(), is(100000000L));
+		
+		for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+			
+			final double expected = percentile * 1000 * 1000;
+			assertEquals(expected, histogram.getValueAtPercentile(percentile), expected / 100);
+		}
+		
+		final LatencyHistogram merged = histogram.copy().add(histogram);
+		assertThat(merged.getCount(), is(200000L));
+		assertThat(merged.getValueAtPercentile(50), is(histogram.getValueAtPercentile(50)));
+	}
+}
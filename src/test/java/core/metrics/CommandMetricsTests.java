@@ -0,0 +1,207 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+// $codepro.audit.disable typeJavadoc, com.instantiations.assist.eclipse.analysis.audit.rule.effectivejava.alwaysOverridetoString.alwaysOverrideToString, fieldJavadoc, methodJavadoc
+package core.metrics;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.metrics.CommandAttribution;
+import shelob.core.metrics.CommandKey;
+import shelob.core.metrics.CommandMetrics;
+import shelob.core.metrics.CommandStatistics;
+import shelob.core.metrics.MeteredCommandExecutor;
+import shelob.core.page.StandardNavigationPage;
+
+import core.examples.element.Label;
+
+public class CommandMetricsTests {
+
+	private static final String PAGE_NAME = "Metered Page";
+	private static final String LABEL = "Greeting";
+	
+	private CommandMetrics metrics;
+	private RemoteWebDriver driver;
+	private TestPage page;
+	
+	// Answers every command with a canned, successful Response
+	static class StubExecutor implements CommandExecutor {
+
+		public Response execute(Command command) throws IOException {
+			
+			final Response response = new Response();
+			response.setSessionId("session");
+			response.setStatus(0);
+			
+			if (DriverCommand.NEW_SESSION.equals(command.getName()))
+				response.setValue(new HashMap<String, Object>());
+			else if (DriverCommand.FIND_ELEMENT.equals(command.getName())) {
+				final Map<String, Object> element = new HashMap<String, Object>();
+				element.put("ELEMENT", "1");
+				response.setValue(element);
+			} else if (DriverCommand.GET_ELEMENT_TEXT.equals(command.getName()))
+				response.setValue("Hello");
+			
+			return response;
+		}
+	}
+	
+	static class TestPage extends StandardNavigationPage {
+
+		TestPage(ApplicationParameters parameters) {
+			super(parameters, PAGE_NAME);
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "greeting").label(LABEL).build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() {
+		
+		metrics = new CommandMetrics();
+		driver = new RemoteWebDriver(new MeteredCommandExecutor(new StubExecutor(), metrics), new DesiredCapabilities());
+		
+		final ApplicationURL url = new ApplicationURL("localhost", "cgi-bin", "app");
+		page = new TestPage(new ApplicationParameters(driver, url, new User.Builder("noone@test.com", "password").build()));
+	}
+	
+	@After
+	public void teardown() {
+		CommandAttribution.clear();
+	}
+	
+	@Test
+	public void commandsAreAttributedToElements() {
+		
+		metrics.beginTest("attribution");
+		assertThat(page.find(LABEL).getText(), is("Hello"));
+		metrics.endTest();
+		
+		final String path = page.toString().trim();
+		
+		assertThat(metrics.getSuiteStatistics().get(new CommandKey(path, LABEL, DriverCommand.FIND_ELEMENT)).getCount(), is(1L));
+		assertThat(metrics.getSuiteStatistics().get(new CommandKey(path, LABEL, DriverCommand.GET_ELEMENT_TEXT)).getCount(), is(1L));
+		
+		assertThat(metrics.getTestNames().contains("attribution"), is(true));
+		assertThat(metrics.getTestTotal("attribution").getCount(), is(2L));
+	}
+	
+	@Test
+	public void directDriverUseIsNotChargedToTheLastElement() {
+		
+		page.find(LABEL).getText();
+		driver.getTitle();
+		
+		assertThat(metrics.getSuiteStatistics().get(new CommandKey(page.toString().trim(), LABEL, DriverCommand.GET_TITLE)), is(nullValue()));
+		assertThat(metrics.getSuiteStatistics().get(new CommandKey("<unattributed>", "<unattributed>", DriverCommand.GET_TITLE)).getCount(), is(1L));
+	}
+	
+	@Test
+	public void suiteTotalsIncludeAllTests() {
+		
+		metrics.beginTest("first");
+		page.find(LABEL).getText();
+		metrics.endTest();
+		
+		metrics.beginTest("second");
+		page.find(LABEL).getText();
+		page.find(LABEL).getText();
+		metrics.endTest();
+		
+		// NEW_SESSION is issued before any test begins
+		assertThat(metrics.getSuiteTotal().getCount(), is(7L));
+		assertThat(metrics.getTestTotal("first").getCount(), is(2L));
+		assertThat(metrics.getTestTotal("second").getCount(), is(4L));
+		assertThat(metrics.getTestTotal("unknown"), is(CommandStatistics.EMPTY));
+	}
+	
+	@Test
+	public void failedCommandsAreCounted() throws IOException {
+		
+		final CommandExecutor failing = mock(CommandExecutor.class);
+		when(failing.execute(Matchers.any(Command.class))).thenThrow(new IOException("unreachable"));
+		
+		final MeteredCommandExecutor executor = new MeteredCommandExecutor(failing, metrics.reset());
+		
+		try {
+			executor.execute(new Command(null, DriverCommand.GET_TITLE));
+			fail();
+		} catch (IOException e) {
+			assertThat(metrics.getSuiteTotal().getFailures(), is(1L));
+		}
+	}
+	
+	@Test
+	public void resetDiscardsStatistics() {
+		
+		page.find(LABEL).getText();
+		assertThat(metrics.reset().getSuiteTotal(), is(notNullValue()));
+		assertThat(metrics.getSuiteTotal().getCount(), is(0L));
+		assertThat(metrics.getSuiteStatistics().isEmpty(), is(true));
+	}
+	
+	@Test
+	public void resetDuringATestKeepsCounting() {
+		
+		metrics.beginTest("running");
+		page.find(LABEL).getText();
+		metrics.reset();
+		page.find(LABEL).getText();
+		metrics.endTest();
+		
+		assertThat(metrics.getTestTotal("running").getCount(), is(2L));
+		assertThat(metrics.getSuiteTotal().getCount(), is(2L));
+	}
+}
@@ -0,0 +1,266 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core.metrics;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.DriverCommand;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.fake.FakeCommandExecutor;
+import shelob.core.fake.InjectedFailure;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.metrics.ElementKey;
+import shelob.core.metrics.TimeBreakdown;
+import shelob.core.metrics.TimeBreakdownRecorder;
+import shelob.core.page.StandardNavigationPage;
+import shelob.core.trace.OperationOutcome;
+import shelob.core.trace.OperationType;
+
+import core.examples.element.Button;
+import core.examples.element.Label;
+
+public class TimeBreakdownRecorderTests {
+
+	private static final String PAGE_NAME = "Measured Page";
+	private static final String GREETING = "Greeting";
+	private static final String SAVE = "Save";
+	private static final String MISSING = "Missing";
+	
+	private static final String MARKUP = 
+			"<html><head><title>Measured Page</title></head><body>" +
+			"<span id='greeting'>Hello</span>" +
+			"<input type='button' value='Save' id='save'/>" +
+			"</body></html>";
+	
+	private FakeCommandExecutor executor;
+	private TimeBreakdownRecorder recorder;
+	private TestPage page;
+	
+	static class TestPage extends StandardNavigationPage {
+
+		TestPage(ApplicationParameters parameters) {
+			super(parameters, PAGE_NAME);
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "greeting").label(GREETING).build())
+											.put(new Button.Builder(this, LookUp.ById, "save").label(SAVE).build())
+											.put(new Label.Builder(this, LookUp.ById, "missing").label(MISSING).build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() {
+		
+		final ApplicationURL url = new ApplicationURL("localhost", "cgi-bin", "app");
+		executor = new FakeCommandExecutor().route(url.getURL(), MARKUP);
+		recorder = new TimeBreakdownRecorder();
+		
+		page = new TestPage(new ApplicationParameters(executor.createDriver(), url, new User.Builder("noone@test.com", "password").build())
+									.setOperationListener(recorder));
+		page.goTo();
+	}
+	
+	@Test
+	public void pollingIsCountedAsWaiting() {
+		
+		recorder.beginTest("wait");
+		page.find(GREETING).getTextWhenVisible(1);
+		recorder.endTest();
+		
+		final TimeBreakdown greeting = recorder.getTestBreakdown("wait").get(key(GREETING));
+		
+		assertThat(greeting.getCount(OperationType.WAIT), is(1L));
+		assertThat(greeting.getCount(OperationType.ACTION), is(1L));
+		
+		// only the lookup made by getText(); the lookups made while polling belong to the wait
+		assertThat(greeting.getCount(OperationType.LOOKUP), is(1L));
+		assertThat(greeting.getTimeouts(), is(0L));
+	}
+	
+	@Test
+	public void pausesRetriesAndTimeoutsAreSeparated() {
+		
+		recorder.beginTest("mixed");
+		
+		page.find(GREETING).pause(50);
+		
+		executor.injectFailure(DriverCommand.CLICK_ELEMENT, InjectedFailure.NOT_CLICKABLE, 1);
+		page.find(SAVE).click();
+		
+		try {
+			page.find(MISSING).clickWhenVisible(0);
+			fail();
+		} catch (AutomationException e) {
+			// expected
+		}
+		
+		recorder.endTest();
+		
+		assertThat(recorder.getTestBreakdown("mixed").get(key(GREETING)).getMillis(OperationType.PAUSE) >= 50, is(true));
+		
+		final TimeBreakdown save = recorder.getTestBreakdown("mixed").get(key(SAVE));
+		assertThat(save.getCount(OperationType.RETRY), is(1L));
+		assertThat(save.getCount(OperationType.ACTION), is(1L));
+		
+		final TimeBreakdown missing = recorder.getTestBreakdown("mixed").get(key(MISSING));
+		assertThat(missing.getTimeouts(), is(1L));
+		assertThat(missing.getCount(OperationType.ACTION), is(0L));
+		
+		final TimeBreakdown total = recorder.getTestTotal("mixed");
+		assertThat(total.getCount(OperationType.WAIT), is(1L));
+		assertThat(total.getTotalNanos() >= total.getNanos(OperationType.PAUSE), is(true));
+	}
+	
+	@Test
+	public void navigationIsAttributedToThePage() {
+		
+		final TimeBreakdown navigation = recorder.getSuiteBreakdown().get(new ElementKey(page.toString().trim(), "<page>"));
+		assertThat(navigation.getCount(OperationType.NAVIGATION), is(1L));
+		assertThat(recorder.getTestNames().isEmpty(), is(true));
+	}
+	
+	@Test
+	public void pagesAreNotKeptReachable() throws InterruptedException {
+		
+		TestPage other = new TestPage(page.getParameters());
+		other.goTo();
+		other.find(GREETING).getText();
+		
+		final WeakReference<TestPage> reference = new WeakReference<TestPage>(other);
+		other = null;
+		
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		
+		assertThat(reference.get() == null, is(true));
+		
+		// distinct instances of the same Page class share a row
+		final TimeBreakdown navigation = recorder.getSuiteBreakdown().get(new ElementKey(page.toString().trim(), "<page>"));
+		assertThat(navigation.getCount(OperationType.NAVIGATION), is(2L));
+	}
+	
+	@Test
+	public void reportsAreSortedByWaitTime() throws Exception {
+		
+		recorder.beginTest("report");
+		page.find(SAVE).click();
+		page.find(GREETING).pause(20);
+		
+		try {
+			page.find(MISSING).getTextWhenVisible(0);
+		} catch (AutomationException e) {
+			// expected
+		}
+		
+		recorder.endTest();
+		
+		final StringWriter csv = new StringWriter();
+		recorder.writeCsv(csv);
+		
+		final String[] lines = csv.toString().split("\n");
+		assertThat(lines[0].startsWith("test,page,element,action_count,action_ms,lookup_count"), is(true));
+		assertThat(lines[0].endsWith(",timeouts,total_ms"), is(true));
+		
+		// waiting first, then pausing
+		assertThat(lines[1].startsWith("report,"), is(true));
+		assertThat(lines[1].contains("," + MISSING + ","), is(true));
+		assertThat(lines[2].contains("," + GREETING + ","), is(true));
+		
+		final StringWriter json = new StringWriter();
+		recorder.writeJson(json);
+		
+		final JSONArray rows = new JSONArray(json.toString());
+		assertThat(rows.getJSONObject(0).getString("element"), is(MISSING));
+		assertThat(rows.getJSONObject(0).getLong("timeouts"), is(1L));
+		assertThat(rows.getJSONObject(rows.length() - 1).getString("test"), is(TimeBreakdownRecorder.SUITE));
+	}
+	
+	@Test
+	public void resetDiscardsTimes() throws IOException {
+		
+		assertThat(recorder.reset().getSuiteBreakdown().isEmpty(), is(true));
+		assertThat(recorder.getTestTotal("unknown").getTotalNanos(), is(0L));
+	}
+	
+	@Test
+	public void resetDuringATestKeepsRecording() {
+		
+		recorder.beginTest("reset");
+		page.find(SAVE).click();
+		recorder.reset();
+		page.find(SAVE).click();
+		recorder.endTest();
+		
+		assertThat(recorder.getTestBreakdown("reset").get(key(SAVE)).getCount(OperationType.ACTION), is(1L));
+		assertThat(recorder.getSuiteBreakdown().get(key(SAVE)).getCount(OperationType.ACTION), is(1L));
+	}
+	
+	@Test
+	public void operationsNestedTooDeeplyAreIgnored() {
+		
+		final int levels = 66;
+		recorder.reset();
+		
+		for (int i = 0; i < levels; i++)
+			recorder.operationStarted(OperationType.ACTION, "nested", page, null);
+		
+		// each level lasts a microsecond longer than the level it encloses
+		for (int i = levels - 1; i >= 0; i--)
+			recorder.operationCompleted(OperationType.ACTION, "nested", page, null, 0, (levels - i) * 1000L, OperationOutcome.SUCCESS);
+		
+		final TimeBreakdown nested = recorder.getSuiteBreakdown().get(new ElementKey(page.toString().trim(), "<page>"));
+		
+		// the two innermost levels are beyond the tracked depth, and are part of the time of the level enclosing them
+		assertThat(nested.getCount(OperationType.ACTION), is(64L));
+		assertThat(nested.getNanos(OperationType.ACTION), is(levels * 1000L));
+	}
+	
+	private ElementKey key(String label) {
+		return new ElementKey(page.toString().trim(), label);
+	}
+}
@@ -0,0 +1,276 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core.replay;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.fake.FakeCommandExecutor;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.StandardNavigationPage;
+import shelob.core.replay.CommandLog;
+import shelob.core.replay.RecordedCommand;
+import shelob.core.replay.RecordingCommandExecutor;
+import shelob.core.replay.ReplayCommandExecutor;
+import shelob.core.replay.ReplayMismatchException;
+
+import core.examples.element.Button;
+import core.examples.element.Label;
+
+public class CommandReplayTests {
+
+	private static final String MARKUP = 
+			"<html><head><title>Replay</title></head><body>" +
+			"<span id='greeting'>Hello <b>World</b></span>" +
+			"<input type='text' id='name'/>" +
+			"<input type='button' value='Save' id='save'/>" +
+			"</body></html>";
+	
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+	
+	private ApplicationURL url;
+	private FakeCommandExecutor fake;
+	private File log;
+	
+	static class ReplayPage extends StandardNavigationPage {
+
+		ReplayPage(ApplicationParameters parameters) {
+			super(parameters, "Replay");
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "greeting").label("Greeting").build())
+											.put(new Label.Builder(this, LookUp.ById, "name").label("Name").build())
+											.put(new Button.Builder(this, LookUp.ById, "save").label("Save").build())
+											.put(new Label.Builder(this, LookUp.ById, "missing").label("Missing").build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() throws Exception {
+		
+		url = new ApplicationURL("localhost", "cgi-bin", "replay");
+		fake = new FakeCommandExecutor().route(url.getURL(), MARKUP);
+		log = folder.newFile("commands.log");
+		
+		final CommandLog commands = new CommandLog(log);
+		
+		try {
+			assertThat(run(new RemoteWebDriver(new RecordingCommandExecutor(fake, commands), new DesiredCapabilities()), "shelob"), 
+					   is(expected()));
+		} finally {
+			commands.close();
+		}
+	}
+	
+	private List<Object> run(RemoteWebDriver driver, String name) {
+		
+		final ReplayPage page = new ReplayPage(new ApplicationParameters(driver, url, new User.Builder("noone@test.com", "password").build()));
+		final List<Object> results = new ArrayList<Object>();
+		
+		page.goTo();
+		results.add(driver.getTitle());
+		results.add(page.find("Greeting").getText());
+		page.find("Name").sendKeys(name);
+		results.add(page.find("Name").getAttribute("value"));
+		page.find("Save").click();
+		results.add(page.find("Missing").isValid());
+		results.add(driver.findElements(By.tagName("input")).size());
+		driver.manage().addCookie(new Cookie("session", "1234"));
+		results.add(driver.manage().getCookieNamed("session").getValue());
+		driver.quit();
+		
+		return results;
+	}
+	
+	private static List<Object> expected() {
+		
+		final List<Object> results = new ArrayList<Object>();
+		results.add("Replay");
+		results.add("Hello World");
+		results.add("shelob");
+		results.add(false);
+		results.add(2);
+		results.add("1234");
+		return results;
+	}
+	
+	private void assertCorrupt(String message) {
+		
+		try {
+			CommandLog.read(log);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertThat(e.getMessage().startsWith("Corrupt command log : " + message), is(true));
+		}
+	}
+	
+	@Test
+	public void replayServesTheRecordedResponses() throws Exception {
+		
+		final long live = fake.getCommandCount(DriverCommand.FIND_ELEMENT);
+		final ReplayCommandExecutor replay = ReplayCommandExecutor.fromFile(log);
+		
+		assertThat(run(replay.createDriver(), "shelob"), is(expected()));
+		replay.verify();
+		assertThat(fake.getCommandCount(DriverCommand.FIND_ELEMENT), is(live));
+		
+		// replays are deterministic
+		assertThat(run(ReplayCommandExecutor.fromFile(log).createDriver(), "shelob"), is(expected()));
+	}
+	
+	@Test
+	public void divergentRunsAreReported() throws Exception {
+		
+		final ReplayCommandExecutor replay = ReplayCommandExecutor.fromFile(log);
+		
+		try {
+			run(replay.createDriver(), "gollum");
+			fail("AutomationException expected");
+		} catch (AutomationException e) {
+			assertThat(e.getMessage().contains("differs from the recording; expected sendKeysToElement"), is(true));
+		}
+		
+		try {
+			replay.verify();
+			fail("ReplayMismatchException expected");
+		} catch (ReplayMismatchException e) {
+			assertThat(e.getMessage().startsWith("Command " + replay.getPosition() + " differs from the recording"), is(true));
+		}
+		
+		// only names are checked in loose mode; the recorded value is still returned
+		final List<Object> loose = run(ReplayCommandExecutor.fromFile(log).loose().createDriver(), "gollum");
+		assertThat(loose.get(2), is((Object) "shelob"));
+	}
+	
+	@Test
+	public void logsAreAppendOnlyAndTolerateATruncatedTail() throws Exception {
+		
+		final List<RecordedCommand> recorded = CommandLog.read(log);
+		
+		assertThat(recorded.get(0).getName(), is(DriverCommand.NEW_SESSION));
+		assertThat(recorded.get(recorded.size() - 1).getName(), is(DriverCommand.QUIT));
+		
+		final StringBuilder dump = new StringBuilder();
+		CommandLog.dump(recorded, dump);
+		assertThat(dump.toString().split(System.getProperty("line.separator")).length, is(recorded.size()));
+		
+		// a second run appended to the same log
+		final CommandLog commands = new CommandLog(log);
+		run(new RemoteWebDriver(new RecordingCommandExecutor(fake, commands), new DesiredCapabilities()), "shelob");
+		commands.close();
+		
+		assertThat(CommandLog.read(log).size(), is(recorded.size() * 2));
+		
+		// the recording was killed part way through writing the last record
+		final RandomAccessFile file = new RandomAccessFile(log, "rw");
+		file.setLength(file.length() - 3);
+		file.close();
+		
+		assertThat(CommandLog.read(log).size(), is(recorded.size() * 2 - 1));
+		
+		// appending discards the partly written record rather than writing after it
+		final CommandLog resumed = new CommandLog(log);
+		run(new RemoteWebDriver(new RecordingCommandExecutor(fake, resumed), new DesiredCapabilities()), "shelob");
+		resumed.close();
+		
+		final List<RecordedCommand> all = CommandLog.read(log);
+		assertThat(all.size(), is(recorded.size() * 3 - 1));
+		assertThat(all.get(recorded.size() * 2 - 1).getName(), is(DriverCommand.NEW_SESSION));
+	}
+	
+	@Test
+	public void corruptLengthsAreReported() throws Exception {
+		
+		final RandomAccessFile file = new RandomAccessFile(log, "rw");
+		
+		// the key length of the first record
+		file.seek(12);
+		file.writeInt(Integer.MAX_VALUE);
+		assertCorrupt("the key of record 0 declares a length of " + Integer.MAX_VALUE + " bytes");
+		
+		// the length of the first record
+		file.seek(8);
+		file.writeInt(-1);
+		file.close();
+		assertCorrupt("record 0 declares a length of -1 bytes");
+		
+		try {
+			new CommandLog(log);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertThat(e.getMessage(), is("Corrupt command log : record 0 declares a length of -1 bytes"));
+		}
+	}
+	
+	@Test
+	public void recordedCapabilitiesAreReplayed() throws Exception {
+		
+		final File withCapabilities = folder.newFile("capabilities.log");
+		final DesiredCapabilities capabilities = DesiredCapabilities.firefox();
+		capabilities.setCapability("acceptSslCerts", true);
+		
+		final CommandLog commands = new CommandLog(withCapabilities);
+		
+		try {
+			run(new RemoteWebDriver(new RecordingCommandExecutor(fake, commands), capabilities), "shelob");
+		} finally {
+			commands.close();
+		}
+		
+		final ReplayCommandExecutor replay = ReplayCommandExecutor.fromFile(withCapabilities);
+		
+		assertThat(run(replay.createDriver(), "shelob"), is(expected()));
+		replay.verify();
+	}
+}
@@ -0,0 +1,236 @@
+/**
+	Copyright (c) 2011, Strata Health Solutions Inc.
+ 	All rights reserved.
+
+	Redistribution and use in source and binary forms, with or without modification, are permitted 
+	provided that the following conditions are met:
+
+	Redistributions of source code must retain the above copyright notice, this list of conditions 
+	and the following disclaimer.
+
+	Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+	and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+	THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+	WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR 
+	A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE 
+	FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+	BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+	OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, 
+	OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, 
+	EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+**/
+
+package core.trace;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.DriverCommand;
+
+import shelob.core.ApplicationParameters;
+import shelob.core.ApplicationURL;
+import shelob.core.LookUp;
+import shelob.core.User;
+import shelob.core.elements.ElementCollection;
+import shelob.core.exceptions.AutomationException;
+import shelob.core.fake.FakeCommandExecutor;
+import shelob.core.fake.InjectedFailure;
+import shelob.core.interfaces.elements.IElementCollection;
+import shelob.core.page.StandardNavigationPage;
+import shelob.core.trace.TraceRecorder;
+
+import core.examples.element.Button;
+import core.examples.element.Label;
+
+public class TraceRecorderTests {
+
+	private static final String PAGE_NAME = "Traced Page";
+	private static final String GREETING = "Greeting";
+	private static final String SAVE = "Save";
+	private static final String MISSING = "Missing";
+	
+	private static final String MARKUP = 
+			"<html><head><title>Traced Page</title></head><body>" +
+			"<span id='greeting'>Hello</span>" +
+			"<input type='button' value='Save' id='save'/>" +
+			"</body></html>";
+	
+	private FakeCommandExecutor executor;
+	private ApplicationParameters parameters;
+	private StringWriter output;
+	private TraceRecorder recorder;
+	private TestPage page;
+	
+	static class TestPage extends StandardNavigationPage {
+
+		TestPage(ApplicationParameters parameters) {
+			super(parameters, PAGE_NAME);
+		}
+
+		public IElementCollection getElements() {
+			
+			if (elements == null) {
+				
+				elements = ElementCollection.create()
+											.put(new Label.Builder(this, LookUp.ById, "greeting").label(GREETING).build())
+											.put(new Button.Builder(this, LookUp.ById, "save").label(SAVE).build())
+											.put(new Label.Builder(this, LookUp.ById, "missing").label(MISSING).build());
+			}
+			
+			return elements;
+		}
+	}
+	
+	@Before
+	public void setup() throws IOException {
+		
+		final ApplicationURL url = new ApplicationURL("localhost", "cgi-bin", "app");
+		executor = new FakeCommandExecutor().route(url.getURL(), MARKUP);
+		
+		output = new StringWriter();
+		recorder = new TraceRecorder(output, 4);
+		
+		parameters = new ApplicationParameters(executor.createDriver(), url, new User.Builder("noone@test.com", "password").build())
+							.setOperationListener(recorder);
+		page = new TestPage(parameters);
+	}
+	
+	@Test
+	public void operationsAreRecordedAsCompleteEvents() throws Exception {
+		
+		page.goTo();
+		page.find(GREETING).getTextWhenVisible(1);
+		page.find(SAVE).click();
+		recorder.close();
+		
+		final List<JSONObject> events = getEvents("X");
+		
+		assertThat(names(events), is(list("goTo", "findElement", "waitUntilVisible", "findElement", "getText", "findElement", "click")));
+		
+		final JSONObject wait = events.get(2);
+		assertThat(wait.getString("cat"), is("WAIT"));
+		assertThat(wait.getJSONObject("args").getString("element"), is(GREETING));
+		assertThat(wait.getJSONObject("args").getString("lookup"), is("ById"));
+		assertThat(wait.getJSONObject("args").getString("outcome"), is("SUCCESS"));
+		assertThat(wait.getJSONObject("args").getString("page"), is(page.toString().trim()));
+		
+		final JSONObject goTo = events.get(0);
+		assertThat(goTo.getString("cat"), is("NAVIGATION"));
+		assertThat(goTo.getJSONObject("args").has("element"), is(false));
+		
+		// the lookup polled during the wait is contained by the wait
+		final JSONObject poll = events.get(1);
+		assertThat(poll.getDouble("ts") >= wait.getDouble("ts"), is(true));
+		assertThat(poll.getDouble("ts") + poll.getDouble("dur") <= wait.getDouble("ts") + wait.getDouble("dur") + 0.001, is(true));
+		
+		assertThat(getEvents("M").size(), is(1));
+		assertThat(recorder.getDroppedEvents(), is(0L));
+	}
+	
+	@Test
+	public void outcomesAreRecorded() throws Exception {
+		
+		page.goTo();
+		executor.injectFailure(DriverCommand.CLICK_ELEMENT, InjectedFailure.NOT_CLICKABLE, 1);
+		page.find(SAVE).click();
+		
+		try {
+			page.find(MISSING).clickWhenVisible(0);
+			fail();
+		} catch (AutomationException e) {
+			// expected
+		}
+		
+		recorder.close();
+		
+		final List<String> outcomes = new ArrayList<String>();
+		
+		for (JSONObject event : getEvents("X"))
+			outcomes.add(event.getString("cat") + ":" + event.getString("name") + ":" + event.getJSONObject("args").getString("outcome"));
+		
+		assertThat(outcomes.contains("RETRY:click:SUCCESS"), is(true));
+		assertThat(outcomes.contains("ACTION:click:SUCCESS"), is(true));
+		assertThat(outcomes.contains("LOOKUP:findElement:FAILURE"), is(true));
+		assertThat(outcomes.contains("WAIT:waitUntilVisible:TIMEOUT"), is(true));
+	}
+	
+	@Test
+	public void endedThreadsAreReleasedWithTheirEvents() throws Exception {
+		
+		final Thread worker = new Thread(new Runnable() {
+			
+			public void run() {
+				page.goTo();
+			}
+		}, "trace-worker");
+		
+		worker.start();
+		worker.join();
+		assertThat(recorder.getThreadCount(), is(1));
+		
+		// a new recording thread releases the ended one
+		page.goTo();
+		assertThat(recorder.getThreadCount(), is(1));
+		
+		recorder.close();
+		
+		assertThat(recorder.getThreadCount(), is(0));
+		assertThat(names(getEvents("X")), is(list("goTo", "goTo")));
+		assertThat(getEvents("M").size(), is(2));
+		assertThat(getEvents("M").get(0).getJSONObject("args").getString("name"), is("trace-worker"));
+		assertThat(recorder.getDroppedEvents(), is(0L));
+	}
+	
+	@Test
+	public void closingTwiceIsHarmless() throws IOException {
+		
+		recorder.close();
+		recorder.close();
+		page.goTo();
+		
+		assertThat(output.toString().trim().endsWith("]}"), is(true));
+	}
+	
+	private List<JSONObject> getEvents(String phase) throws JSONException {
+		
+		final JSONArray array = new JSONObject(output.toString()).getJSONArray("traceEvents");
+		final List<JSONObject> events = new ArrayList<JSONObject>();
+		
+		for (int i = 0; i < array.length(); i++) {
+			
+			if (array.getJSONObject(i).getString("ph").equals(phase))
+				events.add(array.getJSONObject(i));
+		}
+		
+		return events;
+	}
+	
+	private static List<String> names(List<JSONObject> events) throws JSONException {
+		
+		final List<String> names = new ArrayList<String>();
+		
+		for (JSONObject event : events)
+			names.add(event.getString("name"));
+		return names;
+	}
+	
+	private static List<String> list(String... values) {
+		
+		final List<String> list = new ArrayList<String>();
+		
+		for (String value : values)
+			list.add(value);
+		return list;
+	}
+}